@@ -19,6 +19,7 @@ package fr.openent.apizimbra;
 
 import fr.openent.apizimbra.controller.ApiController;
 import fr.openent.apizimbra.manager.ConfigManager;
+import fr.openent.apizimbra.service.ApiZimbraRepositoryEvents;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import org.entcore.common.http.BaseServer;
@@ -39,6 +40,7 @@ public class ApiZimbra extends BaseServer {
   public Future<Void> initApiZimbra() {
 		appConfig = new ConfigManager(config);
 		addController(new ApiController());
+		setRepositoryEvents(new ApiZimbraRepositoryEvents());
     return Future.succeededFuture();
 	}
 
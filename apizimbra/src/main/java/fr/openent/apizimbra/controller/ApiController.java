@@ -146,4 +146,14 @@ public class ApiController extends BaseController {
     public void getConfig(HttpServerRequest request) {
         renderJson(request, ApiZimbra.appConfig.getPublicConfig());
     }
+
+    /**
+     * Hits, misses and size of the communication decision caches
+     * @param request http request
+     */
+    @Get("communication/cache")
+    @SecuredAction("apizimbra.manage.config")
+    public void getCommunicationCacheStats(HttpServerRequest request) {
+        renderJson(request, communicationService.getCacheStats());
+    }
 }
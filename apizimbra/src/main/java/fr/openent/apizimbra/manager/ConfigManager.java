@@ -71,6 +71,10 @@ public class ConfigManager {
     // Bug in Zimbra : when getting messages in conversations, alternative parts are inverted
     private boolean invertAltPartInConvMsg;
 
+    private final int communicationCacheSize;
+    private final long communicationCacheTtl;
+    private final long communicationAddressCacheTtl;
+
     private static final Logger log = LoggerFactory.getLogger(ConfigManager.class);
 
     public ConfigManager(JsonObject config) {
@@ -102,6 +106,10 @@ public class ConfigManager {
         this.addressBookSynchroTtl = config.getInteger("abook-sync-ttl-minutes", 1440); // default 24h
         this.sqlInsertPaginationSize = config.getInteger("sql-insert-pagination-size", 5000);
         this.invertAltPartInConvMsg = config.getBoolean("invert-alt-part-in-conv-msg", false);
+        JsonObject communicationCacheConfig = config.getJsonObject("communication-cache", new JsonObject());
+        this.communicationCacheSize = communicationCacheConfig.getInteger("max-size", 50000);
+        this.communicationCacheTtl = communicationCacheConfig.getLong("ttl-seconds", 120L);
+        this.communicationAddressCacheTtl = communicationCacheConfig.getLong("address-ttl-seconds", 600L);
 
         String devLevelStr = config.getString("dev-level", "");
         if(NOSYNC.equals(devLevelStr)) {
@@ -163,6 +171,9 @@ public class ConfigManager {
     public Integer getAddressBookSynchroTtl() { return addressBookSynchroTtl;}
     public Integer getSqlInsertPaginationSize() { return sqlInsertPaginationSize;}
     public boolean getInvertAltPartInConvMsg() { return invertAltPartInConvMsg;}
+    public int getCommunicationCacheSize() { return communicationCacheSize;}
+    public long getCommunicationCacheTtl() { return communicationCacheTtl;}
+    public long getCommunicationAddressCacheTtl() { return communicationAddressCacheTtl;}
 
     private void initPublicConfig() {
         publicConfig.put("admin-password", hidePasswd(rawConfig.getString("admin-password","")));
@@ -57,7 +57,7 @@ public class ServiceManager {
         initDbMailService(appConfig);
         this.neoService = new Neo4jZimbraService();
         this.notificationService = new NotificationService(pathPrefix, timelineHelper);
-        this.communicationService = new CommunicationService();
+        this.communicationService = new CommunicationService(appConfig);
     }
 
     private void initDbMailService(ConfigManager appConfig) {
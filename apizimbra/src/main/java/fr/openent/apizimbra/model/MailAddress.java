@@ -67,6 +67,10 @@ public class MailAddress {
         initServices();
     }
 
+    public void setNeoId(String neoId) {
+        this.neoId = neoId;
+    }
+
     @Override
     public String toString() {
         return this.localPart + "@" + this.domain;
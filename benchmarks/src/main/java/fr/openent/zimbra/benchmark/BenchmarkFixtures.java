@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) Région Ile-de-France, Région Nouvelle-Aquitaine, CGI, 2016.
+ * This file is part of OPEN ENT NG. OPEN ENT NG is a versatile ENT Project based on the JVM and ENT Core Project.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ * For the sake of explanation, any module that communicate over native
+ * Web protocols, such as HTTP, with OPEN ENT NG is outside the scope of this
+ * license and could be license under its own terms. This is merely considered
+ * normal use of OPEN ENT NG, and does not fall under the heading of "covered work".
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package fr.openent.zimbra.benchmark;
+
+import fr.openent.zimbra.Zimbra;
+import fr.openent.zimbra.helper.ConfigManager;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Offline configuration and fixtures shared by benchmarks.
+ * Fixtures are anonymized Zimbra SOAP responses and Neo4j rows, stored in src/main/resources/fixtures.
+ */
+public final class BenchmarkFixtures {
+
+    public static final String DOMAIN = "ent.fr";
+    public static final String PREAUTH_KEY = "7f3c9a1e5b2d8f4a6c0e9b1d3f5a7c9e2b4d6f8a0c1e3b5d7f9a2c4e6b8d0f1a";
+
+    private BenchmarkFixtures() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Set the static configuration read by model classes, without any Zimbra or database access
+     */
+    public static synchronized void initConfig() {
+        if (Zimbra.appConfig == null) {
+            Zimbra.appConfig = new ConfigManager(new JsonObject()
+                    .put("zimbra-domain", DOMAIN)
+                    .put("preauth-key", PREAUTH_KEY));
+            Zimbra.domain = DOMAIN;
+            Zimbra.synchroLang = "fr";
+        }
+    }
+
+    public static JsonObject loadJsonObject(String fixtureName) {
+        return new JsonObject(load(fixtureName));
+    }
+
+    public static JsonArray loadJsonArray(String fixtureName) {
+        return new JsonArray(load(fixtureName));
+    }
+
+    private static String load(String fixtureName) {
+        try (InputStream is = BenchmarkFixtures.class.getResourceAsStream("/fixtures/" + fixtureName)) {
+            if (is == null) {
+                throw new IllegalArgumentException("Unknown fixture " + fixtureName);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Get the first message of a GetMsgResponse fixture
+     */
+    public static JsonObject getMessage(JsonObject getMsgResponse) {
+        return getMsgResponse.getJsonObject("Body").getJsonObject("GetMsgResponse")
+                .getJsonArray("m").getJsonObject(0);
+    }
+}
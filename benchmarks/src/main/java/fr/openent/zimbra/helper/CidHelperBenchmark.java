@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) Région Ile-de-France, Région Nouvelle-Aquitaine, CGI, 2016.
+ * This file is part of OPEN ENT NG. OPEN ENT NG is a versatile ENT Project based on the JVM and ENT Core Project.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ * For the sake of explanation, any module that communicate over native
+ * Web protocols, such as HTTP, with OPEN ENT NG is outside the scope of this
+ * license and could be license under its own terms. This is merely considered
+ * normal use of OPEN ENT NG, and does not fall under the heading of "covered work".
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package fr.openent.zimbra.helper;
+
+import fr.openent.zimbra.benchmark.BenchmarkFixtures;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static fr.openent.zimbra.model.constant.FrontConstants.MESSAGE_BODY;
+
+/**
+ * Replacement of inline images cid by their base64 content, as done when printing or forwarding a message
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CidHelperBenchmark {
+
+    @Param({"20000", "200000"})
+    public int imageSize;
+
+    private String body;
+    private Map<String, Buffer> images;
+    private Map<String, String> base64Images;
+
+    @Setup
+    public void setup() {
+        BenchmarkFixtures.initConfig();
+        JsonObject message = BenchmarkFixtures.getMessage(BenchmarkFixtures.loadJsonObject("get-msg-response.json"));
+        body = message.getJsonArray("mp").getJsonObject(0).getJsonArray("mp").getJsonObject(0)
+                .getJsonArray("mp").getJsonObject(0).getJsonArray("mp").getJsonObject(1).getString("content");
+
+        List<String> cids = CidHelper.getMessageCids(new JsonObject().put(MESSAGE_BODY, body));
+        Random random = new Random(42);
+        images = new HashMap<>();
+        for (String cid : cids) {
+            byte[] image = new byte[imageSize];
+            random.nextBytes(image);
+            images.put(cid, Buffer.buffer(image));
+        }
+        base64Images = CidHelper.mapCidToBase64(images);
+    }
+
+    @Benchmark
+    public List<String> getMessageCids() {
+        return CidHelper.getMessageCids(new JsonObject().put(MESSAGE_BODY, body));
+    }
+
+    @Benchmark
+    public Map<String, String> mapCidToBase64() {
+        return CidHelper.mapCidToBase64(images);
+    }
+
+    @Benchmark
+    public JsonObject replaceCidByBase64() {
+        return CidHelper.replaceCidByBase64(new JsonObject().put(MESSAGE_BODY, body), base64Images);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) Région Ile-de-France, Région Nouvelle-Aquitaine, CGI, 2016.
+ * This file is part of OPEN ENT NG. OPEN ENT NG is a versatile ENT Project based on the JVM and ENT Core Project.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ * For the sake of explanation, any module that communicate over native
+ * Web protocols, such as HTTP, with OPEN ENT NG is outside the scope of this
+ * license and could be license under its own terms. This is merely considered
+ * normal use of OPEN ENT NG, and does not fall under the heading of "covered work".
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package fr.openent.zimbra.helper;
+
+import fr.openent.zimbra.benchmark.BenchmarkFixtures;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HMAC computation of Zimbra preauth, done for each user authentication
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PreauthHelperBenchmark {
+
+    private static final String ADDRESS = "3f1c0e7a-5a8e-4c41-9b1d-1b7f0c9a6e01@" + BenchmarkFixtures.DOMAIN;
+
+    @Setup
+    public void setup() {
+        BenchmarkFixtures.initConfig();
+    }
+
+    @Benchmark
+    public JsonObject generatePreauth() {
+        return PreauthHelper.generatePreauth(ADDRESS, BenchmarkFixtures.PREAUTH_KEY);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public JsonObject generatePreauthConcurrent() {
+        return PreauthHelper.generatePreauth(ADDRESS, BenchmarkFixtures.PREAUTH_KEY);
+    }
+
+    @Benchmark
+    public String generatePreauthUrl() throws IOException {
+        return PreauthHelper.generatePreauthUrl(ADDRESS, BenchmarkFixtures.PREAUTH_KEY);
+    }
+}
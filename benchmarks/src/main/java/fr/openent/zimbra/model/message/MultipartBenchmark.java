@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) Région Ile-de-France, Région Nouvelle-Aquitaine, CGI, 2016.
+ * This file is part of OPEN ENT NG. OPEN ENT NG is a versatile ENT Project based on the JVM and ENT Core Project.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ * For the sake of explanation, any module that communicate over native
+ * Web protocols, such as HTTP, with OPEN ENT NG is outside the scope of this
+ * license and could be license under its own terms. This is merely considered
+ * normal use of OPEN ENT NG, and does not fall under the heading of "covered work".
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package fr.openent.zimbra.model.message;
+
+import fr.openent.zimbra.benchmark.BenchmarkFixtures;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import static fr.openent.zimbra.model.constant.ZimbraConstants.MSG_ID;
+import static fr.openent.zimbra.model.constant.ZimbraConstants.MSG_MULTIPART;
+
+/**
+ * Body and attachments extraction from the multipart tree of a message
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MultipartBenchmark {
+
+    private String messageId;
+    private JsonArray multiparts;
+
+    @Setup
+    public void setup() {
+        BenchmarkFixtures.initConfig();
+        JsonObject message = BenchmarkFixtures.getMessage(BenchmarkFixtures.loadJsonObject("get-msg-response.json"));
+        messageId = message.getString(MSG_ID);
+        multiparts = message.getJsonArray(MSG_MULTIPART);
+    }
+
+    @Benchmark
+    public void extractBodyAndAttachments(Blackhole bh) {
+        Multipart multipart = new Multipart(messageId, multiparts);
+        bh.consume(multipart.getBody());
+        bh.consume(multipart.getAttachmentsJson());
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) Région Ile-de-France, Région Nouvelle-Aquitaine, CGI, 2016.
+ * This file is part of OPEN ENT NG. OPEN ENT NG is a versatile ENT Project based on the JVM and ENT Core Project.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ * For the sake of explanation, any module that communicate over native
+ * Web protocols, such as HTTP, with OPEN ENT NG is outside the scope of this
+ * license and could be license under its own terms. This is merely considered
+ * normal use of OPEN ENT NG, and does not fall under the heading of "covered work".
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package fr.openent.zimbra.model.synchro.addressbook;
+
+import fr.openent.zimbra.benchmark.BenchmarkFixtures;
+import fr.openent.zimbra.model.synchro.addressbook.contacts.Contact;
+import fr.openent.zimbra.model.synchro.addressbook.contacts.Student;
+import fr.openent.zimbra.model.synchro.addressbook.contacts.Teacher;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static fr.openent.zimbra.service.data.Neo4jAddrbookService.*;
+
+/**
+ * Csv generation of an address book folder, done for each folder of each structure on every synchronization
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AddressBookFolderBenchmark {
+
+    private static final String UAI = "0751234X";
+
+    @Param({"100", "2000"})
+    public int nbContacts;
+
+    private AddressBookFolder folder;
+
+    @Setup
+    public void setup() {
+        BenchmarkFixtures.initConfig();
+        JsonArray users = BenchmarkFixtures.loadJsonArray("addressbook-users.json");
+        folder = new AddressBookFolder();
+        for (int i = 0; i < nbContacts; i++) {
+            // Fixture users are duplicated with a suffix so that every contact is distinct
+            JsonObject user = users.getJsonObject(i % users.size()).copy();
+            user.put(LASTNAME, user.getString(LASTNAME) + i)
+                    .put(EMAIL, i + "." + user.getString(EMAIL));
+            Contact contact = PROFILE_TEACHER.equals(user.getString(PROFILE))
+                    ? new Teacher(user, UAI)
+                    : new Student(user, UAI);
+            folder.addContact(contact);
+        }
+    }
+
+    @Benchmark
+    public String getCsv() {
+        return folder.getCsv();
+    }
+
+    @Benchmark
+    public String getHash() {
+        return folder.getHash();
+    }
+}
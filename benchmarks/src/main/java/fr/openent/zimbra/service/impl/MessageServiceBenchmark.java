@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) Région Ile-de-France, Région Nouvelle-Aquitaine, CGI, 2016.
+ * This file is part of OPEN ENT NG. OPEN ENT NG is a versatile ENT Project based on the JVM and ENT Core Project.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ * For the sake of explanation, any module that communicate over native
+ * Web protocols, such as HTTP, with OPEN ENT NG is outside the scope of this
+ * license and could be license under its own terms. This is merely considered
+ * normal use of OPEN ENT NG, and does not fall under the heading of "covered work".
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package fr.openent.zimbra.service.impl;
+
+import fr.openent.zimbra.benchmark.BenchmarkFixtures;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static fr.openent.zimbra.model.constant.ZimbraConstants.MSG_EMAILS;
+import static fr.openent.zimbra.model.constant.ZimbraConstants.MSG_EMAIL_ADDR;
+
+/**
+ * Transformation of a Zimbra message into a front message.
+ * Every address of the fixture is already resolved, so the transformation is synchronous.
+ * The message is copied on each invocation because the transformation consumes its address list,
+ * copyMessage measures that copy alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageServiceBenchmark {
+
+    private MessageService messageService;
+    private Method transformMessageZimbraToFront;
+    private JsonObject zimbraMessage;
+    private Map<String, String> addressMap;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        BenchmarkFixtures.initConfig();
+        messageService = new MessageService(null, new FolderService(null), null, null, null, null);
+        transformMessageZimbraToFront = MessageService.class.getDeclaredMethod("transformMessageZimbraToFront",
+                JsonObject.class, JsonObject.class, Map.class, Handler.class);
+        transformMessageZimbraToFront.setAccessible(true);
+
+        zimbraMessage = BenchmarkFixtures.getMessage(BenchmarkFixtures.loadJsonObject("get-msg-response.json"));
+        addressMap = new HashMap<>();
+        JsonArray addresses = zimbraMessage.getJsonArray(MSG_EMAILS);
+        for (int i = 0; i < addresses.size(); i++) {
+            String address = addresses.getJsonObject(i).getString(MSG_EMAIL_ADDR);
+            addressMap.put(address, "user-" + i);
+        }
+    }
+
+    @Benchmark
+    public JsonObject copyMessage() {
+        return zimbraMessage.copy();
+    }
+
+    @Benchmark
+    public void transformMessageZimbraToFront(Blackhole bh) throws Exception {
+        JsonObject frontMessage = new JsonObject();
+        transformMessageZimbraToFront.invoke(messageService, zimbraMessage.copy(), frontMessage,
+                new HashMap<>(addressMap), (Handler<JsonObject>) bh::consume);
+    }
+}
@@ -22,6 +22,7 @@ import fr.openent.zimbra.tasks.cron.ICalRequestCron;
 import fr.openent.zimbra.tasks.cron.RecallMailCron;
 import fr.openent.zimbra.filters.RequestErrorFilter;
 import fr.openent.zimbra.helper.ConfigManager;
+import fr.openent.zimbra.helper.MetricsRegistry;
 import fr.openent.zimbra.helper.ServiceManager;
 import fr.openent.zimbra.model.constant.BusConstants;
 import fr.openent.zimbra.tasks.service.RecallMailService;
@@ -68,11 +69,13 @@ public class Zimbra extends BaseServer {
         zimbraSchema = config.getString("db-schema");
         Zimbra.domain = appConfig.getZimbraDomain();
         Zimbra.synchroLang = appConfig.getSynchroLang();
+        MetricsRegistry.getInstance().setEnabled(appConfig.isMetricsEnabled());
         initFutures.add(addController(new ZimbraController()));
         initFutures.add(addController(new ZimbraMobileController()));
         initFutures.add(addController(new SynchroController()));
         initFutures.add(addController(new ExternalWebservicesController()));
         initFutures.add(addController(new ZimbraAdminController()));
+        initFutures.add(addController(new MetricsController()));
         addFilter(new RequestErrorFilter());
         final Future<ServiceManager> future = ServiceManager.init(vertx, vertx.eventBus(), "")
           .compose(serviceManager -> {
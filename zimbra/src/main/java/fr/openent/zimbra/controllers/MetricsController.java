@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) Région Ile-de-France, Région Nouvelle-Aquitaine, CGI, 2016.
+ * This file is part of OPEN ENT NG. OPEN ENT NG is a versatile ENT Project based on the JVM and ENT Core Project.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ * For the sake of explanation, any module that communicate over native
+ * Web protocols, such as HTTP, with OPEN ENT NG is outside the scope of this
+ * license and could be license under its own terms. This is merely considered
+ * normal use of OPEN ENT NG, and does not fall under the heading of "covered work".
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package fr.openent.zimbra.controllers;
+
+import fr.openent.zimbra.helper.MetricsRegistry;
+import fr.wseduc.bus.BusAddress;
+import fr.wseduc.rs.Get;
+import fr.wseduc.security.SecuredAction;
+import fr.wseduc.webutils.http.BaseController;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonObject;
+
+import static fr.openent.zimbra.model.constant.BusConstants.*;
+
+public class MetricsController extends BaseController {
+
+    private static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /**
+     * Metrics in Prometheus text format, to be scraped with an oauth2 client having this action in its scope
+     * @param request Http request
+     */
+    @Get("/metrics")
+    @SecuredAction("zimbra.metrics")
+    public void getMetrics(final HttpServerRequest request) {
+        request.response()
+                .putHeader("Content-Type", PROMETHEUS_CONTENT_TYPE)
+                .end(MetricsRegistry.getInstance().scrape());
+    }
+
+    /**
+     * Metrics on the event bus, as Json by default, in Prometheus text format with action "prometheus"
+     * @param message bus message
+     */
+    @BusAddress(METRICS_BUSADDR)
+    public void handleMetrics(Message<JsonObject> message) {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        String action = message.body() == null ? "" : message.body().getString(BUS_ACTION, "");
+        Object content = ACTION_METRICS_PROMETHEUS.equals(action) ? metrics.scrape() : metrics.toJson();
+        message.reply(new JsonObject()
+                .put(BUS_STATUS, STATUS_OK)
+                .put(BUS_MESSAGE, content));
+    }
+}
@@ -17,6 +17,7 @@
 
 package fr.openent.zimbra.controllers;
 
+import fr.openent.zimbra.helper.ServiceManager;
 import fr.openent.zimbra.service.impl.ZimbraAdminService;
 import fr.wseduc.rs.*;
 import fr.wseduc.webutils.I18n;
@@ -63,4 +64,44 @@ public class ZimbraAdminController extends BaseController {
     public void zimbraRole(final HttpServerRequest request) {
         ZimbraAdminService.getTheRole( defaultResponseHandler(request));
     }
+
+    /**
+     * Hits, misses and size of the communication decision caches
+     */
+    @Get("/communication/cache")
+    @ResourceFilter(AdminFilter.class)
+    @SecuredAction(value = "", type = ActionType.RESOURCE)
+    public void communicationCacheStats(final HttpServerRequest request) {
+        renderJson(request, ServiceManager.getServiceManager().getCommunicationService().getCacheStats());
+    }
+
+    /**
+     * Hits, misses and size of the recipient translation cache
+     */
+    @Get("/recipient/cache")
+    @ResourceFilter(AdminFilter.class)
+    @SecuredAction(value = "", type = ActionType.RESOURCE)
+    public void recipientCacheStats(final HttpServerRequest request) {
+        renderJson(request, ServiceManager.getServiceManager().getRecipientService().getCacheStats());
+    }
+
+    /**
+     * Hits, misses and invalidations of the folder caches
+     */
+    @Get("/folder/cache")
+    @ResourceFilter(AdminFilter.class)
+    @SecuredAction(value = "", type = ActionType.RESOURCE)
+    public void folderCacheStats(final HttpServerRequest request) {
+        renderJson(request, ServiceManager.getServiceManager().getFolderService().getCacheStats());
+    }
+
+    /**
+     * Progress of the current or last users synchronisation
+     */
+    @Get("/synchro/users/status")
+    @ResourceFilter(AdminFilter.class)
+    @SecuredAction(value = "", type = ActionType.RESOURCE)
+    public void synchroUsersStatus(final HttpServerRequest request) {
+        renderJson(request, ServiceManager.getServiceManager().getSynchroLauncher().getStatus());
+    }
 }
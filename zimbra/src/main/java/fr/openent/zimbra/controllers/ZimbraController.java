@@ -30,6 +30,7 @@ import fr.openent.zimbra.helper.EventBusHelper;
 import fr.openent.zimbra.helper.ServiceManager;
 import fr.openent.zimbra.model.action.Action;
 import fr.openent.zimbra.model.constant.FrontConstants;
+import fr.openent.zimbra.model.soap.SearchCursor;
 import fr.openent.zimbra.model.constant.ModuleConstants;
 import fr.openent.zimbra.model.message.RecallMail;
 import fr.openent.zimbra.model.task.ICalTask;
@@ -516,7 +517,9 @@ public class ZimbraController extends BaseController {
     public void listRecall(HttpServerRequest request) {
         try {
             String structureId = request.getParam(Field.STRUCTUREID);
-            recallMailService.getRecallMailsForOneStructure(structureId)
+            String pageStr = request.getParam(Field.PAGE);
+            Integer page = pageStr == null || pageStr.isEmpty() ? null : Math.max(Integer.parseInt(pageStr), 0);
+            recallMailService.getRecallMailsForOneStructure(structureId, page)
                     .onSuccess(mails -> renderJson(request, new JsonObject()
                             .put(Field.RECALLMAILS, new JsonArray(mails.stream().map(RecallMail::generateDataForFront).collect(Collectors.toList())))))
                     .onFailure(err -> {
@@ -554,6 +557,9 @@ public class ZimbraController extends BaseController {
      *                folder name or id
      *                unread ? filter only unread messages
      *                search ? filter only searched messages
+     *                page ? page number, default 0
+     *                cursor ? cursor of the page, as returned in X-Next-Cursor header of the previous page.
+     *                Page is ignored when set.
      */
     @Get("list")
     @SecuredAction(value = "zimbra.list", type = ActionType.AUTHENTICATED)
@@ -570,6 +576,17 @@ public class ZimbraController extends BaseController {
             badRequest(request);
             return;
         }
+        final String cursorStr = request.params().get(SearchCursor.PARAM_CURSOR);
+        SearchCursor cursor = null;
+        if (cursorStr != null && !cursorStr.isEmpty()) {
+            try {
+                cursor = SearchCursor.fromToken(cursorStr);
+            } catch (IllegalArgumentException e) {
+                badRequest(request, e.getMessage());
+                return;
+            }
+        }
+        final SearchCursor finalCursor = cursor;
         getUserInfos(eb, request, user -> {
             if (user != null) {
                 int page;
@@ -582,14 +599,19 @@ public class ZimbraController extends BaseController {
                 if (unread != null && !unread.isEmpty()) {
                     b = Boolean.parseBoolean(unread);
                 }
-                messageService.listMessages(folder, b, user, page, search, event -> {
+                messageService.listMessages(folder, b, user, page, finalCursor, search, event -> {
                     if (event.isRight()) {
+                        JsonArray messages = event.right().getValue().getJsonArray(MessageService.MESSAGES);
+                        String nextCursor = event.right().getValue().getString(MessageService.NEXT_CURSOR);
+                        if (nextCursor != null) {
+                            request.response().putHeader(SearchCursor.HEADER_NEXT_CURSOR, nextCursor);
+                        }
                         if (!folder.equals("/Sent")) {
-                            renderJson(request, event.right().getValue());
+                            renderJson(request, messages);
                         } else {
-                            recallMailService.renderRecallMails(user, event.right().getValue())
+                            recallMailService.renderRecallMails(user, messages)
                                     .onSuccess(res -> renderJson(request, res))
-                                    .onFailure(err -> renderJson(request, event.right().getValue()));
+                                    .onFailure(err -> renderJson(request, messages));
 
                         }
                     } else {
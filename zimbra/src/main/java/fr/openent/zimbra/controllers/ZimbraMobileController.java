@@ -5,6 +5,7 @@ import fr.openent.zimbra.filters.DevLevelFilter;
 import fr.openent.zimbra.helper.AsyncHelper;
 import fr.openent.zimbra.helper.JsonHelper;
 import fr.openent.zimbra.helper.ServiceManager;
+import fr.openent.zimbra.model.soap.SearchCursor;
 import fr.openent.zimbra.service.messages.MobileThreadService;
 import fr.wseduc.rs.Get;
 import fr.wseduc.rs.Post;
@@ -73,13 +74,27 @@ public class ZimbraMobileController extends BaseController {
      * Get paginated list of threads for connected user
      * @param request http request
      *                  page (Optional GET param) : Page number, default to 0
-     *        Response : array of threads
+     *                  cursor (Optional GET param) : Cursor of the page, as returned in X-Next-Cursor header
+     *                  of the previous page. Page is ignored when set.
+     *        Response : array of threads, with the cursor of the next page in X-Next-Cursor header
+     *        Error 400 : Invalid cursor
      *        Error 401 : User not logged in
      */
     @Get("/threads/list")
     @fr.wseduc.security.SecuredAction(value = "zimbra.list", type = ActionType.AUTHENTICATED)
     public void listThreads(HttpServerRequest request) {
         final String pageStr = Utils.getOrElse(request.params().get("page"), "0", false);
+        final String cursorStr = request.params().get(SearchCursor.PARAM_CURSOR);
+        SearchCursor cursor = null;
+        if (cursorStr != null && !cursorStr.isEmpty()) {
+            try {
+                cursor = SearchCursor.fromToken(cursorStr);
+            } catch (IllegalArgumentException e) {
+                badRequest(request, e.getMessage());
+                return;
+            }
+        }
+        final SearchCursor finalCursor = cursor;
 
         getUserInfos(eb, request, user -> {
             if (user != null) {
@@ -87,8 +102,14 @@ public class ZimbraMobileController extends BaseController {
                 try {
                     page = Integer.parseInt(pageStr);
                 } catch (NumberFormatException e) { page = 0; }
-                mobileThreadService.listThreads(user, page,
-                        AsyncHelper.getJsonArrayAsyncHandler(arrayResponseHandler(request)));
+                mobileThreadService.listThreads(user, page, finalCursor, res -> {
+                    if (res.succeeded() && res.result().getString(MobileThreadService.NEXT_CURSOR) != null) {
+                        request.response().putHeader(SearchCursor.HEADER_NEXT_CURSOR,
+                                res.result().getString(MobileThreadService.NEXT_CURSOR));
+                    }
+                    AsyncHelper.getJsonArrayAsyncHandler(arrayResponseHandler(request))
+                            .handle(res.map(threads -> threads.getJsonArray(MobileThreadService.THREADS)));
+                });
             } else {
                 unauthorized(request);
             }
@@ -11,6 +11,7 @@ public class Field {
     public static final String RECIPIENT_ADDRESS = "recipient_address";
     public static final String CONTENT_TYPE = "Content-Type";
     public static final String CONTENT_DISPOSITION = "Content-Disposition";
+    public static final String CONTENT_LENGTH = "Content-Length";
     public static final String COOKIE = "Cookie";
     public static final String CAPITAL_WAITING = "WAITING";
     public static final String AUTH_TOKEN = "authToken";
@@ -102,6 +103,16 @@ public class Field {
     public static final String MAXQUEUESIZE = "maxQueueSize";
     public static final String REMAININGSIZE = "remainingSize";
     public static final String WORKERSTATUS = "workerStatus";
+    public static final String QUEUESIZE = "queueSize";
+    public static final String CONCURRENCY = "concurrency";
+    public static final String INFLIGHT = "inFlight";
+    public static final String RUNNINGBATCHES = "runningBatches";
+    public static final String LAUNCHED = "launched";
+    public static final String SUCCEEDED = "succeeded";
+    public static final String FAILED = "failed";
+    public static final String TIMEDOUT = "timedOut";
+    public static final String TIMEDOUTRUNNING = "timedOutRunning";
+    public static final String LASTORDEREDCOMPLETION = "lastOrderedCompletion";
     public static final String COMMENT = "comment";
     public static final String STRUCTURES = "structures";
     public static final String STRUCTURE = "structure";
@@ -110,6 +121,10 @@ public class Field {
     public static final String STRUCTURESID = "structuresId";
     public static final String RECALLMAILS = "recallMails";
     public static final String STRUCTUREID = "structureid";
+    public static final String PAGE = "page";
+    public static final String METADATA = "metadata";
+    public static final String FILENAME = "filename";
+    public static final String METADATA_CONTENT_TYPE = "content-type";
 
     public static final String PLATFORM = "platform";
     public static final String ZIMBRAUC = "Zimbra";
@@ -38,7 +38,8 @@ public enum ErrorEnum {
     ERROR_RETRIEVING_ICAL("error.retrieving.ical"),
     ERROR_CREATING_LOGS("error.creating.logs"),
     NO_MAIL_TO_RECALL("no.mail.to.recall"),
-    MAIL_NOT_FOUND("mail.not.found");
+    MAIL_NOT_FOUND("mail.not.found"),
+    ATTACHMENT_TOO_LARGE("zimbra.error.attachment.too.large");
 
     private final String errorEnum;
 
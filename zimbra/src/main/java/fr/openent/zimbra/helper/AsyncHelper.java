@@ -25,7 +25,11 @@ import io.vertx.core.Promise;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 @SuppressWarnings("unused")
 public class AsyncHelper {
@@ -138,6 +142,53 @@ public class AsyncHelper {
         return finalPromise.future();
     }
 
+    /**
+     * Apply an asynchronous function to every element of a list, with at most concurrency calls at the same time.
+     * Failed calls do not stop the processing, their result is null.
+     * @param origList    elements to process
+     * @param concurrency max number of calls running at the same time
+     * @param function    call to make for each element
+     * @return results, in the order of the list
+     */
+    public static <T, R> Future<List<R>> processListWithConcurrency(List<T> origList, int concurrency,
+                                                                    Function<T, Future<R>> function) {
+        Promise<List<R>> finalPromise = Promise.promise();
+        if (origList.isEmpty()) {
+            finalPromise.complete(new ArrayList<>());
+            return finalPromise.future();
+        }
+        Object[] results = new Object[origList.size()];
+        AtomicInteger nextIndex = new AtomicInteger();
+        AtomicInteger remaining = new AtomicInteger(origList.size());
+        for (int i = 0; i < Math.min(Math.max(1, concurrency), origList.size()); i++) {
+            processNext(origList, function, results, nextIndex, remaining, finalPromise);
+        }
+        return finalPromise.future();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T, R> void processNext(List<T> origList, Function<T, Future<R>> function, Object[] results,
+                                           AtomicInteger nextIndex, AtomicInteger remaining,
+                                           Promise<List<R>> finalPromise) {
+        int index = nextIndex.getAndIncrement();
+        if (index >= origList.size()) {
+            return;
+        }
+        Future<R> future;
+        try {
+            future = function.apply(origList.get(index));
+        } catch (Exception e) {
+            future = Future.failedFuture(e);
+        }
+        future.onComplete(res -> {
+            results[index] = res.succeeded() ? res.result() : null;
+            if (remaining.decrementAndGet() == 0) {
+                finalPromise.complete(new ArrayList<>((List<R>) Arrays.asList(results)));
+            } else {
+                processNext(origList, function, results, nextIndex, remaining, finalPromise);
+            }
+        });
+    }
 
     public static <T> Handler<Either<String,T>> getEitherFromPromise(Promise<T> promise) {
         return evt -> {
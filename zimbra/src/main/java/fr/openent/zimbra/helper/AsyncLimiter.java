@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) Région Ile-de-France, Région Nouvelle-Aquitaine, CGI, 2016.
+ * This file is part of OPEN ENT NG. OPEN ENT NG is a versatile ENT Project based on the JVM and ENT Core Project.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ * For the sake of explanation, any module that communicate over native
+ * Web protocols, such as HTTP, with OPEN ENT NG is outside the scope of this
+ * license and could be license under its own terms. This is merely considered
+ * normal use of OPEN ENT NG, and does not fall under the heading of "covered work".
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+
+package fr.openent.zimbra.helper;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Limit asynchronous operations : at most maxConcurrency operations running at the same time,
+ * and at most ratePerSecond operations started each second.
+ * Operations waiting for a slot are started in submission order.
+ */
+public class AsyncLimiter {
+
+    private final Vertx vertx;
+    private final int maxConcurrency;
+    // Minimum delay between two starts, in milliseconds, 0 for no rate limit
+    private final long interval;
+
+    private final Deque<Runnable> waiting = new ArrayDeque<>();
+    private int running = 0;
+    private long nextStart = 0;
+    private boolean timerSet = false;
+
+    /**
+     * @param vertx          vertx instance, used to delay operations when rate is limited
+     * @param maxConcurrency max number of operations running at the same time, 0 for no limit
+     * @param ratePerSecond  max number of operations started each second, 0 for no limit
+     */
+    public AsyncLimiter(Vertx vertx, int maxConcurrency, int ratePerSecond) {
+        this.vertx = vertx;
+        this.maxConcurrency = maxConcurrency;
+        this.interval = ratePerSecond > 0 ? Math.max(1, 1000 / ratePerSecond) : 0;
+    }
+
+    /**
+     * Start an operation as soon as limits allow it
+     * @param operation operation to start
+     * @return result of the operation
+     */
+    public <T> Future<T> execute(Supplier<Future<T>> operation) {
+        Promise<T> promise = Promise.promise();
+        synchronized (this) {
+            waiting.add(() -> start(operation, promise));
+        }
+        drain();
+        return promise.future();
+    }
+
+    private <T> void start(Supplier<Future<T>> operation, Promise<T> promise) {
+        Future<T> future;
+        try {
+            future = operation.get();
+        } catch (Exception e) {
+            future = Future.failedFuture(e);
+        }
+        future.onComplete(res -> {
+            synchronized (this) {
+                running--;
+            }
+            promise.handle(res);
+            drain();
+        });
+    }
+
+    private void drain() {
+        List<Runnable> toStart = new ArrayList<>();
+        synchronized (this) {
+            while (!waiting.isEmpty() && (maxConcurrency <= 0 || running < maxConcurrency)) {
+                if (interval > 0) {
+                    long now = System.currentTimeMillis();
+                    if (nextStart > now) {
+                        if (!timerSet) {
+                            timerSet = true;
+                            vertx.setTimer(nextStart - now, id -> {
+                                synchronized (this) {
+                                    timerSet = false;
+                                }
+                                drain();
+                            });
+                        }
+                        break;
+                    }
+                    nextStart = now + interval;
+                }
+                running++;
+                toStart.add(waiting.poll());
+            }
+        }
+        toStart.forEach(Runnable::run);
+    }
+
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    public synchronized int getWaiting() {
+        return waiting.size();
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) Région Ile-de-France, Région Nouvelle-Aquitaine, CGI, 2016.
+ * This file is part of OPEN ENT NG. OPEN ENT NG is a versatile ENT Project based on the JVM and ENT Core Project.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ * For the sake of explanation, any module that communicate over native
+ * Web protocols, such as HTTP, with OPEN ENT NG is outside the scope of this
+ * license and could be license under its own terms. This is merely considered
+ * normal use of OPEN ENT NG, and does not fall under the heading of "covered work".
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package fr.openent.zimbra.helper;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per user cache of mailbox data, dropped as soon as the mailbox of the user changes.
+ * Zimbra returns the change token of the mailbox in the header of each soap response, it increases with
+ * every modification of the mailbox. Values of a user are kept while the last observed token does not change,
+ * and at most for their own time to live.
+ *
+ * @param <V> value type, values are shared and must not be modified
+ */
+public class ChangeTokenCache<V> {
+
+    private final int maxSize;
+    private final BoundedCache<String, UserValues<V>> users;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param maxSize max number of users in cache, 0 disables the cache
+     * @param ttl     max time to live of the data of a user, in milliseconds
+     */
+    public ChangeTokenCache(int maxSize, long ttl) {
+        this.maxSize = maxSize;
+        this.users = new BoundedCache<>(maxSize, ttl);
+    }
+
+    /**
+     * Get a value from cache
+     * @param userId user id
+     * @param key    key of the value
+     * @return value, or null if absent or expired
+     */
+    public V get(String userId, String key) {
+        UserValues<V> values = users.get(userId);
+        V value = values != null ? values.get(key) : null;
+        (value != null ? hits : misses).incrementAndGet();
+        return value;
+    }
+
+    /**
+     * Add a value to cache. Value is not stored if it was read before the last observed change of the mailbox.
+     * @param userId user id
+     * @param key    key of the value
+     * @param value  value
+     * @param ttl    time to live of the value, in milliseconds. Value is not stored if ttl is not positive.
+     * @param token  change token of the mailbox when the value was read, value is not stored if null
+     */
+    public void put(String userId, String key, V value, long ttl, Long token) {
+        if (ttl <= 0 || value == null || token == null) return;
+        getOrCreate(userId).put(key, value, ttl, token);
+    }
+
+    /**
+     * Get the last change token observed for a user, to be given to put when the value is read
+     * @param userId user id
+     * @return change token, or null if none was observed
+     */
+    public Long getToken(String userId) {
+        UserValues<V> values = users.get(userId);
+        return values != null ? values.getToken() : null;
+    }
+
+    /**
+     * Record the change token returned by Zimbra for a user, values of the user are dropped if it increased
+     * @param userId user id
+     * @param token  change token
+     */
+    public void observeToken(String userId, long token) {
+        if (getOrCreate(userId).updateToken(token)) {
+            invalidations.incrementAndGet();
+        }
+    }
+
+    /**
+     * Drop the values of a user, to be called after a modification of the mailbox
+     * @param userId user id
+     */
+    public void invalidate(String userId) {
+        UserValues<V> values = users.get(userId);
+        if (values != null && values.clear()) {
+            invalidations.incrementAndGet();
+        }
+    }
+
+    public void invalidateAll() {
+        users.invalidateAll();
+    }
+
+    public JsonObject getStats() {
+        return new JsonObject()
+                .put("size", users.size())
+                .put("maxSize", maxSize)
+                .put("hits", hits.get())
+                .put("misses", misses.get())
+                .put("invalidations", invalidations.get());
+    }
+
+    private UserValues<V> getOrCreate(String userId) {
+        synchronized (users) {
+            UserValues<V> values = users.get(userId);
+            if (values == null) {
+                values = new UserValues<>();
+                users.put(userId, values);
+            }
+            return values;
+        }
+    }
+
+    private static class UserValues<V> {
+        private Long token;
+        private final Map<String, V> values = new HashMap<>();
+        private final Map<String, Long> expirations = new HashMap<>();
+
+        private synchronized V get(String key) {
+            Long expiresAt = expirations.get(key);
+            if (expiresAt == null || expiresAt < System.currentTimeMillis()) {
+                values.remove(key);
+                expirations.remove(key);
+                return null;
+            }
+            return values.get(key);
+        }
+
+        private synchronized void put(String key, V value, long ttl, long valueToken) {
+            if (token != null && valueToken < token) {
+                // read before a change of the mailbox
+                return;
+            }
+            updateToken(valueToken);
+            values.put(key, value);
+            expirations.put(key, System.currentTimeMillis() + ttl);
+        }
+
+        private synchronized Long getToken() {
+            return token;
+        }
+
+        /**
+         * @return true if values were dropped
+         */
+        private synchronized boolean updateToken(long newToken) {
+            if (token != null && newToken <= token) {
+                return false;
+            }
+            boolean changed = token != null;
+            token = newToken;
+            return changed && clear();
+        }
+
+        private synchronized boolean clear() {
+            boolean hadValues = !values.isEmpty();
+            values.clear();
+            expirations.clear();
+            return hadValues;
+        }
+    }
+}
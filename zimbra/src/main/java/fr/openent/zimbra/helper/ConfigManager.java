@@ -50,6 +50,7 @@ public class ConfigManager {
     private final JsonObject publicConfig;
 
     private final int httpClientMaxPoolSize;
+    private final JsonObject httpClientPools;
     private final int mailListLimit;
     private final int mailListLimitConversation;
 
@@ -62,6 +63,8 @@ public class ConfigManager {
     private final String preauthKey;
     private final String zimbraDomain;
     private final Integer zimbraFileUploadMaxSize;
+    private final boolean workspaceAttachmentStreaming;
+    private final Integer workspaceAttachmentMaxSize;
 
     private final String synchroLang;
     private final String synchroCronDate;
@@ -85,6 +88,12 @@ public class ConfigManager {
 
     private boolean forceExpertMode;
     private boolean enableAddressBookSynchro;
+    private final boolean addressBookIncrementalSynchro;
+    private final int addressBookStructureConcurrency;
+    private final int addressBookFolderConcurrency;
+    private final int addressBookFoldersPerSecond;
+    private final boolean addressBookStreamingImport;
+    private final int addressBookUploadChunkSize;
 
     private final boolean purgeEmailedContacts;
 
@@ -100,12 +109,45 @@ public class ConfigManager {
     private final String zimbraICalCron;
 
     private final Integer zimbraICalWorkerMaxQueue;
+    private final int zimbraRecallWorkerConcurrency;
+    private final int zimbraRecallWorkerBatchSize;
+    private final int zimbraRecallMailboxConcurrency;
+    private final long zimbraRecallTaskClaimTimeout;
+    private final long zimbraRecallTaskFlushInterval;
+    private final int zimbraRecallTaskFlushSize;
+    private final int zimbraICalWorkerConcurrency;
+    private final long queueWorkerTaskTimeout;
+    private final int synchroUserConcurrency;
+    private final int synchroUserBatchSize;
+    private final long synchroUserStallTimeout;
 
     // Bug in Zimbra : when getting messages in conversations, alternative parts are inverted
     private boolean invertAltPartInConvMsg;
 
     private CircuitBreakerOptions circuitBreakerOptions;
 
+    private final boolean soapBatchEnabled;
+    private final long soapBatchWindow;
+    private final int soapBatchMaxSize;
+    private final long soapResponseMaxSize;
+    private final int mailAddressesExportConcurrency;
+    private final int recallListPageSize;
+    private final int authTokenLocalCacheSize;
+    private final int communicationCacheSize;
+    private final long communicationCacheTtl;
+    private final long communicationAddressCacheTtl;
+    private final int preauthCacheSize;
+    private final long preauthCacheTtl;
+    private final int recipientCacheSize;
+    private final long recipientCacheTtl;
+    private final long recipientCacheNegativeTtl;
+    private final int folderCacheSize;
+    private final long folderCacheTtl;
+    private final long folderCacheCountTtl;
+    private final int folderPathCacheSize;
+    private final long folderPathCacheTtl;
+    private final boolean metricsEnabled;
+
     private SlackConfiguration slackConfiguration;
 
     private final DocumentConfiguration zimbraDocumentConfig;
@@ -117,6 +159,7 @@ public class ConfigManager {
         this.publicConfig = rawConfig.copy();
         initPublicConfig();
         this.httpClientMaxPoolSize = config.getInteger("http-client-max-pool-size", 0);
+        this.httpClientPools = config.getJsonObject("http-client-pools", new JsonObject());
         this.mailListLimit = config.getInteger("mail-list-limit", 10);
         this.mailListLimitConversation = config.getInteger("mail-list-limit-thread", 1000);
         this.host = config.getString("host", "");
@@ -131,6 +174,8 @@ public class ConfigManager {
         this.synchroCronDate = config.getString("zimbra-synchro-cron", "");
         this.synchroFromMail = config.getString("zimbra-synchro-frommail", "zimbra-sync@cgi.com");
         this.zimbraFileUploadMaxSize = config.getInteger("zimbra-file-upload-max-size", 20);
+        this.workspaceAttachmentStreaming = config.getBoolean("workspace-attachment-streaming", false);
+        this.workspaceAttachmentMaxSize = config.getInteger("workspace-attachment-max-size", 200);
         String appSynchroType = config.getString("app-synctype", SYNC_NEO);
         String syncSynchroType = config.getString("sync-synctype", SYNC_NEO);
         this.appSyncTtl = config.getString("app-sync-ttl", "30 minutes");
@@ -153,10 +198,27 @@ public class ConfigManager {
         this.filterUserProfileSynchAB = config.getString("filter-profile-sync-ab","");
         this.zimbraICalCron = config.getString("zimbra-ical-cron", "0 * * * * ? *");
         this.zimbraICalWorkerMaxQueue = config.getInteger("zimbra-max-queue-size", 10000);
+        this.zimbraRecallWorkerConcurrency = config.getInteger("zimbra-recall-worker-concurrency", 1);
+        this.zimbraRecallWorkerBatchSize = config.getInteger("zimbra-recall-worker-batch-size", 50);
+        this.zimbraRecallMailboxConcurrency = config.getInteger("zimbra-recall-mailbox-concurrency", 4);
+        this.zimbraRecallTaskClaimTimeout = config.getLong("zimbra-recall-task-claim-timeout", 3600L);
+        this.zimbraRecallTaskFlushInterval = config.getLong("zimbra-recall-task-flush-interval", 1000L);
+        this.zimbraRecallTaskFlushSize = config.getInteger("zimbra-recall-task-flush-size", 100);
+        this.zimbraICalWorkerConcurrency = config.getInteger("zimbra-ical-worker-concurrency", 1);
+        this.queueWorkerTaskTimeout = config.getLong("queue-worker-task-timeout", 300000L);
+        this.synchroUserConcurrency = config.getInteger("synchro-user-concurrency", 1);
+        this.synchroUserBatchSize = config.getInteger("synchro-user-batch-size", 1);
+        this.synchroUserStallTimeout = config.getLong("synchro-user-stall-timeout", 3600L);
 
         // In case of emergency
         this.forceExpertMode = config.getBoolean("force-expert-mode", false);
         this.enableAddressBookSynchro = config.getBoolean("enable-addressbook-synchro", true);
+        this.addressBookIncrementalSynchro = config.getBoolean("addressbook-incremental-synchro", false);
+        this.addressBookStructureConcurrency = config.getInteger("addressbook-synchro-structure-concurrency", 1);
+        this.addressBookFolderConcurrency = config.getInteger("addressbook-synchro-folder-concurrency", 4);
+        this.addressBookFoldersPerSecond = config.getInteger("addressbook-synchro-folders-per-second", 0);
+        this.addressBookStreamingImport = config.getBoolean("addressbook-synchro-streaming-import", false);
+        this.addressBookUploadChunkSize = config.getInteger("addressbook-synchro-upload-chunk-size", 65536);
 
         String devLevelStr = config.getString("dev-level", "");
         if(NOSYNC.equals(devLevelStr)) {
@@ -185,6 +247,34 @@ public class ConfigManager {
         }
 
         this.circuitBreakerOptions = new CircuitBreakerOptions(config.getJsonObject("circuit-breaker", new JsonObject()));
+        JsonObject soapBatchConfig = config.getJsonObject("soap-batch", new JsonObject());
+        this.soapBatchEnabled = soapBatchConfig.getBoolean("enabled", false);
+        this.soapBatchWindow = soapBatchConfig.getLong("window-ms", 10L);
+        this.soapBatchMaxSize = soapBatchConfig.getInteger("max-size", 20);
+        this.soapResponseMaxSize = config.getLong("soap-response-max-size", 100L);
+        this.mailAddressesExportConcurrency = config.getInteger("mail-addresses-export-concurrency", 4);
+        this.recallListPageSize = config.getInteger("recall-list-page-size", 50);
+        this.authTokenLocalCacheSize = config.getInteger("auth-token-local-cache-size", 10000);
+        JsonObject communicationCacheConfig = config.getJsonObject("communication-cache", new JsonObject());
+        this.communicationCacheSize = communicationCacheConfig.getInteger("max-size", 50000);
+        this.communicationCacheTtl = communicationCacheConfig.getLong("ttl-seconds", 120L);
+        this.communicationAddressCacheTtl = communicationCacheConfig.getLong("address-ttl-seconds", 600L);
+        JsonObject preauthCacheConfig = config.getJsonObject("preauth-cache", new JsonObject());
+        this.preauthCacheSize = preauthCacheConfig.getInteger("max-size", 10000);
+        this.preauthCacheTtl = preauthCacheConfig.getLong("ttl-ms", 0L);
+        JsonObject recipientCacheConfig = config.getJsonObject("recipient-cache", new JsonObject());
+        this.recipientCacheSize = recipientCacheConfig.getInteger("max-size", 50000);
+        this.recipientCacheTtl = recipientCacheConfig.getLong("ttl-seconds", 3600L);
+        this.recipientCacheNegativeTtl = recipientCacheConfig.getLong("negative-ttl-seconds", 300L);
+        JsonObject folderCacheConfig = config.getJsonObject("folder-cache", new JsonObject());
+        this.folderCacheSize = folderCacheConfig.getInteger("max-size", 0);
+        this.folderCacheTtl = folderCacheConfig.getLong("ttl-seconds", 30L);
+        this.folderCacheCountTtl = folderCacheConfig.getLong("count-ttl-seconds", 5L);
+        JsonObject folderPathCacheConfig = config.getJsonObject("folder-path-cache", new JsonObject());
+        this.folderPathCacheSize = folderPathCacheConfig.getInteger("max-size", 50000);
+        this.folderPathCacheTtl = folderPathCacheConfig.getLong("ttl-seconds", 300L);
+        JsonObject metricsConfig = config.getJsonObject("metrics", new JsonObject());
+        this.metricsEnabled = metricsConfig.getBoolean("enabled", true);
         JsonObject slackConfig = config.getJsonObject("slack", new JsonObject());
         this.slackConfiguration = new SlackConfiguration(slackConfig.getString("api-uri", ""), slackConfig.getString("api-token", ""), slackConfig.getString("channel", ""), slackConfig.getString("bot-username", ""), config.getString("host", ""));
         this.zimbraDocumentConfig = new DocumentConfiguration(config.getJsonObject("zimbra-document-config", new JsonObject()));
@@ -198,6 +288,7 @@ public class ConfigManager {
     JsonObject getRawConfig() { return rawConfig;}
     public JsonObject getPublicConfig() { return publicConfig;}
     public int getHttpClientMaxPoolSize() { return httpClientMaxPoolSize;}
+    public JsonObject getHttpClientPoolConfig(String name) { return httpClientPools.getJsonObject(name, new JsonObject());}
     public int getMailListLimit() { return mailListLimit;}
     public int getMailListLimitConversation() { return mailListLimitConversation;}
     public String getHost() { return host;}
@@ -209,6 +300,8 @@ public class ConfigManager {
     public String getPreauthKey() { return preauthKey;}
     public String getZimbraDomain() { return zimbraDomain;}
     public Integer getZimbraFileUploadMaxSize() { return zimbraFileUploadMaxSize;}
+    public boolean isWorkspaceAttachmentStreaming() { return workspaceAttachmentStreaming;}
+    public Integer getWorkspaceAttachmentMaxSize() { return workspaceAttachmentMaxSize;}
     public String getAppSynchroType() { return appSynchroType;}
     public String getSyncSynchroType() { return syncSynchroType;}
     public String getAppSyncTtl() { return appSyncTtl;}
@@ -231,9 +324,36 @@ public class ConfigManager {
     public CircuitBreakerOptions getCircuitBreakerOptions() {
         return this.circuitBreakerOptions;
     }
+    public boolean isSoapBatchEnabled() { return soapBatchEnabled;}
+    public long getSoapBatchWindow() { return soapBatchWindow;}
+    public int getSoapBatchMaxSize() { return soapBatchMaxSize;}
+    public long getSoapResponseMaxSize() { return soapResponseMaxSize;}
+    public int getMailAddressesExportConcurrency() { return mailAddressesExportConcurrency;}
+    public int getRecallListPageSize() { return recallListPageSize;}
+    public int getAuthTokenLocalCacheSize() { return authTokenLocalCacheSize;}
+    public int getCommunicationCacheSize() { return communicationCacheSize;}
+    public long getCommunicationCacheTtl() { return communicationCacheTtl;}
+    public long getCommunicationAddressCacheTtl() { return communicationAddressCacheTtl;}
+    public int getPreauthCacheSize() { return preauthCacheSize;}
+    public long getPreauthCacheTtl() { return preauthCacheTtl;}
+    public int getRecipientCacheSize() { return recipientCacheSize;}
+    public long getRecipientCacheTtl() { return recipientCacheTtl;}
+    public long getRecipientCacheNegativeTtl() { return recipientCacheNegativeTtl;}
+    public int getFolderCacheSize() { return folderCacheSize;}
+    public long getFolderCacheTtl() { return folderCacheTtl;}
+    public long getFolderCacheCountTtl() { return folderCacheCountTtl;}
+    public int getFolderPathCacheSize() { return folderPathCacheSize;}
+    public long getFolderPathCacheTtl() { return folderPathCacheTtl;}
+    public boolean isMetricsEnabled() { return metricsEnabled;}
     public SlackConfiguration getSlackConfiguration() { return this.slackConfiguration; }
     public boolean isForceExpertMode() { return forceExpertMode;}
     public boolean isEnableAddressBookSynchro() { return enableAddressBookSynchro;}
+    public boolean isAddressBookIncrementalSynchro() { return addressBookIncrementalSynchro;}
+    public int getAddressBookStructureConcurrency() { return addressBookStructureConcurrency;}
+    public int getAddressBookFolderConcurrency() { return addressBookFolderConcurrency;}
+    public int getAddressBookFoldersPerSecond() { return addressBookFoldersPerSecond;}
+    public boolean isAddressBookStreamingImport() { return addressBookStreamingImport;}
+    public int getAddressBookUploadChunkSize() { return addressBookUploadChunkSize;}
     public int getsaveDraftAutoTime() { return saveDraftAutoTime;}
     public int getSendTimeout() { return sendTimeout;}
     public int getStructureToSynchroABLimit() { return structureToSynchroABLimit;}
@@ -241,6 +361,23 @@ public class ConfigManager {
     public String getZimbraICalCron() {return zimbraICalCron;}
     public Integer getZimbraICalWorkerMaxQueue() {return zimbraICalWorkerMaxQueue;}
 
+    public int getZimbraRecallWorkerConcurrency() { return zimbraRecallWorkerConcurrency; }
+    public int getZimbraRecallWorkerBatchSize() { return zimbraRecallWorkerBatchSize; }
+    public int getZimbraRecallMailboxConcurrency() { return zimbraRecallMailboxConcurrency; }
+    public long getZimbraRecallTaskClaimTimeout() { return zimbraRecallTaskClaimTimeout; }
+    public long getZimbraRecallTaskFlushInterval() { return zimbraRecallTaskFlushInterval; }
+    public int getZimbraRecallTaskFlushSize() { return zimbraRecallTaskFlushSize; }
+
+    public int getZimbraICalWorkerConcurrency() { return zimbraICalWorkerConcurrency; }
+
+    public long getQueueWorkerTaskTimeout() { return queueWorkerTaskTimeout; }
+
+    public int getSynchroUserConcurrency() { return synchroUserConcurrency; }
+
+    public int getSynchroUserBatchSize() { return synchroUserBatchSize; }
+
+    public long getSynchroUserStallTimeout() { return synchroUserStallTimeout; }
+
     private void initPublicConfig() {
         publicConfig.put("admin-password", hidePasswd(rawConfig.getString("admin-password","")));
         publicConfig.put("preauth-key", hidePasswd(rawConfig.getString("preauth-key","")));
@@ -18,9 +18,12 @@
 package fr.openent.zimbra.helper;
 
 import fr.openent.zimbra.Zimbra;
+import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.http.HttpClient;
 import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpConnection;
+import io.vertx.core.http.PoolOptions;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import io.vertx.core.net.ProxyOptions;
@@ -74,4 +77,24 @@ public class HttpClientHelper {
         return vertx.createHttpClient(options);
     }
 
+    /**
+     * Create an HttpClient with its own connection pool
+     * @param vertx          vertx instance
+     * @param options        client options, proxy is added if configured
+     * @param poolOptions    connection pool options
+     * @param connectHandler called for each new connection
+     * @return new HttpClient
+     */
+    public static HttpClient createHttpClient(Vertx vertx, HttpClientOptions options, PoolOptions poolOptions,
+                                              Handler<HttpConnection> connectHandler) {
+        if (System.getProperty("httpclient.proxyHost") != null) {
+            options.setProxyOptions(proxyOptions());
+        }
+        return vertx.httpClientBuilder()
+                .with(options)
+                .with(poolOptions)
+                .withConnectHandler(connectHandler)
+                .build();
+    }
+
 }
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) Région Ile-de-France, Région Nouvelle-Aquitaine, CGI, 2016.
+ * This file is part of OPEN ENT NG. OPEN ENT NG is a versatile ENT Project based on the JVM and ENT Core Project.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ * For the sake of explanation, any module that communicate over native
+ * Web protocols, such as HTTP, with OPEN ENT NG is outside the scope of this
+ * license and could be license under its own terms. This is merely considered
+ * normal use of OPEN ENT NG, and does not fall under the heading of "covered work".
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package fr.openent.zimbra.helper;
+
+import fr.openent.zimbra.Zimbra;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.http.PoolOptions;
+import io.vertx.core.http.RequestOptions;
+import io.vertx.core.json.JsonObject;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HttpClient with its own connection pool, configured in "http-client-pools" by pool name.
+ * Soap requests, attachment downloads and attachment uploads use separate pools,
+ * so that long transfers do not hold the connections needed by soap requests.
+ */
+public class HttpClientPool {
+
+    public static final String SOAP = "soap";
+    public static final String DOWNLOAD = "download";
+    public static final String UPLOAD = "upload";
+
+    private static final String METRIC_CONNECTIONS = "zimbra_http_client_open_connections";
+    private static final String METRIC_WAITING = "zimbra_http_client_waiting_requests";
+    private static final String METRIC_REQUESTS = "zimbra_http_client_requests_total";
+    private static final String METRIC_LABEL_POOL = "pool";
+
+    private final String name;
+    private final int maxPoolSize;
+    private final int maxWaitQueueSize;
+    private final long requestTimeout;
+    private final HttpClient httpClient;
+
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicLong createdConnections = new AtomicLong();
+    private final AtomicInteger waitingRequests = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failedRequests = new AtomicLong();
+    private final MetricsRegistry metrics = MetricsRegistry.getInstance();
+
+    /**
+     * Pool configuration, every field is optional :
+     * {
+     *     "max-pool-size" : max number of connections, defaults to http-client-max-pool-size,
+     *     "max-wait-queue-size" : max number of requests waiting for a connection, -1 for no limit,
+     *     "keep-alive" : true,
+     *     "keep-alive-timeout-seconds" : 60,
+     *     "idle-timeout-seconds" : close connections without activity after this delay, 0 to disable,
+     *     "connect-timeout-ms" : 60000,
+     *     "request-timeout-ms" : fail a request when no data is received during this delay, 0 to disable,
+     *     "pipelining" : false,
+     *     "http2" : false
+     * }
+     *
+     * @param vertx vertx instance
+     * @param name  pool name, SOAP, DOWNLOAD or UPLOAD
+     */
+    public HttpClientPool(Vertx vertx, String name) {
+        this.name = name;
+        ConfigManager appConfig = Zimbra.appConfig;
+        JsonObject config = appConfig != null ? appConfig.getHttpClientPoolConfig(name) : null;
+        if (config == null) {
+            config = new JsonObject();
+        }
+        int defaultMaxPoolSize = appConfig != null && appConfig.getHttpClientMaxPoolSize() > 0
+                ? appConfig.getHttpClientMaxPoolSize()
+                : HttpClientOptions.DEFAULT_MAX_POOL_SIZE;
+        this.maxPoolSize = config.getInteger("max-pool-size", defaultMaxPoolSize);
+        this.maxWaitQueueSize = config.getInteger("max-wait-queue-size", HttpClientOptions.DEFAULT_MAX_WAIT_QUEUE_SIZE);
+        this.requestTimeout = config.getLong("request-timeout-ms", 0L);
+
+        HttpClientOptions options = new HttpClientOptions()
+                .setKeepAlive(config.getBoolean("keep-alive", HttpClientOptions.DEFAULT_KEEP_ALIVE))
+                .setKeepAliveTimeout(config.getInteger("keep-alive-timeout-seconds", HttpClientOptions.DEFAULT_KEEP_ALIVE_TIMEOUT))
+                .setIdleTimeout(config.getInteger("idle-timeout-seconds", HttpClientOptions.DEFAULT_IDLE_TIMEOUT))
+                .setConnectTimeout(config.getInteger("connect-timeout-ms", HttpClientOptions.DEFAULT_CONNECT_TIMEOUT))
+                .setPipelining(config.getBoolean("pipelining", HttpClientOptions.DEFAULT_PIPELINING));
+        if (config.getBoolean("http2", false)) {
+            options.setProtocolVersion(HttpVersion.HTTP_2).setUseAlpn(true);
+        }
+        PoolOptions poolOptions = new PoolOptions()
+                .setHttp1MaxSize(maxPoolSize)
+                .setHttp2MaxSize(maxPoolSize)
+                .setMaxWaitQueueSize(maxWaitQueueSize);
+
+        this.httpClient = HttpClientHelper.createHttpClient(vertx, options, poolOptions, connection -> {
+            openConnections.incrementAndGet();
+            createdConnections.incrementAndGet();
+            connection.closeHandler(v -> openConnections.decrementAndGet());
+        });
+
+        metrics.registerGauge(METRIC_CONNECTIONS, "Open connections to Zimbra, by http client pool",
+                openConnections::get, METRIC_LABEL_POOL, name);
+        metrics.registerGauge(METRIC_WAITING, "Requests waiting for a connection to Zimbra, by http client pool",
+                waitingRequests::get, METRIC_LABEL_POOL, name);
+    }
+
+    /**
+     * Get a request from the pool. Future completes once a connection is available.
+     * Request timeout of the pool applies if options have none.
+     * @param options request options
+     * @return http request
+     */
+    public Future<HttpClientRequest> request(RequestOptions options) {
+        if (requestTimeout > 0 && options.getIdleTimeout() <= 0) {
+            options.setIdleTimeout(requestTimeout);
+        }
+        requests.incrementAndGet();
+        waitingRequests.incrementAndGet();
+        return httpClient.request(options).onComplete(res -> {
+            waitingRequests.decrementAndGet();
+            if (res.failed()) {
+                failedRequests.incrementAndGet();
+            }
+            metrics.incrementCounter(METRIC_REQUESTS, "Requests sent to Zimbra, by http client pool",
+                    METRIC_LABEL_POOL, name, "result", res.succeeded() ? "success" : "failure");
+        });
+    }
+
+    /**
+     * @return underlying HttpClient, for WebClient or requests that do not need statistics
+     */
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public JsonObject getStats() {
+        return new JsonObject()
+                .put("name", name)
+                .put("maxPoolSize", maxPoolSize)
+                .put("maxWaitQueueSize", maxWaitQueueSize)
+                .put("openConnections", openConnections.get())
+                .put("createdConnections", createdConnections.get())
+                .put("waitingRequests", waitingRequests.get())
+                .put("requests", requests.get())
+                .put("failedRequests", failedRequests.get());
+    }
+}
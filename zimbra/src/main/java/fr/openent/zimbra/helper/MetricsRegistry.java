@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) Région Ile-de-France, Région Nouvelle-Aquitaine, CGI, 2016.
+ * This file is part of OPEN ENT NG. OPEN ENT NG is a versatile ENT Project based on the JVM and ENT Core Project.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ * For the sake of explanation, any module that communicate over native
+ * Web protocols, such as HTTP, with OPEN ENT NG is outside the scope of this
+ * license and could be license under its own terms. This is merely considered
+ * normal use of OPEN ENT NG, and does not fall under the heading of "covered work".
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package fr.openent.zimbra.helper;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * In-process metrics shared by every verticle of the module.
+ * Metrics are exposed in Prometheus text format, and as Json on the event bus.
+ * Labels are given as key/value pairs : incrementCounter("name", "help", "label1", "value1", "label2", "value2")
+ */
+public class MetricsRegistry {
+
+    private static final MetricsRegistry instance = new MetricsRegistry();
+
+    // Durations buckets, in seconds
+    private static final double[] DURATION_BUCKETS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30};
+
+    private static final String TYPE_COUNTER = "counter";
+    private static final String TYPE_GAUGE = "gauge";
+    private static final String TYPE_HISTOGRAM = "histogram";
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+    private volatile boolean enabled = true;
+
+    private MetricsRegistry() {
+    }
+
+    public static MetricsRegistry getInstance() {
+        return instance;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void incrementCounter(String name, String help, String... labels) {
+        incrementCounter(name, help, 1, labels);
+    }
+
+    public void incrementCounter(String name, String help, long amount, String... labels) {
+        if (!enabled) {
+            return;
+        }
+        CounterSeries series = (CounterSeries) getFamily(name, help, TYPE_COUNTER)
+                .series.computeIfAbsent(formatLabels(labels), key -> new CounterSeries());
+        series.value.add(amount);
+    }
+
+    /**
+     * Record a duration in a histogram
+     * @param name       metric name, should end with _seconds
+     * @param help       metric description
+     * @param durationMs duration in milliseconds
+     * @param labels     label key/value pairs
+     */
+    public void recordDuration(String name, String help, long durationMs, String... labels) {
+        if (!enabled) {
+            return;
+        }
+        HistogramSeries series = (HistogramSeries) getFamily(name, help, TYPE_HISTOGRAM)
+                .series.computeIfAbsent(formatLabels(labels), key -> new HistogramSeries());
+        series.observe(durationMs / 1000d);
+    }
+
+    /**
+     * Register a gauge, read on each scrape. A gauge registered again with the same labels replaces the previous one.
+     * @param name     metric name
+     * @param help     metric description
+     * @param supplier current value
+     * @param labels   label key/value pairs
+     */
+    public void registerGauge(String name, String help, Supplier<Number> supplier, String... labels) {
+        getFamily(name, help, TYPE_GAUGE).series.put(formatLabels(labels), new GaugeSeries(supplier));
+    }
+
+    /**
+     * @return every metric in Prometheus text exposition format
+     */
+    public String scrape() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            sb.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            sb.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Series> series : family.series.entrySet()) {
+                series.getValue().scrape(name, series.getKey(), sb);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return every metric as Json :
+     * { "metric_name" : { "type" : "counter", "help" : "...", "series" : [ { "labels" : "{k=\"v\"}", "value" : 1 } ] } }
+     */
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            Family family = entry.getValue();
+            JsonArray seriesJson = new JsonArray();
+            for (Map.Entry<String, Series> series : family.series.entrySet()) {
+                seriesJson.add(series.getValue().toJson().put("labels", series.getKey()));
+            }
+            json.put(entry.getKey(), new JsonObject()
+                    .put("type", family.type)
+                    .put("help", family.help)
+                    .put("series", seriesJson));
+        }
+        return json;
+    }
+
+    private Family getFamily(String name, String help, String type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as " + family.type);
+        }
+        return family;
+    }
+
+    private static String formatLabels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be key/value pairs");
+        }
+        if (labels.length == 0) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            String value = labels[i + 1] == null ? "" : labels[i + 1];
+            sb.append(labels[i]).append("=\"")
+                    .append(value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    // Add a label to already formatted labels
+    private static String addLabel(String labels, String key, String value) {
+        String label = key + "=\"" + value + "\"";
+        return labels.isEmpty() ? "{" + label + "}" : labels.substring(0, labels.length() - 1) + "," + label + "}";
+    }
+
+    private static String formatValue(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            return String.valueOf((long) value);
+        }
+        return String.valueOf(value);
+    }
+
+    private static class Family {
+        private final String help;
+        private final String type;
+        private final Map<String, Series> series = new ConcurrentHashMap<>();
+
+        private Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private interface Series {
+        void scrape(String name, String labels, StringBuilder sb);
+
+        JsonObject toJson();
+    }
+
+    private static class CounterSeries implements Series {
+        private final LongAdder value = new LongAdder();
+
+        @Override
+        public void scrape(String name, String labels, StringBuilder sb) {
+            sb.append(name).append(labels).append(' ').append(value.sum()).append('\n');
+        }
+
+        @Override
+        public JsonObject toJson() {
+            return new JsonObject().put("value", value.sum());
+        }
+    }
+
+    private static class GaugeSeries implements Series {
+        private final Supplier<Number> supplier;
+
+        private GaugeSeries(Supplier<Number> supplier) {
+            this.supplier = supplier;
+        }
+
+        private double get() {
+            Number value = supplier.get();
+            return value == null ? 0 : value.doubleValue();
+        }
+
+        @Override
+        public void scrape(String name, String labels, StringBuilder sb) {
+            sb.append(name).append(labels).append(' ').append(formatValue(get())).append('\n');
+        }
+
+        @Override
+        public JsonObject toJson() {
+            return new JsonObject().put("value", get());
+        }
+    }
+
+    private static class HistogramSeries implements Series {
+        private final LongAdder[] buckets = new LongAdder[DURATION_BUCKETS.length];
+        private final LongAdder count = new LongAdder();
+        private final DoubleAdder sum = new DoubleAdder();
+
+        private HistogramSeries() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private void observe(double value) {
+            for (int i = 0; i < DURATION_BUCKETS.length; i++) {
+                if (value <= DURATION_BUCKETS[i]) {
+                    buckets[i].increment();
+                    break;
+                }
+            }
+            count.increment();
+            sum.add(value);
+        }
+
+        @Override
+        public void scrape(String name, String labels, StringBuilder sb) {
+            long cumulated = 0;
+            for (int i = 0; i < DURATION_BUCKETS.length; i++) {
+                cumulated += buckets[i].sum();
+                sb.append(name).append("_bucket").append(addLabel(labels, "le", formatValue(DURATION_BUCKETS[i])))
+                        .append(' ').append(cumulated).append('\n');
+            }
+            long total = count.sum();
+            sb.append(name).append("_bucket").append(addLabel(labels, "le", "+Inf")).append(' ').append(total).append('\n');
+            sb.append(name).append("_sum").append(labels).append(' ').append(sum.sum()).append('\n');
+            sb.append(name).append("_count").append(labels).append(' ').append(total).append('\n');
+        }
+
+        @Override
+        public JsonObject toJson() {
+            long total = count.sum();
+            return new JsonObject()
+                    .put("count", total)
+                    .put("sum", sum.sum())
+                    .put("mean", total == 0 ? 0 : sum.sum() / total);
+        }
+    }
+}
@@ -17,6 +17,7 @@
 
 package fr.openent.zimbra.helper;
 
+import fr.openent.zimbra.Zimbra;
 import fr.openent.zimbra.core.constants.Field;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
@@ -26,6 +27,7 @@ import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 import java.io.IOException;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 
@@ -45,6 +47,12 @@ public class PreauthHelper {
 
     private static final Logger log = LoggerFactory.getLogger(PreauthHelper.class);
 
+    // Mac initialized with the last key used by each thread, Mac instances are not thread safe
+    private static final ThreadLocal<PreauthMac> preauthMac = ThreadLocal.withInitial(PreauthMac::new);
+
+    // Computed preauths, reused while still valid. Null until first use, disabled if ttl is 0.
+    private static BoundedCache<String, JsonObject> preauthCache;
+
     private static  String computeDefaultPreAuth(String id, String timestamp, String key) {
         return computePreAuth(id, Field.NAME, timestamp, "0", "0", key);
     }
@@ -54,7 +62,9 @@ public class PreauthHelper {
     private static String computePreAuth(String id, String by, String timestamp, String expires,
                                          String admin, String key)
     {
-        StringBuilder prepraredPreauth = new StringBuilder();
+        PreauthMac mac = preauthMac.get();
+        StringBuilder prepraredPreauth = mac.data;
+        prepraredPreauth.setLength(0);
         prepraredPreauth.append(id);
         if("1".equals(admin)) {
             prepraredPreauth.append("|").append(admin);
@@ -62,10 +72,25 @@ public class PreauthHelper {
         prepraredPreauth.append("|").append(by);
         prepraredPreauth.append("|").append(expires);
         prepraredPreauth.append("|").append(timestamp);
-        return getHmac(prepraredPreauth.toString(), key.getBytes());
+        return mac.sign(prepraredPreauth, key);
     }
 
+    /**
+     * Compute preauth of an account.
+     * If preauth-cache is enabled, a preauth computed less than ttl-ms ago for the same account is returned.
+     * @param emailAddress account address
+     * @param preauthKey   domain preauth key
+     * @return { "id" : address, "timestamp" : timestamp used for preauth, "preauthkey" : computed preauth },
+     * null if it could not be computed
+     */
     public static JsonObject generatePreauth(String emailAddress, String preauthKey) {
+        BoundedCache<String, JsonObject> cache = getPreauthCache();
+        String cacheKey = emailAddress + "|" + preauthKey;
+        JsonObject cachedPreauth = cache.get(cacheKey);
+        if (cachedPreauth != null) {
+            return cachedPreauth.copy();
+        }
+
         String timestamp = System.currentTimeMillis()+"";
         String computedPreauth = computeDefaultPreAuth(emailAddress, timestamp, preauthKey);
 
@@ -73,10 +98,12 @@ public class PreauthHelper {
             return null;
         }
 
-        return new JsonObject()
+        JsonObject preauth = new JsonObject()
                 .put(Field.ID, emailAddress)
                 .put("timestamp", timestamp)
                 .put("preauthkey", computedPreauth);
+        cache.put(cacheKey, preauth.copy());
+        return preauth;
     }
 
     public static String generatePreauthUrl(String emailAddress, String preauthKey) throws IOException{
@@ -92,18 +119,68 @@ public class PreauthHelper {
         }
     }
 
-    private static String getHmac(String data, byte[] key) {
-        try {
-            ByteKey bk = new ByteKey(key);
-            Mac mac = Mac.getInstance("HmacSHA1");
-            mac.init(bk);
-            return toHex(mac.doFinal(data.getBytes()));
-        } catch (NoSuchAlgorithmException|InvalidKeyException e) {
-            Logger log = LoggerFactory.getLogger(PreauthHelper.class);
-            log.fatal("Error when computing preauth key ", e);
-            return null;
+    private static synchronized BoundedCache<String, JsonObject> getPreauthCache() {
+        if (preauthCache == null) {
+            ConfigManager config = Zimbra.appConfig;
+            preauthCache = config != null
+                    ? new BoundedCache<>(config.getPreauthCacheSize(), config.getPreauthCacheTtl())
+                    : new BoundedCache<>(0, 0);
         }
+        return preauthCache;
     }
+
+    /**
+     * HmacSHA1 of a thread, with buffers reused between computations
+     */
+    private static class PreauthMac {
+        private final StringBuilder data = new StringBuilder(128);
+        private final char[] hexChars = new char[40];
+        private byte[] bytes = new byte[128];
+        private Mac mac;
+        private String key;
+
+        private String sign(CharSequence data, String key) {
+            try {
+                if (mac == null || !key.equals(this.key)) {
+                    Mac newMac = Mac.getInstance("HmacSHA1");
+                    newMac.init(new ByteKey(key.getBytes()));
+                    this.mac = newMac;
+                    this.key = key;
+                }
+                int length = encode(data);
+                if (length < 0) {
+                    mac.update(data.toString().getBytes(StandardCharsets.UTF_8));
+                } else {
+                    mac.update(bytes, 0, length);
+                }
+                return toHex(mac.doFinal(), hexChars);
+            } catch (NoSuchAlgorithmException|InvalidKeyException e) {
+                log.fatal("Error when computing preauth key ", e);
+                mac = null;
+                return null;
+            }
+        }
+
+        /**
+         * Copy ascii data in the byte buffer
+         * @return number of bytes, -1 if data is not ascii
+         */
+        private int encode(CharSequence data) {
+            int length = data.length();
+            if (bytes.length < length) {
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                char c = data.charAt(i);
+                if (c >= 0x80) {
+                    return -1;
+                }
+                bytes[i] = (byte) c;
+            }
+            return length;
+        }
+    }
+
     static class ByteKey implements SecretKey {
         private byte[] mKey;
 
@@ -124,13 +201,13 @@ public class PreauthHelper {
         }
     }
 
-    private static String toHex(byte[] data) {
-        StringBuilder sb = new StringBuilder(data.length * 2);
-        for (byte b : data) {
-            sb.append(hex[(b & 0xf0) >>> 4]);
-            sb.append(hex[b & 0x0f] );
+    private static String toHex(byte[] data, char[] buffer) {
+        char[] chars = buffer.length >= data.length * 2 ? buffer : new char[data.length * 2];
+        for (int i = 0; i < data.length; i++) {
+            chars[2 * i] = hex[(data[i] & 0xf0) >>> 4];
+            chars[2 * i + 1] = hex[data[i] & 0x0f];
         }
-        return sb.toString();
+        return new String(chars, 0, data.length * 2);
     }
 
 
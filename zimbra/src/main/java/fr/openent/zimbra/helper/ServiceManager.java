@@ -94,6 +94,7 @@ public class ServiceManager {
     private AddressBookService addressBookService;
 
     private SqlAddressBookService sqlAddressBookService;
+    private AsyncLimiter addressBookRateLimiter;
 
     private RecallQueueServiceImpl recallQueueService;
     private ICalQueueServiceImpl icalQueueServiceImpl;
@@ -103,6 +104,8 @@ public class ServiceManager {
     private CalendarServiceImpl calendarService;
 
     private HttpService httpService;
+    // Upload connections are shared by soap uploads and attachment uploads
+    private HttpClientPool uploadPool;
 
     private ServiceManager(Vertx vertx, EventBus eb, String pathPrefix,
                            ConfigManager config,
@@ -121,19 +124,22 @@ public class ServiceManager {
             final String redisConfig = data.get("redisConfig");
             CacheService cacheService = redisConfig != null ? new RedisCacheService(Redis.getClient().getClient()) : null;
             this.webClient = WebClient.create(vertx, HttpClientHelper.getWebClientOptions());
+            this.uploadPool = new HttpClientPool(vertx, HttpClientPool.UPLOAD);
 
             if (config != null) {
               SlackService slackService = new SlackService(vertx, config.getSlackConfiguration());
               this.sqlSynchroService = new SqlSynchroService(config.getDbSchema());
               initDbMailService(config);
-              this.soapService = new SoapZimbraService(vertx, cacheService, slackService, config.getCircuitBreakerOptions());
+              this.soapService = new SoapZimbraService(vertx, cacheService, slackService, config.getCircuitBreakerOptions(), uploadPool);
               this.sqlAddressBookService = new SqlAddressBookService(config.getDbSchema());
               this.addressBookService = new AddressBookService(sqlAddressBookService);
+              this.addressBookRateLimiter = new AsyncLimiter(vertx, 0, config.getAddressBookFoldersPerSecond());
               this.synchroUserService = new SynchroUserService(dbMailServiceSync, sqlSynchroService);
               this.synchroAddressBookService = new SynchroAddressBookService(sqlSynchroService);
               this.userService = new UserService(soapService, synchroUserService, dbMailServiceApp,
                 synchroAddressBookService, addressBookService, eb);
-              this.sqlRecallTaskService = new SqlRecallTaskService(config.getDbSchema(), config.getZimbraRecallWorkerMaxQueue());
+              this.sqlRecallTaskService = new SqlRecallTaskService(vertx, config.getDbSchema(), config.getZimbraRecallTaskClaimTimeout(),
+                      config.getZimbraRecallTaskFlushInterval(), config.getZimbraRecallTaskFlushSize());
               this.sqlICalTaskService = new SqlICalTaskService(config.getDbSchema());
               this.sqlActionService = new SqlActionService(config.getDbSchema());
               this.sqlRecallMailService = new SqlRecallMailService(config.getDbSchema());
@@ -149,10 +155,16 @@ public class ServiceManager {
             this.httpService = new HttpService(vertx);
             this.messageService = new MessageService(soapService, folderService,
               dbMailServiceApp, userService, synchroUserService, httpService);
-            this.recipientService = new RecipientService(messageService);
-            if (rawConfig != null) this.attachmentService = new AttachmentService(soapService, messageService, vertx, rawConfig, webClient);
+            this.recipientService = new RecipientService(messageService, config);
+            if (dbMailServiceApp != null) {
+              dbMailServiceApp.setUsersUpdatedHandler(recipientService::invalidateAddresses);
+            }
+            if (dbMailServiceSync != null && dbMailServiceSync != dbMailServiceApp) {
+              dbMailServiceSync.setUsersUpdatedHandler(recipientService::invalidateAddresses);
+            }
+            if (rawConfig != null) this.attachmentService = new AttachmentService(soapService, messageService, vertx, rawConfig, uploadPool);
             this.notificationService = new NotificationService(pathPrefix, timelineHelper);
-            this.communicationService = new CommunicationService();
+            this.communicationService = new CommunicationService(config);
             this.groupService = new GroupService(soapService, dbMailServiceApp, synchroUserService);
             this.expertModeService = new ExpertModeService();
             this.mobileThreadService = new MobileThreadService(recipientService);
@@ -321,6 +333,17 @@ public class ServiceManager {
         return synchroAddressBookService;
     }
 
+    /**
+     * @return limiter shared by every address book synchronization, limiting folders imported each second
+     */
+    public AsyncLimiter getAddressBookRateLimiter() {
+        return addressBookRateLimiter;
+    }
+
+    public Vertx getVertx() {
+        return vertx;
+    }
+
     public Neo4jAddrbookService getNeo4jAddrbookService() {
         return neo4jAddrbookService;
     }
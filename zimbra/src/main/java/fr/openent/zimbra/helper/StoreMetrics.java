@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) Région Ile-de-France, Région Nouvelle-Aquitaine, CGI, 2016.
+ * This file is part of OPEN ENT NG. OPEN ENT NG is a versatile ENT Project based on the JVM and ENT Core Project.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ * For the sake of explanation, any module that communicate over native
+ * Web protocols, such as HTTP, with OPEN ENT NG is outside the scope of this
+ * license and could be license under its own terms. This is merely considered
+ * normal use of OPEN ENT NG, and does not fall under the heading of "covered work".
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package fr.openent.zimbra.helper;
+
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Time requests sent by Zimbra data services to data stores (Postgres, Neo4j persistors).
+ * The reply handler given to Sql or Neo4j is wrapped, so that only Zimbra requests are measured :
+ * the persistors are shared with the other modules of the platform.
+ * Requests are labelled with a query name, "service.method" of the caller, to find the slow or failing ones.
+ */
+public final class StoreMetrics {
+
+    private static final String DURATION_METRIC = "zimbra_store_request_duration_seconds";
+    private static final String DURATION_HELP = "Duration of requests sent to data stores";
+    private static final String ERRORS_METRIC = "zimbra_store_request_errors_total";
+    private static final String ERRORS_HELP = "Requests to data stores that failed";
+
+    private static final String POSTGRES = "postgres";
+    private static final String NEO4J = "neo4j";
+    private static final String STORE = "store";
+    private static final String ACTION = "action";
+    private static final String QUERY = "query";
+    private static final String STATUS = "status";
+    private static final String STATUS_ERROR = "error";
+
+    private StoreMetrics() {
+    }
+
+    /**
+     * @param query   name of the query
+     * @param handler reply handler of a Sql prepared request
+     * @return handler recording the request duration before calling the given one
+     */
+    public static Handler<Message<JsonObject>> sql(String query, Handler<Message<JsonObject>> handler) {
+        return timed(POSTGRES, "prepared", query, handler);
+    }
+
+    /**
+     * @param query   name of the transaction
+     * @param handler reply handler of a Sql transaction
+     * @return handler recording the transaction duration before calling the given one
+     */
+    public static Handler<Message<JsonObject>> sqlTransaction(String query, Handler<Message<JsonObject>> handler) {
+        return timed(POSTGRES, "transaction", query, handler);
+    }
+
+    /**
+     * @param query   name of the query
+     * @param handler reply handler of a Neo4j request
+     * @return handler recording the request duration before calling the given one
+     */
+    public static Handler<Message<JsonObject>> neo4j(String query, Handler<Message<JsonObject>> handler) {
+        return timed(NEO4J, "execute", query, handler);
+    }
+
+    private static Handler<Message<JsonObject>> timed(String store, String action, String query,
+                                                      Handler<Message<JsonObject>> handler) {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        if (!metrics.isEnabled()) {
+            return handler;
+        }
+        long start = System.currentTimeMillis();
+        return message -> {
+            metrics.recordDuration(DURATION_METRIC, DURATION_HELP, System.currentTimeMillis() - start,
+                    STORE, store, ACTION, action, QUERY, query);
+            if (message.body() == null || STATUS_ERROR.equals(message.body().getString(STATUS))) {
+                metrics.incrementCounter(ERRORS_METRIC, ERRORS_HELP, STORE, store, ACTION, action, QUERY, query);
+            }
+            handler.handle(message);
+        };
+    }
+}
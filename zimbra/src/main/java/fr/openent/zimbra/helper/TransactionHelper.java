@@ -35,6 +35,18 @@ public class TransactionHelper {
      * @param errorMessage           message sent in the logs if the transaction failed
      */
     public static Future<List<TransactionElement>> executeTransaction(List<TransactionElement> transactionElementList, String errorMessage) {
+        return executeTransaction(transactionElementList, errorMessage, "transaction");
+    }
+
+    /**
+     * Allows you to execute a set of sql queries in a transaction
+     *
+     * @param transactionElementList list of queries in the form {@link TransactionElement}
+     * @param errorMessage           message sent in the logs if the transaction failed
+     * @param queryName              name of the transaction in store metrics
+     */
+    public static Future<List<TransactionElement>> executeTransaction(List<TransactionElement> transactionElementList, String errorMessage,
+                                                                      String queryName) {
         List<TransactionElement> filtredTransactionElementList = transactionElementList.stream().filter(Objects::nonNull).collect(Collectors.toList());
 
         if (filtredTransactionElementList.isEmpty()) {
@@ -46,7 +58,7 @@ public class TransactionHelper {
 
         statements.addAll(new JsonArray(filtredTransactionElementList.stream().map(TransactionElement::toJson).collect(Collectors.toList())));
 
-        Sql.getInstance().transaction(statements, SqlResult.validResultsHandler(res -> {
+        Sql.getInstance().transaction(statements, StoreMetrics.sqlTransaction(queryName, SqlResult.validResultsHandler(res -> {
             if (res.isRight()) {
                 for (int i = 0; i < filtredTransactionElementList.size(); i++) {
                     filtredTransactionElementList.get(i).setResult((JsonArray) res.right().getValue().getList().get(i));
@@ -58,7 +70,7 @@ public class TransactionHelper {
                 }
                 promise.fail(res.left().getValue());
             }
-        }));
+        })));
 
         return promise.future();
     }
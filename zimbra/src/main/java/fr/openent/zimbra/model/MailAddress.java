@@ -67,7 +67,10 @@ public class MailAddress {
     public MailAddress(String rawAddress) throws IllegalArgumentException {
         this.rawAddress = rawAddress;
         processRawAddress();
-        initServices();
+    }
+
+    public void setNeoId(String neoId) {
+        this.neoId = neoId;
     }
 
     @Override
@@ -100,7 +103,6 @@ public class MailAddress {
     public MailAddress(String localPart, String domain) throws IllegalArgumentException {
         setLocalPart(localPart);
         setDomain(domain);
-        initServices();
     }
 
     private void setLocalPart(String localPart) {
@@ -134,6 +136,9 @@ public class MailAddress {
             handler.handle(completeCleanAddress);
             return;
         }
+        if(dbMailService == null) {
+            initServices();
+        }
 
         dbMailService.getNeoIdFromMail(completeCleanAddress, sqlResponse -> {
             if(sqlResponse.isLeft() || sqlResponse.right().getValue().isEmpty()) {
@@ -19,6 +19,7 @@ package fr.openent.zimbra.model.constant;
 
 public class BusConstants {
     public static final String SYNCHRO_BUSADDR = "openent.zimbra.synchro";
+    public static final String METRICS_BUSADDR = "openent.zimbra.metrics";
 
     public static final String BUS_ACTION = "action";
     public static final String BUS_STATUS = "status";
@@ -26,6 +27,7 @@ public class BusConstants {
 
     public static final String ACTION_STARTSYNCHRO = "start-synchro";
     public static final String ACTION_MAILINGSYNCHRO = "mailling-synchro";
+    public static final String ACTION_METRICS_PROMETHEUS = "prometheus";
 
     public static final String STATUS_ERROR = "error";
     public static final String STATUS_OK = "ok";
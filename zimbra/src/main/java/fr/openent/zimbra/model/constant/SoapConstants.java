@@ -25,6 +25,8 @@ public class SoapConstants {
     public static final String REQ_CONTENT = "content";
     public static final String REQ_NAMESPACE = "_jsns";
     public static final String BODY = "Body";
+    public static final String HEADER = "Header";
+    public static final String FAULT = "Fault";
     public static final String ID_BY = "by";
     public static final String ATTR_NAME = "n";
     public static final String ATTR_VALUE = "_content";
@@ -73,6 +75,13 @@ public class SoapConstants {
     public static final String CREATE_DISTRIBUTIONLIST_REQUEST = "CreateDistributionListRequest";
     public static final String MODIFY_DISTRIBUTIONLIST_REQUEST = "ModifyDistributionListRequest";
 
+    // Batch Requests
+    public static final String BATCH_REQUEST = "BatchRequest";
+    public static final String BATCH_RESPONSE = "BatchResponse";
+    public static final String BATCH_REQUEST_ID = "requestId";
+    public static final String BATCH_ONERROR = "onerror";
+    public static final String BATCH_ONERROR_CONTINUE = "continue";
+
     // Accounts Requests
     public static final String GET_ACCOUNT_INFO_REQUEST = "GetAccountInfoRequest";
     public static final String GET_ACCOUNT_INFO_RESPONSE = "GetAccountInfoResponse";
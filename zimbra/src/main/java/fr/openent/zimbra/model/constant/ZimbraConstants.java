@@ -179,6 +179,7 @@ public class ZimbraConstants {
     public static final String IMPORT_CT_CSV = "csv";
     public static final String IMPORT_FOLDER_ID = "l";
     public static final String IMPORT_CONTACTS_DATA = "content";
+    public static final String IMPORT_UPLOAD_ID = "aid";
 
     public static final String VIEW = "view";
     public static final String VIEW_SEARCHFOLDER = "search folder";
@@ -200,6 +201,9 @@ public class ZimbraConstants {
     public static final String SEARCH_QUERY = "query";
     public static final String SEARCH_LIMIT = "limit";
     public static final String SEARCH_OFFSET = "offset";
+    public static final String SEARCH_CURSOR = "cursor";
+    public static final String SEARCH_CURSOR_ID = "id";
+    public static final String SEARCH_CURSOR_SORT_VALUE = "sortVal";
     public static final String SEARCH_TYPES = "types";
     // Only ONE of message, conversation may be set. If both are set, the first is used
     public static final String SEARCH_TYPE_CONVERSATION = "conversation";
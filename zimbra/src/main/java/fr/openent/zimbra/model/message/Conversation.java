@@ -28,6 +28,7 @@ public class Conversation {
     private Map<String, Recipient> userMapping = new HashMap<>();
 
     public String getId() { return id; }
+    public Long getDate() { return date; }
     public String getSubject() { return subject; }
     public Integer getNbMsg() { return nbMsg; }
     public Integer getNbUnread() { return nbUnread; }
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) Région Ile-de-France, Région Nouvelle-Aquitaine, CGI, 2016.
+ * This file is part of OPEN ENT NG. OPEN ENT NG is a versatile ENT Project based on the JVM and ENT Core Project.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ * For the sake of explanation, any module that communicate over native
+ * Web protocols, such as HTTP, with OPEN ENT NG is outside the scope of this
+ * license and could be license under its own terms. This is merely considered
+ * normal use of OPEN ENT NG, and does not fall under the heading of "covered work".
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package fr.openent.zimbra.model.soap;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static fr.openent.zimbra.model.constant.ZimbraConstants.*;
+
+/**
+ * Position in the results of a SearchRequest sorted by date, given to the client as an opaque token.
+ * A search sent with a cursor starts right after the item of the cursor, so that Zimbra does not skip
+ * all the hits of the previous pages as with an offset.
+ */
+public class SearchCursor {
+
+    public static final String PARAM_CURSOR = "cursor";
+    public static final String HEADER_NEXT_CURSOR = "X-Next-Cursor";
+
+    private static final String SEPARATOR = "|";
+
+    private final String id;
+    private final String sortValue;
+
+    public SearchCursor(String id, String sortValue) {
+        this.id = id;
+        this.sortValue = sortValue;
+    }
+
+    /**
+     * Cursor of the page following a page of search results
+     * @param zimbraItems messages or conversations returned by Zimbra, with their id and date
+     * @param pageSize    number of items asked
+     * @return cursor, or null if this page is the last one
+     */
+    public static SearchCursor nextPage(JsonArray zimbraItems, int pageSize) {
+        if (zimbraItems == null || zimbraItems.isEmpty() || zimbraItems.size() < pageSize) {
+            return null;
+        }
+        JsonObject lastItem = zimbraItems.getJsonObject(zimbraItems.size() - 1);
+        Object date = lastItem.getValue(MSG_DATE);
+        if (lastItem.getString(MSG_ID) == null || date == null) {
+            return null;
+        }
+        return new SearchCursor(lastItem.getString(MSG_ID), date.toString());
+    }
+
+    /**
+     * @param token token sent by the client
+     * @return cursor
+     * @throws IllegalArgumentException if token is not a valid cursor
+     */
+    public static SearchCursor fromToken(String token) throws IllegalArgumentException {
+        String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        int separatorIndex = decoded.lastIndexOf(SEPARATOR);
+        if (separatorIndex <= 0 || separatorIndex == decoded.length() - 1) {
+            throw new IllegalArgumentException("Invalid search cursor : " + token);
+        }
+        String sortValue = decoded.substring(separatorIndex + 1);
+        try {
+            Long.parseLong(sortValue);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid search cursor : " + token);
+        }
+        return new SearchCursor(decoded.substring(0, separatorIndex), sortValue);
+    }
+
+    public String toToken() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((id + SEPARATOR + sortValue).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return cursor element of a SearchRequest
+     */
+    public JsonObject toSoap() {
+        return new JsonObject()
+                .put(SEARCH_CURSOR_ID, id)
+                .put(SEARCH_CURSOR_SORT_VALUE, sortValue);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) Région Ile-de-France, Région Nouvelle-Aquitaine, CGI, 2016.
+ * This file is part of OPEN ENT NG. OPEN ENT NG is a versatile ENT Project based on the JVM and ENT Core Project.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ * For the sake of explanation, any module that communicate over native
+ * Web protocols, such as HTTP, with OPEN ENT NG is outside the scope of this
+ * license and could be license under its own terms. This is merely considered
+ * normal use of OPEN ENT NG, and does not fall under the heading of "covered work".
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package fr.openent.zimbra.model.soap;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static fr.openent.zimbra.model.constant.SoapConstants.*;
+import static fr.openent.zimbra.model.constant.ZimbraErrors.ERROR_GENERIC;
+import static fr.openent.zimbra.model.constant.ZimbraErrors.IS_SUCCESSFUL;
+import static fr.openent.zimbra.service.data.SoapZimbraService.ERROR_CODE;
+import static fr.openent.zimbra.service.data.SoapZimbraService.ERROR_MESSAGE;
+
+/**
+ * Build Zimbra BatchRequest contents and split BatchResponse into individual responses
+ */
+public class SoapBatchHelper {
+
+    private SoapBatchHelper() {
+    }
+
+    /**
+     * Merge several soap requests into one BatchRequest content
+     * {
+     *     "_jsns" : "urn:zimbra",
+     *     "onerror" : "continue",
+     *     "GetFolderRequest" : [ { ..., "requestId" : "0" } ],
+     *     "GetInfoRequest" : [ { ..., "requestId" : "1" } ]
+     * }
+     * Position of each request in the list is used as its requestId
+     *
+     * @param requests list of requests params, each one containing "name" and "content"
+     * @return BatchRequest content
+     */
+    public static JsonObject buildBatchContent(List<JsonObject> requests) {
+        JsonObject batchContent = new JsonObject()
+                .put(REQ_NAMESPACE, NAMESPACE_ZIMBRA)
+                .put(BATCH_ONERROR, BATCH_ONERROR_CONTINUE);
+        for (int i = 0; i < requests.size(); i++) {
+            JsonObject request = requests.get(i);
+            String name = request.getString(REQ_NAME);
+            JsonObject content = request.getJsonObject(REQ_CONTENT, new JsonObject()).copy()
+                    .put(BATCH_REQUEST_ID, String.valueOf(i));
+            if (!batchContent.containsKey(name)) {
+                batchContent.put(name, new JsonArray());
+            }
+            batchContent.getJsonArray(name).add(content);
+        }
+        return batchContent;
+    }
+
+    /**
+     * Split a BatchResponse into one result per request, in the order of the initial requests.
+     * Successful results are rebuilt as a regular soap response :
+     * { "Header" : batchHeader, "Body" : { "XxxResponse" : {...} }, "success" : true }
+     * Faults are transformed into error objects :
+     * { "code" : zimbra error code, "message" : error message, "success" : false }
+     * Requests with no matching response get a generic error.
+     *
+     * @param batchResponse complete BatchResponse returned by Zimbra
+     * @param nbRequests    number of requests sent in batch
+     * @return list of individual results
+     */
+    public static List<JsonObject> splitBatchResponse(JsonObject batchResponse, int nbRequests) {
+        List<JsonObject> results = new ArrayList<>(nbRequests);
+        for (int i = 0; i < nbRequests; i++) {
+            results.add(null);
+        }
+
+        JsonObject header = batchResponse.getJsonObject(HEADER, new JsonObject());
+        JsonObject batchBody = batchResponse.getJsonObject(BODY, new JsonObject())
+                .getJsonObject(BATCH_RESPONSE, new JsonObject());
+
+        for (String responseName : batchBody.fieldNames()) {
+            Object responses = batchBody.getValue(responseName);
+            if (!(responses instanceof JsonArray)) {
+                continue;
+            }
+            for (Object item : (JsonArray) responses) {
+                if (!(item instanceof JsonObject)) {
+                    continue;
+                }
+                JsonObject response = ((JsonObject) item).copy();
+                int index = getRequestIndex(response.remove(BATCH_REQUEST_ID), nbRequests);
+                if (index < 0) {
+                    continue;
+                }
+                if (FAULT.equals(responseName)) {
+                    results.set(index, extractFault(response));
+                } else {
+                    results.set(index, new JsonObject()
+                            .put(HEADER, header)
+                            .put(BODY, new JsonObject().put(responseName, response))
+                            .put(IS_SUCCESSFUL, true));
+                }
+            }
+        }
+
+        for (int i = 0; i < nbRequests; i++) {
+            if (results.get(i) == null) {
+                results.set(i, new JsonObject()
+                        .put(ERROR_CODE, ERROR_GENERIC)
+                        .put(ERROR_MESSAGE, "No response for request " + i + " in BatchResponse")
+                        .put(IS_SUCCESSFUL, false));
+            }
+        }
+        return results;
+    }
+
+    private static int getRequestIndex(Object requestId, int nbRequests) {
+        if (requestId == null) {
+            return -1;
+        }
+        try {
+            int index = Integer.parseInt(requestId.toString());
+            return index < nbRequests ? index : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static JsonObject extractFault(JsonObject fault) {
+        JsonObject reason = fault.getJsonObject("Reason", new JsonObject());
+        JsonObject error = fault.getJsonObject("Detail", new JsonObject())
+                .getJsonObject("Error", new JsonObject());
+        return new JsonObject()
+                .put(ERROR_MESSAGE, reason.getString("Text", ""))
+                .put(ERROR_CODE, error.getString("Code", ERROR_GENERIC))
+                .put(IS_SUCCESSFUL, false);
+    }
+}
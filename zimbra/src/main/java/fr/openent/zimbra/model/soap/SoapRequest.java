@@ -25,6 +25,9 @@ import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.json.JsonObject;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static fr.openent.zimbra.model.constant.SoapConstants.*;
 
 public class SoapRequest {
@@ -67,6 +70,23 @@ public class SoapRequest {
         return new SoapRequest(name, NAMESPACE_ADMIN, true);
     }
 
+    /**
+     * Start building a batch of requests made with user context
+     * @param userId id of the user
+     * @return batch builder
+     */
+    public static BatchBuilder UserBatch(String userId) {
+        return new BatchBuilder(userId, false);
+    }
+
+    /**
+     * Start building a batch of requests made with admin context
+     * @return batch builder
+     */
+    public static BatchBuilder AdminBatch() {
+        return new BatchBuilder(null, true);
+    }
+
     public void setContent(JsonObject content) {
         if(content == null) {
             content = new JsonObject();
@@ -79,8 +99,9 @@ public class SoapRequest {
         ServiceManager sm = ServiceManager.getServiceManager();
         SoapZimbraService soapService = sm.getSoapService();
 
-        if(name == null || name.isEmpty() || content == null || content.isEmpty()) {
-            handler.handle(Future.failedFuture("Incomplete request"));
+        String incompleteError = getIncompleteError();
+        if(incompleteError != null) {
+            handler.handle(Future.failedFuture(incompleteError));
             return;
         }
 
@@ -99,4 +120,75 @@ public class SoapRequest {
         }
 
     }
+
+    private String getIncompleteError() {
+        if(name == null || name.isEmpty() || content == null || content.isEmpty()) {
+            return "Incomplete request";
+        }
+        return null;
+    }
+
+    /**
+     * Group several independent requests of the same context in a single Zimbra BatchRequest.
+     * Each request gets its own result, in the order they were added.
+     */
+    public static class BatchBuilder {
+
+        private final String userId;
+        private final boolean isAdmin;
+        private final List<SoapRequest> requests = new ArrayList<>();
+
+        private BatchBuilder(String userId, boolean isAdmin) {
+            this.userId = userId;
+            this.isAdmin = isAdmin;
+        }
+
+        public BatchBuilder add(SoapRequest request) {
+            requests.add(request);
+            return this;
+        }
+
+        public int size() {
+            return requests.size();
+        }
+
+        /**
+         * Send all valid requests in one BatchRequest.
+         * Incomplete requests, or requests with a different context than the batch, fail without being sent.
+         * @return one future per added request, in the same order
+         */
+        public List<Future<JsonObject>> start() {
+            List<Future<JsonObject>> results = new ArrayList<>();
+            if(!isAdmin && (userId == null || userId.isEmpty())) {
+                requests.forEach(request ->
+                        results.add(Future.failedFuture("Can't launch user request without userid")));
+                return results;
+            }
+
+            List<JsonObject> reqParamsList = new ArrayList<>();
+            List<Integer> sentIndexes = new ArrayList<>();
+            for(SoapRequest request : requests) {
+                String error = request.getIncompleteError();
+                if(error == null && (request.isAdmin != isAdmin || (!isAdmin && !userId.equals(request.userId)))) {
+                    error = "Request context does not match batch context";
+                }
+                if(error != null) {
+                    results.add(Future.failedFuture(error));
+                } else {
+                    results.add(null);
+                    sentIndexes.add(results.size() - 1);
+                    reqParamsList.add(new JsonObject()
+                            .put(REQ_NAME, request.name)
+                            .put(REQ_CONTENT, request.content));
+                }
+            }
+
+            SoapZimbraService soapService = ServiceManager.getServiceManager().getSoapService();
+            List<Future<JsonObject>> sentResults = soapService.callBatchSoapAPI(reqParamsList, userId, isAdmin);
+            for(int i = 0; i < sentIndexes.size(); i++) {
+                results.set(sentIndexes.get(i), sentResults.get(i));
+            }
+            return results;
+        }
+    }
 }
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) Région Ile-de-France, Région Nouvelle-Aquitaine, CGI, 2016.
+ * This file is part of OPEN ENT NG. OPEN ENT NG is a versatile ENT Project based on the JVM and ENT Core Project.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ * For the sake of explanation, any module that communicate over native
+ * Web protocols, such as HTTP, with OPEN ENT NG is outside the scope of this
+ * license and could be license under its own terms. This is merely considered
+ * normal use of OPEN ENT NG, and does not fall under the heading of "covered work".
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package fr.openent.zimbra.model.soap;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.parsetools.JsonEvent;
+import io.vertx.core.parsetools.JsonParser;
+import io.vertx.core.streams.ReadStream;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Parse a soap response while it is received, keeping only some paths of the Json document.
+ * Paths are field names separated by dots, arrays are transparent :
+ * "Body.GetFolderResponse.folder.folder.name" keeps the name of each sub folder of each folder in GetFolderResponse.
+ * Objects leading to a kept path are always created, even if they contain none of the kept fields.
+ * Without any path, the whole document is kept.
+ */
+public class SoapResponseParser {
+
+    private enum Mode { SKIP, FILTER, KEEP }
+
+    private final List<List<String>> keptPaths;
+    private final long maxSize;
+
+    /**
+     * @param keptPaths paths to keep, null or empty to keep the whole document
+     * @param maxSize   max number of bytes of the response, 0 for no limit
+     */
+    public SoapResponseParser(JsonArray keptPaths, long maxSize) {
+        this.keptPaths = new ArrayList<>();
+        if (keptPaths != null) {
+            for (Object path : keptPaths) {
+                this.keptPaths.add(Arrays.asList(path.toString().split("\\.")));
+            }
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Build the list of paths to keep, to be set as responsePaths of a soap request
+     * @param paths dotted paths
+     * @return paths as Json
+     */
+    public static JsonArray paths(String... paths) {
+        return new JsonArray(Arrays.asList(paths));
+    }
+
+    /**
+     * Parse a response. Returned future always completes : with the kept document once the response has ended,
+     * or with a failure as soon as the response is invalid Json, exceeds max size or fails.
+     * In case of failure, the response is no longer read.
+     * @param response paused or not yet read response
+     * @return kept document
+     */
+    public Future<JsonObject> parse(ReadStream<Buffer> response) {
+        Promise<JsonObject> promise = Promise.promise();
+        DocumentBuilder builder = new DocumentBuilder();
+        JsonParser parser = JsonParser.newParser();
+        long[] size = {0};
+
+        parser.handler(event -> {
+            try {
+                builder.handle(event);
+            } catch (RuntimeException e) {
+                fail(response, promise, "Invalid soap response : " + e.getMessage());
+            }
+        });
+        parser.exceptionHandler(err -> fail(response, promise, "Invalid soap response : " + err.getMessage()));
+        parser.endHandler(v -> {
+            if (builder.root == null) {
+                promise.tryFail("Invalid soap response : no Json object");
+            } else {
+                promise.tryComplete(builder.root);
+            }
+        });
+
+        response.exceptionHandler(err -> fail(response, promise, err.getMessage()));
+        response.handler(buffer -> {
+            if (promise.future().isComplete()) {
+                return;
+            }
+            size[0] += buffer.length();
+            if (maxSize > 0 && size[0] > maxSize) {
+                fail(response, promise, "Soap response exceeds max size of " + maxSize + " bytes");
+                return;
+            }
+            parser.handle(buffer);
+        });
+        response.endHandler(v -> {
+            if (!promise.future().isComplete()) {
+                parser.end();
+            }
+        });
+        response.resume();
+        return promise.future();
+    }
+
+    private void fail(ReadStream<Buffer> response, Promise<JsonObject> promise, String message) {
+        if (promise.tryFail(message)) {
+            response.handler(null);
+            response.endHandler(null);
+        }
+    }
+
+    private Mode getMode(List<String> path) {
+        if (keptPaths.isEmpty()) {
+            return Mode.KEEP;
+        }
+        Mode mode = Mode.SKIP;
+        for (List<String> keptPath : keptPaths) {
+            if (path.size() >= keptPath.size() && path.subList(0, keptPath.size()).equals(keptPath)) {
+                return Mode.KEEP;
+            }
+            if (path.size() < keptPath.size() && keptPath.subList(0, path.size()).equals(path)) {
+                mode = Mode.FILTER;
+            }
+        }
+        return mode;
+    }
+
+    /**
+     * Build kept document from parser events
+     */
+    private class DocumentBuilder {
+        private final Deque<Frame> frames = new ArrayDeque<>();
+        private JsonObject root;
+
+        private void handle(JsonEvent event) {
+            switch (event.type()) {
+                case START_OBJECT:
+                    start(event.fieldName(), new JsonObject());
+                    break;
+                case START_ARRAY:
+                    start(event.fieldName(), new JsonArray());
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    frames.pop();
+                    break;
+                case VALUE:
+                    Frame parent = frames.peek();
+                    if (parent == null) {
+                        throw new IllegalStateException("value outside of an object");
+                    }
+                    List<String> path = parent.childPath(event.fieldName());
+                    Mode mode = parent.mode == Mode.FILTER ? getMode(path) : parent.mode;
+                    if (mode != Mode.SKIP) {
+                        parent.add(event.fieldName(), event.value());
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void start(String fieldName, Object container) {
+            Frame parent = frames.peek();
+            if (parent == null) {
+                if (!(container instanceof JsonObject)) {
+                    throw new IllegalStateException("document is not a Json object");
+                }
+                root = (JsonObject) container;
+                frames.push(new Frame(new ArrayList<>(), getMode(new ArrayList<>()), container));
+                return;
+            }
+            List<String> path = parent.childPath(fieldName);
+            Mode mode = parent.mode == Mode.FILTER ? getMode(path) : parent.mode;
+            if (mode == Mode.SKIP) {
+                frames.push(new Frame(path, Mode.SKIP, null));
+            } else {
+                parent.add(fieldName, container);
+                frames.push(new Frame(path, mode, container));
+            }
+        }
+    }
+
+    private static class Frame {
+        private final List<String> path;
+        private final Mode mode;
+        private final Object container;
+
+        private Frame(List<String> path, Mode mode, Object container) {
+            this.path = path;
+            this.mode = mode;
+            this.container = container;
+        }
+
+        // Array elements have the same path as the array
+        private List<String> childPath(String fieldName) {
+            if (fieldName == null || mode != Mode.FILTER) {
+                return path;
+            }
+            List<String> childPath = new ArrayList<>(path);
+            childPath.add(fieldName);
+            return childPath;
+        }
+
+        private void add(String fieldName, Object value) {
+            if (container instanceof JsonObject) {
+                ((JsonObject) container).put(fieldName, value);
+            } else {
+                ((JsonArray) container).add(value);
+            }
+        }
+    }
+}
@@ -24,11 +24,24 @@ public class SoapSearchHelper {
     private static Logger log = LoggerFactory.getLogger(SoapSearchHelper.class);
 
     public static void searchAllMailedConv(String userId, int page, String queryString, Handler<AsyncResult<List<Conversation>>> handler) {
+        searchAllMailedConv(userId, page, null, queryString, handler);
+    }
+
+    /**
+     * Search conversations of all folders but drafts, sorted by date
+     * @param userId      user id
+     * @param page        page number, ignored if a cursor is given
+     * @param cursor      [optional] cursor of the page to get
+     * @param queryString [optional] query replacing the default one
+     * @param handler     result handler
+     */
+    public static void searchAllMailedConv(String userId, int page, SearchCursor cursor, String queryString,
+                                           Handler<AsyncResult<List<Conversation>>> handler) {
         String query =  excludeFolder(SEARCH_QUERY_ALL, FOLDER_DRAFT);
         if(queryString != null) {
             query = queryString;
         }
-        search(userId, query, page, SEARCH_TYPE_CONVERSATION, SEARCH_RECIP_ALL, searchResult -> {
+        search(userId, query, page, cursor, SEARCH_TYPE_CONVERSATION, SEARCH_RECIP_ALL, searchResult -> {
             if(searchResult.failed()) {
                 handler.handle(Future.failedFuture(searchResult.cause()));
             } else {
@@ -49,7 +62,7 @@ public class SoapSearchHelper {
                                            Handler<AsyncResult<Conversation>> resultHandler) {
         SoapRequest getConvRequest = SoapRequest.MailSoapRequest(SoapConstants.SEARCH_CONV_REQUEST, userId);
         int pageSize = Zimbra.appConfig.getMailListLimitConversation();
-        JsonObject content = getCommonPaginatedSearchParams(SEARCH_QUERY_ALL, SEARCH_RECIP_ALL, pageSize, page);
+        JsonObject content = getCommonPaginatedSearchParams(SEARCH_QUERY_ALL, SEARCH_RECIP_ALL, pageSize, page, null);
         content.put(CONVERSATION_CID, conversationId)
                 .put(CONVERSATION_EXPAND_MESSAGES, CONV_EXPAND_ALL)
                 .put(MSG_HTML, ONE_TRUE)
@@ -85,20 +98,25 @@ public class SoapSearchHelper {
     }
 
     private static JsonObject getCommonPaginatedSearchParams(String searchQuery, String recipientsToReturn,
-                                                             int pageSize, int page) {
-        return new JsonObject()
+                                                             int pageSize, int page, SearchCursor cursor) {
+        JsonObject params = new JsonObject()
                 .put(SEARCH_QUERY, searchQuery)
                 .put(SEARCH_RECIPIENTS_TO_RETURN, recipientsToReturn)
-                .put(SEARCH_LIMIT, pageSize)
-                .put(SEARCH_OFFSET, page * pageSize);
+                .put(SEARCH_LIMIT, pageSize);
+        if(cursor != null) {
+            params.put(SEARCH_CURSOR, cursor.toSoap()).put(SEARCH_OFFSET, 0);
+        } else {
+            params.put(SEARCH_OFFSET, page * pageSize);
+        }
+        return params;
     }
 
     @SuppressWarnings("SameParameterValue")
-    private static void search(String userId, String searchQuery, int page, String types, String recipientsToReturn,
-                               Handler<AsyncResult<JsonObject>> rawHandler) {
+    private static void search(String userId, String searchQuery, int page, SearchCursor cursor, String types,
+                               String recipientsToReturn, Handler<AsyncResult<JsonObject>> rawHandler) {
         SoapRequest searchRequest = SoapRequest.MailSoapRequest(SEARCH_REQUEST, userId);
         int pageSize = Zimbra.appConfig.getMailListLimit();
-        JsonObject content = getCommonPaginatedSearchParams(searchQuery, recipientsToReturn, pageSize, page);
+        JsonObject content = getCommonPaginatedSearchParams(searchQuery, recipientsToReturn, pageSize, page, cursor);
         content.put(SEARCH_TYPES, types);
         searchRequest.setContent(content);
         try {
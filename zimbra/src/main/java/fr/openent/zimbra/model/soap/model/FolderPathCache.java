@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) Région Ile-de-France, Région Nouvelle-Aquitaine, CGI, 2016.
+ * This file is part of OPEN ENT NG. OPEN ENT NG is a versatile ENT Project based on the JVM and ENT Core Project.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation (version 3 of the License).
+ * For the sake of explanation, any module that communicate over native
+ * Web protocols, such as HTTP, with OPEN ENT NG is outside the scope of this
+ * license and could be license under its own terms. This is merely considered
+ * normal use of OPEN ENT NG, and does not fall under the heading of "covered work".
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+
+package fr.openent.zimbra.model.soap.model;
+
+import fr.openent.zimbra.Zimbra;
+import fr.openent.zimbra.helper.BoundedCache;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Ids of folders and mountpoints of Zimbra accounts, by path.
+ * Synchronizations resolve the same folders again and again, ids do not change until the folder is deleted.
+ * Entries of an account are dropped when one of its folders is deleted or recursively emptied.
+ * Resolutions in progress are shared, so that a path is not created twice at the same time.
+ */
+class FolderPathCache {
+
+    private static final String KEY_SEPARATOR = "\n";
+    private static final String MOUNTPOINT_PREFIX = "mountpoint:";
+    private static final String GRANT_PREFIX = "grant:";
+
+    private final BoundedCache<String, String> ids;
+    private final Map<String, Future<String>> pendingResolutions = new HashMap<>();
+
+    FolderPathCache(int maxSize, long ttl) {
+        this.ids = new BoundedCache<>(maxSize, ttl);
+    }
+
+    static FolderPathCache fromConfig() {
+        if(Zimbra.appConfig == null) {
+            return new FolderPathCache(0, 0L);
+        }
+        return new FolderPathCache(Zimbra.appConfig.getFolderPathCacheSize(),
+                Zimbra.appConfig.getFolderPathCacheTtl() * 1000L);
+    }
+
+    static String folderKey(String path) {
+        // Zimbra folder names are case insensitive
+        String normalized = path.toLowerCase(Locale.ROOT);
+        return normalized.startsWith("/") ? normalized : "/" + normalized;
+    }
+
+    static String mountpointKey(String parentFolderId, String name) {
+        return MOUNTPOINT_PREFIX + parentFolderId + "/" + name.toLowerCase(Locale.ROOT);
+    }
+
+    static String grantKey(String folderId, String grantee) {
+        return GRANT_PREFIX + folderId + "/" + grantee;
+    }
+
+    void put(String userId, String key, String id) {
+        ids.put(userId + KEY_SEPARATOR + key, id);
+    }
+
+    /**
+     * Get an id from cache, or resolve it once for all concurrent callers
+     * @param userId   account of the folder
+     * @param key      key of the folder, mountpoint or grant
+     * @param resolver resolves the id from Zimbra
+     * @return id
+     */
+    Future<String> resolve(String userId, String key, Supplier<Future<String>> resolver) {
+        String cacheKey = userId + KEY_SEPARATOR + key;
+        String id = ids.get(cacheKey);
+        if(id != null) {
+            return Future.succeededFuture(id);
+        }
+        Future<String> pending;
+        boolean resolving = false;
+        synchronized (pendingResolutions) {
+            pending = pendingResolutions.get(cacheKey);
+            if(pending == null) {
+                pending = resolver.get();
+                resolving = true;
+                pendingResolutions.put(cacheKey, pending);
+            }
+        }
+        if(resolving) {
+            pending.onComplete(res -> {
+                synchronized (pendingResolutions) {
+                    pendingResolutions.remove(cacheKey);
+                }
+                if(res.succeeded()) {
+                    ids.put(cacheKey, res.result());
+                }
+            });
+        }
+        return pending;
+    }
+
+    /**
+     * Drop a folder and every entry that may be under it : its subfolders, all mountpoints and grants of the account
+     * @param userId     account of the folder
+     * @param folderPath absolute path of the folder
+     * @param withFolder if false, the folder itself is kept
+     */
+    void invalidateFolder(String userId, String folderPath, boolean withFolder) {
+        if(folderPath == null || folderPath.isEmpty() || "/".equals(folderPath)) {
+            invalidateAccount(userId);
+            return;
+        }
+        String accountPrefix = userId + KEY_SEPARATOR;
+        String folderKey = accountPrefix + folderKey(folderPath);
+        ids.invalidateIf((key, id) -> key.startsWith(accountPrefix)
+                && ((withFolder && key.equals(folderKey))
+                    || key.startsWith(folderKey + "/")
+                    || key.startsWith(accountPrefix + MOUNTPOINT_PREFIX)
+                    || key.startsWith(accountPrefix + GRANT_PREFIX)));
+    }
+
+    /**
+     * Drop every entry of an account, when one of its cached ids is not valid anymore
+     * @param userId account
+     */
+    void invalidateAccount(String userId) {
+        String accountPrefix = userId + KEY_SEPARATOR;
+        ids.invalidateIf((key, id) -> key.startsWith(accountPrefix));
+    }
+
+    JsonObject getStats() {
+        return ids.getStats();
+    }
+}
@@ -40,6 +40,25 @@ public class SoapContactFolder {
                 .put(IMPORT_CONTACTS_DATA, new JsonObject()
                     .put(ATTR_VALUE, csvContent));
         importContactsRequest.setContent(content);
-        importContactsRequest.start(handler);
+        importContactsRequest.start(SoapFolder.invalidateOnMissingFolder(userId, handler));
+    }
+
+    /**
+     * Import contacts from a csv previously sent to Zimbra upload servlet
+     * @param userId    User Id, owner of the upload
+     * @param folderId  Id of the contact folder
+     * @param uploadId  Id of the uploaded csv
+     * @param handler   result handler
+     */
+    public static void importContactsFromUpload(String userId, String folderId, String uploadId,
+                                                Handler<AsyncResult<JsonObject>> handler) {
+        SoapRequest importContactsRequest = SoapRequest.MailSoapRequest(SoapConstants.IMPORT_CONTACTS_REQUEST, userId);
+        JsonObject content = new JsonObject()
+                .put(IMPORT_CONTENT_TYPE, IMPORT_CT_CSV)
+                .put(IMPORT_FOLDER_ID, folderId)
+                .put(IMPORT_CONTACTS_DATA, new JsonObject()
+                    .put(IMPORT_UPLOAD_ID, uploadId));
+        importContactsRequest.setContent(content);
+        importContactsRequest.start(SoapFolder.invalidateOnMissingFolder(userId, handler));
     }
 }
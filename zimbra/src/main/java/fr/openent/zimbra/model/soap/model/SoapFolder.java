@@ -24,6 +24,7 @@ import fr.openent.zimbra.model.soap.SoapRequest;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.Promise;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
@@ -59,17 +60,54 @@ public class SoapFolder {
 
     private static Logger log = LoggerFactory.getLogger(SoapFolder.class);
 
+    // Ids of folders resolved by path, shared with mountpoints
+    static final FolderPathCache pathCache = FolderPathCache.fromConfig();
+
     public String getId() { return id; }
 
 
     public static void createFolderByPath(String userId, String folderPath, String view,
                                           Handler<AsyncResult<SoapFolder>> handler) {
-        createFolderByPath(userId, folderPath, view, false, handler);
+        createFolderByPath(userId, folderPath, view, false, res -> {
+            if(res.succeeded()) {
+                pathCache.put(userId, FolderPathCache.folderKey(folderPath), res.result().id);
+            }
+            handler.handle(res);
+        });
     }
 
+    /**
+     * Get a folder, create it if it does not exist.
+     * Ids are cached by path : a folder found in cache only has its id, name and path.
+     * @param userId     owner of the folder
+     * @param folderPath path of the folder
+     * @param view       view of the folder, used if it is created
+     * @param handler    result handler
+     */
     public static void getOrCreateFolderByPath(String userId, String folderPath, String view,
                                                Handler<AsyncResult<SoapFolder>> handler) {
-        createFolderByPath(userId, folderPath, view, true, handler);
+        pathCache.resolve(userId, FolderPathCache.folderKey(folderPath), () -> {
+                    Promise<SoapFolder> promise = Promise.promise();
+                    createFolderByPath(userId, folderPath, view, true, res -> {
+                        if(res.failed() && ERROR_ALREADYEXISTS.equals(getErrorCode(res.cause()))) {
+                            // Folder created by another request between the lookup and the creation
+                            getFolderByPath(userId, folderPath, view, 0, promise);
+                        } else {
+                            promise.handle(res);
+                        }
+                    });
+                    return promise.future().map(folder -> folder.id);
+                })
+                .map(folderId -> fromPath(folderId, folderPath))
+                .onComplete(handler);
+    }
+
+    private static SoapFolder fromPath(String folderId, String folderPath) {
+        SoapFolder folder = new SoapFolder();
+        folder.id = folderId;
+        folder.absolutePath = folderPath.startsWith("/") ? folderPath : "/" + folderPath;
+        folder.name = folder.absolutePath.substring(folder.absolutePath.lastIndexOf('/') + 1);
+        return folder;
     }
 
     private static void createFolderByPath(String userId, String folderPath, String view, boolean getIfExists,
@@ -84,6 +122,39 @@ public class SoapFolder {
         createFolderRequest.start(processFolderHandler(CREATE_FOLDER_RESPONSE, handler));
     }
 
+    /**
+     * Drop cached folder ids of an account, to be called when its folders are renamed, moved or deleted
+     * @param userId owner of the folders
+     */
+    public static void invalidatePathCache(String userId) {
+        pathCache.invalidateAccount(userId);
+    }
+
+    public static JsonObject getPathCacheStats() {
+        return pathCache.getStats();
+    }
+
+    static String getErrorCode(Throwable cause) {
+        try {
+            return new JsonObject(cause.getMessage()).getString(ERROR_CODE, "");
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    /**
+     * Drop cached ids of the account when Zimbra does not know a folder anymore
+     */
+    static Handler<AsyncResult<JsonObject>> invalidateOnMissingFolder(String userId,
+                                                               Handler<AsyncResult<JsonObject>> handler) {
+        return res -> {
+            if(res.failed() && ERROR_NOSUCHFOLDER.equals(getErrorCode(res.cause()))) {
+                pathCache.invalidateAccount(userId);
+            }
+            handler.handle(res);
+        };
+    }
+
     public static void getFolderByPath(String userId, String folderPath, String view, int depth,
                                        Handler<AsyncResult<SoapFolder>> handler) {
         JsonObject reqContent = new JsonObject()
@@ -110,17 +181,63 @@ public class SoapFolder {
     }
 
     public void emptyFolder(String userId, Handler<AsyncResult<JsonObject>> handler) {
+        emptyFolder(userId, true, handler);
+    }
+
+    /**
+     * Delete items of the folder
+     * @param userId    owner of the folder
+     * @param recursive if true, subfolders are deleted too. If false, subfolders are kept untouched.
+     * @param handler   result handler
+     */
+    public void emptyFolder(String userId, boolean recursive, Handler<AsyncResult<JsonObject>> handler) {
         SoapRequest actionRequest = SoapRequest.MailSoapRequest(SoapConstants.FOLDER_ACTION_REQUEST, userId);
         JsonObject content = new JsonObject()
                 .put(ACTION, new JsonObject()
-                        .put(RECURSIVE, ONE_TRUE)
+                        .put(RECURSIVE, recursive ? ONE_TRUE : ZERO_FALSE)
                         .put(ZIMBRA_ID, id)
                         .put(OPERATION, OP_EMPTY));
         actionRequest.setContent(content);
-        actionRequest.start(handler);
+        actionRequest.start(invalidateOnMissingFolder(userId, res -> {
+            if(res.succeeded() && recursive) {
+                pathCache.invalidateFolder(userId, absolutePath, false);
+            }
+            handler.handle(res);
+        }));
+    }
+
+    public void deleteFolder(String userId, Handler<AsyncResult<JsonObject>> handler) {
+        SoapRequest actionRequest = SoapRequest.MailSoapRequest(SoapConstants.FOLDER_ACTION_REQUEST, userId);
+        JsonObject content = new JsonObject()
+                .put(ACTION, new JsonObject()
+                        .put(ZIMBRA_ID, id)
+                        .put(OPERATION, OP_DELETE));
+        actionRequest.setContent(content);
+        actionRequest.start(invalidateOnMissingFolder(userId, res -> {
+            if(res.succeeded()) {
+                pathCache.invalidateFolder(userId, absolutePath, true);
+            }
+            handler.handle(res);
+        }));
     }
 
+    /**
+     * Share the folder in read only mode. Grants already made are cached with folder ids.
+     * @param userId  owner of the folder
+     * @param grantee user the folder is shared with
+     * @param handler result handler
+     */
     public void shareFolderReadonly(String userId, String grantee, Handler<AsyncResult<JsonObject>> handler) {
+        pathCache.resolve(userId, FolderPathCache.grantKey(id, grantee), () -> {
+                    Promise<JsonObject> promise = Promise.promise();
+                    grantReadonly(userId, grantee, invalidateOnMissingFolder(userId, promise));
+                    return promise.future().map(grantee);
+                })
+                .<JsonObject>map(granted -> new JsonObject())
+                .onComplete(handler);
+    }
+
+    private void grantReadonly(String userId, String grantee, Handler<AsyncResult<JsonObject>> handler) {
         SoapRequest actionRequest = SoapRequest.MailSoapRequest(SoapConstants.FOLDER_ACTION_REQUEST, userId);
         JsonObject content = new JsonObject()
                 .put(ACTION, new JsonObject()
@@ -133,9 +250,7 @@ public class SoapFolder {
         actionRequest.setContent(content);
         actionRequest.start( reqRes -> {
             if(reqRes.failed()) {
-                JsonObject error = new JsonObject(reqRes.cause().getMessage());
-                String errorCode = error.getString(ERROR_CODE, "");
-                if (ERROR_GRANT_EXISTS.equals(errorCode)) {
+                if (ERROR_GRANT_EXISTS.equals(getErrorCode(reqRes.cause()))) {
                     handler.handle(Future.succeededFuture(new JsonObject()));
                 } else {
                     handler.handle(reqRes);
@@ -4,6 +4,7 @@ import fr.openent.zimbra.model.soap.SoapRequest;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.Promise;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
@@ -11,6 +12,7 @@ import io.vertx.core.logging.LoggerFactory;
 
 import static fr.openent.zimbra.model.constant.SoapConstants.*;
 import static fr.openent.zimbra.model.constant.ZimbraConstants.*;
+import static fr.openent.zimbra.model.constant.ZimbraErrors.ERROR_NOSUCHFOLDER;
 
 public class SoapMountpoint {
 
@@ -25,10 +27,28 @@ public class SoapMountpoint {
         createMountpoint(userId, name, parentFolderId, view, shareUserMail, shareFolderId, false, handler);
     }
 
+    /**
+     * Get a mountpoint, create it if it does not exist. Ids are cached with folder ids of the account.
+     */
     public static void getOrCreateMountpoint(String userId, String name, String parentFolderId, String view,
                                              String shareUserMail, String shareFolderId,
                                              Handler<AsyncResult<SoapMountpoint>> handler) {
-        createMountpoint(userId, name, parentFolderId, view, shareUserMail, shareFolderId, true, handler);
+        SoapFolder.pathCache.resolve(userId, FolderPathCache.mountpointKey(parentFolderId, name), () -> {
+                    Promise<SoapMountpoint> promise = Promise.promise();
+                    createMountpoint(userId, name, parentFolderId, view, shareUserMail, shareFolderId, true, res -> {
+                        if(res.failed() && ERROR_NOSUCHFOLDER.equals(SoapFolder.getErrorCode(res.cause()))) {
+                            SoapFolder.invalidatePathCache(userId);
+                        }
+                        promise.handle(res);
+                    });
+                    return promise.future().map(mountpoint -> mountpoint.id);
+                })
+                .map(mountpointId -> {
+                    SoapMountpoint mountpoint = new SoapMountpoint();
+                    mountpoint.id = mountpointId;
+                    return mountpoint;
+                })
+                .onComplete(handler);
     }
 
     @SuppressWarnings("SameParameterValue")
@@ -2,10 +2,14 @@ package fr.openent.zimbra.model.synchro.addressbook;
 
 import fr.openent.zimbra.model.constant.SynchroConstants;
 import fr.openent.zimbra.model.synchro.addressbook.contacts.Contact;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 class AddressBookFolder {
@@ -13,12 +17,21 @@ class AddressBookFolder {
 
     private SortedSet<Contact> contacts = new TreeSet<>(Contact.getComparator());
     private Map<String,AddressBookFolder> subFolders = new HashMap<>();
+    // Computed from csv chunks once contacts are loaded, the csv itself is built again for each import
+    private volatile String hash;
+    private volatile long csvSize = -1;
+    // Number of times the whole csv was built as one string, the streaming import must not build it
+    private final AtomicInteger csvBuilds = new AtomicInteger();
+
+    private static final int HASH_CHUNK_SIZE = 8192;
 
     private static Logger log = LoggerFactory.getLogger(AddressBookFolder.class);
 
 
     void addContact(Contact contact) {
         contacts.add(contact);
+        hash = null;
+        csvSize = -1;
     }
 
     AddressBookFolder getSubFolder(String folderName) {
@@ -35,19 +48,117 @@ class AddressBookFolder {
     }
 
     String getCsv() {
+        csvBuilds.incrementAndGet();
         StringBuilder stringBuilder = new StringBuilder(SynchroConstants.ABOOK_CSV_COLUMNS);
-        contacts.forEach( currentContact -> {
-            addCsvElem(stringBuilder, currentContact.getClasses());
-            addCsvElem(stringBuilder, currentContact.getStructure());
-            addCsvElem(stringBuilder, currentContact.getEmail());
-            addCsvElem(stringBuilder, currentContact.getFirstName());
-            addCsvElem(stringBuilder, currentContact.getDisplayName());
-            addCsvElem(stringBuilder, currentContact.getFunctions());
-            addLastCsvElem(stringBuilder, currentContact.getLastName());
-        });
+        contacts.forEach( currentContact -> addCsvRow(stringBuilder, currentContact));
         return stringBuilder.toString();
     }
 
+    int getCsvBuilds() {
+        return csvBuilds.get();
+    }
+
+    /**
+     * Csv of this folder, built row by row while chunks are consumed.
+     * Unlike getCsv, the whole csv is never held in memory.
+     * A chunk is at most maxChunkSize bytes, unless a single row is bigger.
+     * @param maxChunkSize max size of a chunk, in bytes
+     * @return chunks of the folder csv, header first
+     */
+    Iterator<Buffer> getCsvChunks(int maxChunkSize) {
+        Iterator<Contact> contactIterator = contacts.iterator();
+        return new Iterator<Buffer>() {
+            private Buffer pendingRow = Buffer.buffer(SynchroConstants.ABOOK_CSV_COLUMNS);
+
+            @Override
+            public boolean hasNext() {
+                return pendingRow != null;
+            }
+
+            @Override
+            public Buffer next() {
+                if(pendingRow == null) {
+                    throw new NoSuchElementException();
+                }
+                Buffer chunk = Buffer.buffer(maxChunkSize).appendBuffer(pendingRow);
+                pendingRow = null;
+                while(contactIterator.hasNext()) {
+                    StringBuilder row = new StringBuilder();
+                    addCsvRow(row, contactIterator.next());
+                    Buffer rowBuffer = Buffer.buffer(row.toString());
+                    if(chunk.length() + rowBuffer.length() > maxChunkSize) {
+                        pendingRow = rowBuffer;
+                        break;
+                    }
+                    chunk.appendBuffer(rowBuffer);
+                }
+                return chunk;
+            }
+        };
+    }
+
+    private void addCsvRow(StringBuilder stringBuilder, Contact contact) {
+        addCsvElem(stringBuilder, contact.getClasses());
+        addCsvElem(stringBuilder, contact.getStructure());
+        addCsvElem(stringBuilder, contact.getEmail());
+        addCsvElem(stringBuilder, contact.getFirstName());
+        addCsvElem(stringBuilder, contact.getDisplayName());
+        addCsvElem(stringBuilder, contact.getFunctions());
+        addLastCsvElem(stringBuilder, contact.getLastName());
+    }
+
+    /**
+     * Hash of the contacts of this folder, subfolders are not included
+     * @return hex encoded SHA-256 of the folder csv
+     */
+    String getHash() {
+        String folderHash = hash;
+        if(folderHash == null) {
+            folderHash = buildHash();
+            hash = folderHash;
+        }
+        return folderHash;
+    }
+
+    /**
+     * @return size of the folder csv in bytes, known once the hash is computed, computed on demand otherwise
+     */
+    long getCsvSize() {
+        long size = csvSize;
+        if(size < 0) {
+            size = 0;
+            Iterator<Buffer> chunks = getCsvChunks(HASH_CHUNK_SIZE);
+            while(chunks.hasNext()) {
+                size += chunks.next().length();
+            }
+            csvSize = size;
+        }
+        return size;
+    }
+
+    private String buildHash() {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            long size = 0;
+            Iterator<Buffer> chunks = getCsvChunks(HASH_CHUNK_SIZE);
+            while(chunks.hasNext()) {
+                byte[] chunk = chunks.next().getBytes();
+                messageDigest.update(chunk);
+                size += chunk.length;
+            }
+            csvSize = size;
+            byte[] digest = messageDigest.digest();
+            StringBuilder hash = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hash.append(String.format("%02x", b));
+            }
+            return hash.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is available on every JVM
+            throw new IllegalStateException(e);
+        }
+    }
+
     private void addCsvElem(StringBuilder sb, String elem) {
         addCsvElem(sb, elem, false);
     }
@@ -18,16 +18,19 @@
 package fr.openent.zimbra.model.synchro.addressbook;
 
 import fr.openent.zimbra.Zimbra;
+import fr.openent.zimbra.helper.AsyncLimiter;
+import fr.openent.zimbra.helper.ServiceManager;
 import fr.openent.zimbra.model.soap.model.SoapContactFolder;
 import fr.openent.zimbra.model.soap.model.SoapFolder;
+import fr.openent.zimbra.service.data.SoapZimbraService;
+import fr.openent.zimbra.service.data.SqlAddressBookService;
 import io.vertx.core.*;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static fr.openent.zimbra.model.constant.ZimbraConstants.*;
 
@@ -37,6 +40,23 @@ class AddressBookZimbraSynchro {
     private String uai;
     private String structureRootFolderPath;
     private String rootFolderName;
+
+    // Incremental mode : only folders whose content hash changed since last synchronization are re-imported
+    private final boolean incremental;
+    private final SqlAddressBookService sqlAddressBookService;
+    private boolean fullSync = true;
+    private Map<String,String> previousHashes = new HashMap<>();
+    private final Map<String,String> currentHashes = new ConcurrentHashMap<>();
+
+    // Folders of this address book imported at the same time, and folders imported each second by all synchronizations
+    private final AsyncLimiter folderLimiter;
+    private final AsyncLimiter rateLimiter;
+
+    private final boolean streamingImport;
+    private final SoapZimbraService soapService;
+    private static final String CSV_CONTENT_TYPE = "text/csv";
+    private static final String CSV_FILE_NAME = "contacts.csv";
+
     private static Logger log = LoggerFactory.getLogger(AddressBookZimbraSynchro.class);
 
     AddressBookZimbraSynchro(String userId, String uai, String name) {
@@ -48,6 +68,13 @@ class AddressBookZimbraSynchro {
         } else  {
             this.structureRootFolderPath = rootFolderName + "/" + name;
         }
+        this.incremental = Zimbra.appConfig.isAddressBookIncrementalSynchro();
+        ServiceManager serviceManager = ServiceManager.getServiceManager();
+        this.sqlAddressBookService = serviceManager.getSqlAddressBookService();
+        this.folderLimiter = new AsyncLimiter(serviceManager.getVertx(), Zimbra.appConfig.getAddressBookFolderConcurrency(), 0);
+        this.rateLimiter = serviceManager.getAddressBookRateLimiter();
+        this.streamingImport = Zimbra.appConfig.isAddressBookStreamingImport();
+        this.soapService = serviceManager.getSoapService();
     }
 
     void initSync(Handler<AsyncResult<JsonObject>> handler) {
@@ -60,7 +87,11 @@ class AddressBookZimbraSynchro {
                        handler.handle(Future.failedFuture(resSubfolder.cause()));
                    } else {
                        SoapFolder zimbraFolder = resSubfolder.result();
-                       zimbraFolder.emptyFolder(userId, handler);
+                       if(!incremental) {
+                           zimbraFolder.emptyFolder(userId, handler);
+                       } else {
+                           initIncrementalSync(zimbraFolder, handler);
+                       }
                    }
                });
            }
@@ -68,16 +99,77 @@ class AddressBookZimbraSynchro {
     }
 
 
+    /**
+     * Load hashes stored during last synchronization.
+     * If there are none, the address book is emptied and completely imported, like in non incremental mode.
+     */
+    private void initIncrementalSync(SoapFolder zimbraFolder, Handler<AsyncResult<JsonObject>> handler) {
+        sqlAddressBookService.getFolderHashes(userId, structureRootFolderPath).onComplete(hashesRes -> {
+            if(hashesRes.succeeded() && !hashesRes.result().isEmpty()) {
+                fullSync = false;
+                previousHashes = hashesRes.result();
+                handler.handle(Future.succeededFuture(new JsonObject()));
+            } else {
+                zimbraFolder.emptyFolder(userId, handler);
+            }
+        });
+    }
+
+
     public void sync(Map<String,AddressBookFolder> folders, Handler<AsyncResult<JsonObject>> handler) {
         syncSubFolders(structureRootFolderPath, folders, res -> {
             if(res.failed()) {
                 log.error("AddrBookSync : Error in the function syncSubFolders when syncing etab " + uai + " for user " + userId,
                         res.cause());
+                handler.handle(res);
+            } else if(incremental) {
+                // Hashes are only saved when every folder is synchronized, failed folders are re-imported next time
+                deleteRemovedFolders()
+                        .compose(v -> sqlAddressBookService.replaceFolderHashes(userId, structureRootFolderPath, currentHashes))
+                        .onComplete(endRes -> {
+                            if(endRes.failed()) {
+                                log.error("AddrBookSync : Error when saving folder hashes of etab " + uai + " for user " + userId,
+                                        endRes.cause());
+                            }
+                            handler.handle(res);
+                        });
+            } else {
+                handler.handle(res);
             }
-            handler.handle(res);
         });
     }
 
+    /**
+     * Delete Zimbra folders synchronized last time that are not in the address book anymore.
+     * Only the highest removed folder of a branch is deleted, subfolders are deleted with it.
+     */
+    private Future<Void> deleteRemovedFolders() {
+        List<String> removedPaths = new ArrayList<>();
+        previousHashes.keySet().stream()
+                .filter(path -> !currentHashes.containsKey(path))
+                .sorted()
+                .forEach(path -> {
+                    if(removedPaths.stream().noneMatch(removed -> path.startsWith(removed + "/"))) {
+                        removedPaths.add(path);
+                    }
+                });
+
+        List<Future<?>> deleteFutures = new ArrayList<>();
+        for(String path : removedPaths) {
+            Promise<JsonObject> deletePromise = Promise.promise();
+            deleteFutures.add(deletePromise.future());
+            SoapFolder.getFolderByPath(userId, path, VIEW_CONTACT, 0, resFolder -> {
+                if(resFolder.failed()) {
+                    // Folder already deleted in Zimbra
+                    deletePromise.complete();
+                } else {
+                    resFolder.result().deleteFolder(userId, deletePromise);
+                }
+            });
+        }
+        return Future.all(deleteFutures).mapEmpty();
+    }
+
     private void syncSubFolders(String path, Map<String,AddressBookFolder> subFolders,
                                 Handler<AsyncResult<JsonObject>> handler) {
         List<Future<?>> folderFutures = new ArrayList<>();
@@ -96,20 +188,73 @@ class AddressBookZimbraSynchro {
         });
     }
 
+    /**
+     * Import a folder, then its subfolders.
+     * Imports are limited by folderLimiter and rateLimiter, subfolders are only queued once their parent is imported.
+     */
     private void syncFolder(String path, AddressBookFolder folder, Handler<AsyncResult<JsonObject>> handler) {
-        SoapFolder.createFolderByPath(userId, path, VIEW_CONTACT, resCreateFolder -> {
-            if(resCreateFolder.failed()) {
-                handler.handle(Future.failedFuture(resCreateFolder.cause()));
+        Future<JsonObject> folderSynced;
+        String hash = incremental ? folder.getHash() : null;
+        if(hash != null && hash.equals(previousHashes.get(path))) {
+            currentHashes.put(path, hash);
+            folderSynced = Future.succeededFuture(new JsonObject());
+        } else {
+            folderSynced = folderLimiter.execute(() -> rateLimiter.execute(() -> importFolder(path, folder)));
+        }
+        folderSynced.onComplete(res -> {
+            if(res.failed()) {
+                handler.handle(res);
             } else {
-                String folderId = resCreateFolder.result().getId();
-                SoapContactFolder.importContactsFromCsv(userId, folderId, folder.getCsv(), res -> {
-                    if(res.failed()) {
-                        handler.handle(res);
+                syncSubFolders(path, folder.getSubFolders(), handler);
+            }
+        });
+    }
+
+    private Future<JsonObject> importFolder(String path, AddressBookFolder folder) {
+        Promise<JsonObject> promise = Promise.promise();
+        if(!incremental) {
+            SoapFolder.createFolderByPath(userId, path, VIEW_CONTACT, resCreateFolder -> {
+                if(resCreateFolder.failed()) {
+                    promise.fail(resCreateFolder.cause());
+                } else {
+                    importContacts(folder, resCreateFolder.result().getId(), promise);
+                }
+            });
+            return promise.future();
+        }
+
+        String hash = folder.getHash();
+        SoapFolder.getOrCreateFolderByPath(userId, path, VIEW_CONTACT, resFolder -> {
+            if(resFolder.failed()) {
+                promise.fail(resFolder.cause());
+            } else if(fullSync) {
+                currentHashes.put(path, hash);
+                importContacts(folder, resFolder.result().getId(), promise);
+            } else {
+                // Only contacts are removed, unchanged subfolders are kept
+                SoapFolder zimbraFolder = resFolder.result();
+                zimbraFolder.emptyFolder(userId, false, resEmpty -> {
+                    if(resEmpty.failed()) {
+                        promise.handle(resEmpty);
                     } else {
-                        syncSubFolders(path, folder.getSubFolders(), handler);
+                        currentHashes.put(path, hash);
+                        importContacts(folder, zimbraFolder.getId(), promise);
                     }
                 });
             }
         });
+        return promise.future();
+    }
+
+    private void importContacts(AddressBookFolder folder, String folderId, Handler<AsyncResult<JsonObject>> handler) {
+        if(!streamingImport) {
+            SoapContactFolder.importContactsFromCsv(userId, folderId, folder.getCsv(), handler);
+            return;
+        }
+        // Csv is written to Zimbra upload servlet while it is built, then imported by its upload id
+        int chunkSize = Zimbra.appConfig.getAddressBookUploadChunkSize();
+        soapService.uploadStream(userId, CSV_CONTENT_TYPE, CSV_FILE_NAME, folder.getCsvChunks(chunkSize), chunkSize)
+                .onFailure(err -> handler.handle(Future.failedFuture(err)))
+                .onSuccess(uploadId -> SoapContactFolder.importContactsFromUpload(userId, folderId, uploadId, handler));
     }
 }
@@ -49,6 +49,7 @@ public class RecallTask extends Task<RecallTask> {
         return receiverId;
     }
 
+    @Override
     public int getRetry() {
         return retry;
     }
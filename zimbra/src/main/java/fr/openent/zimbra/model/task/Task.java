@@ -67,4 +67,11 @@ public abstract class Task<T extends Task<T>> {
     public Date getLastUpdated() {
         return this.lastUpdated;
     }
+
+    /**
+     * @return number of times this task already failed and was launched again
+     */
+    public int getRetry() {
+        return 0;
+    }
 }
@@ -19,20 +19,32 @@ package fr.openent.zimbra.service;
 
 import fr.openent.zimbra.model.Group;
 import fr.openent.zimbra.model.ZimbraUser;
+import fr.openent.zimbra.helper.FutureHelper;
 import fr.wseduc.webutils.Either;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.Promise;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.BiConsumer;
 
 public abstract class DbMailService {
 
     public static final String ZIMBRA_NAME = "mailzimbra";
     public static final String NEO4J_UID = "uuidneo";
 
+    // Notified with the Zimbra addresses of users whose mapping was updated
+    protected Handler<Collection<String>> usersUpdatedHandler;
+
+    public void setUsersUpdatedHandler(Handler<Collection<String>> usersUpdatedHandler) {
+        this.usersUpdatedHandler = usersUpdatedHandler;
+    }
+
     protected String getUserNameFromMail(String mail) {
         return mail.split("@")[0];
     }
@@ -44,6 +56,76 @@ public abstract class DbMailService {
      */
     public abstract void getNeoIdFromMail(String mail, Handler<Either<String, JsonArray>> handler);
 
+    /**
+     * Get users and groups uuids from a list of mails in database
+     * Default implementation requests each mail separately, override it with a bulk request when possible
+     * @param mails Zimbra mails
+     * @param handler result handler, each result contains mail, uuid and type :
+     *                [{"mailzimbra" : mail, "uuidneo" : uuid, "type" : "user" or "group"}]
+     */
+    public void getNeoIdsFromMails(List<String> mails, Handler<Either<String, JsonArray>> handler) {
+        List<Future<JsonArray>> futures = new ArrayList<>();
+        for (String mail : mails) {
+            Promise<JsonArray> promise = Promise.promise();
+            futures.add(promise.future());
+            getNeoIdFromMail(mail, res -> {
+                JsonArray mailResults = new JsonArray();
+                if (res.isRight()) {
+                    res.right().getValue().forEach(o -> {
+                        if (o instanceof JsonObject) mailResults.add(((JsonObject) o).copy().put(ZIMBRA_NAME, mail));
+                    });
+                }
+                promise.complete(mailResults);
+            });
+        }
+        FutureHelper.all(futures).onComplete(res -> {
+            JsonArray results = new JsonArray();
+            futures.forEach(future -> results.addAll(future.result()));
+            handler.handle(new Either.Right<>(results));
+        });
+    }
+
+    /**
+     * Get Zimbra mails of several users and groups
+     * Returns rows { "uuidneo" : id, "mailzimbra" : mail, "type" : "user" or "group" }
+     * Default implementation queries ids one by one
+     *
+     * @param userIds  Users uuids
+     * @param groupIds Groups uuids
+     * @param handler  result handler
+     */
+    public void getMailsFromIds(List<String> userIds, List<String> groupIds, Handler<Either<String, JsonArray>> handler) {
+        List<Future<JsonArray>> futures = new ArrayList<>();
+        for (String userId : userIds) {
+            futures.add(getMailsFromId(userId, "user", this::getUserMailFromId));
+        }
+        for (String groupId : groupIds) {
+            futures.add(getMailsFromId(groupId, "group", this::getGroupMailFromId));
+        }
+        FutureHelper.all(futures).onComplete(res -> {
+            JsonArray results = new JsonArray();
+            futures.forEach(future -> results.addAll(future.result()));
+            handler.handle(new Either.Right<>(results));
+        });
+    }
+
+    private Future<JsonArray> getMailsFromId(String id, String type,
+                                             BiConsumer<String, Handler<Either<String, JsonArray>>> query) {
+        Promise<JsonArray> promise = Promise.promise();
+        query.accept(id, res -> {
+            JsonArray idResults = new JsonArray();
+            if (res.isRight()) {
+                res.right().getValue().forEach(o -> {
+                    if (o instanceof JsonObject) {
+                        idResults.add(((JsonObject) o).copy().put(NEO4J_UID, id).put("type", type));
+                    }
+                });
+            }
+            promise.complete(idResults);
+        });
+        return promise.future();
+    }
+
     /**
      * Get user mail from uuid in database
      * @param uuid User uuid
@@ -1,6 +1,7 @@
 package fr.openent.zimbra.service.data;
 
 import fr.openent.zimbra.helper.AsyncHelper;
+import fr.openent.zimbra.helper.StoreMetrics;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.json.JsonArray;
@@ -63,7 +64,7 @@ public class Neo4jAddrbookService {
         JsonObject params = new JsonObject()
                 .put("uai", uai);
 
-        neo.execute(query, params, validResultHandler(AsyncHelper.getJsonArrayEitherHandler(handler)));
+        neo.execute(query, params, StoreMetrics.neo4j("addressBook.getAllUsersFromStructure", validResultHandler(AsyncHelper.getJsonArrayEitherHandler(handler))));
     }
 
     @SuppressWarnings("SameParameterValue")
@@ -116,7 +117,7 @@ public class Neo4jAddrbookService {
         JsonObject params = new JsonObject()
                 .put("uai", uai);
 
-        neo.execute(query, params, validResultHandler(AsyncHelper.getJsonArrayEitherHandler(handler)));
+        neo.execute(query, params, StoreMetrics.neo4j("addressBook.getAllGroupsFromStructure", validResultHandler(AsyncHelper.getJsonArrayEitherHandler(handler))));
     }
 
     /*
@@ -204,6 +205,6 @@ public class Neo4jAddrbookService {
 
         String query = queryGeneric + " UNION " + queryRelative;
 
-        neo.execute(query, params, validResultHandler(AsyncHelper.getJsonArrayEitherHandler(handler)));
+        neo.execute(query, params, StoreMetrics.neo4j("addressBook.getVisibles", validResultHandler(AsyncHelper.getJsonArrayEitherHandler(handler))));
     }
 }
@@ -21,6 +21,7 @@ package fr.openent.zimbra.service.data;
 import fr.openent.zimbra.core.constants.Field;
 import fr.openent.zimbra.helper.AsyncHelper;
 import fr.openent.zimbra.helper.PromiseHelper;
+import fr.openent.zimbra.helper.StoreMetrics;
 import fr.openent.zimbra.model.synchro.Structure;
 import fr.openent.zimbra.service.impl.CommunicationService;
 import fr.openent.zimbra.service.impl.ZimbraAdminService;
@@ -71,7 +72,7 @@ public class Neo4jZimbraService {
 				+ "case when 'User' in labels(v) then '" + TYPE_USER + "' "
 				+ "when 'Group' in labels(v) then '" + TYPE_GROUP + "' end as type";
 
-		neo.execute(query, new JsonObject().put("ids", idList), validResultHandler(handler));
+		neo.execute(query, new JsonObject().put("ids", idList), StoreMetrics.neo4j("user.getIdsType", validResultHandler(handler)));
 	}
 
 	public void hasExternalCommunicationRole(String userId, Handler<AsyncResult<JsonObject>> handler) {
@@ -82,7 +83,7 @@ public class Neo4jZimbraService {
 		JsonObject params = new JsonObject()
 				.put("userId", userId)
 				.put("roleName", ZimbraAdminService.ROLE_NAME);
-		neo.execute(query, params, validUniqueResultHandler(AsyncHelper.getJsonObjectEitherHandler(handler)));
+		neo.execute(query, params, StoreMetrics.neo4j("user.hasExternalCommunicationRole", validUniqueResultHandler(AsyncHelper.getJsonObjectEitherHandler(handler))));
 	}
 
 	public void checkUserCommunication(String senderId, String recipientId, Handler<Either<String,JsonObject>> handler) {
@@ -96,7 +97,7 @@ public class Neo4jZimbraService {
 				.put("senderId", senderId)
 				.put("recipientId", recipientId);
 
-		neo.execute(query, params, validUniqueResultHandler(handler));
+		neo.execute(query, params, StoreMetrics.neo4j("user.checkUserCommunication", validUniqueResultHandler(handler)));
 	}
 
 	public void checkGroupCommunication(String senderId, String recipientId, Handler<Either<String,JsonObject>> handler) {
@@ -111,7 +112,7 @@ public class Neo4jZimbraService {
 				.put("senderId", senderId)
 				.put("recipientId", recipientId);
 
-		neo.execute(query, params, validUniqueResultHandler(handler));
+		neo.execute(query, params, StoreMetrics.neo4j("user.checkGroupCommunication", validUniqueResultHandler(handler)));
 	}
 
 	/**
@@ -147,7 +148,7 @@ public class Neo4jZimbraService {
 		query.append(", collect(distinct s.UAI) as structures")
 				.append(" , CASE WHEN size(u.classes) > 0  THEN  last(collect(u.classes)) END as classes")
 				.append(" , collect(distinct {groupName:g.name, groupId:g.id}) as groups");
-		neo.execute(query.toString(), params, validUniqueResultHandler(AsyncHelper.getJsonObjectEitherHandler(handler)));
+		neo.execute(query.toString(), params, StoreMetrics.neo4j("user.getUserFromNeo4j", validUniqueResultHandler(AsyncHelper.getJsonObjectEitherHandler(handler))));
 	}
 
 	public void getGroupFromNeo4j(String id, Handler<AsyncResult<JsonObject>> handler) {
@@ -158,7 +159,7 @@ public class Neo4jZimbraService {
 				+ "g.name as " + GROUP_NAME;
 		JsonObject params = new JsonObject().put(Field.ID, id);
 
-		neo.execute(query, params, validUniqueResultHandler(AsyncHelper.getJsonObjectEitherHandler(handler)));
+		neo.execute(query, params, StoreMetrics.neo4j("user.getGroupFromNeo4j", validUniqueResultHandler(AsyncHelper.getJsonObjectEitherHandler(handler))));
 	}
 
 	public void getUserFilterAndStructuresFromNeo4j(String userId, Handler<AsyncResult<List<Structure>>> handler) {
@@ -178,7 +179,7 @@ public class Neo4jZimbraService {
 
 		neo.execute(query,
 				new JsonObject().put("userId", userId).put("limit",appConfig.getStructureToSynchroABLimit()),
-				validResultHandler( res -> {
+				StoreMetrics.neo4j("user.getUserFilterAndStructuresFromNeo4j", validResultHandler( res -> {
 					if(res.isLeft()) {
 						handler.handle(Future.failedFuture(res.left().getValue()
 						));
@@ -192,7 +193,7 @@ public class Neo4jZimbraService {
 						});
 						handler.handle(Future.succeededFuture(structureList));
 					}
-				}));
+				})));
 	}
 
 	public void checkIfIdGroupFromNeo4j(String idToCheck, Handler<Either<String, JsonObject>> handler) {
@@ -204,7 +205,7 @@ public class Neo4jZimbraService {
 
 		JsonObject params = new JsonObject().put("idToCheck", idToCheck);
 
-		neo.execute(query, params, validUniqueResultHandler(handler));
+		neo.execute(query, params, StoreMetrics.neo4j("user.checkIfIdGroupFromNeo4j", validUniqueResultHandler(handler)));
 	}
 
 	public Future<JsonArray> listAdml(List<String> structuresId) {
@@ -223,6 +224,6 @@ public class Neo4jZimbraService {
 						"RETURN collect(distinct u.id) as admls, n.id  as structure;";
 		JsonObject params = new JsonObject();
 		params.put(Field.STRUCTURESID, structuresId);
-		neo.execute(query, params, validResultHandler(result));
+		neo.execute(query, params, StoreMetrics.neo4j("user.listAdml", validResultHandler(result)));
 	}
 }
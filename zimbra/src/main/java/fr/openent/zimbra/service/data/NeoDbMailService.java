@@ -19,6 +19,7 @@ package fr.openent.zimbra.service.data;
 
 import fr.openent.zimbra.core.constants.Field;
 import fr.openent.zimbra.helper.AsyncHelper;
+import fr.openent.zimbra.helper.StoreMetrics;
 import fr.openent.zimbra.model.Group;
 import fr.openent.zimbra.model.ZimbraUser;
 import fr.openent.zimbra.model.constant.SynchroConstants;
@@ -76,7 +77,7 @@ public class NeoDbMailService extends DbMailService {
 
         String query = queryUserEmail + " UNION " + queryUserId + " UNION " + queryGroup;
 
-        neo.execute(query, new JsonObject().put("mail", mail).put("idmail", id), validUniqueResultToJArrayHandler(handler));
+        neo.execute(query, new JsonObject().put("mail", mail).put("idmail", id), StoreMetrics.neo4j("mail.getNeoIdFromMail", validUniqueResultToJArrayHandler(handler)));
     }
 
     @Override
@@ -84,7 +85,7 @@ public class NeoDbMailService extends DbMailService {
         String query = "MATCH (u:User) " +
                 "WHERE u.id = {uuid} AND u.emailInternal is not null " +
                 "RETURN u.emailInternal as " + ZIMBRA_NAME;
-        neo.execute(query, new JsonObject().put("uuid", uuid), validUniqueResultToJArrayHandler(handler));
+        neo.execute(query, new JsonObject().put("uuid", uuid), StoreMetrics.neo4j("mail.getUserMailFromId", validUniqueResultToJArrayHandler(handler)));
     }
 
     @Override
@@ -92,7 +93,7 @@ public class NeoDbMailService extends DbMailService {
         String query = "MATCH (g:Group) " +
                 "WHERE g.id = {uuid}  AND g.emailInternal is not null " +
                 "RETURN g.emailInternal as " + ZIMBRA_NAME;
-        neo.execute(query, new JsonObject().put("uuid", uuid), validUniqueResultToJArrayHandler(handler));
+        neo.execute(query, new JsonObject().put("uuid", uuid), StoreMetrics.neo4j("mail.getGroupMailFromId", validUniqueResultToJArrayHandler(handler)));
     }
 
     private Handler<Message<JsonObject>> validUniqueResultToJArrayHandler(
@@ -205,7 +206,7 @@ public class NeoDbMailService extends DbMailService {
         JsonArray idList = new JsonArray();
         groups.forEach( t ->  idList.add(t.getId()) );
         neo.execute(query, new JsonObject().put("groupids", idList),
-                validResultHandler(AsyncHelper.getJsonArrayEitherHandler(handler)));
+                StoreMetrics.neo4j("mail.checkGroupsExistence", validResultHandler(AsyncHelper.getJsonArrayEitherHandler(handler))));
     }
 
     @Override
@@ -20,10 +20,14 @@ package fr.openent.zimbra.service.data;
 import fr.openent.zimbra.Zimbra;
 import fr.openent.zimbra.core.constants.Field;
 import fr.openent.zimbra.helper.AsyncHelper;
+import fr.openent.zimbra.helper.BoundedCache;
 import fr.openent.zimbra.helper.ConfigManager;
-import fr.openent.zimbra.helper.HttpClientHelper;
+import fr.openent.zimbra.helper.HttpClientPool;
+import fr.openent.zimbra.helper.MetricsRegistry;
 import fr.openent.zimbra.helper.PreauthHelper;
 import fr.openent.zimbra.model.constant.SoapConstants;
+import fr.openent.zimbra.model.soap.SoapBatchHelper;
+import fr.openent.zimbra.model.soap.SoapResponseParser;
 import fr.openent.zimbra.service.impl.SlackService;
 import fr.openent.zimbra.service.impl.UserInfoService;
 import fr.openent.zimbra.service.impl.UserService;
@@ -31,10 +35,11 @@ import fr.openent.zimbra.service.synchro.SynchroUserService;
 import fr.wseduc.webutils.Either;
 import io.vertx.circuitbreaker.CircuitBreaker;
 import io.vertx.circuitbreaker.CircuitBreakerOptions;
+import io.vertx.circuitbreaker.CircuitBreakerState;
 import io.vertx.core.*;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.*;
 import io.vertx.core.http.impl.headers.HeadersMultiMap;
-import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
@@ -43,8 +48,15 @@ import org.entcore.common.cache.CacheService;
 import org.entcore.common.user.UserInfos;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static fr.openent.zimbra.model.constant.SoapConstants.COOKIE_AUTH_TOKEN;
 import static fr.openent.zimbra.model.constant.SoapConstants.HEADER_COOKIE;
@@ -60,9 +72,14 @@ public class SoapZimbraService {
     private static final Logger log = LoggerFactory.getLogger(SoapZimbraService.class);
     private UserService userService;
     private SynchroUserService synchroUserService;
-    private HttpClient httpClient = null;
+    private HttpClientPool httpClientPool = null;
+    private HttpClientPool uploadPool;
 
     private static Map<String, JsonObject> authedUsers;
+    // Local cache in front of cache service, auth tokens expire at most LIFETIME_OFFSET after being cached
+    private final BoundedCache<String, JsonObject> localTokenCache;
+    // Authentications in progress, shared by all requests waiting for the same token
+    private final Map<String, Future<JsonObject>> pendingAuthentications = new HashMap<>();
     private static final String MAP_AUTH_TOKEN = "authToken";
     private static final String CACHE_AUTH_TOKEN_NAME = "zimbra_authToken";
     private static final String MAP_LIFETIME = "lifetime";
@@ -75,6 +92,9 @@ public class SoapZimbraService {
     private static final String PARAM_CONTENT = "content";
     private static final String PARAM_AUTH_TOKEN = "authToken";
     private static final String PARAM_IS_AUTH = "isAuthRequest";
+    private static final String PARAM_TARGET_ACCOUNT = "targetAccount";
+    public static final String PARAM_RESPONSE_PATHS = "responsePaths";
+    private static final String CHANGE_TOKEN_PATH = "Header.context.change";
 
     public static final String ERROR_CODE = "code";
     public static final String ERROR_MESSAGE = "message";
@@ -82,6 +102,10 @@ public class SoapZimbraService {
     private String zimbraUri;
     private String zimbraAdminUri;
     private static final String URI_SOAP = "/service/soap";
+    private static final String URI_UPLOAD = "/service/upload?fmt=extended,raw";
+    private static final Pattern UPLOAD_ID_PATTERN = Pattern.compile("^200,.*\"aid\"\\s*:\\s*\"([^\"]*)\"", Pattern.DOTALL);
+
+    private String zimbraUploadUri;
 
     private String zimbraAdminAccount;
     private String zimbraAdminPassword;
@@ -90,17 +114,51 @@ public class SoapZimbraService {
 
     private CircuitBreaker breaker;
 
+    private final MetricsRegistry metrics = MetricsRegistry.getInstance();
+    private static final String METRIC_SOAP_DURATION = "zimbra_soap_request_duration_seconds";
+    private static final String METRIC_SOAP_ERRORS = "zimbra_soap_request_errors_total";
+    private static final String METRIC_BREAKER_STATE = "zimbra_circuit_breaker_state";
+    private static final String METRIC_BREAKER_TRANSITIONS = "zimbra_circuit_breaker_transitions_total";
+    private static final String METRIC_AUTH_CACHE = "zimbra_auth_token_cache_requests_total";
+    private static final String METRIC_LABEL_NAME = "name";
+    private static final String METRIC_LABEL_REQUEST = "request";
+
+    private final long responseMaxSize;
+
+    private final boolean batchEnabled;
+    private final long batchWindow;
+    private final int batchMaxSize;
+    private final Map<String, PendingBatch> pendingBatches = new HashMap<>();
+
+    private final List<BiConsumer<String, Long>> changeTokenListeners = new CopyOnWriteArrayList<>();
+
     public SoapZimbraService(Vertx vertx, CacheService cacheService, SlackService slackService, CircuitBreakerOptions cbOptions) {
+        this(vertx, cacheService, slackService, cbOptions, null);
+    }
+
+    /**
+     * @param uploadPool pool used by uploads, shared with the other services uploading to Zimbra,
+     *                   null to create one on first upload
+     */
+    public SoapZimbraService(Vertx vertx, CacheService cacheService, SlackService slackService, CircuitBreakerOptions cbOptions,
+                             HttpClientPool uploadPool) {
+        this.uploadPool = uploadPool;
         this.userService = null;
         this.synchroUserService = null;
 
         ConfigManager config = Zimbra.appConfig;
         String zimbraBaseUri = config.getZimbraUri();
         this.zimbraUri = zimbraBaseUri + URI_SOAP;
+        this.zimbraUploadUri = zimbraBaseUri + URI_UPLOAD;
         this.zimbraAdminUri = config.getZimbraAdminUri();
         this.zimbraAdminAccount = config.getZimbraAdminAccount();
         this.zimbraAdminPassword = config.getZimbraAdminPassword();
         this.preauthKey = config.getPreauthKey();
+        this.responseMaxSize = config.getSoapResponseMaxSize() * 1024L * 1024L;
+        this.batchEnabled = config.isSoapBatchEnabled();
+        this.batchWindow = Math.max(1L, config.getSoapBatchWindow());
+        this.batchMaxSize = config.getSoapBatchMaxSize();
+        this.localTokenCache = new BoundedCache<>(config.getAuthTokenLocalCacheSize(), LIFETIME_OFFSET);
         this.vertx = vertx;
 
         // If cache service is null, use authedUsers map
@@ -115,12 +173,19 @@ public class SoapZimbraService {
             String message = "Zimbra circuit breaker " + this.breaker.name() + " opened";
             slackService.sendMessage(message);
             log.info(message);
+            recordBreakerTransition(CircuitBreakerState.OPEN);
         });
+        this.breaker.halfOpenHandler(v -> recordBreakerTransition(CircuitBreakerState.HALF_OPEN));
         this.breaker.closeHandler(v -> {
             String message = "Closing " + this.breaker.name() + " circuit breaker";
             slackService.sendMessage(message);
             log.info(message);
+            recordBreakerTransition(CircuitBreakerState.CLOSED);
         });
+        metrics.registerGauge(METRIC_BREAKER_STATE,
+                "State of the circuit breaker : 0 closed, 1 half open, 2 open",
+                this::getBreakerStateValue,
+                METRIC_LABEL_NAME, this.breaker.name());
     }
 
     public void setServices(UserService us, SynchroUserService synchroUserService) {
@@ -128,6 +193,38 @@ public class SoapZimbraService {
         this.synchroUserService = synchroUserService;
     }
 
+    /**
+     * Register a listener notified with the user id and the mailbox change token of each successful user request
+     * @param listener listener
+     */
+    public void addChangeTokenListener(BiConsumer<String, Long> listener) {
+        changeTokenListeners.add(listener);
+    }
+
+    private void notifyChangeToken(JsonObject params, String userId, JsonObject result) {
+        if (changeTokenListeners.isEmpty() || params.getBoolean(PARAM_ISADMIN, false)) return;
+        Long changeToken = getChangeToken(result);
+        if (changeToken != null) {
+            changeTokenListeners.forEach(listener -> listener.accept(userId, changeToken));
+        }
+    }
+
+    /**
+     * Get the mailbox change token from the header of a soap response
+     * @param result soap response
+     * @return change token, or null if the response has none
+     */
+    public static Long getChangeToken(JsonObject result) {
+        try {
+            Object token = result.getJsonObject("Header").getJsonObject("context")
+                    .getJsonObject("change").getValue("token");
+            return token instanceof Number ? ((Number) token).longValue() : Long.parseLong(token.toString());
+        } catch (Exception ignored) {
+            // no change token in response
+            return null;
+        }
+    }
+
     /**
      * Add generic info to Json before sending to Zimbra
      * {
@@ -138,6 +235,8 @@ public class SoapZimbraService {
      * "authToken" : params.authToken
      * // Else send empty content
      * "_content" : [{"nosession" : {}}]
+     * // If params.targetAccount exists, act on the mailbox of this account :
+     * "account" : {"by" : "name", "_content" : params.targetAccount}
      * },
      * "format" : {
      * "type" : "js"
@@ -155,6 +254,7 @@ public class SoapZimbraService {
      *               "content" : data for the request,
      *               "isAuthRequest" : [optional] boolean indicating if it is an authRequest, defaults to false
      *               "isAdmin" : boolean indicating if admin auth must be used
+     *               "targetAccount" : [optional] address of the account whose mailbox is accessed with admin auth
      *               }
      * @return Complete Json to send
      */
@@ -169,6 +269,11 @@ public class SoapZimbraService {
         } else {
             context.put(PARAM_AUTH_TOKEN, params.getString(PARAM_AUTH_TOKEN));
         }
+        if (params.containsKey(PARAM_TARGET_ACCOUNT)) {
+            context.put("account", new JsonObject()
+                    .put("by", "name")
+                    .put("_content", params.getString(PARAM_TARGET_ACCOUNT)));
+        }
 
         JsonObject header = new JsonObject();
         header.put("context", context);
@@ -187,36 +292,39 @@ public class SoapZimbraService {
 
     /**
      * Asynchronously processes a Zimbra API response and returns a future containing the result.
-     * The method parses the HTTP response body to a JSON object, handling both successful and error responses.
-     * A successful response is marked with {@code IS_SUCCESSFUL: true}. Errors are logged and the promise is failed accordingly.
+     * The method parses the HTTP response body to a JSON object while it is received, handling both successful and
+     * error responses. A successful response is marked with {@code IS_SUCCESSFUL: true}, and only contains the
+     * response paths if some were requested. Responses that are not valid Json or exceed max size fail the promise,
+     * and the request is reset so that the remaining of the response is not downloaded.
      *
-     * @param httpResponse The received HTTP response from the Zimbra API.
+     * @param httpResponse  The received HTTP response from the Zimbra API.
+     * @param responsePaths paths of a successful response to keep, null to keep whole response
      * @return A Future that completes with the parsed JSON object or fails in case of errors.
      */
-    private Future<JsonObject> zimbraRequestFuture(HttpClientResponse httpResponse) {
+    private Future<JsonObject> zimbraRequestFuture(HttpClientResponse httpResponse, JsonArray responsePaths) {
         Promise<JsonObject> promise = Promise.promise();
-
-        httpResponse.bodyHandler(body -> {
-            JsonObject result;
-            try {
-                result = body.toJsonObject();
-            } catch (DecodeException e) {
-                log.debug("Zimbra response details : " + body);
-                String messageToFormat = "[Zimbra@%s::zimbraRequestHandler] An error occurred while processing zimbra response: %s, status: %s";
-                log.error(String.format(messageToFormat, this.getClass().getSimpleName(), e.getMessage(), httpResponse.statusMessage()));
-                return;
-            }
-            if (httpResponse.statusCode() == 200){
-                promise.complete(result.put(IS_SUCCESSFUL, true));
-            } else {
-                promise.complete(extractErrorDetails(result).put(IS_SUCCESSFUL, false));
-            }
-        });
-        httpResponse.exceptionHandler(err -> {
-            String messageToFormat = "[Zimbra@%s::zimbraRequestHandler] An error has occurred during request: %s";
-            log.error(String.format(messageToFormat, this.getClass().getSimpleName(), err));
-            promise.fail(err.getMessage());
-        });
+        boolean isSuccess = httpResponse.statusCode() == 200;
+
+        JsonArray keptPaths = isSuccess && responsePaths != null ? responsePaths.copy().add(CHANGE_TOKEN_PATH) : null;
+        new SoapResponseParser(keptPaths, responseMaxSize)
+                .parse(httpResponse)
+                .onSuccess(result -> {
+                    if (isSuccess) {
+                        promise.complete(result.put(IS_SUCCESSFUL, true));
+                    } else {
+                        try {
+                            promise.complete(extractErrorDetails(result).put(IS_SUCCESSFUL, false));
+                        } catch (Exception e) {
+                            promise.fail(e.getMessage());
+                        }
+                    }
+                })
+                .onFailure(err -> {
+                    String messageToFormat = "[Zimbra@%s::zimbraRequestHandler] An error occurred while processing zimbra response: %s, status: %s";
+                    log.error(String.format(messageToFormat, this.getClass().getSimpleName(), err.getMessage(), httpResponse.statusMessage()));
+                    httpResponse.request().reset();
+                    promise.fail(err.getMessage());
+                });
 
         return promise.future();
     }
@@ -250,15 +358,40 @@ public class SoapZimbraService {
      *                "name" : name of the zimbra soap request,
      *                "content" : data for the request
      *                "isAuthRequest" : boolean indicating if it is an authRequest,
-     *                "isAdmin" : boolean indicating if admin auth must be used
+     *                "isAdmin" : boolean indicating if admin auth must be used,
+     *                "responsePaths" : [optional] paths of the response to keep, see SoapResponseParser
      *                }
      * @param handler handler to process request result
      */
     private void callSoapAPI(JsonObject params, String userId, String userAddress,
                              Handler<Either<String, JsonObject>> handler) {
-        breaker.<JsonObject>execute(promise -> {
-            if (httpClient == null) {
-                httpClient = HttpClientHelper.createHttpClient(vertx);
+        executeSoapRequest(params).onComplete(evt -> {
+            if (evt.failed()) {
+                handler.handle(new Either.Left<>(circuitBreakerError(evt.cause())));
+            } else {
+                JsonObject result = evt.result();
+                if (result.getBoolean(IS_SUCCESSFUL)) {
+                    notifyChangeToken(params, userId, result);
+                    handler.handle(new Either.Right<>(evt.result()));
+                } else {
+                    handleSoapError(result, params, userId, userAddress, AsyncHelper.getPromiseFromEither(handler));
+                }
+            }
+        });
+    }
+
+    /**
+     * Send a soap request to Zimbra through the circuit breaker
+     *
+     * @param params inner data to send to zimbra, see callSoapAPI
+     * @return future completed with the zimbra response, flagged with "success"
+     */
+    private Future<JsonObject> executeSoapRequest(JsonObject params) {
+        long start = System.currentTimeMillis();
+        String requestName = params.getString(PARAM_NAME, "");
+        return breaker.<JsonObject>execute(promise -> {
+            if (httpClientPool == null) {
+                httpClientPool = new HttpClientPool(vertx, HttpClientPool.SOAP);
             }
             String finalUrl = params.getBoolean(PARAM_ISADMIN) ? zimbraAdminUri : zimbraUri;
 
@@ -274,12 +407,12 @@ public class SoapZimbraService {
             JsonObject jsonRequest = prepareJsonRequest(params);
 
 
-            httpClient.request(requestOptions)
+            httpClientPool.request(requestOptions)
                     .flatMap(req -> {
                         req.setChunked(true);
                         return req.send(jsonRequest.encode());
                     })
-                    .compose(this::zimbraRequestFuture)
+                    .compose(response -> zimbraRequestFuture(response, params.getJsonArray(PARAM_RESPONSE_PATHS)))
                     .onSuccess(promise::complete)
                     .onFailure(err -> {
                         log.error("Error on request: " + finalUrl + " body: " + jsonRequest.encode(), err);
@@ -288,22 +421,207 @@ public class SoapZimbraService {
                         errorJsonFault.put(ERROR_CODE, ERROR_EXCEPTIONINREQ);
                         promise.fail(errorJsonFault.toString());
                     });
-        }).onComplete(evt -> {
+        }).onComplete(res -> recordSoapRequest(requestName, start, res));
+    }
+
+    /**
+     * Record duration of a soap request, and its error code if it failed
+     * Requests rejected by the circuit breaker, or failing before getting a Zimbra response, are counted with code
+     * ERROR_CIRCUITBREAKER or ERROR_EXCEPTIONINREQ
+     */
+    private void recordSoapRequest(String requestName, long start, AsyncResult<JsonObject> res) {
+        metrics.recordDuration(METRIC_SOAP_DURATION, "Duration of soap requests sent to Zimbra",
+                System.currentTimeMillis() - start, METRIC_LABEL_REQUEST, requestName);
+        String errorCode = null;
+        if (res.failed()) {
+            errorCode = ERROR_CIRCUITBREAKER;
+            try {
+                errorCode = new JsonObject(res.cause().getMessage()).getString(ERROR_CODE, ERROR_CIRCUITBREAKER);
+            } catch (Exception e) {
+                // Error raised by circuit breaker itself (open circuit, timeout), not a json fault
+            }
+        } else if (!res.result().getBoolean(IS_SUCCESSFUL, false)) {
+            errorCode = res.result().getString(ERROR_CODE, ERROR_GENERIC);
+        }
+        if (errorCode != null) {
+            metrics.incrementCounter(METRIC_SOAP_ERRORS, "Soap requests sent to Zimbra that failed, by error code",
+                    METRIC_LABEL_REQUEST, requestName, ERROR_CODE, errorCode);
+        }
+    }
+
+    private void recordBreakerTransition(CircuitBreakerState state) {
+        metrics.incrementCounter(METRIC_BREAKER_TRANSITIONS, "Circuit breaker state changes",
+                METRIC_LABEL_NAME, breaker.name(), "state", state.name());
+    }
+
+    private int getBreakerStateValue() {
+        switch (breaker.state()) {
+            case CLOSED:
+                return 0;
+            case HALF_OPEN:
+                return 1;
+            default:
+                return 2;
+        }
+    }
+
+    private String circuitBreakerError(Throwable cause) {
+        log.error("Zimbra Soap API call failed " + cause.getMessage());
+        JsonObject errorJsonFault = new JsonObject();
+        errorJsonFault.put(ERROR_MESSAGE, cause.getMessage());
+        errorJsonFault.put(ERROR_CODE, ERROR_CIRCUITBREAKER);
+        return errorJsonFault.toString();
+    }
+
+    /**
+     * Send a request, or queue it in a batch if batching is enabled.
+     * Requests queued for the same user, admin context, target account and auth token during the batch window
+     * are sent in a single BatchRequest. A batch is sent as soon as it reaches max size.
+     * Requests with response paths are never batched, as they are filtered while parsed.
+     *
+     * @param params      inner data to send to zimbra, must contain auth token
+     * @param userId      User id
+     * @param userAddress User mail address
+     * @param handler     process result
+     */
+    private void dispatchSoapAPI(JsonObject params, String userId, String userAddress,
+                                 Handler<Either<String, JsonObject>> handler) {
+        if (!batchEnabled || params.containsKey(PARAM_RESPONSE_PATHS)) {
+            callSoapAPI(params, userId, userAddress, handler);
+            return;
+        }
+        String batchKey = params.getBoolean(PARAM_ISADMIN) + ":" + userId + ":" + params.getString(PARAM_AUTH_TOKEN)
+                + ":" + params.getString(PARAM_TARGET_ACCOUNT, "");
+        PendingBatch fullBatch = null;
+        synchronized (pendingBatches) {
+            PendingBatch batch = pendingBatches.get(batchKey);
+            if (batch == null) {
+                PendingBatch newBatch = new PendingBatch(userId, userAddress);
+                newBatch.timerId = vertx.setTimer(batchWindow, timerId -> flushBatch(batchKey, newBatch));
+                pendingBatches.put(batchKey, newBatch);
+                batch = newBatch;
+            }
+            batch.add(params, handler);
+            if (batch.size() >= batchMaxSize) {
+                pendingBatches.remove(batchKey);
+                vertx.cancelTimer(batch.timerId);
+                fullBatch = batch;
+            }
+        }
+        if (fullBatch != null) {
+            sendBatch(fullBatch);
+        }
+    }
+
+    private void flushBatch(String batchKey, PendingBatch batch) {
+        synchronized (pendingBatches) {
+            if (!pendingBatches.remove(batchKey, batch)) {
+                return;
+            }
+        }
+        sendBatch(batch);
+    }
+
+    private void sendBatch(PendingBatch batch) {
+        if (batch.size() == 1) {
+            callSoapAPI(batch.requests.get(0), batch.userId, batch.userAddress, batch.handlers.get(0));
+        } else {
+            callBatchSoapAPI(batch.requests, batch.userId, batch.userAddress, batch.handlers);
+        }
+    }
+
+    /**
+     * Call zimbra SOAP API with a BatchRequest containing several requests.
+     * Requests must all be made with the same auth token.
+     * Batch is sent with onerror="continue" so each request is processed independently,
+     * and each response (or fault) is sent back to the handler of its request.
+     * Faults are handled individually, like for a regular call.
+     *
+     * @param requests    list of inner data to send to zimbra, see callSoapAPI
+     * @param userId      User id
+     * @param userAddress User mail address
+     * @param handlers    handlers, one per request, in the same order
+     */
+    private void callBatchSoapAPI(List<JsonObject> requests, String userId, String userAddress,
+                                  List<Handler<Either<String, JsonObject>>> handlers) {
+        JsonObject firstRequest = requests.get(0);
+        JsonObject batchParams = new JsonObject()
+                .put(PARAM_NAME, SoapConstants.BATCH_REQUEST)
+                .put(PARAM_CONTENT, SoapBatchHelper.buildBatchContent(requests))
+                .put(PARAM_ISADMIN, firstRequest.getBoolean(PARAM_ISADMIN))
+                .put(PARAM_AUTH_TOKEN, firstRequest.getString(PARAM_AUTH_TOKEN));
+        if (firstRequest.containsKey(PARAM_TARGET_ACCOUNT)) {
+            batchParams.put(PARAM_TARGET_ACCOUNT, firstRequest.getString(PARAM_TARGET_ACCOUNT));
+        }
+
+        executeSoapRequest(batchParams).onComplete(evt -> {
             if (evt.failed()) {
-                log.error("Zimbra Soap API call failed " + evt.cause().getMessage());
-                JsonObject errorJsonFault = new JsonObject();
-                errorJsonFault.put(ERROR_MESSAGE, evt.cause().getMessage());
-                errorJsonFault.put(ERROR_CODE, ERROR_CIRCUITBREAKER);
-                handler.handle(new Either.Left<>(errorJsonFault.toString()));
+                String error = circuitBreakerError(evt.cause());
+                handlers.forEach(handler -> handler.handle(new Either.Left<>(error)));
+            } else if (!evt.result().getBoolean(IS_SUCCESSFUL)) {
+                // Whole batch refused (expired auth for instance) : handle error for each request
+                for (int i = 0; i < requests.size(); i++) {
+                    handleSoapError(evt.result(), requests.get(i), userId, userAddress,
+                            AsyncHelper.getPromiseFromEither(handlers.get(i)));
+                }
             } else {
-                JsonObject result = evt.result();
-                if (result.getBoolean(IS_SUCCESSFUL)) {
-                    handler.handle(new Either.Right<>(evt.result()));
+                notifyChangeToken(firstRequest, userId, evt.result());
+                List<JsonObject> results = SoapBatchHelper.splitBatchResponse(evt.result(), requests.size());
+                for (int i = 0; i < requests.size(); i++) {
+                    JsonObject result = results.get(i);
+                    if (result.getBoolean(IS_SUCCESSFUL)) {
+                        handlers.get(i).handle(new Either.Right<>(result));
+                    } else {
+                        handleSoapError(result, requests.get(i), userId, userAddress,
+                                AsyncHelper.getPromiseFromEither(handlers.get(i)));
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Call zimbra SOAP API with several requests merged in a single BatchRequest,
+     * regardless of batching mode configuration.
+     * All requests are made with the same user or admin context.
+     *
+     * @param requests list of inner data to send to zimbra
+     *                 {
+     *                 "name" : name of the zimbra soap request,
+     *                 "content" : data for the request
+     *                 }
+     * @param userId   User id, ignored for admin requests
+     * @param isAdmin  must the requests be made as admin ?
+     * @return one future per request, in the same order
+     */
+    public List<Future<JsonObject>> callBatchSoapAPI(List<JsonObject> requests, String userId, boolean isAdmin) {
+        String authUserId = isAdmin ? zimbraAdminAccount : userId;
+        String userAddress = isAdmin ? zimbraAdminAccount : userId + "@" + Zimbra.domain;
+        List<Future<JsonObject>> futures = new ArrayList<>();
+        List<Handler<Either<String, JsonObject>>> handlers = new ArrayList<>();
+        for (JsonObject request : requests) {
+            request.put(PARAM_ISADMIN, isAdmin);
+            Promise<JsonObject> promise = Promise.promise();
+            futures.add(promise.future());
+            handlers.add(AsyncHelper.getEitherFromPromise(promise));
+        }
+        if (requests.isEmpty()) {
+            return futures;
+        }
+        getAuthToken(authUserId, userAddress, isAdmin, authResult -> {
+            if (authResult.isLeft()) {
+                handlers.forEach(handler -> handler.handle(new Either.Left<>(authResult.left().getValue())));
+            } else {
+                String authToken = authResult.right().getValue().getString(MAP_AUTH_TOKEN);
+                requests.forEach(request -> request.put(PARAM_AUTH_TOKEN, authToken));
+                if (requests.size() == 1) {
+                    callSoapAPI(requests.get(0), authUserId, userAddress, handlers.get(0));
                 } else {
-                    handleSoapError(result, params, userId, userAddress, AsyncHelper.getPromiseFromEither(handler));
+                    callBatchSoapAPI(requests, authUserId, userAddress, handlers);
                 }
             }
         });
+        return futures;
     }
 
     /**
@@ -314,7 +632,8 @@ public class SoapZimbraService {
      * @param params  inner data to send to zimbra
      *                {
      *                "name" : name of the zimbra soap request,
-     *                "content" : data for the request
+     *                "content" : data for the request,
+     *                "responsePaths" : [optional] paths of the response to keep, see SoapResponseParser
      *                }
      * @param user    User connected
      * @param handler process result
@@ -351,6 +670,25 @@ public class SoapZimbraService {
         callSoapWithAuth(params, zimbraAdminAccount, zimbraAdminAccount, handler);
     }
 
+    /**
+     * Call zimbra SOAP API on the mailbox of a user, with admin level
+     * Requests are sent with admin authentication and the user account in context,
+     * so that the user does not have to be authenticated
+     *
+     * @param params  inner data to send to zimbra
+     *                {
+     *                "name" : name of the zimbra soap request,
+     *                "content" : data for the request
+     *                }
+     * @param userId  User id, owner of the mailbox
+     * @param handler process result
+     */
+    public void callDelegatedSoapAPI(JsonObject params, String userId, Handler<AsyncResult<JsonObject>> handler) {
+        params.put(PARAM_ISADMIN, true);
+        params.put(PARAM_TARGET_ACCOUNT, userId + "@" + Zimbra.domain);
+        callSoapWithAuth(params, zimbraAdminAccount, zimbraAdminAccount, AsyncHelper.getJsonObjectEitherHandler(handler));
+    }
+
     /**
      * Call zimbra SOAP API with user infos
      * If user has up to date authentication in "authedUsers" use it
@@ -374,7 +712,7 @@ public class SoapZimbraService {
                 handler.handle(authResult);
             } else {
                 params.put(PARAM_AUTH_TOKEN, authResult.right().getValue().getString(MAP_AUTH_TOKEN));
-                callSoapAPI(params, userId, userAddress, handler);
+                dispatchSoapAPI(params, userId, userAddress, handler);
             }
         });
     }
@@ -428,25 +766,15 @@ public class SoapZimbraService {
                     break;
                 case ERROR_AUTHEXPIRED:
                 case ERROR_AUTHREQUIRED:
-                    Handler<Either<String, JsonObject>> authCheckHandler = event -> {
+                    boolean isAdmin = params.getBoolean(PARAM_ISADMIN);
+                    refreshAuthToken(userId, userAddress, isAdmin, params.getString(PARAM_AUTH_TOKEN), event -> {
                         if (event.isLeft()) {
                             promise.fail(event.left().getValue());
                         } else {
-                            getCachedUserToken(userId, evt -> {
-                                if (evt.failed()) {
-                                    promise.fail(evt.cause());
-                                } else {
-                                    params.put(PARAM_AUTH_TOKEN, evt.result().getString(MAP_AUTH_TOKEN));
-                                    callSoapAPI(params, userId, userAddress, soapApiHandler);
-                                }
-                            });
+                            params.put(PARAM_AUTH_TOKEN, event.right().getValue().getString(MAP_AUTH_TOKEN));
+                            callSoapAPI(params, userId, userAddress, soapApiHandler);
                         }
-                    };
-                    if (params.getBoolean(PARAM_ISADMIN)) {
-                        adminAuth(userId, userAddress, authCheckHandler);
-                    } else {
-                        auth(userId, userAddress, authCheckHandler);
-                    }
+                    });
                     break;
                 default:
                     promise.fail(callResultStr);
@@ -610,6 +938,7 @@ public class SoapZimbraService {
     }
 
     private void cacheUserToken(String userId, JsonObject authToken, Handler<AsyncResult<Void>> handler) {
+        putLocalToken(userId, authToken);
         if (cacheService != null) {
             UserInfos user = new UserInfos();
             user.setUserId(userId);
@@ -622,22 +951,108 @@ public class SoapZimbraService {
     }
 
     private void getCachedUserToken(String userId, Handler<AsyncResult<JsonObject>> handler) {
-        if (cacheService != null) {
+        JsonObject localToken = localTokenCache.get(userId);
+        if (localToken != null) {
+            recordAuthCacheRequest("local", true);
+            handler.handle(Future.succeededFuture(localToken));
+        } else if (cacheService != null) {
             UserInfos user = new UserInfos();
             user.setUserId(userId);
             cacheService.getForUser(user, CACHE_AUTH_TOKEN_NAME, res -> {
                 if (res.failed()) log.error("Failed to retrieve auth token for user " + userId, res.cause());
-                if (res.failed() || !res.result().isPresent())
+                if (res.failed() || !res.result().isPresent()) {
+                    recordAuthCacheRequest("shared", false);
                     handler.handle(Future.failedFuture(res.failed() ? res.cause() : null));
-                else handler.handle(Future.succeededFuture(new JsonObject(res.result().get())));
+                } else {
+                    recordAuthCacheRequest("shared", true);
+                    JsonObject authToken = new JsonObject(res.result().get());
+                    putLocalToken(userId, authToken);
+                    handler.handle(Future.succeededFuture(authToken));
+                }
             });
         } else {
-            if (!authedUsers.containsKey(userId)) handler.handle(Future.failedFuture("Auth token not found"));
-            else {
-                JsonObject authToken = authedUsers.get(userId);
-                handler.handle(System.currentTimeMillis() < authToken.getLong(MAP_LIFETIME) ? Future.succeededFuture(authToken) : Future.failedFuture("Auth token not found"));
+            boolean found = authedUsers.containsKey(userId)
+                    && System.currentTimeMillis() < authedUsers.get(userId).getLong(MAP_LIFETIME);
+            recordAuthCacheRequest("shared", found);
+            handler.handle(found ? Future.succeededFuture(authedUsers.get(userId)) : Future.failedFuture("Auth token not found"));
+        }
+    }
+
+    private void recordAuthCacheRequest(String level, boolean hit) {
+        metrics.incrementCounter(METRIC_AUTH_CACHE, "Auth token lookups in local and shared caches",
+                "level", level, "result", hit ? "hit" : "miss");
+    }
+
+    /**
+     * Keep auth token in local cache until its lifetime, and for at most LIFETIME_OFFSET
+     *
+     * @param userId    User id
+     * @param authToken auth token data, see authHandler
+     */
+    private void putLocalToken(String userId, JsonObject authToken) {
+        long ttl = Math.min(authToken.getLong(MAP_LIFETIME, 0L) - System.currentTimeMillis(), LIFETIME_OFFSET);
+        localTokenCache.put(userId, authToken, ttl);
+    }
+
+    /**
+     * Authenticate a user, only once for all concurrent requests.
+     * If an authentication is already in progress for the same user and context,
+     * wait for its result instead of sending a new one.
+     *
+     * @param userId      User id
+     * @param userAddress User Zimbra address
+     * @param isAdmin     Need AdminAuthToken ?
+     * @param handler     result handler
+     */
+    private void sharedAuthentication(String userId, String userAddress, boolean isAdmin,
+                                      Handler<Either<String, JsonObject>> handler) {
+        String authKey = (isAdmin ? "admin:" : "user:") + userId;
+        Promise<JsonObject> authPromise = null;
+        Future<JsonObject> pendingAuth;
+        synchronized (pendingAuthentications) {
+            pendingAuth = pendingAuthentications.get(authKey);
+            if (pendingAuth == null) {
+                authPromise = Promise.promise();
+                pendingAuth = authPromise.future();
+                pendingAuthentications.put(authKey, pendingAuth);
             }
         }
+        pendingAuth.onComplete(AsyncHelper.getJsonObjectAsyncHandler(handler));
+
+        if (authPromise != null) {
+            Promise<JsonObject> finalAuthPromise = authPromise;
+            authentication(userId, userAddress, isAdmin, authResult -> {
+                synchronized (pendingAuthentications) {
+                    pendingAuthentications.remove(authKey);
+                }
+                AsyncHelper.getEitherFromPromise(finalAuthPromise).handle(authResult);
+            });
+        }
+    }
+
+    /**
+     * Get a new auth token after a request was refused with expiredToken.
+     * If the token has already been refreshed by another request, use the new one.
+     * Else authenticate again, once for all concurrent requests.
+     *
+     * @param userId       User id
+     * @param userAddress  User Zimbra address
+     * @param isAdmin      Need AdminAuthToken ?
+     * @param expiredToken token refused by Zimbra
+     * @param handler      result handler
+     */
+    private void refreshAuthToken(String userId, String userAddress, boolean isAdmin, String expiredToken,
+                                  Handler<Either<String, JsonObject>> handler) {
+        JsonObject localToken = localTokenCache.get(userId);
+        if (localToken != null && !localToken.getString(MAP_AUTH_TOKEN, "").equals(expiredToken)
+                && (!isAdmin || localToken.getBoolean(MAP_ADMIN, false))) {
+            handler.handle(new Either.Right<>(localToken));
+            return;
+        }
+        if (localToken != null) {
+            localTokenCache.invalidate(userId, localToken);
+        }
+        sharedAuthentication(userId, userAddress, isAdmin, handler);
     }
 
     private void authentication(String userId, String userAddress, boolean isAdmin, Handler<
@@ -654,8 +1069,8 @@ public class SoapZimbraService {
 
     /**
      * Get authToken for a user
-     * If already in map, return existing authInfo
-     * Else, auth from Zimbra
+     * If already in local cache or in cache service, return existing authInfo
+     * Else, auth from Zimbra, once for all concurrent requests
      *
      * @param userId      User Id
      * @param userAddress User Zimbra address
@@ -667,11 +1082,11 @@ public class SoapZimbraService {
         getCachedUserToken(userId, evt -> {
             if (evt.failed()) {
                 log.info("Token not found for user " + userId);
-                authentication(userId, userAddress, isAdmin, handler);
+                sharedAuthentication(userId, userAddress, isAdmin, handler);
             } else {
                 JsonObject authToken = evt.result();
                 if (isAdmin && !authToken.getBoolean(MAP_ADMIN)) {
-                    authentication(userId, userAddress, true, handler);
+                    sharedAuthentication(userId, userAddress, true, handler);
                 } else {
                     handler.handle(new Either.Right<>(authToken));
                 }
@@ -686,15 +1101,22 @@ public class SoapZimbraService {
      * @param handler result handler
      */
     public void getUserAuthToken(UserInfos user, Handler<Either<String, JsonObject>> handler) {
-        String userId = user.getUserId();
+        getUserAuthToken(user.getUserId(), handler);
+    }
+
+    private void getUserAuthToken(String userId, Handler<Either<String, JsonObject>> handler) {
         String userAddress = userId + "@" + Zimbra.domain;
         getAuthToken(userId, userAddress, false, handler);
     }
 
     public Future<String> getUserAuthToken(UserInfos user) {
+        return getUserAuthToken(user.getUserId());
+    }
+
+    public Future<String> getUserAuthToken(String userId) {
         Promise<String> promise = Promise.promise();
 
-        getUserAuthToken(user, authTokenResponse -> {
+        getUserAuthToken(userId, authTokenResponse -> {
             if (authTokenResponse.isLeft()) {
                 log.error(String.format("Zimbra@getUserAuthToken : error with user token: %s", authTokenResponse.left().getValue()));
                 promise.fail(authTokenResponse.left().getValue());
@@ -706,4 +1128,98 @@ public class SoapZimbraService {
         return promise.future();
     }
 
+    /**
+     * Upload content to Zimbra upload servlet with user context, without holding it in memory.
+     * Chunks are only requested from the iterator when the request write queue has room,
+     * so memory used by the upload is bounded by maxQueueSize plus the size of one chunk.
+     * The returned upload id can be used in requests such as ImportContactsRequest.
+     *
+     * @param userId       User Id
+     * @param contentType  Content type of the uploaded data
+     * @param fileName     File name of the uploaded data
+     * @param chunks       Content to upload, chunk by chunk
+     * @param maxQueueSize Max size in bytes of chunks waiting to be sent
+     * @return future completed with the upload id
+     */
+    public Future<String> uploadStream(String userId, String contentType, String fileName,
+                                       Iterator<Buffer> chunks, int maxQueueSize) {
+        synchronized (this) {
+            if (uploadPool == null) {
+                uploadPool = new HttpClientPool(vertx, HttpClientPool.UPLOAD);
+            }
+        }
+        return getUserAuthToken(userId)
+                .compose(authToken -> uploadPool.request(new RequestOptions()
+                        .setAbsoluteURI(zimbraUploadUri)
+                        .setMethod(HttpMethod.POST)
+                        .setHeaders(new HeadersMultiMap())
+                        .putHeader(HEADER_COOKIE, COOKIE_AUTH_TOKEN + "=" + authToken)
+                        .putHeader(Field.CONTENT_TYPE, contentType)
+                        .putHeader(Field.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")))
+                .compose(request -> {
+                    request.setChunked(true).setWriteQueueMaxSize(maxQueueSize);
+                    return writeChunks(request, chunks)
+                            .compose(v -> request.end())
+                            .compose(v -> request.response());
+                })
+                .compose(response -> response.body().compose(body -> {
+                    Matcher matcher = UPLOAD_ID_PATTERN.matcher(body.toString());
+                    if (response.statusCode() != 200 || !matcher.find()) {
+                        log.error(String.format("[Zimbra@%s::uploadStream] Upload failed for user %s : %s %s",
+                                this.getClass().getSimpleName(), userId, response.statusCode(), body));
+                        return Future.failedFuture(new JsonObject()
+                                .put(ERROR_CODE, ERROR_UPLOADREJECTED)
+                                .put(ERROR_MESSAGE, body.toString().trim()).encode());
+                    }
+                    return Future.succeededFuture(matcher.group(1));
+                }));
+    }
+
+    private Future<Void> writeChunks(HttpClientRequest request, Iterator<Buffer> chunks) {
+        Promise<Void> promise = Promise.promise();
+        request.exceptionHandler(promise::tryFail);
+        writeNextChunks(request, chunks, promise);
+        return promise.future();
+    }
+
+    private void writeNextChunks(HttpClientRequest request, Iterator<Buffer> chunks, Promise<Void> promise) {
+        try {
+            while (chunks.hasNext()) {
+                if (request.writeQueueFull()) {
+                    request.drainHandler(v -> writeNextChunks(request, chunks, promise));
+                    return;
+                }
+                request.write(chunks.next());
+            }
+            promise.tryComplete();
+        } catch (Exception e) {
+            request.reset(0, e);
+            promise.tryFail(e);
+        }
+    }
+
+    /**
+     * Requests waiting to be sent in the same BatchRequest
+     */
+    private static class PendingBatch {
+        private final String userId;
+        private final String userAddress;
+        private final List<JsonObject> requests = new ArrayList<>();
+        private final List<Handler<Either<String, JsonObject>>> handlers = new ArrayList<>();
+        private long timerId;
+
+        private PendingBatch(String userId, String userAddress) {
+            this.userId = userId;
+            this.userAddress = userAddress;
+        }
+
+        private void add(JsonObject request, Handler<Either<String, JsonObject>> handler) {
+            requests.add(request);
+            handlers.add(handler);
+        }
+
+        private int size() {
+            return requests.size();
+        }
+    }
 }
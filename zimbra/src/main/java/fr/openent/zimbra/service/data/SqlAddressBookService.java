@@ -1,8 +1,13 @@
 package fr.openent.zimbra.service.data;
 
 import fr.openent.zimbra.Zimbra;
+import fr.openent.zimbra.helper.StoreMetrics;
+import fr.openent.zimbra.helper.TransactionHelper;
+import fr.openent.zimbra.model.TransactionElement;
 import fr.wseduc.webutils.Either;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.Promise;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
@@ -15,6 +20,10 @@ import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @SuppressWarnings("FieldCanBeLocal")
 public class SqlAddressBookService {
@@ -30,6 +39,10 @@ public class SqlAddressBookService {
     private final String abookPurgeTable;
     private final String ABOOKPURGETABLE_DATEPURGE = "date_purge";
 
+    private final String abookFolderHashTable;
+    private final String ABOOKFOLDERHASH_FOLDERPATH = "folder_path";
+    private final String ABOOKFOLDERHASH_HASH = "hash";
+
     private static final Logger log = LoggerFactory.getLogger(SqlAddressBookService.class);
 
     public class SqlAbookSyncResult {
@@ -60,6 +73,7 @@ public class SqlAddressBookService {
         this.sql = Sql.getInstance();
         this.abookSyncTable = schema + ".address_book_sync";
         this.abookPurgeTable = schema + ".purge_emailed_contacts";
+        this.abookFolderHashTable = schema + ".address_book_folder_hash";
     }
 
     public void getUserSyncInfo(String userId, Handler<SqlAbookSyncResult> handler) {
@@ -68,7 +82,7 @@ public class SqlAddressBookService {
                 + " FROM " + abookSyncTable
                 + " WHERE " + ABOOK_USERID + "=?";
 
-        sql.prepared(query, new JsonArray().add(userId), SqlResult.validUniqueResultHandler(result -> {
+        sql.prepared(query, new JsonArray().add(userId), StoreMetrics.sql("addressBook.getUserSyncInfo", SqlResult.validUniqueResultHandler(result -> {
             if(result.isLeft()) {
                 log.error("Error in getUserSyncInfo for user " + userId + " : " + result.left().getValue());
                 handler.handle(null);
@@ -82,7 +96,7 @@ public class SqlAddressBookService {
                 }
                 handler.handle(finalResult);
             }
-        }));
+        })));
     }
 
     public void markUserAsSynced(String userId) {
@@ -91,16 +105,87 @@ public class SqlAddressBookService {
                 + " VALUES(?,now())" +
                 " ON CONFLICT(" + ABOOK_USERID + ")" +
                 " DO UPDATE SET " + ABOOKSYNCTABLE_DATESYNCHRO + "=now()";
-        sql.prepared(query, new JsonArray().add(userId), SqlResult.validRowsResultHandler( result -> {
+        sql.prepared(query, new JsonArray().add(userId), StoreMetrics.sql("addressBook.markUserAsSynced", SqlResult.validRowsResultHandler( result -> {
             if(result.isLeft()) {
                 log.error("Error when update db in markUserAsSynced for user " + userId + " : " + result.left().getValue());
             }
-        }));
+        })));
     }
 
     public void purgeUserSyncAddressBook(String userId, Handler<Either<String, JsonObject>> handler) {
-        String query = "DELETE FROM " + abookSyncTable + " WHERE userid = ?;";
-        sql.prepared(query, new JsonArray().add(userId), SqlResult.validUniqueResultHandler(handler));
+        // Folder hashes are purged too, so that next synchronization re-imports every folder
+        String query = "WITH deleted_hashes AS (DELETE FROM " + abookFolderHashTable + " WHERE userid = ?)"
+                + " DELETE FROM " + abookSyncTable + " WHERE userid = ?;";
+        sql.prepared(query, new JsonArray().add(userId).add(userId), StoreMetrics.sql("addressBook.purgeUserSyncAddressBook", SqlResult.validUniqueResultHandler(handler)));
+    }
+
+    /**
+     * Get hashes of address book folders synchronized for a user, under a root folder
+     * @param userId     Zimbra account the address book is synchronized in
+     * @param rootPath   path of the root folder, included
+     * @return map of folder path to hash of its content
+     */
+    public Future<Map<String, String>> getFolderHashes(String userId, String rootPath) {
+        Promise<Map<String, String>> promise = Promise.promise();
+        // SELECT folder_path, hash FROM zimbra.address_book_folder_hash WHERE userid=? AND (folder_path=? OR left(folder_path,?)=?)
+        String query = "SELECT " + ABOOKFOLDERHASH_FOLDERPATH + ", " + ABOOKFOLDERHASH_HASH
+                + " FROM " + abookFolderHashTable
+                + " WHERE " + ABOOK_USERID + "=? AND " + folderPathCondition();
+        JsonArray params = folderPathParams(new JsonArray().add(userId), rootPath);
+
+        sql.prepared(query, params, StoreMetrics.sql("addressBook.getFolderHashes", SqlResult.validResultHandler(result -> {
+            if(result.isLeft()) {
+                log.error("Error in getFolderHashes for user " + userId + " : " + result.left().getValue());
+                promise.fail(result.left().getValue());
+            } else {
+                Map<String, String> hashes = new HashMap<>();
+                result.right().getValue().stream()
+                        .filter(JsonObject.class::isInstance)
+                        .map(JsonObject.class::cast)
+                        .forEach(row -> hashes.put(row.getString(ABOOKFOLDERHASH_FOLDERPATH),
+                                row.getString(ABOOKFOLDERHASH_HASH)));
+                promise.complete(hashes);
+            }
+        })));
+        return promise.future();
+    }
+
+    /**
+     * Replace hashes of address book folders synchronized for a user, under a root folder
+     * @param userId     Zimbra account the address book is synchronized in
+     * @param rootPath   path of the root folder, included
+     * @param hashes     map of folder path to hash of its content
+     */
+    public Future<Void> replaceFolderHashes(String userId, String rootPath, Map<String, String> hashes) {
+        List<TransactionElement> statements = new ArrayList<>();
+        statements.add(new TransactionElement("DELETE FROM " + abookFolderHashTable
+                + " WHERE " + ABOOK_USERID + "=? AND " + folderPathCondition(),
+                folderPathParams(new JsonArray().add(userId), rootPath)));
+
+        if (!hashes.isEmpty()) {
+            StringBuilder insertQuery = new StringBuilder("INSERT INTO " + abookFolderHashTable
+                    + "(" + ABOOK_USERID + "," + ABOOKFOLDERHASH_FOLDERPATH + "," + ABOOKFOLDERHASH_HASH + ") VALUES ");
+            JsonArray insertParams = new JsonArray();
+            hashes.forEach((path, hash) -> {
+                insertQuery.append(insertParams.isEmpty() ? "" : ",").append("(?,?,?)");
+                insertParams.add(userId).add(path).add(hash);
+            });
+            statements.add(new TransactionElement(insertQuery.toString(), insertParams));
+        }
+
+        return TransactionHelper.executeTransaction(statements,
+                "[Zimbra@" + this.getClass().getSimpleName() + "::replaceFolderHashes] Error for user " + userId,
+                "addressBook.replaceFolderHashes")
+                .mapEmpty();
+    }
+
+    private String folderPathCondition() {
+        return "(" + ABOOKFOLDERHASH_FOLDERPATH + "=? OR left(" + ABOOKFOLDERHASH_FOLDERPATH + ",?)=?)";
+    }
+
+    private JsonArray folderPathParams(JsonArray params, String rootPath) {
+        String subFolderPrefix = rootPath + "/";
+        return params.add(rootPath).add(subFolderPrefix.length()).add(subFolderPrefix);
     }
 
     public void getUserPurgeEmailedContacts(String userId, Handler<JsonObject> handler) {
@@ -109,7 +194,7 @@ public class SqlAddressBookService {
                 + " FROM " + abookPurgeTable
                 + " WHERE " + ABOOK_USERID + "=?";
 
-        sql.prepared(query, new JsonArray().add(userId), SqlResult.validUniqueResultHandler(result -> {
+        sql.prepared(query, new JsonArray().add(userId), StoreMetrics.sql("addressBook.getUserPurgeEmailedContacts", SqlResult.validUniqueResultHandler(result -> {
             if(result.isLeft()) {
                 log.error("Error in getUserPurgeEmailedContacts for user " + userId + " : " + result.left().getValue());
                 handler.handle(null);
@@ -121,27 +206,27 @@ public class SqlAddressBookService {
                     handler.handle(bddresult);
                 }
             }
-        }));
+        })));
     }
 
     public void markUserAsPurged(String userId) {
         // INSERT INTO zimbra.purge_emailed_contacts(userid,date_purge) VALUES(?,now())
         String query = "INSERT INTO " + abookPurgeTable + "(" + ABOOK_USERID + "," + ABOOKPURGETABLE_DATEPURGE + ")"
                 + " VALUES(?,now())";
-        sql.prepared(query, new JsonArray().add(userId), SqlResult.validRowsResultHandler( result -> {
+        sql.prepared(query, new JsonArray().add(userId), StoreMetrics.sql("addressBook.markUserAsPurged", SqlResult.validRowsResultHandler( result -> {
             if(result.isLeft()) {
                 log.error("Error when update db in markUserAsPurged for user " + userId + " : " + result.left().getValue());
             }
-        }));
+        })));
     }
 
     public void truncatePurgeTable() {
         // TRUNCATE TABLE zimbra.purge_emailed_contacts
         String query = "TRUNCATE TABLE " + abookPurgeTable;
-        sql.prepared(query, new JsonArray(), SqlResult.validRowsResultHandler( result -> {
+        sql.prepared(query, new JsonArray(), StoreMetrics.sql("addressBook.truncatePurgeTable", SqlResult.validRowsResultHandler( result -> {
             if(result.isLeft()) {
                 log.error("Error when truncate purge table in truncatePurgeTable : " + result.left().getValue());
             }
-        }));
+        })));
     }
 }
@@ -19,6 +19,7 @@ package fr.openent.zimbra.service.data;
 
 import fr.openent.zimbra.core.constants.Field;
 import fr.openent.zimbra.helper.AsyncHelper;
+import fr.openent.zimbra.helper.StoreMetrics;
 import fr.openent.zimbra.model.Group;
 import fr.openent.zimbra.model.ZimbraUser;
 import fr.openent.zimbra.service.DbMailService;
@@ -69,7 +70,59 @@ public class SqlDbMailService extends DbMailService {
                 + groupTable + " WHERE " + ZIMBRA_NAME + " = ? ";
         JsonArray values = new JsonArray().add(mail).add(mail);
 
-        sql.prepared(query, values, SqlResult.validResultHandler(handler));
+        sql.prepared(query, values, StoreMetrics.sql("mail.getNeoIdFromMail", SqlResult.validResultHandler(handler)));
+    }
+
+    /**
+     * Get users and groups uuids from a list of mails in one request
+     *
+     * @param mails   Zimbra mails
+     * @param handler result handler
+     */
+    @Override
+    public void getNeoIdsFromMails(List<String> mails, Handler<Either<String, JsonArray>> handler) {
+        if (mails.isEmpty()) {
+            handler.handle(new Either.Right<>(new JsonArray()));
+            return;
+        }
+        String query = "SELECT " + ZIMBRA_NAME + ", " + NEO4J_UID + ", 'user' as type FROM "
+                + userTable + " WHERE " + ZIMBRA_NAME + " IN " + Sql.listPrepared(mails) + " "
+                + "UNION ALL "
+                + "SELECT " + ZIMBRA_NAME + ", " + NEO4J_UID + ", 'group' as type FROM "
+                + groupTable + " WHERE " + ZIMBRA_NAME + " IN " + Sql.listPrepared(mails);
+        JsonArray values = new JsonArray();
+        mails.forEach(values::add);
+        mails.forEach(values::add);
+
+        sql.prepared(query, values, StoreMetrics.sql("mail.getNeoIdsFromMails", SqlResult.validResultHandler(handler)));
+    }
+
+    /**
+     * Get users and groups mails from a list of uuids in one request
+     *
+     * @param userIds  Users uuids
+     * @param groupIds Groups uuids
+     * @param handler  result handler
+     */
+    @Override
+    public void getMailsFromIds(List<String> userIds, List<String> groupIds, Handler<Either<String, JsonArray>> handler) {
+        List<String> queries = new ArrayList<>();
+        JsonArray values = new JsonArray();
+        if (!userIds.isEmpty()) {
+            queries.add("SELECT " + NEO4J_UID + ", " + ZIMBRA_NAME + ", 'user' as type FROM "
+                    + userTable + " WHERE " + NEO4J_UID + " IN " + Sql.listPrepared(userIds));
+            userIds.forEach(values::add);
+        }
+        if (!groupIds.isEmpty()) {
+            queries.add("SELECT " + NEO4J_UID + ", " + ZIMBRA_NAME + ", 'group' as type FROM "
+                    + groupTable + " WHERE " + NEO4J_UID + " IN " + Sql.listPrepared(groupIds));
+            groupIds.forEach(values::add);
+        }
+        if (queries.isEmpty()) {
+            handler.handle(new Either.Right<>(new JsonArray()));
+            return;
+        }
+        sql.prepared(String.join(" UNION ALL ", queries), values, StoreMetrics.sql("mail.getMailsFromIds", SqlResult.validResultHandler(handler)));
     }
 
     /**
@@ -105,7 +158,7 @@ public class SqlDbMailService extends DbMailService {
                 + table + " WHERE " + NEO4J_UID + " = ?";
         JsonArray values = new JsonArray().add(uuid);
 
-        sql.prepared(query, values, SqlResult.validResultHandler(handler));
+        sql.prepared(query, values, StoreMetrics.sql("mail.getMailFromId", SqlResult.validResultHandler(handler)));
     }
 
     /**
@@ -120,7 +173,7 @@ public class SqlDbMailService extends DbMailService {
                 + " WHERE " + NEO4J_UID + " = ? OR "
                 + ZIMBRA_NAME + " = ?";
         JsonArray values = new JsonArray().add(userId).add(userMail);
-        sql.prepared(query, values, SqlResult.validRowsResultHandler(handler));
+        sql.prepared(query, values, StoreMetrics.sql("mail.removeUserFrombase", SqlResult.validRowsResultHandler(handler)));
     }
 
     public void updateUserAsync(ZimbraUser user) {
@@ -204,7 +257,18 @@ public class SqlDbMailService extends DbMailService {
         if (!atLeastOne) {
             handler.handle(new Either.Left<>("No users to process"));
         } else {
-            sql.prepared(query.toString(), new JsonArray(), SqlResult.validUniqueResultHandler(handler));
+            sql.prepared(query.toString(), new JsonArray(), StoreMetrics.sql("mail.updateUsers", SqlResult.validUniqueResultHandler(result -> {
+                if (result.isRight() && usersUpdatedHandler != null) {
+                    List<String> names = new ArrayList<>();
+                    users.forEach(o -> {
+                        if (o instanceof JsonObject && ((JsonObject) o).getString(Field.NAME) != null) {
+                            names.add(((JsonObject) o).getString(Field.NAME));
+                        }
+                    });
+                    usersUpdatedHandler.handle(names);
+                }
+                handler.handle(result);
+            })));
         }
     }
 
@@ -232,7 +296,7 @@ public class SqlDbMailService extends DbMailService {
                 .append("WHERE gid.id = g.").append(NEO4J_UID)
                 .append(")");
         sql.prepared(query.toString(), params,
-                SqlResult.validResultHandler(AsyncHelper.getJsonArrayEitherHandler(handler)));
+                StoreMetrics.sql("mail.checkGroupsExistence", SqlResult.validResultHandler(AsyncHelper.getJsonArrayEitherHandler(handler))));
     }
 
 
@@ -253,7 +317,7 @@ public class SqlDbMailService extends DbMailService {
                 .append(")");
 
         sql.prepared(query.toString(), params,
-                SqlResult.validUniqueResultHandler(AsyncHelper.getJsonObjectEitherHandler(handler)));
+                StoreMetrics.sql("mail.updateGroup", SqlResult.validUniqueResultHandler(AsyncHelper.getJsonObjectEitherHandler(handler))));
     }
 
     /**
@@ -278,7 +342,7 @@ public class SqlDbMailService extends DbMailService {
                 .add(returnedMail.getString("comment"))
                 .add(returnedMail.getString("mail_date"))
                 .add(returnedMail.getString("mid"));
-        sql.prepared(query, params, SqlResult.validUniqueResultHandler(handler));
+        sql.prepared(query, params, StoreMetrics.sql("mail.insertReturnedMail", SqlResult.validUniqueResultHandler(handler)));
     }
 
     /**
@@ -294,7 +358,7 @@ public class SqlDbMailService extends DbMailService {
                 " ORDER BY date DESC;";
         JsonArray params = new fr.wseduc.webutils.collections.JsonArray()
                 .add(idStructure);
-        sql.prepared(query, params, SqlResult.validResultHandler(handler));
+        sql.prepared(query, params, StoreMetrics.sql("mail.getMailReturned", SqlResult.validResultHandler(handler)));
     }
 
     /**
@@ -309,7 +373,7 @@ public class SqlDbMailService extends DbMailService {
                 " RETURNING id;";
         JsonArray params = new fr.wseduc.webutils.collections.JsonArray()
                 .add(id);
-        sql.prepared(query, params, SqlResult.validResultHandler(handler));
+        sql.prepared(query, params, StoreMetrics.sql("mail.removeMailReturned", SqlResult.validResultHandler(handler)));
     }
 
     /**
@@ -324,7 +388,7 @@ public class SqlDbMailService extends DbMailService {
                 " ORDER BY date DESC;";
         JsonArray params = new fr.wseduc.webutils.collections.JsonArray()
                 .add(statut);
-        sql.prepared(query, params, SqlResult.validResultHandler(handler));
+        sql.prepared(query, params, StoreMetrics.sql("mail.getMailReturnedByStatut", SqlResult.validResultHandler(handler)));
     }
 
     /**
@@ -344,7 +408,7 @@ public class SqlDbMailService extends DbMailService {
         for (String id : ids) {
             params.add(Integer.parseInt(id));
         }
-        sql.prepared(query, params, SqlResult.validResultHandler(handler));
+        sql.prepared(query, params, StoreMetrics.sql("mail.getMailReturnedByIds", SqlResult.validResultHandler(handler)));
     }
 
     /**
@@ -366,7 +430,7 @@ public class SqlDbMailService extends DbMailService {
         for (String id : ids) {
             params.add(id);
         }
-        sql.prepared(query, params, SqlResult.validResultHandler(handler));
+        sql.prepared(query, params, StoreMetrics.sql("mail.getMailReturnedByMailsIdsAndUser", SqlResult.validResultHandler(handler)));
     }
 
     /**
@@ -385,7 +449,7 @@ public class SqlDbMailService extends DbMailService {
             params.add(returnedMailsStatut.getJsonObject(i).getString("statut"))
                   .add(returnedMailsStatut.getJsonObject(i).getLong(Field.ID));
         }
-        sql.prepared(query, params, SqlResult.validResultHandler(handler));
+        sql.prepared(query, params, StoreMetrics.sql("mail.updateStatut", SqlResult.validResultHandler(handler)));
     }
 
 }
@@ -21,6 +21,7 @@ package fr.openent.zimbra.service.data;
 import fr.openent.zimbra.Zimbra;
 import fr.openent.zimbra.helper.AsyncHelper;
 import fr.openent.zimbra.helper.JsonHelper;
+import fr.openent.zimbra.helper.StoreMetrics;
 import fr.openent.zimbra.model.constant.SynchroConstants;
 import fr.wseduc.webutils.Either;
 import io.vertx.core.AsyncResult;
@@ -69,6 +70,7 @@ public class SqlSynchroService {
     private final String synchroTable;
     private final String userSynchroTable;
     private final String synchroLogsTable;
+    private final String abookFolderHashTable;
 
     private static Logger log = LoggerFactory.getLogger(SqlSynchroService.class);
 
@@ -78,14 +80,30 @@ public class SqlSynchroService {
         this.synchroTable = schema + ".synchro";
         this.userSynchroTable = schema + ".synchro_user";
         this.synchroLogsTable = schema + ".synchro_logs";
+        this.abookFolderHashTable = schema + ".address_book_folder_hash";
         INSERT_PAGINATION = Zimbra.appConfig.getSqlInsertPaginationSize();
     }
 
     public void getDeployedStructures(Handler<AsyncResult<List<String>>> handler) {
         String query = "SELECT " + UAI + " FROM "
                 + deployedStructuresTable + " WHERE " + IS_DEPLOYED + " = true ";
+        getStructures(query, handler);
+    }
 
-        sql.prepared(query, new JsonArray(), SqlResult.validResultHandler(res -> {
+    /**
+     * Get deployed structures, least recently synchronized address books first,
+     * so that a synchronization resumes with structures not synchronized by the previous one
+     * @param handler result handler, list of structures uai
+     */
+    public void getDeployedStructuresForAbSync(Handler<AsyncResult<List<String>>> handler) {
+        String query = "SELECT " + UAI + " FROM "
+                + deployedStructuresTable + " WHERE " + IS_DEPLOYED + " = true "
+                + "ORDER BY " + AB_SYNC_DATE + " ASC NULLS FIRST";
+        getStructures(query, handler);
+    }
+
+    private void getStructures(String query, Handler<AsyncResult<List<String>>> handler) {
+        sql.prepared(query, new JsonArray(), StoreMetrics.sql("synchro.getStructures", SqlResult.validResultHandler(res -> {
             if(res.isLeft()) {
                 handler.handle(Future.failedFuture(res.left().getValue()));
             } else {
@@ -97,7 +115,7 @@ public class SqlSynchroService {
                     handler.handle(Future.failedFuture("Invalid data in database"));
                 }
             }
-        }));
+        })));
     }
 
     //todo delete old structures
@@ -118,7 +136,7 @@ public class SqlSynchroService {
                 .append(IS_DEPLOYED + " = true");
 
         sql.prepared(query.toString(), new JsonArray(newStructures),
-                SqlResult.validUniqueResultHandler(AsyncHelper.getJsonObjectEitherHandler(handler)));
+                StoreMetrics.sql("synchro.updateDeployedStructures", SqlResult.validUniqueResultHandler(AsyncHelper.getJsonObjectEitherHandler(handler))));
     }
 
 
@@ -130,12 +148,30 @@ public class SqlSynchroService {
         query += " RETURNING " + deployedStructuresTable + "." + UAI;
 
         sql.prepared(query, new JsonArray().add(structureUAI),
-                SqlResult.validUniqueResultHandler(AsyncHelper.getJsonObjectEitherHandler(handler)));
+                StoreMetrics.sql("synchro.updateStructureForAbSync", SqlResult.validUniqueResultHandler(AsyncHelper.getJsonObjectEitherHandler(handler))));
+    }
+
+    /**
+     * Reset address book synchronization date of a structure whose synchronization failed,
+     * so that it is synchronized first by next synchronization
+     * @param structureUAI structure uai
+     * @param handler      result handler
+     */
+    public void releaseStructureForAbSync(String structureUAI, Handler<AsyncResult<JsonObject>> handler) {
+        String query = "UPDATE " + deployedStructuresTable + " SET " + AB_SYNC_DATE + " = NULL WHERE " + UAI + " = ?";
+
+        sql.prepared(query, new JsonArray().add(structureUAI),
+                StoreMetrics.sql("synchro.releaseStructureForAbSync", SqlResult.validUniqueResultHandler(AsyncHelper.getJsonObjectEitherHandler(handler))));
     }
 
     public void purgeStructureSyncAddressBook(String uai, Handler<Either<String, JsonObject>> handler) {
-        String query = "UPDATE " + deployedStructuresTable + " SET " + AB_SYNC_DATE + " = NULL WHERE " + UAI + " = ?  ;";
-        sql.prepared(query, new JsonArray().add(uai), SqlResult.validUniqueResultHandler(handler));
+        // Folder hashes of the structure address book are purged too, so that next synchronization re-imports every folder
+        String query = "WITH deleted_hashes AS (DELETE FROM " + abookFolderHashTable + " WHERE userid = ?)"
+                + " UPDATE " + deployedStructuresTable + " SET " + AB_SYNC_DATE + " = NULL WHERE " + UAI + " = ?  ;";
+        JsonArray params = new JsonArray()
+                .add(uai + Zimbra.appConfig.getAddressBookAccountName())
+                .add(uai);
+        sql.prepared(query, params, StoreMetrics.sql("synchro.purgeStructureSyncAddressBook", SqlResult.validUniqueResultHandler(handler)));
     }
 
 
@@ -153,7 +189,7 @@ public class SqlSynchroService {
         JsonArray params = new JsonArray().add(maillingList).add(SynchroConstants.STATUS_TODO);
 
         sql.prepared(query, params,
-                SqlResult.validUniqueResultHandler(AsyncHelper.getJsonObjectEitherHandler(res -> {
+                StoreMetrics.sql("synchro.initializeSynchro", SqlResult.validUniqueResultHandler(AsyncHelper.getJsonObjectEitherHandler(res -> {
                     if(res.succeeded()){
 
                         String queryCancelOrders = String.format("UPDATE %s SET %s='%s' where %s='%s'",
@@ -163,16 +199,16 @@ public class SqlSynchroService {
                                 USER_STATUS,
                                 SynchroConstants.STATUS_TODO);
 
-                        sql.prepared(queryCancelOrders, new JsonArray(),SqlResult.validUniqueResultHandler( resCanc -> {
+                        sql.prepared(queryCancelOrders, new JsonArray(),StoreMetrics.sql("synchro.cancelSynchroUsers", SqlResult.validUniqueResultHandler( resCanc -> {
                             if(resCanc.isLeft()) {
                                 log.error("Error when cancelling sync orders."  + queryCancelOrders + " : "  + resCanc.left().getValue());
                             }
                             handler.handle(res);
-                        }));
+                        })));
                     } else {
                         handler.handle(res);
                     }
-                })));
+                }))));
     }
 
 
@@ -228,7 +264,7 @@ public class SqlSynchroService {
                 .append(")");
         List<String> extract = users.subList(start, start + i);
         sql.prepared(query.toString(), new JsonArray(extract),
-                SqlResult.validUniqueResultHandler(AsyncHelper.getJsonObjectEitherHandler(
+                StoreMetrics.sql("synchro.addUsersToSynchronize", SqlResult.validUniqueResultHandler(AsyncHelper.getJsonObjectEitherHandler(
                         res -> {
                             if(res.failed()) {
                                 handler.handle(res);
@@ -237,27 +273,32 @@ public class SqlSynchroService {
                                         start + INSERT_PAGINATION, handler);
                             }
                         }
-                )));
+                ))));
     }
 
 
-    // Get an user in TO-DO state from database in order to synchronize it
-    public void fetchUserToSynchronize(Handler<AsyncResult<JsonObject>> handler) {
+    /**
+     * Get users in TO-DO state from database in order to synchronize them, and set them in IN-PROGRESS state.
+     * Rows already claimed by another claimer are skipped, so several claimers can run at the same time.
+     * @param limit max number of users to claim
+     * @param handler claimed rows (id, id_user, synchro_action), empty when there is no user left to synchronize
+     */
+    public void fetchUsersToSynchronize(int limit, Handler<AsyncResult<JsonArray>> handler) {
         // Explanation for : FOR UPDATE SKIP LOCKED :
         // https://dba.stackexchange.com/questions/69471/postgres-update-limit-1
         String query = "UPDATE " + userSynchroTable
                 + " SET " + USER_STATUS + "='" + SynchroConstants.STATUS_INPROGRESS + "'"
                 + ", " + USER_SYNCDATE+ "=now()"
-                + " WHERE " + USER_IDROW + "= ("
+                + " WHERE " + USER_IDROW + " IN ("
                     + "SELECT " + USER_IDROW
                     + " FROM " + userSynchroTable
                     + " WHERE " + USER_STATUS + "='" + SynchroConstants.STATUS_TODO + "'"
-                    + " LIMIT 1"
+                    + " LIMIT ?"
                     + " FOR UPDATE SKIP LOCKED"
                 + " ) "
                 + " RETURNING " + USER_IDUSER + "," + USER_SYNCACTION + "," + USER_IDROW;
-        sql.prepared(query, new JsonArray(),
-                SqlResult.validUniqueResultHandler(AsyncHelper.getJsonObjectEitherHandler(handler)));
+        sql.prepared(query, new JsonArray().add(Math.max(limit, 1)),
+                StoreMetrics.sql("synchro.fetchUsersToSynchronize", SqlResult.validResultHandler(AsyncHelper.getJsonArrayEitherHandler(handler))));
     }
 
 
@@ -288,7 +329,7 @@ public class SqlSynchroService {
                 + String.format("WHERE %s=? ", USER_IDROW);
         params.add(state).add(idRow);
         sql.prepared(query, params,
-                SqlResult.validUniqueResultHandler(AsyncHelper.getJsonObjectEitherHandler(handler)));
+                StoreMetrics.sql("synchro.updateSynchroUser", SqlResult.validUniqueResultHandler(AsyncHelper.getJsonObjectEitherHandler(handler))));
     }
 
 
@@ -306,7 +347,7 @@ public class SqlSynchroService {
                 + " returning " + SYNCHRO_ID;
         params.add(newStatus).add(oldStatus);
         sql.prepared(query, params,
-                SqlResult.validResultHandler(AsyncHelper.getJsonArrayEitherHandler(handler)));
+                StoreMetrics.sql("synchro.updateSynchros", SqlResult.validResultHandler(AsyncHelper.getJsonArrayEitherHandler(handler))));
     }
 
 
@@ -335,6 +376,6 @@ public class SqlSynchroService {
                 + String.format(" GROUP BY %s.%s", synchroTable, SYNCHRO_ID);
         params.add(synchroId);
         sql.prepared(query, params,
-                SqlResult.validUniqueResultHandler(AsyncHelper.getJsonObjectEitherHandler(handler)));
+                StoreMetrics.sql("synchro.getSynchroInfos", SqlResult.validUniqueResultHandler(AsyncHelper.getJsonObjectEitherHandler(handler))));
     }
 }
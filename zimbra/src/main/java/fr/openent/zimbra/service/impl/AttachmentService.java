@@ -19,8 +19,9 @@ package fr.openent.zimbra.service.impl;
 
 import fr.openent.zimbra.Zimbra;
 import fr.openent.zimbra.core.constants.Field;
+import fr.openent.zimbra.core.enums.ErrorEnum;
 import fr.openent.zimbra.helper.FileHelper;
-import fr.openent.zimbra.helper.HttpClientHelper;
+import fr.openent.zimbra.helper.HttpClientPool;
 import fr.openent.zimbra.helper.PromiseHelper;
 import fr.openent.zimbra.service.data.SoapZimbraService;
 import fr.wseduc.webutils.Either;
@@ -31,6 +32,8 @@ import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.file.FileSystem;
+import io.vertx.core.file.OpenOptions;
 import io.vertx.core.http.*;
 import io.vertx.core.http.impl.headers.HeadersMultiMap;
 import io.vertx.core.json.JsonArray;
@@ -50,8 +53,7 @@ import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 import static fr.openent.zimbra.model.constant.ZimbraConstants.*;
@@ -65,19 +67,28 @@ public class AttachmentService {
     private static final Logger log = LoggerFactory.getLogger(AttachmentService.class);
     private final String zimbraUrlAttachment;
     private final String zimbraUrlUpload;
-    private final Queue<HttpClient> httpClientPool;
-    private final WebClient client;
+    private HttpClientPool downloadPool;
+    private HttpClientPool uploadPool;
+    private WebClient uploadClient;
 
     public AttachmentService(SoapZimbraService soapService, MessageService messageService,
-                             Vertx vertx, JsonObject config, WebClient webClient) {
+                             Vertx vertx, JsonObject config) {
+        this(soapService, messageService, vertx, config, null);
+    }
+
+    /**
+     * @param uploadPool pool used by uploads, shared with the other services uploading to Zimbra,
+     *                   null to create one on first upload
+     */
+    public AttachmentService(SoapZimbraService soapService, MessageService messageService,
+                             Vertx vertx, JsonObject config, HttpClientPool uploadPool) {
+        this.uploadPool = uploadPool;
         String zimbraUri = config.getString("zimbra-uri", "");
         this.zimbraUrlAttachment = zimbraUri + "/service/home/~/?auth=co";
         this.zimbraUrlUpload = zimbraUri + "/service/upload?fmt=extended,raw";
         this.vertx = vertx;
         this.soapService = soapService;
         this.messageService = messageService;
-        this.httpClientPool = new LinkedList<>();
-        this.client = webClient;
     }
 
     /**
@@ -147,29 +158,19 @@ public class AttachmentService {
                 PromiseHelper.reject(log, messageToFormat, AttachmentService.class.getSimpleName(), authTokenResponse, promise);
             } else {
                 String authToken = authTokenResponse.right().getValue().getString(Field.AUTH_TOKEN);
-                if (httpClientPool.isEmpty()) {
-                    httpClientPool.add(HttpClientHelper.createHttpClient(vertx));
-                }
-                HttpClient httpClient = httpClientPool.poll();
-                if (httpClient == null) {
-                    String messageToFormat = "Zimbra@getAttachment : Null httpClient, can't upload attachment";
-                    PromiseHelper.reject(log, messageToFormat, AttachmentService.class.getSimpleName(), new Exception(messageToFormat), promise);
-                } else {
-                    httpClient.request(
-                                    new RequestOptions()
-                                            .setAbsoluteURI(urlAttachment)
-                                            .setHeaders(new HeadersMultiMap().add(Field.COOKIE, "ZM_AUTH_TOKEN=" + authToken)))
-                            .flatMap(req -> {
-                                req.setChunked(Boolean.TRUE);
-                                return req.send();
-                            })
-                            .onSuccess(promise::complete)
-                            .onFailure(err -> {
-                                String messageToFormat = "Zimbra@getAttachment : Error when getting attachment : " + err.getMessage();
-                                PromiseHelper.reject(log, messageToFormat, AttachmentService.class.getSimpleName(), err, promise);
-                            });
-
-                }
+                getDownloadPool().request(
+                                new RequestOptions()
+                                        .setAbsoluteURI(urlAttachment)
+                                        .setHeaders(new HeadersMultiMap().add(Field.COOKIE, "ZM_AUTH_TOKEN=" + authToken)))
+                        .flatMap(req -> {
+                            req.setChunked(Boolean.TRUE);
+                            return req.send();
+                        })
+                        .onSuccess(promise::complete)
+                        .onFailure(err -> {
+                            String messageToFormat = "Zimbra@getAttachment : Error when getting attachment : " + err.getMessage();
+                            PromiseHelper.reject(log, messageToFormat, AttachmentService.class.getSimpleName(), err, promise);
+                        });
             }
         });
         return promise.future();
@@ -186,8 +187,10 @@ public class AttachmentService {
             fileName = URLDecoder.decode(fileName, StandardCharsets.UTF_8.name());
             if (!fileName.isEmpty() && !contentType.isEmpty()) {
                 String finalFileName = fileName;
-                //Todo make the writeBuffer writeReadStream to fileStorage
-                processWriteBuffer(storage, zimbraResponse, contentType, fileName)
+                Future<JsonObject> writeFuture = Zimbra.appConfig.isWorkspaceAttachmentStreaming()
+                        ? processWriteStream(storage, zimbraResponse, contentType, fileName)
+                        : processWriteBuffer(storage, zimbraResponse, contentType, fileName);
+                writeFuture
                         .compose(writeInfo -> FileHelper.addFileReference(writeInfo, user, finalFileName, workspaceHelper))
                         .onSuccess(res -> promise.complete())
                         .onFailure(err -> {
@@ -218,32 +221,128 @@ public class AttachmentService {
         return promise.future();
     }
 
+    /**
+     * Stream attachment into storage without keeping it in memory.
+     * The zimbra response is piped with backpressure into a temporary file, which is then moved to storage.
+     * Upstream request is reset as soon as the attachment exceeds the max size or the file cannot be written.
+     *
+     * @param storage          storage
+     * @param zimbraResponse   zimbra response containing the attachment
+     * @param finalContentType content type of the attachment
+     * @param finalFileName    name of the attachment
+     * @return storage write result, with attachment metadata
+     */
+    private Future<JsonObject> processWriteStream(Storage storage, HttpClientResponse zimbraResponse,
+                                                  String finalContentType, String finalFileName) {
+        zimbraResponse.pause();
+        Promise<JsonObject> promise = Promise.promise();
+        long maxSize = Zimbra.appConfig.getWorkspaceAttachmentMaxSize() * 1024L * 1024L;
+        String contentLength = zimbraResponse.getHeader(Field.CONTENT_LENGTH);
+        if (contentLength != null && maxSize > 0 && Long.parseLong(contentLength) > maxSize) {
+            zimbraResponse.request().reset();
+            String messageToFormat = "[Zimbra@%s::processWriteStream] Attachment of " + contentLength + " bytes refused : %s";
+            PromiseHelper.reject(log, messageToFormat, AttachmentService.class.getSimpleName(),
+                    new Exception(ErrorEnum.ATTACHMENT_TOO_LARGE.method()), promise);
+            return promise.future();
+        }
+
+        FileSystem fs = vertx.fileSystem();
+        fs.createTempFile("zimbra-attachment-", ".tmp")
+                .compose(tmpPath -> pipeToFile(zimbraResponse, tmpPath, maxSize)
+                        .compose(size -> writeFsFile(storage, tmpPath)
+                                .map(writeInfo -> setFileMetadata(writeInfo, finalContentType, finalFileName, size)))
+                        // Temporary file is deleted before completing, a failed delete does not fail the write
+                        .eventually(() -> fs.delete(tmpPath).otherwiseEmpty()))
+                .onSuccess(promise::complete)
+                .onFailure(err -> {
+                    zimbraResponse.request().reset();
+                    String messageToFormat = "[Zimbra@%s::processWriteStream] Error while storing file : %s";
+                    PromiseHelper.reject(log, messageToFormat, AttachmentService.class.getSimpleName(), err, promise);
+                });
+        return promise.future();
+    }
+
+    /**
+     * Write a response into a file, pausing the response while the file write queue is full
+     *
+     * @param zimbraResponse paused response
+     * @param path           file to write
+     * @param maxSize        max number of bytes written, 0 for no limit
+     * @return number of bytes written
+     */
+    private Future<Long> pipeToFile(HttpClientResponse zimbraResponse, String path, long maxSize) {
+        Promise<Long> promise = Promise.promise();
+        vertx.fileSystem().open(path, new OpenOptions().setWrite(true).setTruncateExisting(true))
+                .onFailure(promise::tryFail)
+                .onSuccess(file -> {
+                    AtomicLong size = new AtomicLong();
+                    Handler<Throwable> abort = err -> {
+                        if (promise.tryFail(err)) {
+                            zimbraResponse.handler(null);
+                            zimbraResponse.endHandler(null);
+                            file.close();
+                        }
+                    };
+                    file.exceptionHandler(abort);
+                    zimbraResponse.exceptionHandler(abort);
+                    zimbraResponse.handler(buffer -> {
+                        if (maxSize > 0 && size.addAndGet(buffer.length()) > maxSize) {
+                            abort.handle(new Exception(ErrorEnum.ATTACHMENT_TOO_LARGE.method()));
+                            return;
+                        }
+                        file.write(buffer);
+                        if (file.writeQueueFull()) {
+                            zimbraResponse.pause();
+                            file.drainHandler(v -> zimbraResponse.resume());
+                        }
+                    });
+                    zimbraResponse.endHandler(v -> file.close()
+                            .onSuccess(closed -> promise.tryComplete(size.get()))
+                            .onFailure(promise::tryFail));
+                    zimbraResponse.resume();
+                });
+        return promise.future();
+    }
+
+    private Future<JsonObject> writeFsFile(Storage storage, String path) {
+        Promise<JsonObject> promise = Promise.promise();
+        storage.writeFsFile(path, res -> {
+            if (!Field.ERROR.equals(res.getString(Field.STATUS))) {
+                promise.complete(res);
+            } else {
+                promise.fail(res.getString(Field.ERROR, res.getString("message", "")));
+            }
+        });
+        return promise.future();
+    }
+
+    // Metadata computed by storage from the temporary file are replaced by the attachment ones
+    private JsonObject setFileMetadata(JsonObject writeInfo, String contentType, String fileName, long size) {
+        JsonObject metadata = writeInfo.getJsonObject(Field.METADATA, new JsonObject())
+                .put(Field.NAME, "file")
+                .put(Field.FILENAME, fileName)
+                .put(Field.METADATA_CONTENT_TYPE, contentType)
+                .put(Field.SIZE, size);
+        return writeInfo.put(Field.METADATA, metadata);
+    }
+
     private Future<Void> uploadToComputer(HttpServerRequest frontRequest, HttpClientResponse zimbraResponse) {
         Promise<Void> promise = Promise.promise();
         HttpServerResponse frontResponse = frontRequest.response();
         String cdHeader = Utils.getOrElse(zimbraResponse.getHeader(Field.CONTENT_DISPOSITION), Field.INLINE);
         frontResponse.setChunked(true)
                 .putHeader(Field.CONTENT_DISPOSITION, cdHeader);
-        if (httpClientPool.isEmpty()) {
-            httpClientPool.add(HttpClientHelper.createHttpClient(vertx));
-        }
-        HttpClient httpClient = httpClientPool.poll();
-        if (httpClient == null) {
-            String messageToFormat = "Zimbra@uploadToComputer : Null httpClient, can't upload attachment";
-            PromiseHelper.reject(log, messageToFormat, AttachmentService.class.getSimpleName(), new Exception(messageToFormat), promise);
-        } else {
-            pumpRequests(httpClient, zimbraResponse, frontResponse)
-                    .onSuccess(res -> promise.complete())
-                    .onFailure(error -> {
-                        String messageToFormat = "Zimbra@uploadComputer@pumpRequests Error in pumpRequests : " + error.getMessage();
-                        PromiseHelper.reject(log, messageToFormat, AttachmentService.class.getSimpleName(), error, promise);
-                    });
+        pumpRequests(zimbraResponse, frontResponse)
+                .onSuccess(res -> promise.complete())
+                .onFailure(error -> {
+                    String messageToFormat = "Zimbra@uploadComputer@pumpRequests Error in pumpRequests : " + error.getMessage();
+                    PromiseHelper.reject(log, messageToFormat, AttachmentService.class.getSimpleName(), error, promise);
+                });
 
-            frontResponse.exceptionHandler(event -> {
-                String messageToFormat = "Zimbra@uploadToComputer Error when transferring attachment : " + event.getMessage();
-                PromiseHelper.reject(log, messageToFormat, AttachmentService.class.getSimpleName(), event, promise);
-            });
-        }
+        frontResponse.exceptionHandler(event -> {
+            String messageToFormat = "Zimbra@uploadToComputer Error when transferring attachment : " + event.getMessage();
+            PromiseHelper.reject(log, messageToFormat, AttachmentService.class.getSimpleName(), event, promise);
+        });
         return promise.future();
     }
 
@@ -251,18 +350,14 @@ public class AttachmentService {
      * Dump one request into another.
      * Used to transfer attachment from Zimbra to Front, or Front to Zimbra
      *
-     * @param httpClient HttpClient used for pump, can be closed afterwards
      * @param inRequest  Request containing the data
      * @param outRequest Request that must be filled
      */
-    private Future<Void> pumpRequests(HttpClient httpClient, ReadStream<Buffer> inRequest, WriteStream<Buffer> outRequest) {
+    private Future<Void> pumpRequests(ReadStream<Buffer> inRequest, WriteStream<Buffer> outRequest) {
         Promise<Void> promise = Promise.promise();
 
         inRequest.pipeTo(outRequest)
-            .onSuccess(v -> {
-                httpClientPool.add(httpClient);
-                promise.complete();
-            })
+            .onSuccess(v -> promise.complete())
             .onFailure(err -> {
                 log.error("[Zimbra@AttachmentService::pumpRequests] Error  : " + err.getMessage());
                 promise.fail(err.getMessage());
@@ -298,7 +393,7 @@ public class AttachmentService {
             } catch (UnsupportedEncodingException e) {
                 e.printStackTrace();
             }
-            this.client.postAbs(zimbraUrlUpload)
+            getUploadClient().postAbs(zimbraUrlUpload)
                     .putHeader(Field.COOKIE, "ZM_AUTH_TOKEN=" + authToken)
                     .putHeader(Field.CONTENT_DISPOSITION, "attachment; filename=" + filename)
                     .putHeader(Field.CONTENT_TYPE, document.getJsonObject("metadata").getString(Field.CONTENT_TYPE))
@@ -344,8 +439,6 @@ public class AttachmentService {
                 return;
             }
             String authToken = authTokenResponse.right().getValue().getString(Field.AUTH_TOKEN);
-            HttpClient httpClient = HttpClientHelper.createHttpClient(vertx);
-
             String cdHeader = Utils.getOrElse(requestFront.getHeader(Field.CONTENT_DISPOSITION), "attachment");
 
             RequestOptions requestOptions = new RequestOptions()
@@ -355,10 +448,10 @@ public class AttachmentService {
                     .putHeader(Field.CONTENT_DISPOSITION, cdHeader)
                     .putHeader(Field.COOKIE, "ZM_AUTH_TOKEN=" + authToken);
 
-            httpClient.request(requestOptions)
+            getUploadPool().request(requestOptions)
                     .flatMap(requestZimbra -> {
                         requestZimbra.setChunked(Boolean.TRUE);
-                        return pumpRequests(httpClient, requestFront, requestZimbra)
+                        return pumpRequests(requestFront, requestZimbra)
                                 .compose(v -> requestZimbra.send());
                     })
                     .onSuccess(res -> {
@@ -395,6 +488,27 @@ public class AttachmentService {
 
     }
 
+    private synchronized HttpClientPool getDownloadPool() {
+        if (downloadPool == null) {
+            downloadPool = new HttpClientPool(vertx, HttpClientPool.DOWNLOAD);
+        }
+        return downloadPool;
+    }
+
+    private synchronized HttpClientPool getUploadPool() {
+        if (uploadPool == null) {
+            uploadPool = new HttpClientPool(vertx, HttpClientPool.UPLOAD);
+        }
+        return uploadPool;
+    }
+
+    private synchronized WebClient getUploadClient() {
+        if (uploadClient == null) {
+            uploadClient = WebClient.wrap(getUploadPool().getHttpClient());
+        }
+        return uploadClient;
+    }
+
     private static String encodeFileName(String fileName) throws UnsupportedEncodingException {
         return URLEncoder.encode(fileName, "UTF-8").replace("+", "%20");
     }
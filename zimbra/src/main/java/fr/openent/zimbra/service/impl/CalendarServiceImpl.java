@@ -3,6 +3,7 @@ package fr.openent.zimbra.service.impl;
 import fr.openent.zimbra.core.constants.Field;
 import fr.openent.zimbra.core.enums.SoapRequestFields;
 import fr.openent.zimbra.model.constant.SoapConstants;
+import fr.openent.zimbra.model.soap.SoapResponseParser;
 import fr.openent.zimbra.model.soap.model.SoapICalResponse;
 import fr.openent.zimbra.service.CalendarService;
 import fr.openent.zimbra.service.data.SoapZimbraService;
@@ -43,7 +44,8 @@ public class CalendarServiceImpl implements CalendarService {
 
         JsonObject searchRequest = new JsonObject()
                 .put(Field.NAME, Field.GETICALREQUEST)
-                .put(Field.CONTENT, icalRequest);
+                .put(Field.CONTENT, icalRequest)
+                .put(SoapZimbraService.PARAM_RESPONSE_PATHS, SoapResponseParser.paths("Body.GetICalResponse.ical._content"));
 
         soapService.callUserSoapAPI(searchRequest, user, getICalResponse -> {
             if (getICalResponse.isLeft()) {
@@ -17,10 +17,13 @@
 
 package fr.openent.zimbra.service.impl;
 
+import fr.openent.zimbra.helper.BoundedCache;
+import fr.openent.zimbra.helper.ConfigManager;
 import fr.openent.zimbra.model.MailAddress;
 import fr.openent.zimbra.service.data.Neo4jZimbraService;
 import fr.wseduc.webutils.Either;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
@@ -32,10 +35,19 @@ public class CommunicationService {
     public static final String HAS_EXTERNAL_ROLE = "has_external_role";
 
     private Neo4jZimbraService neoZimbraService;
+    // Decisions already computed, keyed by "sender|recipient"
+    private final BoundedCache<String, Boolean> decisionCache;
+    // Neo4j ids of local mail addresses
+    private final BoundedCache<String, String> addressIdCache;
     private static Logger log = LoggerFactory.getLogger(CommunicationService.class);
 
-    public CommunicationService() {
+    public CommunicationService(ConfigManager config) {
         neoZimbraService = new Neo4jZimbraService();
+        int cacheSize = config != null ? config.getCommunicationCacheSize() : 0;
+        decisionCache = new BoundedCache<>(cacheSize,
+                config != null ? config.getCommunicationCacheTtl() * 1000L : 0L);
+        addressIdCache = new BoundedCache<>(cacheSize,
+                config != null ? config.getCommunicationAddressCacheTtl() * 1000L : 0L);
     }
 
     /**
@@ -44,6 +56,7 @@ public class CommunicationService {
      * {
      *     can_communicate : true/false
      * }
+     * Decisions are cached, errors are not.
      * @param inSender Mail address of the sender
      * @param inRecipient Maid address of the recipient
      * @param handler final handler
@@ -61,13 +74,33 @@ public class CommunicationService {
             return;
         }
 
+        String decisionKey = (sender + "|" + recipient).toLowerCase();
+        Boolean cachedDecision = decisionCache.get(decisionKey);
+        if(cachedDecision != null) {
+            sendDecision(cachedDecision, handler);
+            return;
+        }
+
+        checkCommunication(sender, recipient, inSender, inRecipient, decision -> {
+            if(decision.failed()) {
+                log.error("Error when checking communication rights : " + decision.cause().getMessage());
+                refuseCommunication(handler);
+            } else {
+                decisionCache.put(decisionKey, decision.result());
+                sendDecision(decision.result(), handler);
+            }
+        });
+    }
+
+    private void checkCommunication(MailAddress sender, MailAddress recipient, String inSender, String inRecipient,
+                                    Handler<AsyncResult<Boolean>> handler) {
         //noinspection CodeBlock2Expr
-        sender.fetchNeoId(senderId -> {
-            recipient.fetchNeoId(recipientId -> {
+        fetchNeoId(sender, senderId -> {
+            fetchNeoId(recipient, recipientId -> {
 
                 if(sender.isExternal() && recipient.isExternal()) {
                     log.error(String.format("Sender %s and recipient %s are external", inSender, inRecipient));
-                    refuseCommunication(handler);
+                    handler.handle(Future.succeededFuture(false));
                 } else  if(sender.isExternal() && !recipientId.isEmpty()) {
                     neoZimbraService.hasExternalCommunicationRole(recipientId, neoResult ->
                         validateExternalCommunication(neoResult, handler)
@@ -77,20 +110,21 @@ public class CommunicationService {
                         validateExternalCommunication(neoResult, handler)
                     );
                 } else if(senderId.isEmpty() || recipientId.isEmpty()) {
-                    handler.handle(new Either.Right<>(new JsonObject().put(CAN_COMMUNICATE, false)));
+                    handler.handle(Future.succeededFuture(false));
                 } else {
                     // check if user
                     neoZimbraService.checkUserCommunication(senderId, recipientId, neoResult -> {
                         if (neoResult.isRight() && !neoResult.right().getValue().isEmpty()) {
-                            handler.handle(neoResult);
+                            handler.handle(Future.succeededFuture(
+                                    neoResult.right().getValue().getBoolean(CAN_COMMUNICATE, false)));
                         } else {
                             // check if group
                             neoZimbraService.checkGroupCommunication(senderId, recipientId, neoResultGroup -> {
                                 if (neoResultGroup.isRight()) {
-                                    handler.handle(neoResultGroup);
+                                    handler.handle(Future.succeededFuture(
+                                            neoResultGroup.right().getValue().getBoolean(CAN_COMMUNICATE, false)));
                                 } else {
-                                    log.error("Error when checking communication rights : " + neoResultGroup.left().getValue());
-                                    refuseCommunication(handler);
+                                    handler.handle(Future.failedFuture(neoResultGroup.left().getValue()));
                                 }
                             });
                         }
@@ -100,26 +134,56 @@ public class CommunicationService {
         });
     }
 
+    private void fetchNeoId(MailAddress address, Handler<String> handler) {
+        if(address.isExternal()) {
+            address.fetchNeoId(handler);
+            return;
+        }
+        String addressKey = address.toString().toLowerCase();
+        String cachedId = addressIdCache.get(addressKey);
+        if(cachedId != null) {
+            address.setNeoId(cachedId);
+            handler.handle(cachedId);
+            return;
+        }
+        address.fetchNeoId(neoId -> {
+            if(neoId != null && !neoId.isEmpty()) {
+                addressIdCache.put(addressKey, neoId);
+            }
+            handler.handle(neoId);
+        });
+    }
+
+    /**
+     * Clear cached decisions and address ids, to be called when communication links may have changed
+     */
+    public void invalidateCache() {
+        decisionCache.invalidateAll();
+        addressIdCache.invalidateAll();
+    }
+
+    public JsonObject getCacheStats() {
+        return new JsonObject()
+                .put("decisions", decisionCache.getStats())
+                .put("addresses", addressIdCache.getStats());
+    }
+
     private void validateExternalCommunication(AsyncResult<JsonObject> neoResult,
-                                               Handler<Either<String, JsonObject>> handler) {
+                                               Handler<AsyncResult<Boolean>> handler) {
         if(neoResult.succeeded()) {
             JsonObject neoData = neoResult.result();
-            if(neoData.getBoolean(HAS_EXTERNAL_ROLE, false)) {
-                allowCommunication(handler);
-            } else {
-                refuseCommunication(handler);
-            }
+            handler.handle(Future.succeededFuture(neoData.getBoolean(HAS_EXTERNAL_ROLE, false)));
         } else {
             log.error("Error when validating external communication : " + neoResult.cause().getMessage());
-            refuseCommunication(handler);
+            handler.handle(Future.failedFuture(neoResult.cause()));
         }
     }
 
-    private void refuseCommunication(Handler<Either<String, JsonObject>> handler) {
-        handler.handle(new Either.Right<>(new JsonObject().put(CAN_COMMUNICATE, false)));
+    private void sendDecision(boolean canCommunicate, Handler<Either<String, JsonObject>> handler) {
+        handler.handle(new Either.Right<>(new JsonObject().put(CAN_COMMUNICATE, canCommunicate)));
     }
 
-    private void allowCommunication(Handler<Either<String, JsonObject>> handler) {
-        handler.handle(new Either.Right<>(new JsonObject().put(CAN_COMMUNICATE, true)));
+    private void refuseCommunication(Handler<Either<String, JsonObject>> handler) {
+        sendDecision(false, handler);
     }
 }
@@ -17,10 +17,14 @@
 
 package fr.openent.zimbra.service.impl;
 
+import fr.openent.zimbra.Zimbra;
 import fr.openent.zimbra.core.constants.Field;
+import fr.openent.zimbra.helper.ChangeTokenCache;
+import fr.openent.zimbra.helper.ConfigManager;
 import fr.openent.zimbra.model.constant.FrontConstants;
 import fr.openent.zimbra.model.constant.SoapConstants;
 import fr.openent.zimbra.model.constant.ZimbraConstants;
+import fr.openent.zimbra.model.soap.SoapResponseParser;
 import fr.openent.zimbra.model.soap.model.SoapFolder;
 import fr.openent.zimbra.service.data.SoapZimbraService;
 import fr.wseduc.webutils.Either;
@@ -36,8 +40,80 @@ public class FolderService {
 
     private SoapZimbraService soapService;
 
+    // GetFolder responses and folder trees of users, dropped when their mailbox changes
+    private final ChangeTokenCache<JsonObject> folderResponseCache;
+    private final ChangeTokenCache<SoapFolder> folderTreeCache;
+    private final long folderTtl;
+    private final long countTtl;
+
     public FolderService(SoapZimbraService soapService) {
         this.soapService = soapService;
+        ConfigManager config = Zimbra.appConfig;
+        int cacheSize = config != null ? config.getFolderCacheSize() : 0;
+        this.folderTtl = config != null ? config.getFolderCacheTtl() * 1000L : 0L;
+        this.countTtl = config != null ? config.getFolderCacheCountTtl() * 1000L : 0L;
+        this.folderResponseCache = new ChangeTokenCache<>(cacheSize, Math.max(folderTtl, countTtl));
+        this.folderTreeCache = new ChangeTokenCache<>(cacheSize, folderTtl);
+        if (soapService != null) {
+            soapService.addChangeTokenListener((userId, token) -> {
+                folderResponseCache.observeToken(userId, token);
+                folderTreeCache.observeToken(userId, token);
+            });
+        }
+    }
+
+    /**
+     * Drop cached folders of a user, to be called after a change of its folders or messages
+     * @param userId User id
+     */
+    public void invalidateCache(String userId) {
+        folderResponseCache.invalidate(userId);
+        folderTreeCache.invalidate(userId);
+    }
+
+    public JsonObject getCacheStats() {
+        return new JsonObject()
+                .put("folders", folderResponseCache.getStats())
+                .put("trees", folderTreeCache.getStats())
+                .put("paths", SoapFolder.getPathCacheStats());
+    }
+
+    /**
+     * Send a GetFolderRequest, or get its response from cache
+     * @param getFolderRequest request
+     * @param cacheKey key of the response in cache
+     * @param ttl time to live of the response in cache
+     * @param user User infos
+     * @param handler result handler
+     */
+    private void getFolder(JsonObject getFolderRequest, String cacheKey, long ttl, UserInfos user,
+                           Handler<Either<String, JsonObject>> handler) {
+        JsonObject cached = folderResponseCache.get(user.getUserId(), cacheKey);
+        if(cached != null) {
+            handler.handle(new Either.Right<>(cached));
+            return;
+        }
+        soapService.callUserSoapAPI(getFolderRequest, user, response -> {
+            if(response.isRight()) {
+                JsonObject folders = response.right().getValue();
+                folderResponseCache.put(user.getUserId(), cacheKey, folders, ttl,
+                        SoapZimbraService.getChangeToken(folders));
+            }
+            handler.handle(response);
+        });
+    }
+
+    /**
+     * Invalidate cached folders of the user once a folder action is done
+     */
+    private Handler<Either<String, JsonObject>> invalidating(UserInfos user,
+                                                             Handler<Either<String, JsonObject>> handler) {
+        return response -> {
+            invalidateCache(user.getUserId());
+            // Renamed, moved or deleted folders have a new path
+            SoapFolder.invalidatePathCache(user.getUserId());
+            handler.handle(response);
+        };
     }
 
     /**
@@ -63,7 +139,7 @@ public class FolderService {
                         .put("folder", folderReq)
                         .put("_jsns", SoapConstants.NAMESPACE_MAIL));
 
-        soapService.callUserSoapAPI(getFolderRequest, user, response -> {
+        getFolder(getFolderRequest, "count:" + folderId, countTtl, user, response -> {
             if(response.isLeft()) {
                 JsonObject value = new JsonObject().put("count", 0);
                 result.handle(new Either.Right<>(value));
@@ -138,9 +214,12 @@ public class FolderService {
                 .put("content", new JsonObject()
                         .put("depth", 1)
                         .put("folder", folderReq)
-                        .put("_jsns", SoapConstants.NAMESPACE_MAIL));
+                        .put("_jsns", SoapConstants.NAMESPACE_MAIL))
+                .put(SoapZimbraService.PARAM_RESPONSE_PATHS, SoapResponseParser.paths(
+                        "Body.GetFolderResponse.folder.folder.id",
+                        "Body.GetFolderResponse.folder.folder.name"));
 
-        soapService.callUserSoapAPI(getFolderRequest, user, response -> {
+        getFolder(getFolderRequest, "list:" + folderReq.getString("l"), folderTtl, user, response -> {
             if(response.isLeft()) {
                 handler.handle(new Either.Left<>(response.left().getValue()));
             } else {
@@ -230,13 +309,13 @@ public class FolderService {
                         .put("folder", actionReq)
                         .put("_jsns", SoapConstants.NAMESPACE_MAIL));
 
-        soapService.callUserSoapAPI(createFolderRequest, user, response -> {
+        soapService.callUserSoapAPI(createFolderRequest, user, invalidating(user, response -> {
             if(response.isLeft()) {
                 handler.handle(new Either.Left<>(response.left().getValue()));
             } else {
                 handler.handle(new Either.Right<>(new JsonObject()));
             }
-        });
+        }));
     }
 
     /**
@@ -257,13 +336,13 @@ public class FolderService {
                     .put("action", actionReq)
                     .put("_jsns", SoapConstants.NAMESPACE_MAIL));
 
-        soapService.callUserSoapAPI(folderActionRequest, user, response -> {
+        soapService.callUserSoapAPI(folderActionRequest, user, invalidating(user, response -> {
             if(response.isLeft()) {
                 handler.handle(new Either.Left<>(response.left().getValue()));
             } else {
                 handler.handle(new Either.Right<>(new JsonObject()));
             }
-        });
+        }));
     }
 
     /**
@@ -286,13 +365,13 @@ public class FolderService {
                         .put("action", actionReq)
                         .put("_jsns", SoapConstants.NAMESPACE_MAIL));
 
-        soapService.callUserSoapAPI(folderActionRequest, user, response -> {
+        soapService.callUserSoapAPI(folderActionRequest, user, invalidating(user, response -> {
             if(response.isLeft()) {
                 handler.handle(new Either.Left<>(response.left().getValue()));
             } else {
                 handler.handle(new Either.Right<>(new JsonObject()));
             }
-        });
+        }));
     }
 
     /**
@@ -314,13 +393,13 @@ public class FolderService {
                         .put("action", actionReq)
                         .put("_jsns", SoapConstants.NAMESPACE_MAIL));
 
-        soapService.callUserSoapAPI(folderActionRequest, user, response -> {
+        soapService.callUserSoapAPI(folderActionRequest, user, invalidating(user, response -> {
             if(response.isLeft()) {
                 handler.handle(new Either.Left<>(response.left().getValue()));
             } else {
                 handler.handle(new Either.Right<>(new JsonObject()));
             }
-        });
+        }));
     }
 
 
@@ -342,13 +421,13 @@ public class FolderService {
                         .put("action", actionReq)
                         .put("_jsns", SoapConstants.NAMESPACE_MAIL));
 
-        soapService.callUserSoapAPI(folderActionRequest, user, response -> {
+        soapService.callUserSoapAPI(folderActionRequest, user, invalidating(user, response -> {
             if(response.isLeft()) {
                 handler.handle(new Either.Left<>(response.left().getValue()));
             } else {
                 handler.handle(new Either.Right<>(new JsonObject()));
             }
-        });
+        }));
     }
 
     /**
@@ -406,7 +485,24 @@ public class FolderService {
         }
     }
 
+    /**
+     * Get the whole folder tree of a user, from cache if its mailbox did not change
+     * @param user User infos
+     * @param handler result handler, folder must not be modified
+     */
     public void getRootFolder(UserInfos user, Handler<AsyncResult<SoapFolder>> handler) {
-        SoapFolder.getFolderById(user.getUserId(), ZimbraConstants.FOLDER_ROOT_ID, ZimbraConstants.VIEW_MESSAGE, -1, handler);
+        SoapFolder cached = folderTreeCache.get(user.getUserId(), ZimbraConstants.FOLDER_ROOT_ID);
+        if(cached != null) {
+            handler.handle(Future.succeededFuture(cached));
+            return;
+        }
+        // response token is not exposed by SoapFolder : keep the tree only if the mailbox did not change meanwhile
+        Long token = folderTreeCache.getToken(user.getUserId());
+        SoapFolder.getFolderById(user.getUserId(), ZimbraConstants.FOLDER_ROOT_ID, ZimbraConstants.VIEW_MESSAGE, -1, res -> {
+            if(res.succeeded()) {
+                folderTreeCache.put(user.getUserId(), ZimbraConstants.FOLDER_ROOT_ID, res.result(), folderTtl, token);
+            }
+            handler.handle(res);
+        });
     }
 }
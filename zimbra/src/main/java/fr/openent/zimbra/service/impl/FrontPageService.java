@@ -3,6 +3,7 @@ package fr.openent.zimbra.service.impl;
 import fr.openent.zimbra.model.constant.FrontConstants;
 import fr.openent.zimbra.model.soap.model.SoapFolder;
 import io.vertx.core.*;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import org.entcore.common.user.UserInfos;
 
@@ -29,7 +30,7 @@ public class FrontPageService {
             } else {
                 JsonObject zUserInfo = userFuture.future().result();
                 zUserInfo.put(FrontConstants.FRONT_PAGE_FOLDERS,
-                        foldersFuture.future().result().getJsonSubfolders().toString().replaceAll("['|\\\\]", "\\\\$0"));
+                        escapeFolders(foldersFuture.future().result().getJsonSubfolders()));
                 zUserInfo.put(FrontConstants.CONFIG_SAVE_DRAFT_AUTO_TIME, appConfig.getsaveDraftAutoTime());
                 zUserInfo.put(FrontConstants.CONFIG_SEND_TIMEOUT, appConfig.getSendTimeout());
                 handler.handle(Future.succeededFuture(zUserInfo));
@@ -42,4 +43,13 @@ public class FrontPageService {
             else userFuture.complete(evt.right().getValue());
         });
     }
+
+    /**
+     * Serialize folders so they can be inserted in a javascript string of the front page
+     * @param folders folders as returned by SoapFolder.getJsonSubfolders
+     * @return folders json with quotes, pipes and backslashes escaped
+     */
+    static String escapeFolders(JsonArray folders) {
+        return folders.toString().replaceAll("['|\\\\]", "\\\\$0");
+    }
 }
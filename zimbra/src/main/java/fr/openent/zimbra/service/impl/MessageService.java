@@ -27,9 +27,12 @@ import fr.openent.zimbra.model.ZimbraUser;
 import fr.openent.zimbra.model.constant.FrontConstants;
 import fr.openent.zimbra.model.constant.I18nConstants;
 import fr.openent.zimbra.model.constant.SoapConstants;
+import fr.openent.zimbra.model.constant.ZimbraErrors;
 import fr.openent.zimbra.model.message.Multipart;
 import fr.openent.zimbra.model.message.Recipient;
+import fr.openent.zimbra.model.soap.SearchCursor;
 import fr.openent.zimbra.model.soap.SoapMessageHelper;
+import fr.openent.zimbra.model.soap.SoapResponseParser;
 import fr.openent.zimbra.model.soap.SoapSearchHelper;
 import fr.openent.zimbra.service.DbMailService;
 import fr.openent.zimbra.service.data.HttpService;
@@ -58,6 +61,9 @@ import static fr.openent.zimbra.model.constant.ZimbraErrors.ERROR_NOSUCHMSG;
 
 public class MessageService {
 
+    public static final String MESSAGES = "messages";
+    public static final String NEXT_CURSOR = "next";
+
     private final SoapZimbraService soapService;
     private final FolderService folderService;
     private final DbMailService dbMailService;
@@ -94,6 +100,29 @@ public class MessageService {
      */
     public void listMessages(String folderPath, Boolean unread, UserInfos user, int page,
                              final String searchText, Handler<Either<String, JsonArray>> result) {
+        listMessages(folderPath, unread, user, page, null, searchText, res -> result.handle(res.isLeft()
+                ? new Either.Left<>(res.left().getValue())
+                : new Either.Right<>(res.right().getValue().getJsonArray(MESSAGES))));
+    }
+
+    /**
+     * List messages in folders, by page number or after a cursor
+     * Returns :
+     * {
+     *     "messages" : array of messages,
+     *     "next" : cursor of next page, null if this page is the last one
+     * }
+     *
+     * @param folderPath folder id where to listMessages messages
+     * @param unread     filter only unread messages ?
+     * @param user       user infos
+     * @param page       page used for pagination, ignored if a cursor is given
+     * @param cursor     [optional] cursor of the page to get
+     * @param searchText [optional] text used for search
+     * @param result     Handler results
+     */
+    public void listMessages(String folderPath, Boolean unread, UserInfos user, int page, SearchCursor cursor,
+                             final String searchText, Handler<Either<String, JsonObject>> result) {
         String query = pathToQuery(folderPath);
         if (unread) {
             query += " is:unread";
@@ -107,30 +136,37 @@ public class MessageService {
                 .put("types", "message")
                 .put("recip", "2")
                 .put("limit", pageSize)
-                .put("offset", page * pageSize)
                 .put("_jsns", SoapConstants.NAMESPACE_MAIL);
+        if (cursor != null) {
+            searchReq.put(SEARCH_CURSOR, cursor.toSoap()).put("offset", 0);
+        } else {
+            searchReq.put("offset", page * pageSize);
+        }
 
         JsonObject searchRequest = new JsonObject()
                 .put(Field.NAME, "SearchRequest")
-                .put("content", searchReq);
+                .put("content", searchReq)
+                .put(SoapZimbraService.PARAM_RESPONSE_PATHS, SoapResponseParser.paths("Body.SearchResponse.m"));
 
         soapService.callUserSoapAPI(searchRequest, user, searchResult -> {
             if (searchResult.isLeft()) {
                 result.handle(new Either.Left<>(searchResult.left().getValue()));
             } else {
-                processListMessages(searchResult.right().getValue(), user, result);
+                processListMessages(searchResult.right().getValue(), user, pageSize, result);
             }
         });
     }
 
     /**
-     * Start processing message list. Forward each message to processSearchResult
+     * Start processing message list. Translate all mail addresses at once,
+     * then forward each message to processSearchResult
      *
      * @param zimbraResponse Response from Zimbra API
+     * @param pageSize       number of messages asked
      * @param result         result handler
      */
-    private void processListMessages(JsonObject zimbraResponse, UserInfos user,
-                                     Handler<Either<String, JsonArray>> result) {
+    private void processListMessages(JsonObject zimbraResponse, UserInfos user, int pageSize,
+                                     Handler<Either<String, JsonObject>> result) {
         JsonArray zimbraMessages;
         try {
             zimbraMessages = zimbraResponse.getJsonObject("Body")
@@ -141,9 +177,14 @@ public class MessageService {
             return;
         }
 
+        SearchCursor nextCursor = SearchCursor.nextPage(zimbraMessages, pageSize);
         JsonArray frontMessages = new JsonArray();
-        Map<String, String> addressMap = new HashMap<>();
-        processSearchResult(zimbraMessages, frontMessages, addressMap, result);
+        translateMessagesAddresses(zimbraMessages).onComplete(addressMap ->
+                processSearchResult(zimbraMessages, frontMessages, addressMap.result(), res -> result.handle(res.isLeft()
+                        ? new Either.Left<>(res.left().getValue())
+                        : new Either.Right<>(new JsonObject()
+                                .put(MESSAGES, res.right().getValue())
+                                .put(NEXT_CURSOR, nextCursor != null ? nextCursor.toToken() : null)))));
     }
 
     /**
@@ -361,81 +402,166 @@ public class MessageService {
 
     /**
      * Process list of mail address in a mail and transform it in Front data
+     * Addresses already in addressMap are processed directly, others are translated one at a time
      *
      * @param frontMsg    JsonObject receiving Front-formatted data
      * @param zimbraMails JsonObject containing mail addresses
+     * @param addressMap  mapping of mail addresses and front ids, completed with translated addresses
      * @param handler     result handler
      */
     private void translateMaillistToUidlist(JsonObject frontMsg, JsonArray zimbraMails, Map<String, String> addressMap,
                                             boolean isReported, Handler<JsonObject> handler) {
-        if (zimbraMails == null || zimbraMails.isEmpty()) {
-            handler.handle(frontMsg);
-            return;
-        }
-        JsonObject zimbraUser = zimbraMails.getJsonObject(0);
-        String type = (zimbraUser == null) ? "" : zimbraUser.getString(MSG_EMAIL_TYPE);
-
-        if (!(type.equals(ADDR_TYPE_FROM))
-                && !(type.equals(ADDR_TYPE_CC))
-                && !(type.equals(ADDR_TYPE_TO))
-                && !(type.equals(ADDR_TYPE_BCC))
-                && !(type.equals(ADDR_TYPE_READRECEIPT))) {
+        while (zimbraMails != null && !zimbraMails.isEmpty()) {
+            JsonObject zimbraUser = zimbraMails.getJsonObject(0);
+            String type = (zimbraUser == null) ? "" : zimbraUser.getString(MSG_EMAIL_TYPE);
+            String zimbraMail = (zimbraUser == null) ? "" : zimbraUser.getString(MSG_EMAIL_ADDR, "");
+
+            if (!isTranslatedAddressType(type) || zimbraMail.isEmpty()) {
+                zimbraMails.remove(0);
+                continue;
+            }
+
+            if (!addressMap.containsKey(zimbraMail)) {
+                translateMail(zimbraMail, recipient -> {
+                    addressMap.put(zimbraMail, getFrontId(recipient));
+                    translateMaillistToUidlist(frontMsg, zimbraMails, addressMap, isReported, handler);
+                });
+                return;
+            }
+
+            addAddressToFrontMessage(frontMsg, zimbraUser, type, addressMap.get(zimbraMail), isReported);
             zimbraMails.remove(0);
-            translateMaillistToUidlist(frontMsg, zimbraMails, addressMap, isReported, handler);
-            return;
         }
+        handler.handle(frontMsg);
+    }
 
-        String zimbraMail = zimbraUser.getString(MSG_EMAIL_ADDR, "");
-        if (zimbraMail.isEmpty()) {
-            zimbraMails.remove(0);
-            translateMaillistToUidlist(frontMsg, zimbraMails, addressMap, isReported, handler);
-        } else {
-            Handler<Recipient> translatedUuidHandler = recipient -> {
-                String userUuid;
-                if (recipient.getRecipientType() == RecipientType.UNKNOWN || recipient.getUserId() == null) {
-                    userUuid = zimbraMail;
-                } else {
-                    userUuid = recipient.getUserId();
-                }
-                addressMap.put(zimbraMail, userUuid);
-                switch (type) {
-                    case ADDR_TYPE_FROM:
-                        frontMsg.put("from", userUuid);
-                        break;
-                    case ADDR_TYPE_TO:
-                        frontMsg.put("to", frontMsg.getJsonArray("to").add(userUuid));
-                        break;
-                    case ADDR_TYPE_CC:
-                        frontMsg.put("cc", frontMsg.getJsonArray("cc").add(userUuid));
-                        break;
-                    case ADDR_TYPE_BCC:
-                        frontMsg.put("bcc", frontMsg.getJsonArray("bcc").add(userUuid));
-                        break;
-                    case ADDR_TYPE_READRECEIPT:
-                        if (!isReported)
-                            frontMsg.put(FrontConstants.IS_REPORT_REQUIRED, true);
-                        break;
-                }
+    private boolean isTranslatedAddressType(String type) {
+        return ADDR_TYPE_FROM.equals(type)
+                || ADDR_TYPE_CC.equals(type)
+                || ADDR_TYPE_TO.equals(type)
+                || ADDR_TYPE_BCC.equals(type)
+                || ADDR_TYPE_READRECEIPT.equals(type);
+    }
+
+    /**
+     * Id used in front for a recipient : user or group id, or mail address if recipient is unknown
+     *
+     * @param recipient translated recipient
+     * @return front id
+     */
+    private String getFrontId(Recipient recipient) {
+        if (recipient.getRecipientType() == RecipientType.UNKNOWN || recipient.getUserId() == null) {
+            return recipient.getEmailAddress();
+        }
+        return recipient.getUserId();
+    }
+
+    private void addAddressToFrontMessage(JsonObject frontMsg, JsonObject zimbraUser, String type, String userUuid,
+                                          boolean isReported) {
+        switch (type) {
+            case ADDR_TYPE_FROM:
+                frontMsg.put("from", userUuid);
+                break;
+            case ADDR_TYPE_TO:
+                frontMsg.put("to", frontMsg.getJsonArray("to").add(userUuid));
+                break;
+            case ADDR_TYPE_CC:
+                frontMsg.put("cc", frontMsg.getJsonArray("cc").add(userUuid));
+                break;
+            case ADDR_TYPE_BCC:
+                frontMsg.put("bcc", frontMsg.getJsonArray("bcc").add(userUuid));
+                break;
+            case ADDR_TYPE_READRECEIPT:
+                if (!isReported)
+                    frontMsg.put(FrontConstants.IS_REPORT_REQUIRED, true);
+                break;
+        }
+
+        // Get current displayNames
+        JsonArray displayNames = frontMsg.getJsonArray(MAIL_DISPLAYNAMES, new JsonArray());
 
-                // Get current displayNames
-                JsonArray displayNames = frontMsg.getJsonArray(MAIL_DISPLAYNAMES, new JsonArray());
+        // Check if user is already in displayNames
+        if (!displayNamesContainsUserId(displayNames, userUuid)) {
+            displayNames.add(new JsonArray()
+                    .add(userUuid)
+                    .add(zimbraUser.getString(MSG_EMAIL_COMMENT, zimbraUser.getString(MSG_EMAIL_ADDR))));
+        }
+    }
 
-                // Check if user is already in displayNames
-                if (!displayNamesContainsUserId(displayNames, userUuid)) {
-                    displayNames.add(new JsonArray()
-                            .add(userUuid)
-                            .add(zimbraUser.getString(MSG_EMAIL_COMMENT, zimbraMail)));
+    /**
+     * Translate every distinct mail address of a list of Zimbra messages with a single database request.
+     * Addresses outside Zimbra domain are not requested. Addresses not found in database are considered as groups.
+     * Resulting map is the same as the one built by translateMaillistToUidlist one address at a time.
+     *
+     * @param zimbraMessages messages from Zimbra
+     * @return mapping of mail addresses and front ids, never failed
+     */
+    private Future<Map<String, String>> translateMessagesAddresses(JsonArray zimbraMessages) {
+        Promise<Map<String, String>> promise = Promise.promise();
+        Map<String, String> addressMap = new HashMap<>();
+        Set<String> domainAddresses = new LinkedHashSet<>();
+
+        for (Object message : zimbraMessages) {
+            if (!(message instanceof JsonObject)) continue;
+            JsonArray zimbraMails = ((JsonObject) message).getJsonArray(MSG_EMAILS, new JsonArray());
+            for (Object mailObject : zimbraMails) {
+                if (!(mailObject instanceof JsonObject)) continue;
+                JsonObject zimbraUser = (JsonObject) mailObject;
+                String zimbraMail = zimbraUser.getString(MSG_EMAIL_ADDR, "");
+                if (!isTranslatedAddressType(zimbraUser.getString(MSG_EMAIL_TYPE))
+                        || zimbraMail.isEmpty() || addressMap.containsKey(zimbraMail)) {
+                    continue;
                 }
+                if (isZimbraDomainAddress(zimbraMail)) {
+                    domainAddresses.add(zimbraMail);
+                } else {
+                    addressMap.put(zimbraMail, zimbraMail);
+                }
+            }
+        }
 
-                zimbraMails.remove(0);
-                translateMaillistToUidlist(frontMsg, zimbraMails, addressMap, isReported, handler);
-            };
+        if (domainAddresses.isEmpty()) {
+            promise.complete(addressMap);
+            return promise.future();
+        }
 
-            if (addressMap.containsKey(zimbraMail)) {
-                translatedUuidHandler.handle(new Recipient(zimbraMail, addressMap.get(zimbraMail), RecipientType.USER));
+        dbMailService.getNeoIdsFromMails(new ArrayList<>(domainAddresses), sqlResponse -> {
+            Map<String, JsonObject> resultsByMail = new HashMap<>();
+            if (sqlResponse.isLeft()) {
+                log.error("[Zimbra@MessageService::translateMessagesAddresses] Failed to translate addresses : "
+                        + sqlResponse.left().getValue());
             } else {
-                translateMail(zimbraMail, translatedUuidHandler);
+                for (Object o : sqlResponse.right().getValue()) {
+                    if (!(o instanceof JsonObject)) continue;
+                    JsonObject resultData = (JsonObject) o;
+                    String mail = resultData.getString(DbMailService.ZIMBRA_NAME);
+                    JsonObject existing = resultsByMail.get(mail);
+                    // users come first, as in single address request
+                    if (existing == null || (!RecipientType.USER.method().equals(existing.getString(Field.TYPE))
+                            && RecipientType.USER.method().equals(resultData.getString(Field.TYPE)))) {
+                        resultsByMail.put(mail, resultData);
+                    }
+                }
             }
+            for (String mail : domainAddresses) {
+                JsonObject resultData = resultsByMail.get(mail);
+                Recipient recipient = resultData == null
+                        ? new Recipient(mail, groupService.getGroupId(mail), RecipientType.GROUP)
+                        : new Recipient(mail, resultData.getString(DbMailService.NEO4J_UID),
+                                RecipientType.fromString(resultData.getString(Field.TYPE)));
+                addressMap.put(mail, getFrontId(recipient));
+            }
+            promise.complete(addressMap);
+        });
+
+        return promise.future();
+    }
+
+    private boolean isZimbraDomainAddress(String mail) {
+        try {
+            return Zimbra.domain.equals(mail.split("@")[1]);
+        } catch (Exception e) {
+            return false;
         }
     }
 
@@ -455,13 +581,7 @@ public class MessageService {
      * @param handler result handler
      */
     private void translateMail(String mail, Handler<Recipient> handler) {
-        try {
-            String domain = mail.split("@")[1];
-            if (!Zimbra.domain.equals(domain)) {
-                handler.handle(new Recipient(mail, mail, RecipientType.UNKNOWN));
-                return;
-            }
-        } catch (Exception e) {
+        if (!isZimbraDomainAddress(mail)) {
             handler.handle(new Recipient(mail, mail, RecipientType.UNKNOWN));
             return;
         }
@@ -609,6 +729,7 @@ public class MessageService {
                         .put("_jsns", SoapConstants.NAMESPACE_MAIL));
 
         soapService.callUserSoapAPI(folderActionRequest, user, response -> {
+            folderService.invalidateCache(user.getUserId());
             if (response.isLeft()) {
                 handler.handle(new Either.Left<>(response.left().getValue()));
             } else {
@@ -1016,6 +1137,7 @@ public class MessageService {
                         .put(SoapConstants.REQ_NAMESPACE, SoapConstants.NAMESPACE_MAIL));
 
         soapService.callUserSoapAPI(convActionRequest, user, response -> {
+            folderService.invalidateCache(user.getUserId());
             if (response.isLeft()) {
                 log.error(String.format("[Zimbra@MessageService::moveBatchMessageToFolder] failed to callUserSoapAPI: %s", response.left().getValue()));
                 promise.fail(response.left().getValue());
@@ -1052,6 +1174,7 @@ public class MessageService {
                         .put("_jsns", SoapConstants.NAMESPACE_MAIL));
 
         soapService.callUserSoapAPI(convActionRequest, user, response -> {
+            folderService.invalidateCache(user.getUserId());
             if (response.isLeft()) {
                 result.handle(response);
             } else {
@@ -1139,6 +1262,7 @@ public class MessageService {
                         .put(SoapConstants.REQ_NAMESPACE, SoapConstants.NAMESPACE_MAIL));
 
         soapService.callUserSoapAPI(convActionRequest, userId, response -> {
+            folderService.invalidateCache(userId);
             if (response.failed()) {
                 log.error(String.format("[Zimbra@MessageService::deleteBatchMessages] failed to callUserSoapAPI: %s", response.cause().getMessage()));
                 promise.fail(response.cause().getMessage());
@@ -1156,6 +1280,71 @@ public class MessageService {
         return promise.future();
     }
 
+    /**
+     * Delete every copy of an email from the mailbox of a user, with admin delegated access.
+     * The mailbox is searched by Message-ID, then found messages are deleted in a single request.
+     *
+     * @param mid       Message-ID of the email, without "<" and ">"
+     * @param userId    User id, owner of the mailbox
+     * @return          future failed with MAIL_NOT_FOUND if the email is not in the mailbox
+     */
+    public Future<Void> deleteMailFromMailbox(String mid, String userId) {
+        JsonObject searchRequest = new JsonObject()
+                .put(Field.NAME, SEARCH_REQUEST)
+                .put(SoapConstants.REQ_CONTENT, new JsonObject()
+                        .put(SEARCH_QUERY, "* msgid:\"" + mid + "\"")
+                        .put(SEARCH_TYPES, SEARCH_TYPE_MESSAGE)
+                        .put(SEARCH_LIMIT, BATCH_SIZE)
+                        .put(SoapConstants.REQ_NAMESPACE, SoapConstants.NAMESPACE_MAIL));
+
+        Promise<JsonObject> searchPromise = Promise.promise();
+        soapService.callDelegatedSoapAPI(searchRequest, userId, searchPromise);
+
+        return searchPromise.future()
+                .recover(err -> isNoSuchAccountError(err)
+                        ? Future.succeededFuture(new JsonObject())
+                        : Future.failedFuture(err))
+                .compose(response -> {
+                    List<String> ids = getFoundMessageIds(response);
+                    if (ids.isEmpty()) {
+                        return Future.failedFuture(ErrorEnum.MAIL_NOT_FOUND.method());
+                    }
+                    JsonObject convActionRequest = new JsonObject()
+                            .put(Field.NAME, "MsgActionRequest")
+                            .put(SoapConstants.REQ_CONTENT, new JsonObject()
+                                    .put(SoapConstants.ACTION, new JsonObject()
+                                            .put(MSG_ID, String.join(",", ids))
+                                            .put(OPERATION, OP_DELETE))
+                                    .put(SoapConstants.REQ_NAMESPACE, SoapConstants.NAMESPACE_MAIL));
+                    Promise<JsonObject> deletePromise = Promise.promise();
+                    soapService.callDelegatedSoapAPI(convActionRequest, userId, deletePromise);
+                    return deletePromise.future()
+                            .onComplete(res -> folderService.invalidateCache(userId))
+                            .<Void>mapEmpty();
+                });
+    }
+
+    private List<String> getFoundMessageIds(JsonObject searchResponse) {
+        JsonArray messages = searchResponse.getJsonObject("Body", new JsonObject())
+                .getJsonObject(SEARCH_RESPONSE, new JsonObject())
+                .getJsonArray(MSG, new JsonArray());
+        return messages.stream()
+                .filter(JsonObject.class::isInstance)
+                .map(JsonObject.class::cast)
+                .map(message -> message.getString(MSG_ID))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private boolean isNoSuchAccountError(Throwable cause) {
+        try {
+            return ZimbraErrors.ERROR_NOSUCHACCOUNT
+                    .equals(new JsonObject(cause.getMessage()).getString(SoapZimbraService.ERROR_CODE, ""));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
 
     /**
      * Delete an email from trash
@@ -1184,6 +1373,7 @@ public class MessageService {
                         .put("_jsns", SoapConstants.NAMESPACE_MAIL));
 
         soapService.callUserSoapAPI(convActionRequest, user, response -> {
+            folderService.invalidateCache(user.getUserId());
             if (response.isLeft()) {
                 result.handle(response);
             } else {
@@ -1338,6 +1528,7 @@ public class MessageService {
                         .put("_jsns", SoapConstants.NAMESPACE_MAIL));
 
         soapService.callUserSoapAPI(msgActionRequest, user, response -> {
+            folderService.invalidateCache(user.getUserId());
             if (response.isLeft()) {
                 result.handle(response);
             } else {
@@ -18,6 +18,7 @@
 package fr.openent.zimbra.service.impl;
 
 import fr.openent.zimbra.core.constants.Field;
+import fr.openent.zimbra.helper.StoreMetrics;
 import fr.openent.zimbra.model.MailAddress;
 import fr.wseduc.webutils.Either;
 import io.vertx.core.Handler;
@@ -99,7 +100,7 @@ public class NotificationService {
                 + "WHERE u.id = {userId} "
                 + "return u.id as id, u.displayName as displayName";
         JsonObject params = new JsonObject().put("userId", userId);
-        neo.execute(query, params, validUniqueResultHandler(result -> {
+        neo.execute(query, params, StoreMetrics.neo4j("notification.getUserInfos", validUniqueResultHandler(result -> {
             UserInfos returnUser = null;
             if (result.isRight()) {
                 JsonObject neoData = result.right().getValue();
@@ -108,7 +109,7 @@ public class NotificationService {
                 returnUser.setUsername(neoData.getString("displayName"));
             }
             handler.handle(returnUser);
-        }));
+        })));
     }
 
     public void sendReturnMailNotification(UserInfos user, String subject, String idStructure, List<String> recipient, HttpServerRequest request){
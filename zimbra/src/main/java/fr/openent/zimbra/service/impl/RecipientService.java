@@ -1,10 +1,14 @@
 package fr.openent.zimbra.service.impl;
 
 import fr.openent.zimbra.core.enums.ErrorEnum;
+import fr.openent.zimbra.core.enums.RecipientType;
 import fr.openent.zimbra.helper.AsyncContainer;
+import fr.openent.zimbra.helper.BoundedCache;
+import fr.openent.zimbra.helper.ConfigManager;
 import fr.openent.zimbra.model.message.Message;
 import fr.openent.zimbra.model.message.Recipient;
 import io.vertx.core.*;
+import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 
@@ -14,12 +18,18 @@ public class RecipientService {
 
     private MessageService messageService;
 
-    private Map<String, Recipient> zimbraMap = new HashMap<>();
+    // Translated recipients, keyed by mail address
+    private final BoundedCache<String, Recipient> recipientCache;
+    // Lifetime of addresses that could not be resolved to an ENT user
+    private final long negativeTtl;
 
     private static Logger log = LoggerFactory.getLogger(RecipientService.class);
 
-    public RecipientService(MessageService messageService) {
+    public RecipientService(MessageService messageService, ConfigManager config) {
         this.messageService = messageService;
+        this.recipientCache = new BoundedCache<>(config != null ? config.getRecipientCacheSize() : 0,
+                config != null ? config.getRecipientCacheTtl() * 1000L : 0L);
+        this.negativeTtl = config != null ? config.getRecipientCacheNegativeTtl() * 1000L : 0L;
     }
 
     public Future<Map<String, Recipient>> getUserIdsFromEmails(Set<String> emailList) {
@@ -45,8 +55,9 @@ public class RecipientService {
         List<Future> toSearch = new ArrayList<>();
         Map<String, Recipient> resultMap = new HashMap<>();
         emailList.forEach(email -> {
-            if(zimbraMap.containsKey(email)) {
-                resultMap.put(email, zimbraMap.get(email));
+            Recipient cached = recipientCache.get(email);
+            if(cached != null) {
+                resultMap.put(email, cached);
             } else {
                 Promise<Recipient> emailResolved = Promise.promise();
                 messageService.translateMailFuture(email, emailResolved);
@@ -63,7 +74,7 @@ public class RecipientService {
                     if (future.succeeded()) {
                         try {
                             Recipient futureRes = (Recipient) future.result();
-                            zimbraMap.put(futureRes.getEmailAddress(), futureRes);
+                            cacheRecipient(futureRes);
                             resultMap.put(futureRes.getEmailAddress(), futureRes);
                             atLeastOne.setValue(true);
                         } catch (Exception e) {
@@ -71,11 +82,48 @@ public class RecipientService {
                         }
                     }
                 });
-                if (atLeastOne.getValue()) {
+                if (atLeastOne.getValue() || !resultMap.isEmpty()) {
                     handler.handle(Future.succeededFuture(resultMap));
+                } else {
+                    handler.handle(Future.failedFuture(compo.failed() ? compo.cause().getMessage()
+                            : "No recipient could be translated"));
                 }
             });
         }
     }
 
+    private void cacheRecipient(Recipient recipient) {
+        if (recipient.getRecipientType() == RecipientType.UNKNOWN || recipient.getUserId() == null) {
+            recipientCache.put(recipient.getEmailAddress(), recipient, negativeTtl);
+        } else {
+            recipientCache.put(recipient.getEmailAddress(), recipient);
+        }
+    }
+
+    /**
+     * Remove cached recipients resolved to one of these ENT user or group ids
+     * @param ids ENT ids
+     */
+    public void invalidateIds(Collection<String> ids) {
+        if (ids.isEmpty()) return;
+        Set<String> idSet = new HashSet<>(ids);
+        recipientCache.invalidateIf((mail, recipient) -> idSet.contains(recipient.getUserId()));
+    }
+
+    /**
+     * Remove cached recipients of these mail addresses
+     * @param mails mail addresses
+     */
+    public void invalidateAddresses(Collection<String> mails) {
+        mails.forEach(recipientCache::invalidate);
+    }
+
+    public void invalidateCache() {
+        recipientCache.invalidateAll();
+    }
+
+    public JsonObject getCacheStats() {
+        return recipientCache.getStats();
+    }
+
 }
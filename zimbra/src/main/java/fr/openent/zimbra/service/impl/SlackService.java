@@ -21,6 +21,7 @@ public class SlackService {
 
     private final Vertx vertx;
     private final SlackConfiguration config;
+    private HttpClient httpClient;
 
     public SlackService(Vertx vertx, SlackConfiguration config) {
         this.vertx = vertx;
@@ -28,7 +29,9 @@ public class SlackService {
     }
 
     public void sendMessage(String text) {
-        HttpClient httpClient = HttpClientHelper.createHttpClient(vertx);
+        if (httpClient == null) {
+            httpClient = HttpClientHelper.createHttpClient(vertx);
+        }
         String message = "[" + this.config.host() + "] " + text;
         String address = this.config.uri() + "chat.postMessage?token=" + this.config.apiToken()
                 + "&channel=" + encodeParam(this.config.channel()) + "&text=" + encodeParam(message)
@@ -19,6 +19,7 @@ package fr.openent.zimbra.service.impl;
 
 import fr.openent.zimbra.Zimbra;
 import fr.openent.zimbra.core.constants.Field;
+import fr.openent.zimbra.helper.AsyncHelper;
 import fr.openent.zimbra.helper.JsonHelper;
 import fr.openent.zimbra.helper.PromiseHelper;
 import fr.openent.zimbra.model.MailAddress;
@@ -50,8 +51,9 @@ import org.entcore.common.user.UserInfos;
 import org.entcore.common.user.UserUtils;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
 
 import static fr.openent.zimbra.service.data.Neo4jZimbraService.*;
 import static fr.wseduc.webutils.Utils.handlerToAsyncHandler;
@@ -398,6 +400,7 @@ public class UserService {
      *     "userId2" : "userAddress2",
      *     ...
      * }
+     * Addresses known in database are read in one request, the others are asked to Zimbra
      * @param idList Array with the list of Ids
      * @param handler result handler
      */
@@ -428,66 +431,146 @@ public class UserService {
                 log.error("Could not get recipient ids from Neo4j");
                 return;
             }
-            JsonArray idListWithTypes = neoResult.right().getValue();
+            JsonObject addressList = new JsonObject();
+            Map<String, JsonObject> users = new LinkedHashMap<>();
+            Map<String, JsonObject> groups = new LinkedHashMap<>();
+            for(Object o : neoResult.right().getValue()) {
+                if(!(o instanceof JsonObject)) continue;
+                JsonObject idInfos = (JsonObject)o;
+                String elemId = idInfos.getString(Field.ID);
+                switch (idInfos.getString("type", "")) {
+                    case TYPE_USER:
+                        users.put(elemId, idInfos);
+                        break;
+                    case TYPE_GROUP:
+                        groups.put(elemId, idInfos);
+                        break;
+                    default:
+                }
+            }
             for(String mail : emailList) {
-                idListWithTypes.add(new JsonObject().put(Field.ID,mail).put("type", TYPE_EXTERNAL));
+                // todo get display name for external addresses
+                addressList.put(mail, new JsonObject().put("email", mail));
             }
-            final AtomicInteger processedIds = new AtomicInteger(idListWithTypes.size());
-            JsonObject addressList = new JsonObject();
-            if(idListWithTypes.isEmpty()) {
+            if(users.isEmpty() && groups.isEmpty()) {
                 handler.handle(addressList);
-            } else {
-                for(Object o : idListWithTypes) {
-                    if(!(o instanceof JsonObject)) continue;
-                    JsonObject idInfos = (JsonObject)o;
-                    JsonObject elemInfos = new JsonObject();
-                    if(!idInfos.getString("displayName", "").isEmpty()) {
-                        elemInfos.put("displayName", idInfos.getString("displayName"));
+                return;
+            }
+            dbMailService.getMailsFromIds(new ArrayList<>(users.keySet()), new ArrayList<>(groups.keySet()), sqlResult -> {
+                if(sqlResult.isLeft()) {
+                    log.error("Could not get recipient addresses from database : " + sqlResult.left().getValue());
+                } else {
+                    for(Object o : sqlResult.right().getValue()) {
+                        if(!(o instanceof JsonObject)) continue;
+                        JsonObject row = (JsonObject)o;
+                        String elemId = row.getString(SqlDbMailService.NEO4J_UID);
+                        String mail = row.getString(SqlDbMailService.ZIMBRA_NAME);
+                        if(addressList.containsKey(elemId)) {
+                            log.warn("More than one address for id : " + elemId);
+                        } else if(TYPE_GROUP.equals(row.getString("type")) && groups.containsKey(elemId)) {
+                            addressList.put(elemId, groupAddressInfos(groups.get(elemId), mail));
+                        } else if(users.containsKey(elemId)) {
+                            addressList.put(elemId, userAddressInfos(users.get(elemId), mail));
+                        }
                     }
-                    String elemId = idInfos.getString(Field.ID);
-                    switch (idInfos.getString("type", "")) {
-                        case TYPE_USER:
-                            getUserAddress(elemId, result -> {
-                                if(result.succeeded()) {
-                                    elemInfos.put("email", result.result());
-                                    addressList.put(elemId, elemInfos);
-                                }
-                                if(processedIds.decrementAndGet() == 0) {
-                                    handler.handle(addressList);
-                                }
-                            });
-                            break;
-                        case TYPE_GROUP:
-                            groupService.getGroupAddress(elemId, result -> {
-                                if(result.isRight()) {
-                                    elemInfos.put("email", result.right().getValue());
-                                    elemInfos.put("displayName",
-                                            UserUtils.groupDisplayName(
-                                                    idInfos.getString("groupName", ""),
-                                                    idInfos.getString("displayName"),
-                                                    Zimbra.synchroLang));
-                                    addressList.put(elemId, elemInfos);
-                                }
-                                if(processedIds.decrementAndGet() == 0) {
-                                    handler.handle(addressList);
-                                }
-                            });
-                            break;
-                        case TYPE_EXTERNAL:
-                            // todo get display name for external addresses
-                            addressList.put(elemId, new JsonObject().put("email", elemId));
-                            if(processedIds.decrementAndGet() == 0) {
-                                handler.handle(addressList);
-                            }
-                            break;
-                        default:
-                            if(processedIds.decrementAndGet() == 0) {
-                                handler.handle(addressList);
-                            }
+                }
+                users.keySet().removeAll(addressList.fieldNames());
+                groups.keySet().removeAll(addressList.fieldNames());
+                Future.join(getMissingUserAddresses(users, addressList), getMissingGroupAddresses(groups, addressList))
+                        .onComplete(res -> handler.handle(addressList));
+            });
+        });
+    }
+
+    private JsonObject userAddressInfos(JsonObject idInfos, String mail) {
+        JsonObject elemInfos = new JsonObject();
+        if(!idInfos.getString("displayName", "").isEmpty()) {
+            elemInfos.put("displayName", idInfos.getString("displayName"));
+        }
+        return elemInfos.put("email", mail);
+    }
+
+    private JsonObject groupAddressInfos(JsonObject idInfos, String mail) {
+        return new JsonObject()
+                .put("email", mail)
+                .put("displayName", UserUtils.groupDisplayName(
+                        idInfos.getString("groupName", ""),
+                        idInfos.getString("displayName"),
+                        Zimbra.synchroLang));
+    }
+
+    /**
+     * Get addresses of users that are not in database from Zimbra.
+     * Accounts are all requested at once, so that soap batching can group them,
+     * then users unknown to Zimbra are exported with a bounded concurrency.
+     * @param users       Neo4j infos of users, by id
+     * @param addressList result to complete
+     * @return Future completed when every user is processed
+     */
+    private Future<Void> getMissingUserAddresses(Map<String, JsonObject> users, JsonObject addressList) {
+        List<Future<Void>> lookups = new ArrayList<>();
+        List<String> toExport = new ArrayList<>();
+        users.forEach((userId, idInfos) -> {
+            Promise<Void> promise = Promise.promise();
+            lookups.add(promise.future());
+            getUserAccount(userId + "@" + Zimbra.domain, response -> {
+                if(response.failed()) {
+                    if(isNoSuchAccountError(response.cause())) {
+                        toExport.add(userId);
+                    } else {
+                        log.debug("Could not get account of user " + userId + " : " + response.cause().getMessage());
                     }
+                    promise.complete();
+                } else {
+                    processGetAccountInfo(response.result(), resInfo -> processGetAddress(resInfo, mail -> {
+                        if(mail.succeeded()) {
+                            addressList.put(userId, userAddressInfos(idInfos, mail.result()));
+                        }
+                        promise.complete();
+                    }));
                 }
-            }
+            });
         });
+        return Future.join(lookups)
+                .compose(res -> AsyncHelper.processListWithConcurrency(toExport, getExportConcurrency(), userId -> {
+                    Promise<String> promise = Promise.promise();
+                    synchroUserService.exportUser(userId, resultSync -> {
+                        if(resultSync.failed()) {
+                            promise.fail(resultSync.cause());
+                        } else {
+                            getUserAddress(userId, promise);
+                        }
+                    });
+                    return promise.future().onSuccess(mail -> addressList.put(userId, userAddressInfos(users.get(userId), mail)));
+                }))
+                .mapEmpty();
+    }
+
+    /**
+     * Get addresses of groups that are not in database from Zimbra, exporting them if needed
+     * @param groups      Neo4j infos of groups, by id
+     * @param addressList result to complete
+     * @return Future completed when every group is processed
+     */
+    private Future<Void> getMissingGroupAddresses(Map<String, JsonObject> groups, JsonObject addressList) {
+        return AsyncHelper.processListWithConcurrency(new ArrayList<>(groups.keySet()), getExportConcurrency(), groupId -> {
+            Promise<String> promise = Promise.promise();
+            groupService.getGroupAddress(groupId, AsyncHelper.getEitherFromPromise(promise));
+            return promise.future().onSuccess(mail -> addressList.put(groupId, groupAddressInfos(groups.get(groupId), mail)));
+        }).mapEmpty();
+    }
+
+    private boolean isNoSuchAccountError(Throwable cause) {
+        try {
+            return ZimbraErrors.ERROR_NOSUCHACCOUNT
+                    .equals(new JsonObject(cause.getMessage()).getString(SoapZimbraService.ERROR_CODE, ""));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private int getExportConcurrency() {
+        return Zimbra.appConfig != null ? Zimbra.appConfig.getMailAddressesExportConcurrency() : 1;
     }
 
     public void syncAddressBookAsync(UserInfos user) {
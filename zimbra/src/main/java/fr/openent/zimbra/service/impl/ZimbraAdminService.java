@@ -18,6 +18,7 @@
 package fr.openent.zimbra.service.impl;
 
 import fr.openent.zimbra.core.constants.Field;
+import fr.openent.zimbra.helper.StoreMetrics;
 import fr.wseduc.webutils.Either;
 import io.vertx.core.Handler;
 import io.vertx.core.json.JsonArray;
@@ -52,7 +53,7 @@ public class ZimbraAdminService {
                JsonObject params = new JsonObject()
                        .put("appId", event.right().getValue().getJsonObject("role").getString(Field.ID))
                        .put("structureId", structureId);
-               neo.execute(query, params, Neo4jResult.validResultHandler(handler));
+               neo.execute(query, params, StoreMetrics.neo4j("admin.listGroupsWithRole", Neo4jResult.validResultHandler(handler)));
            }else{
                handler.handle(new Either.Left<>("no.role"));
            }
@@ -67,6 +68,6 @@ public class ZimbraAdminService {
                 .put("actionName",ACTION_NAME)
                 .put("roleName",ROLE_NAME)
                 .put("roleId",  UUID.randomUUID().toString());
-        neo.execute(query, params,validUniqueResultHandler(handler));
+        neo.execute(query, params,StoreMetrics.neo4j("admin.getTheRole", validUniqueResultHandler(handler)));
     }
 }
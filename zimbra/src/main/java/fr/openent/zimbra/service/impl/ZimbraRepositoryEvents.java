@@ -23,29 +23,60 @@ import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import org.entcore.common.user.RepositoryEvents;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Created by sjol on 01/10/2020.
  */
 public class ZimbraRepositoryEvents implements RepositoryEvents {
 
     private final AddressBookService addressBookService;
+    private final CommunicationService communicationService;
+    private final RecipientService recipientService;
     public ZimbraRepositoryEvents() {
         ServiceManager serviceManager = ServiceManager.getServiceManager();
         this.addressBookService = serviceManager.getAddressBookService();
+        this.communicationService = serviceManager.getCommunicationService();
+        this.recipientService = serviceManager.getRecipientService();
     }
 
     @Override
     public void deleteGroups(JsonArray jsonArray) {
-
+        communicationService.invalidateCache();
+        recipientService.invalidateIds(getIds(jsonArray));
     }
 
     @Override
     public void deleteUsers(JsonArray jsonArray) {
+        communicationService.invalidateCache();
+        recipientService.invalidateIds(getIds(jsonArray));
+    }
 
+    /**
+     * Ids of deleted users or groups, either {"id" : ...} or {"group" : {"id" : ...}}
+     */
+    private List<String> getIds(JsonArray jsonArray) {
+        List<String> ids = new ArrayList<>();
+        if (jsonArray == null) return ids;
+        jsonArray.forEach(o -> {
+            if (!(o instanceof JsonObject)) return;
+            JsonObject item = (JsonObject) o;
+            JsonObject group = item.getJsonObject("group");
+            String id = group != null ? group.getString("id") : item.getString("id");
+            if (id != null) ids.add(id);
+        });
+        return ids;
+    }
+
+    @Override
+    public void usersClassesUpdated(JsonArray updates) {
+        communicationService.invalidateCache();
     }
 
     @Override
     public void transition(JsonObject structure) {
         addressBookService.truncatePurgeTable();
+        communicationService.invalidateCache();
     }
 }
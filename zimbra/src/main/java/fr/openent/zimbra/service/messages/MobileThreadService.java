@@ -1,8 +1,10 @@
 package fr.openent.zimbra.service.messages;
 
+import fr.openent.zimbra.Zimbra;
 import fr.openent.zimbra.model.message.Conversation;
 import fr.openent.zimbra.model.message.Recipient;
 import fr.openent.zimbra.model.soap.SoapConversationHelper;
+import fr.openent.zimbra.model.soap.SearchCursor;
 import fr.openent.zimbra.model.soap.SoapSearchHelper;
 import fr.openent.zimbra.service.impl.RecipientService;
 import io.vertx.core.AsyncResult;
@@ -21,6 +23,9 @@ import java.util.Set;
 
 public class MobileThreadService {
 
+    public static final String THREADS = "threads";
+    public static final String NEXT_CURSOR = "next";
+
     RecipientService recipientService;
 
     public MobileThreadService(RecipientService recipientService) {
@@ -70,12 +75,28 @@ public class MobileThreadService {
     }
 
     public void listThreads(UserInfos user, int page, Handler<AsyncResult<JsonArray>> handler) {
+        listThreads(user, page, null, res -> handler.handle(res.map(threads -> threads.getJsonArray(THREADS))));
+    }
+
+    /**
+     * List threads of a user, by page number or after a cursor
+     * Returns :
+     * {
+     *     "threads" : array of threads,
+     *     "next" : cursor of next page, null if this page is the last one
+     * }
+     * @param user    user infos
+     * @param page    page number, ignored if a cursor is given
+     * @param cursor  [optional] cursor of the page to get
+     * @param handler result handler
+     */
+    public void listThreads(UserInfos user, int page, SearchCursor cursor, Handler<AsyncResult<JsonObject>> handler) {
         String userId = user.getUserId();
         if(userId == null || userId.isEmpty()) {
             log.error("Empty user id");
             handler.handle(Future.failedFuture("Empty user"));
         } else {
-            SoapSearchHelper.searchAllMailedConv(userId, page, null, searchResult -> {
+            SoapSearchHelper.searchAllMailedConv(userId, page, cursor, null, searchResult -> {
                 if(searchResult.failed()) {
                     handler.handle(Future.failedFuture(searchResult.cause()));
                 } else {
@@ -90,7 +111,9 @@ public class MobileThreadService {
                             convList.forEach(conversation -> conversation.setUserMapping(allusers));
                             JsonArray allConversationData = new JsonArray();
                             convList.forEach( conversation -> allConversationData.add(conversation.getJsonObject()));
-                            handler.handle(Future.succeededFuture(allConversationData));
+                            handler.handle(Future.succeededFuture(new JsonObject()
+                                    .put(THREADS, allConversationData)
+                                    .put(NEXT_CURSOR, getNextCursor(convList))));
                         }
                     });
                 }
@@ -98,6 +121,14 @@ public class MobileThreadService {
         }
     }
 
+    private String getNextCursor(List<Conversation> convList) {
+        if(convList.isEmpty() || convList.size() < Zimbra.appConfig.getMailListLimit()) {
+            return null;
+        }
+        Conversation last = convList.get(convList.size() - 1);
+        return new SearchCursor(last.getId(), String.valueOf(last.getDate())).toToken();
+    }
+
     public void toggleUnreadThreads(List<String> threadIds, boolean unread, UserInfos user,
                                     Handler<AsyncResult<JsonObject>> handler) {
         String userId = user.getUserId();
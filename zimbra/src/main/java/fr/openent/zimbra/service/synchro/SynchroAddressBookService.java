@@ -65,6 +65,9 @@ public class SynchroAddressBookService {
         finalPromise.future().onComplete(handler);
         Promise<JsonObject> roleFetched = Promise.promise();
 
+        // Folders and mountpoints of the user may have been removed in webmail since they were cached
+        SoapFolder.invalidatePathCache(userId);
+
         AsyncContainer<Boolean> hasRoleContainer = new AsyncContainer<>();
 
         neoZimbraService.hasExternalCommunicationRole(userId, roleFetched);
@@ -167,6 +170,10 @@ public class SynchroAddressBookService {
                 });
     }
 
+    /**
+     * Synchronize address books of deployed structures, several structures at the same time.
+     * Structures whose address book is the least recently synchronized come first.
+     */
     private void start(Handler<AsyncResult<JsonObject>> handler) {
         // Create a promise for the final sync result
         Promise<String> finalPromise = Promise.promise();
@@ -174,18 +181,20 @@ public class SynchroAddressBookService {
 
         // Create a promise for fetching deployed structures
         Promise<List<String>> deployedStructuresFetched = Promise.promise();
-        sqlSynchroService.getDeployedStructures(deployedStructuresFetched);
+        sqlSynchroService.getDeployedStructuresForAbSync(deployedStructuresFetched);
 
         // Compose future chains and synchronize address books
         deployedStructuresFetched.future().compose(structureList ->
-                AsyncHelper.processListSynchronously(structureList, (uai, hand) -> {
-                    log.info("Synchronizing address book for structure " + uai);
-                    Structure structure = new Structure(new JsonObject().put(Structure.UAI, uai));
-                    synchronizeStructure(structure, v -> hand.handle(Future.succeededFuture(uai)));
-                })
+                AsyncHelper.processListWithConcurrency(structureList, Zimbra.appConfig.getAddressBookStructureConcurrency(),
+                        uai -> {
+                            log.info("Synchronizing address book for structure " + uai);
+                            Promise<String> structurePromise = Promise.promise();
+                            Structure structure = new Structure(new JsonObject().put(Structure.UAI, uai));
+                            synchronizeStructure(structure, v -> structurePromise.complete(uai));
+                            return structurePromise.future();
+                        })
+                        .map(uaiList -> uaiList.isEmpty() ? null : uaiList.get(uaiList.size() - 1))
         ).onComplete(finalPromise);
-
-        finalPromise.future().onComplete(getFinalSyncHandler(handler));
     }
 
     private Handler<AsyncResult<String>> getFinalSyncHandler(Handler<AsyncResult<JsonObject>> handler) {
@@ -218,7 +227,12 @@ public class SynchroAddressBookService {
                 } else {
                     log.info("Sycing struct " + structure.getUai());
                     addressBook.synchronize(structure.getUai() + Zimbra.appConfig.getAddressBookAccountName(),
-                            true, handler);
+                            true, abRes -> {
+                                if (abRes.failed()) {
+                                    releaseStructure(structure);
+                                }
+                                handler.handle(abRes);
+                            });
                 }
             }
         });
@@ -250,6 +264,7 @@ public class SynchroAddressBookService {
                         if (abRes.succeeded()) {
                             promise.complete(abRes.result());
                         } else {
+                            releaseStructure(structure);
                             promise.fail(abRes.cause());
                         }
                     });
@@ -260,4 +275,11 @@ public class SynchroAddressBookService {
         return promise.future();
     }
 
+    private void releaseStructure(Structure structure) {
+        sqlSynchroService.releaseStructureForAbSync(structure.getUai(), res -> {
+            if (res.failed()) {
+                log.error("Error when releasing address book sync of struct " + structure.getUai(), res.cause());
+            }
+        });
+    }
 }
@@ -18,6 +18,7 @@
 package fr.openent.zimbra.service.synchro;
 
 import fr.openent.zimbra.core.constants.Field;
+import fr.openent.zimbra.helper.StoreMetrics;
 import fr.wseduc.webutils.Either;
 import io.vertx.core.Handler;
 import io.vertx.core.json.JsonArray;
@@ -49,7 +50,7 @@ public class SynchroExportService {
             query.append(" s.").append(field).append(" as ").append(field).append(",");
         }
         query.deleteCharAt(query.length() - 1);
-        neo.execute(query.toString(), (JsonObject) null, validResultHandler(results));
+        neo.execute(query.toString(), (JsonObject) null, StoreMetrics.neo4j("export.listStructures", validResultHandler(results)));
     }
 
     /**
@@ -91,6 +92,6 @@ public class SynchroExportService {
         query.append(", not exists(u.activationCode) as isActive");
         query.append(", s.externalId as structures")
                 .append(" , collect(distinct {groupName:g.name, groupId:g.id}) as groups");
-        neo.execute(query.toString(), params, validResultHandler(results));
+        neo.execute(query.toString(), params, StoreMetrics.neo4j("export.listUsersByStructure", validResultHandler(results)));
     }
 }
@@ -19,6 +19,7 @@ package fr.openent.zimbra.service.synchro;
 
 import fr.openent.zimbra.Zimbra;
 import fr.openent.zimbra.core.constants.Field;
+import fr.openent.zimbra.helper.StoreMetrics;
 import fr.openent.zimbra.model.constant.SoapConstants;
 import fr.openent.zimbra.service.data.SoapZimbraService;
 import fr.wseduc.webutils.Either;
@@ -113,7 +114,7 @@ public class SynchroGroupService {
                 + "g.name as groupName";
         JsonObject params = new JsonObject().put(Field.ID, id);
 
-        neo.execute(query, params, validUniqueResultHandler(handler));
+        neo.execute(query, params, StoreMetrics.neo4j("synchroGroup.getGroupFromNeo4j", validUniqueResultHandler(handler)));
     }
 
 
@@ -130,7 +131,7 @@ public class SynchroGroupService {
                 + "RETURN u.id as id";
         JsonObject params = new JsonObject().put(Field.ID, groupId);
 
-        neo.execute(query, params, validResultHandler(handler));
+        neo.execute(query, params, StoreMetrics.neo4j("synchroGroup.getManualGroupMembersNeo", validResultHandler(handler)));
     }
 
 
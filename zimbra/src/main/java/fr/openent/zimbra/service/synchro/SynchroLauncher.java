@@ -17,19 +17,34 @@
 
 package fr.openent.zimbra.service.synchro;
 
-import fr.openent.zimbra.helper.ServiceManager;
+import fr.openent.zimbra.Zimbra;
+import fr.openent.zimbra.helper.MetricsRegistry;
 import fr.openent.zimbra.model.constant.SynchroConstants;
 import fr.openent.zimbra.service.data.SqlSynchroService;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.Promise;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 
-import static fr.openent.zimbra.service.synchro.SynchroUserService.EMPTY_BDD;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import static fr.openent.zimbra.service.data.SqlSynchroService.USER_IDUSER;
+
+/**
+ * Synchronize users waiting in bdd.
+ * Several claimers run at the same time, each one claiming a batch of users, synchronizing them one after the other,
+ * then claiming the next batch until there is no user left.
+ * A synchronisation without progress for longer than synchro-user-stall-timeout is abandoned,
+ * so that a hung user synchronisation does not prevent the next ones.
+ */
 public class SynchroLauncher {
 
     @SuppressWarnings("WeakerAccess")
@@ -37,59 +52,177 @@ public class SynchroLauncher {
 
     private SynchroUserService synchroUserService;
     private SqlSynchroService sqlSynchroService;
-    private int nbUserSynchronized;
-    private int oldNbUserSynced;
+    private final int concurrency;
+    private final int batchSize;
+    private final long stallTimeout;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    // Incremented by each synchronisation, claimers of an abandoned synchronisation stop when it changes
+    private final AtomicLong currentRun = new AtomicLong();
+    private final AtomicLong lastProgress = new AtomicLong();
+    private final AtomicInteger nbUserSynchronized = new AtomicInteger();
+    private final AtomicInteger nbUserFailed = new AtomicInteger();
+    private final MetricsRegistry metrics = MetricsRegistry.getInstance();
+    private static final String METRIC_USERS_SYNCED = "zimbra_synchro_users_total";
 
     private static Logger log = LoggerFactory.getLogger(SynchroLauncher.class);
 
     public SynchroLauncher(SynchroUserService synchroUserService, SqlSynchroService sqlSynchroService) {
         this.synchroUserService = synchroUserService;
         this.sqlSynchroService = sqlSynchroService;
+        this.concurrency = Math.max(Zimbra.appConfig.getSynchroUserConcurrency(), 1);
+        this.batchSize = Math.max(Zimbra.appConfig.getSynchroUserBatchSize(), 1);
+        this.stallTimeout = Zimbra.appConfig.getSynchroUserStallTimeout() * 1000;
+        metrics.registerGauge("zimbra_synchro_running", "1 while users synchronisation is running",
+                () -> running.get() ? 1 : 0);
+        metrics.registerGauge("zimbra_synchro_users_processed", "Users processed by current or last synchronisation",
+                nbUserSynchronized::get);
     }
 
+    /**
+     * @return true from the start of a synchronisation until all its claimers are finished,
+     * or until it has not progressed for stallTimeout
+     */
     boolean isAlreadyLaunched() {
-        boolean isLaunched = oldNbUserSynced != nbUserSynchronized;
-        oldNbUserSynced = nbUserSynchronized;
-        return isLaunched;
+        long lastProgressTime = lastProgress.get();
+        if (running.get() && stallTimeout > 0 && System.currentTimeMillis() - lastProgressTime > stallTimeout
+                && lastProgress.compareAndSet(lastProgressTime, System.currentTimeMillis())) {
+            log.error(String.format("[Zimbra@%s::isAlreadyLaunched] Synchronisation without progress for %d s, abandoned",
+                    this.getClass().getSimpleName(), stallTimeout / 1000));
+            currentRun.incrementAndGet();
+            running.set(false);
+        }
+        return running.get();
     }
 
 
     // Start synchronisation
     void start(Handler<AsyncResult<JsonArray>> handler) {
-        nbUserSynchronized = 0;
-        oldNbUserSynced = 0;
+        if (!running.compareAndSet(false, true)) {
+            handler.handle(Future.failedFuture("Synchronisation already running"));
+            return;
+        }
+        long run = currentRun.incrementAndGet();
+        lastProgress.set(System.currentTimeMillis());
+        nbUserSynchronized.set(0);
+        nbUserFailed.set(0);
         sqlSynchroService.updateSynchros(SynchroConstants.STATUS_TODO, SynchroConstants.STATUS_INPROGRESS, v -> {
             if(v.failed()) {
+                endRun(run);
                 handler.handle(Future.failedFuture(v.cause()));
             } else {
-                Handler<AsyncResult<JsonObject>> finalHandler = getFinalHandler(handler);
-                Handler<AsyncResult<JsonObject>> syncUserHandler = getSyncHandler(finalHandler);
-                synchroUserService.syncUserFromBase(syncUserHandler);
+                log.info(String.format("[Zimbra@%s::start] Starting users synchronisation with %d claimers, batch size %d",
+                        this.getClass().getSimpleName(), concurrency, batchSize));
+                List<Future<Void>> claimers = new ArrayList<>();
+                for (int i = 0; i < concurrency; i++) {
+                    claimers.add(startClaimer(run, i));
+                }
+                Future.join(claimers).onComplete(res -> endSynchro(run, handler));
             }
         });
     }
 
+    private boolean isCurrentRun(long run) {
+        return currentRun.get() == run;
+    }
 
-    // Get handler for recursion
-    private Handler<AsyncResult<JsonObject>> getSyncHandler(Handler<AsyncResult<JsonObject>> handler) {
-        return syncRes -> {
-            if(syncRes.succeeded() && syncRes.result().getBoolean(EMPTY_BDD, false)) {
-                handler.handle(Future.succeededFuture(new JsonObject().put(NB_USER_SYNCED, nbUserSynchronized)));
-            } else {
-                nbUserSynchronized++;
-                log.debug(nbUserSynchronized + " users synchronized");
-                Handler<AsyncResult<JsonObject>> syncUserHandler = getSyncHandler(handler);
-                synchroUserService.syncUserFromBase(syncUserHandler);
+    private void endRun(long run) {
+        if (isCurrentRun(run)) {
+            running.set(false);
+        }
+    }
+
+
+    // Claim and synchronize batches of users until there is no user left
+    private Future<Void> startClaimer(long run, int claimerId) {
+        Promise<Void> promise = Promise.promise();
+        claimNextBatch(run, claimerId, promise);
+        return promise.future();
+    }
+
+    private void claimNextBatch(long run, int claimerId, Promise<Void> promise) {
+        if (!isCurrentRun(run)) {
+            promise.complete();
+            return;
+        }
+        lastProgress.set(System.currentTimeMillis());
+        synchroUserService.claimUsersToSynchronize(batchSize)
+                .compose(users -> users.isEmpty()
+                        ? Future.succeededFuture(false)
+                        : syncBatch(users).map(true))
+                .onSuccess(hasMoreUsers -> {
+                    if (Boolean.TRUE.equals(hasMoreUsers)) {
+                        claimNextBatch(run, claimerId, promise);
+                    } else {
+                        promise.complete();
+                    }
+                })
+                .onFailure(err -> {
+                    log.error(String.format("[Zimbra@%s::claimNextBatch] Claimer %d stopped, failed to claim users : %s",
+                            this.getClass().getSimpleName(), claimerId, err.getMessage()));
+                    promise.fail(err);
+                });
+    }
+
+
+    // Synchronize claimed users one after the other, failures are logged in bdd and do not stop the batch
+    private Future<Void> syncBatch(JsonArray users) {
+        Future<Void> current = Future.succeededFuture();
+        for (Object o : users) {
+            if (!(o instanceof JsonObject)) {
+                continue;
             }
-        };
+            JsonObject user = (JsonObject) o;
+            current = current.compose(v -> syncUser(user));
+        }
+        return current;
     }
 
+    private Future<Void> syncUser(JsonObject user) {
+        Promise<Void> promise = Promise.promise();
+        synchroUserService.syncUserFromBase(user).onComplete(syncRes -> {
+            metrics.incrementCounter(METRIC_USERS_SYNCED, "Users synchronized in Zimbra, by result",
+                    "result", syncRes.succeeded() ? "success" : "failure");
+            if (syncRes.failed()) {
+                nbUserFailed.incrementAndGet();
+                log.error(String.format("[Zimbra@%s::syncUser] Failed to synchronize user %s : %s",
+                        this.getClass().getSimpleName(), user.getString(USER_IDUSER), syncRes.cause().getMessage()));
+            }
+            lastProgress.set(System.currentTimeMillis());
+            log.debug(nbUserSynchronized.incrementAndGet() + " users synchronized");
+            promise.complete();
+        });
+        return promise.future();
+    }
+
+
+    // End of process, an abandoned synchronisation leaves the end to the current one
+    private void endSynchro(long run, Handler<AsyncResult<JsonArray>> handler) {
+        if (!isCurrentRun(run)) {
+            log.info(String.format("[Zimbra@%s::endSynchro] Abandoned synchronisation finished", this.getClass().getSimpleName()));
+            handler.handle(Future.failedFuture("Synchronisation abandoned after stall timeout"));
+            return;
+        }
+        log.info(String.format("[Zimbra@%s::endSynchro] %d users synchronized, %d failed",
+                this.getClass().getSimpleName(), nbUserSynchronized.get(), nbUserFailed.get()));
+        sqlSynchroService.updateSynchros(SynchroConstants.STATUS_INPROGRESS,
+                SynchroConstants.STATUS_DONE,
+                res -> {
+                    endRun(run);
+                    handler.handle(res);
+                });
+    }
 
-    // Get the handler for the end of process
-    private Handler<AsyncResult<JsonObject>> getFinalHandler(Handler<AsyncResult<JsonArray>> handler) {
-        return finalSyncRes ->
-            sqlSynchroService.updateSynchros(SynchroConstants.STATUS_INPROGRESS,
-                    SynchroConstants.STATUS_DONE,
-                    handler);
+    /**
+     * @return progress of current or last synchronisation
+     */
+    public JsonObject getStatus() {
+        return new JsonObject()
+                .put("running", running.get())
+                .put("concurrency", concurrency)
+                .put("batchSize", batchSize)
+                .put("lastProgress", lastProgress.get())
+                .put(NB_USER_SYNCED, nbUserSynchronized.get())
+                .put("nbUserFailed", nbUserFailed.get());
     }
 }
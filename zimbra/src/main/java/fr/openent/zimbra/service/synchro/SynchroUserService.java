@@ -19,7 +19,6 @@ package fr.openent.zimbra.service.synchro;
 
 import fr.openent.zimbra.Zimbra;
 import fr.openent.zimbra.core.constants.Field;
-import fr.openent.zimbra.helper.AsyncHelper;
 import fr.openent.zimbra.helper.ConfigManager;
 import fr.openent.zimbra.model.soap.SoapRequest;
 import fr.openent.zimbra.model.synchro.SynchroUser;
@@ -46,8 +45,6 @@ import static fr.openent.zimbra.service.data.SoapZimbraService.ERROR_CODE;
 
 public class SynchroUserService {
 
-    static final String EMPTY_BDD = "empty_bdd";
-
     private UserService userService;
     private DbMailService dbMailService;
     private SqlSynchroService sqlSynchroService;
@@ -76,36 +73,37 @@ public class SynchroUserService {
 
 
     /**
-     * Get the first user to synchronize from bdd (if any) and synchronize its information in Zimbra
-     * @param handler synchronization result
+     * Claim users to synchronize from bdd
+     * @param batchSize max number of users to claim
+     * @return claimed rows, empty if there is no user left to synchronize
      */
-    void syncUserFromBase(Handler<AsyncResult<JsonObject>> handler) {
-        Promise<JsonObject> startPromise = AsyncHelper.getJsonObjectFinalPromise(handler);
-        Promise<JsonObject> fetchedUser = Promise.promise();
-
-        log.info("Fetching user to sync");
-        sqlSynchroService.fetchUserToSynchronize(fetchedUser);
-        fetchedUser.future().compose(bddRes -> {
-            if (bddRes.isEmpty()) {
-                return Future.succeededFuture(new JsonObject().put(EMPTY_BDD, true));
-            } else {
-                int idRow = bddRes.getInteger(SqlSynchroService.USER_IDROW);
-                String idUser = bddRes.getString(SqlSynchroService.USER_IDUSER);
-                String syncAction = bddRes.getString(SqlSynchroService.USER_SYNCACTION);
-                log.info("Syncing user " + idUser);
-
-                try {
-                    SynchroUser user = new SynchroUser(idUser);
-                    Promise<JsonObject> syncPromise = Promise.promise();
-                    user.synchronize(idRow, syncAction, syncPromise);
-
-                    return syncPromise.future();
-                } catch (IllegalArgumentException e) {
-                    log.info("Failed to sync user " + idUser);
-                    return Future.failedFuture(e);
-                }
-            }
-        }).onComplete(startPromise);
+    Future<JsonArray> claimUsersToSynchronize(int batchSize) {
+        Promise<JsonArray> fetchedUsers = Promise.promise();
+        log.info("Fetching users to sync");
+        sqlSynchroService.fetchUsersToSynchronize(batchSize, fetchedUsers);
+        return fetchedUsers.future();
+    }
+
+    /**
+     * Synchronize information in Zimbra of a user claimed from bdd
+     * @param bddRes claimed row
+     * @return synchronization result
+     */
+    Future<JsonObject> syncUserFromBase(JsonObject bddRes) {
+        int idRow = bddRes.getInteger(SqlSynchroService.USER_IDROW);
+        String idUser = bddRes.getString(SqlSynchroService.USER_IDUSER);
+        String syncAction = bddRes.getString(SqlSynchroService.USER_SYNCACTION);
+        log.info("Syncing user " + idUser);
+
+        try {
+            SynchroUser user = new SynchroUser(idUser);
+            Promise<JsonObject> syncPromise = Promise.promise();
+            user.synchronize(idRow, syncAction, syncPromise);
+            return syncPromise.future();
+        } catch (IllegalArgumentException e) {
+            log.info("Failed to sync user " + idUser);
+            return Future.failedFuture(e);
+        }
     }
 
     /**
@@ -21,7 +21,14 @@ public abstract class DbRecallMail {
      * @return              Recall mail
      */
     public abstract Future<RecallMail> createRecallMail(RecallMail recallMail, UserInfos user);
-    public abstract Future<List<RecallMail>> getRecallMailByStruct(String structureId);
+
+    /**
+     * Get recall mails of a structure, most recent first
+     * @param structureId   Structure id
+     * @param page          Page number, null for every recall mail
+     * @return              Recall mails
+     */
+    public abstract Future<List<RecallMail>> getRecallMailByStruct(String structureId, Integer page);
     public abstract Future<Void> acceptRecall(int recallId);
     public abstract Future<Void> acceptMultipleRecall(List<Integer> recallIds);
     public abstract Future<JsonArray> checkRecalledInMailList(String userId, JsonArray messageList);
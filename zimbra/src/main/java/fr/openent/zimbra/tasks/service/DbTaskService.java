@@ -3,6 +3,7 @@ package fr.openent.zimbra.tasks.service;
 import fr.openent.zimbra.core.constants.Field;
 import fr.openent.zimbra.core.enums.ErrorEnum;
 import fr.openent.zimbra.core.enums.TaskStatus;
+import fr.openent.zimbra.helper.StoreMetrics;
 import fr.openent.zimbra.model.action.Action;
 import fr.openent.zimbra.model.task.RecallTask;
 import fr.openent.zimbra.model.task.Task;
@@ -30,10 +31,29 @@ public abstract class DbTaskService<T extends Task<T>> {
         this.taskTable = schema + ".tasks";
     }
 
-    protected abstract Future<JsonArray> retrieveTasksDataFromDB(TaskStatus status);
+    protected abstract Future<JsonArray> retrieveTasksDataFromDB(TaskStatus status, int limit);
     protected abstract Future<JsonObject> createTask(Action<T> action, T task);
     protected abstract Future<Void> createLogsForTask(T task, String error);
 
+    /**
+     * Save logs of a failed task, then set its status to error
+     * @param task  failed task
+     * @param error detail of the failure
+     * @return updated status of the task
+     */
+    protected Future<JsonObject> logFailureOnTask(T task, String error) {
+        return createLogsForTask(task, error).compose(res -> editTaskStatus(task, TaskStatus.ERROR));
+    }
+
+    /**
+     * Give back tasks retrieved for a worker that will not execute them.
+     * Nothing to do by default : retrieved tasks stay pending.
+     * @param tasks tasks dropped by the worker
+     */
+    protected Future<Void> releaseTasks(List<T> tasks) {
+        return Future.succeededFuture();
+    }
+
     protected Future<JsonObject> editTaskStatus(T task, TaskStatus status) {
         Promise<JsonObject> promise = Promise.promise();
         String query = "UPDATE " + this.taskTable + " SET status = ? " + "WHERE id = ? RETURNING " + Field.STATUS + ";";
@@ -41,7 +61,7 @@ public abstract class DbTaskService<T extends Task<T>> {
         JsonArray values = new JsonArray();
         values.add(status.method()).add(task.getId());
 
-        Sql.getInstance().prepared(query, values, SqlResult.validUniqueResultHandler(handler -> {
+        Sql.getInstance().prepared(query, values, StoreMetrics.sql("task.editTaskStatus", SqlResult.validUniqueResultHandler(handler -> {
             if (handler.isLeft()) {
                 String errMessage = String.format("[Zimbra@%s::createTask]:  " +
                                 "an error has occurred while creating task: %s",
@@ -51,7 +71,7 @@ public abstract class DbTaskService<T extends Task<T>> {
             } else {
                 promise.complete(handler.right().getValue());
             }
-        }));
+        })));
 
         return promise.future();
     }
@@ -157,8 +157,8 @@ public abstract class QueueService<T extends Task<T>> {
     public Future<T> logFailureOnTask(T task, String error) {
         Promise<T> promise = Promise.promise();
 
-        dbTaskService.createLogsForTask(task, error)
-                .compose(res -> editTaskStatus(task, TaskStatus.ERROR))
+        dbTaskService.logFailureOnTask(task, error)
+                .compose(taskStatus -> setTaskStatus(task, taskStatus, "logFailureOnTask"))
                 .onSuccess(promise::complete)
                 .onFailure(err -> {
                     String errMessage = String.format("[Zimbra@%s::logFailureOnTask]: error while saving logs: %s",
@@ -174,24 +174,7 @@ public abstract class QueueService<T extends Task<T>> {
         Promise<T> promise = Promise.promise();
 
         dbTaskService.editTaskStatus(task, status)
-                .onSuccess(taskStatus -> {
-                    if (taskStatus.containsKey(Field.STATUS)) {
-                        try {
-                            task.setStatus(TaskStatus.fromString(taskStatus.getString(Field.STATUS)));
-                            promise.complete(task);
-                        } catch (Exception e){
-                            String errMessage = String.format("[Zimbra@%s::editTaskStatus]: wrong status format: %s",
-                                    this.getClass().getSimpleName(), e.getMessage());
-                            log.error(errMessage);
-                            promise.fail(ErrorEnum.ERROR_EDITING_TASK.method());
-                        }
-                    } else {
-                        String errMessage = String.format("[Zimbra@%s::editTaskStatus]: missing updated status",
-                                this.getClass().getSimpleName());
-                        log.error(errMessage);
-                        promise.fail(ErrorEnum.ERROR_EDITING_TASK.method());
-                    }
-                })
+                .onSuccess(taskStatus -> setTaskStatus(task, taskStatus, "editTaskStatus").onComplete(promise))
                 .onFailure(err -> {
                     String errMessage = String.format("[Zimbra@%s::editTaskStatus]: fail to call db for task status update: %s",
                             this.getClass().getSimpleName(), err.getMessage());
@@ -203,13 +186,42 @@ public abstract class QueueService<T extends Task<T>> {
     }
 
     /**
-     * Retrieve all the pending tasks from DB.
+     * Set the status saved in database on the task model
+     * @param task       updated task
+     * @param taskStatus row returned by the update, with the status
+     * @param method     calling method, for logs
+     * @return task with updated status
+     */
+    private Future<T> setTaskStatus(T task, JsonObject taskStatus, String method) {
+        if (!taskStatus.containsKey(Field.STATUS)) {
+            String errMessage = String.format("[Zimbra@%s::%s]: missing updated status",
+                    this.getClass().getSimpleName(), method);
+            log.error(errMessage);
+            return Future.failedFuture(ErrorEnum.ERROR_EDITING_TASK.method());
+        }
+        try {
+            task.setStatus(TaskStatus.fromString(taskStatus.getString(Field.STATUS)));
+            return Future.succeededFuture(task);
+        } catch (Exception e) {
+            String errMessage = String.format("[Zimbra@%s::%s]: wrong status format: %s",
+                    this.getClass().getSimpleName(), method, e.getMessage());
+            log.error(errMessage);
+            return Future.failedFuture(ErrorEnum.ERROR_EDITING_TASK.method());
+        }
+    }
+
+    /**
+     * Retrieve pending tasks from DB.
+     * @param limit max number of tasks, room left in the worker queue
      * @return List of pending task
      */
-    public Future<List<T>> getPendingTasks() {
+    public Future<List<T>> getPendingTasks(int limit) {
+        if (limit <= 0) {
+            return Future.succeededFuture(new ArrayList<>());
+        }
         Promise<List<T>> promise = Promise.promise();
 
-        dbTaskService.retrieveTasksDataFromDB(TaskStatus.PENDING)
+        dbTaskService.retrieveTasksDataFromDB(TaskStatus.PENDING, limit)
                 .onSuccess(taskData -> {
                     try {
                         List<T> tasks = createTasksAndActionFromData(taskData);
@@ -233,6 +245,25 @@ public abstract class QueueService<T extends Task<T>> {
     }
 
 
+    /**
+     * Give back retrieved tasks that the worker dropped without executing them, so that they are retrieved again
+     * @param tasks dropped tasks
+     */
+    public Future<Void> releaseTasks(List<T> tasks) {
+        Promise<Void> promise = Promise.promise();
+
+        dbTaskService.releaseTasks(tasks)
+                .onSuccess(promise::complete)
+                .onFailure(err -> {
+                    String errMessage = String.format("[Zimbra@%s::releaseTasks]: error while releasing %s tasks: %s",
+                            this.getClass().getSimpleName(), tasks.size(), err.getMessage());
+                    log.error(errMessage);
+                    promise.fail(ErrorEnum.ERROR_UPDATING_TASK.method());
+                });
+
+        return promise.future();
+    }
+
     /**
      * Create an Action
      *
@@ -2,6 +2,7 @@ package fr.openent.zimbra.tasks.service;
 
 
 import fr.openent.zimbra.model.message.RecallMail;
+import fr.openent.zimbra.model.task.RecallTask;
 import io.vertx.core.Future;
 import io.vertx.core.json.JsonArray;
 import org.entcore.common.user.UserInfos;
@@ -21,9 +22,11 @@ public interface RecallMailService {
 
     /**
      * Get Recall mails for a specific structure
+     * @param structureId   Structure id
+     * @param page          Page number, null for every recall mail
      * @return
      */
-    public Future<List<RecallMail>> getRecallMailsForOneStructure (String structureId);
+    public Future<List<RecallMail>> getRecallMailsForOneStructure (String structureId, Integer page);
 
     /**
      *
@@ -50,11 +53,13 @@ public interface RecallMailService {
     public Future<List<UUID>> getUsers (String recallMailId);
 
     /**
-     *
-     * @param recallMail
-     * @return
+     * Delete a recalled mail from the mailboxes of its recipients
+     * Mailboxes are accessed with admin level, without authenticating recipients
+     * @param recallMail    recalled mail
+     * @param tasks         recall tasks of this mail
+     * @return              one future per task, in the same order, failed with MAIL_NOT_FOUND if mail is not in mailbox
      */
-    public Future<Void> deleteMessage (RecallMail recallMail, String userId, String receiverEmail, String senderEmail);
+    public List<Future<Void>> deleteMessages (RecallMail recallMail, List<RecallTask> tasks);
 
     public Future<JsonArray> renderRecallMails(UserInfos user, JsonArray messageList);
 
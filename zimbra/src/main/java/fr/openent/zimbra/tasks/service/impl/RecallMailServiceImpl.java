@@ -1,11 +1,13 @@
 package fr.openent.zimbra.tasks.service.impl;
 
+import fr.openent.zimbra.Zimbra;
 import fr.openent.zimbra.core.constants.Field;
 import fr.openent.zimbra.core.enums.ActionType;
 import fr.openent.zimbra.core.enums.AddressType;
 import fr.openent.zimbra.core.enums.ErrorEnum;
 import fr.openent.zimbra.core.enums.RecipientType;
 import fr.openent.zimbra.core.enums.TaskStatus;
+import fr.openent.zimbra.helper.AsyncHelper;
 import fr.openent.zimbra.helper.MessageHelper;
 import fr.openent.zimbra.model.message.Message;
 import fr.openent.zimbra.model.message.RecallMail;
@@ -128,8 +130,8 @@ public class RecallMailServiceImpl implements RecallMailService {
         return promise.future();
     }
 
-    public Future<List<RecallMail>> getRecallMailsForOneStructure (String structureId) {
-        return dbMailService.getRecallMailByStruct(structureId);
+    public Future<List<RecallMail>> getRecallMailsForOneStructure (String structureId, Integer page) {
+        return dbMailService.getRecallMailByStruct(structureId, page);
    }
 
     private Future<Message> fetchUserIdForRecalledMessage(Message message) {
@@ -339,30 +341,35 @@ public class RecallMailServiceImpl implements RecallMailService {
         throw new NotImplementedException("An exception not implemented occured");
     }
 
-    public Future<Void> deleteMessage (RecallMail recallMail, String userId, String receiverEmail, String senderEmail) {
-        Promise<Void> promise = Promise.promise();
+    public List<Future<Void>> deleteMessages (RecallMail recallMail, List<RecallTask> tasks) {
+        //mid from zimbra comes like "<mid>", so we have to remove the "<" and ">"
+        String mailId = recallMail.getMessage().getMailId();
+        String mid = mailId.substring(1, mailId.length() - 1);
 
-        JsonObject returnedMailInfos = new JsonObject()
-                .put(Field.USER_MAIL, senderEmail)
-                //mid from zimbra comes like "<mid>", so we have to remove the "<" and ">"
-                .put(Field.MID, recallMail.getMessage().getMailId().substring(1, recallMail.getMessage().getMailId().length() - 1));
-        JsonObject userRecallInfos = new JsonObject().put(Field.ID, userId).put(Field.MAIL, receiverEmail);
+        // A mailbox is processed once, even if several tasks target it
+        Map<String, Promise<Void>> deletions = new LinkedHashMap<>();
+        tasks.forEach(task -> deletions.computeIfAbsent(task.getReceiverId(), receiverId -> Promise.promise()));
 
-        messageService.retrieveMailFromZimbra(returnedMailInfos, userRecallInfos)
-                .compose(mail -> {
-                    if (!mail.isEmpty()) {
-                        return messageService.deleteMessages(mail, userId, false);
-                    } else {
-                        return Future.failedFuture(ErrorEnum.MAIL_NOT_FOUND.method());
-                    }
-                })
+        AsyncHelper.processListWithConcurrency(new ArrayList<>(deletions.keySet()),
+                Zimbra.appConfig.getZimbraRecallMailboxConcurrency(),
+                receiverId -> deleteMessage(mid, receiverId).onComplete(deletions.get(receiverId)));
+
+        return tasks.stream()
+                .map(task -> deletions.get(task.getReceiverId()).future())
+                .collect(Collectors.toList());
+    }
+
+    private Future<Void> deleteMessage (String mid, String userId) {
+        Promise<Void> promise = Promise.promise();
+
+        messageService.deleteMailFromMailbox(mid, userId)
                 .onSuccess(promise::complete)
                 .onFailure(err -> {
                     String errMessage = String.format("[Zimbra@%s::deleteMessage]:  " +
                                     "error while deleting mail: %s",
                             this.getClass().getSimpleName(), err.getMessage());
                     log.error(errMessage);
-                    ErrorEnum error = err.getMessage().equals(ErrorEnum.MAIL_NOT_FOUND.method()) ? ErrorEnum.MAIL_NOT_FOUND : ErrorEnum.ERROR_RETRIEVING_MAIL;
+                    ErrorEnum error = ErrorEnum.MAIL_NOT_FOUND.method().equals(err.getMessage()) ? ErrorEnum.MAIL_NOT_FOUND : ErrorEnum.ERROR_RETRIEVING_MAIL;
                     promise.fail(error.method());
                 });
 
@@ -392,19 +399,18 @@ public class RecallMailServiceImpl implements RecallMailService {
         Promise<JsonArray> promise = Promise.promise();
         dbMailService.checkRecalledInMailList(user.getUserId(), messageList)
                 .onSuccess(correspondingRecall -> {
+                    Map<String, String> statusByMessageId = new HashMap<>();
                     correspondingRecall.stream()
                             .filter(JsonObject.class::isInstance)
                             .map(JsonObject.class::cast)
-                            .forEach(recallMessage -> {
-                                String recallId = recallMessage.getString(Field.LOCAL_MAIL_ID);
-                                String status = determineStatus(recallMessage);
-                                messageList
-                                        .stream()
-                                        .filter(JsonObject.class::isInstance)
-                                        .map(JsonObject.class::cast)
-                                        .filter(message -> message.getString(Field.ID).equals(recallId))
-                                        .forEach(message -> message.put(Field.RETURNED, status));
-                            });
+                            .filter(recallMessage -> recallMessage.getString(Field.LOCAL_MAIL_ID) != null)
+                            .forEach(recallMessage -> statusByMessageId.put(recallMessage.getString(Field.LOCAL_MAIL_ID),
+                                    determineStatus(recallMessage)));
+                    messageList.stream()
+                            .filter(JsonObject.class::isInstance)
+                            .map(JsonObject.class::cast)
+                            .filter(message -> statusByMessageId.containsKey(message.getString(Field.ID)))
+                            .forEach(message -> message.put(Field.RETURNED, statusByMessageId.get(message.getString(Field.ID))));
                     promise.complete(messageList);
                 })
                 .onFailure(err -> {
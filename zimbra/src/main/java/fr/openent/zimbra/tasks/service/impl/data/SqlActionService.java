@@ -3,6 +3,7 @@ package fr.openent.zimbra.tasks.service.impl.data;
 import fr.openent.zimbra.core.constants.Field;
 import fr.openent.zimbra.core.enums.ActionType;
 import fr.openent.zimbra.helper.PromiseHelper;
+import fr.openent.zimbra.helper.StoreMetrics;
 import fr.openent.zimbra.tasks.service.DbActionService;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
@@ -31,7 +32,7 @@ public class SqlActionService extends DbActionService {
         JsonArray values = new JsonArray();
         values.add(userId.toString()).add(actionType.method()).add(approved);
 
-        Sql.getInstance().prepared(query, values, SqlResult.validUniqueResultHandler(PromiseHelper.handlerJsonObject(promise)));
+        Sql.getInstance().prepared(query, values, StoreMetrics.sql("action.createAction", SqlResult.validUniqueResultHandler(PromiseHelper.handlerJsonObject(promise))));
 
         return promise.future();
     }
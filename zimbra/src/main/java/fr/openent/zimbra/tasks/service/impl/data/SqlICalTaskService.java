@@ -5,6 +5,7 @@ import fr.openent.zimbra.core.enums.ErrorEnum;
 import fr.openent.zimbra.core.enums.TaskStatus;
 import fr.openent.zimbra.helper.ConfigManager;
 import fr.openent.zimbra.helper.PromiseHelper;
+import fr.openent.zimbra.helper.StoreMetrics;
 import fr.openent.zimbra.model.action.Action;
 import fr.openent.zimbra.model.task.ICalTask;
 import fr.openent.zimbra.model.task.RecallTask;
@@ -33,7 +34,7 @@ public class SqlICalTaskService extends DbTaskService<ICalTask> {
     }
 
     @Override
-    protected Future<JsonArray> retrieveTasksDataFromDB(TaskStatus status) {
+    protected Future<JsonArray> retrieveTasksDataFromDB(TaskStatus status, int limit) {
         Promise<JsonArray> promise = Promise.promise();
         String query = "SELECT ical_tasks.*, to_json(actions.*) as action "
         + "FROM " + this.taskTable + " as ical_tasks "
@@ -41,10 +42,10 @@ public class SqlICalTaskService extends DbTaskService<ICalTask> {
         + "WHERE " + "ical_tasks.status = ? "
         + "ORDER BY actions.created_at "
         + "LIMIT ?";
-        JsonArray params = new JsonArray().add(status.method()).add(configManager.getZimbraICalWorkerMaxQueue());
+        JsonArray params = new JsonArray().add(status.method()).add(Math.min(limit, configManager.getZimbraICalWorkerMaxQueue()));
 
 
-        Sql.getInstance().prepared(query, params, SqlResult.validResultHandler(PromiseHelper.handlerJsonArray(promise)));
+        Sql.getInstance().prepared(query, params, StoreMetrics.sql("icalTask.retrieveTasksDataFromDB", SqlResult.validResultHandler(PromiseHelper.handlerJsonArray(promise))));
 
         return promise.future();
     }
@@ -60,7 +61,7 @@ public class SqlICalTaskService extends DbTaskService<ICalTask> {
         JsonArray values = new JsonArray();
         values.add(action.getId()).add(task.getStatus().method()).add(task.getName()).add(task.getBody());
 
-        Sql.getInstance().prepared(query, values, SqlResult.validUniqueResultHandler(handler -> {
+        Sql.getInstance().prepared(query, values, StoreMetrics.sql("icalTask.createTask", SqlResult.validUniqueResultHandler(handler -> {
             if (handler.isRight()) {
                 long id = handler.right().getValue().getLong(Field.ID);
 
@@ -73,7 +74,7 @@ public class SqlICalTaskService extends DbTaskService<ICalTask> {
                 log.error(errMessage);
                 promise.fail(ErrorEnum.ERROR_CREATING_TASKS.method());
             }
-        }));
+        })));
 
         return promise.future();
     }
@@ -1,10 +1,12 @@
 package fr.openent.zimbra.tasks.service.impl.data;
 
+import fr.openent.zimbra.Zimbra;
 import fr.openent.zimbra.core.constants.Field;
 import fr.openent.zimbra.core.enums.ErrorEnum;
 import fr.openent.zimbra.core.enums.TaskStatus;
 import fr.openent.zimbra.helper.IModelHelper;
 import fr.openent.zimbra.helper.PromiseHelper;
+import fr.openent.zimbra.helper.StoreMetrics;
 import fr.openent.zimbra.model.action.Action;
 import fr.openent.zimbra.model.message.Message;
 import fr.openent.zimbra.model.message.RecallMail;
@@ -33,6 +35,7 @@ public class SqlRecallMailService extends DbRecallMail {
     private final String recallMailTable;
     private final String actionTable;
     private final String recallTaskTable;
+    private final String recallStructuresTable;
     private static final Logger log = LoggerFactory.getLogger(SqlRecallMailService.class);
     public static final String ADDR_TYPE_FROM = "f";
 
@@ -41,15 +44,21 @@ public class SqlRecallMailService extends DbRecallMail {
         recallMailTable = schema + "." + "recall_mails";
         this.actionTable = schema + "." + "actions";
         this.recallTaskTable = schema + "." + "recall_recipient_tasks";
+        this.recallStructuresTable = schema + "." + "recall_structures";
     }
 
     protected Future<JsonObject> insertRecallMailDb(RecallMail recallMail, UserInfos user) {
         Promise<JsonObject> promise = Promise.promise();
 
-        String query = "INSERT INTO " +
+        // Structures are also stored in the association table, used to list recalls of a structure
+        String query = "WITH rm AS (INSERT INTO " +
                 this.recallMailTable +
                 " (" + Field.ACTION_ID + "," + Field.USER_NAME + "," + Field.USER_MAIL +"," + Field.LOCAL_MAIL_ID + "," + Field.MESSAGE_ID + "," + Field.STRUCTURES + "," + Field.OBJECT + "," + Field.COMMENT + "," + Field.MAIL_DATE +  ") " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) RETURNING " + Field.ID + ";";
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) RETURNING " + Field.ID + ", " + Field.STRUCTURES + "), " +
+                "rs AS (INSERT INTO " + this.recallStructuresTable + " (recall_mail_id, structure_id) " +
+                "SELECT DISTINCT rm.id, struct->>'id' FROM rm, json_array_elements(rm.structures) AS struct " +
+                "WHERE struct->>'id' IS NOT NULL) " +
+                "SELECT rm." + Field.ID + " FROM rm;";
 
         String senderAddress = recallMail.getMessage().getEmailAddresses().stream().filter(addr -> addr.getAddrType().equals(ADDR_TYPE_FROM)).findFirst().map(ZimbraEmail::getAddress).orElse("");
 
@@ -65,7 +74,7 @@ public class SqlRecallMailService extends DbRecallMail {
                 .add(recallMail.getComment())
                 .add(new Date(recallMail.getMessage().getDate()).toString());
 
-        Sql.getInstance().prepared(query, values, SqlResult.validUniqueResultHandler(PromiseHelper.handlerJsonObject(promise)));
+        Sql.getInstance().prepared(query, values, StoreMetrics.sql("recallMail.insertRecallMailDb", SqlResult.validUniqueResultHandler(PromiseHelper.handlerJsonObject(promise))));
 
         return promise.future();
     }
@@ -100,19 +109,25 @@ public class SqlRecallMailService extends DbRecallMail {
         return promise.future();
     }
 
-    private Future<JsonArray> retrieveRecallByStruct(String structureId) {
+    private Future<JsonArray> retrieveRecallByStruct(String structureId, Integer page) {
         Promise<JsonArray> promise = Promise.promise();
 
         String query = "SELECT rm.*, json_agg(rct.*) as tasks, to_json(act.*) as action FROM " +
-                this.recallMailTable + " AS rm " +
+                this.recallStructuresTable + " AS rs " +
+                "INNER JOIN " + this.recallMailTable + " AS rm ON rm.id = rs.recall_mail_id " +
                 "INNER JOIN " + this.recallTaskTable + " AS rct ON rct.action_id = rm.action_id " +
                 "INNER JOIN " + this.actionTable + " AS act ON act.id = rm.action_id " +
-                "WHERE ? IN (SELECT (json_array_elements(rm.structures)->>'id') " +
-                "FROM " + this.recallMailTable + ") group by rm.id, act.id;";
+                "WHERE rs.structure_id = ? group by rm.id, act.id ORDER BY rm.id DESC";
 
         JsonArray values = new JsonArray().add(structureId);
 
-        Sql.getInstance().prepared(query, values, SqlResult.validResultHandler(PromiseHelper.handlerJsonArray(promise)));
+        if (page != null) {
+            int pageSize = Zimbra.appConfig.getRecallListPageSize();
+            query += " LIMIT ? OFFSET ?";
+            values.add(pageSize).add(page * pageSize);
+        }
+
+        Sql.getInstance().prepared(query + ";", values, StoreMetrics.sql("recallMail.retrieveRecallByStruct", SqlResult.validResultHandler(PromiseHelper.handlerJsonArray(promise))));
 
         return promise.future();
     }
@@ -156,10 +171,10 @@ public class SqlRecallMailService extends DbRecallMail {
     }
 
     @Override
-    public Future<List<RecallMail>> getRecallMailByStruct(String structureId) {
+    public Future<List<RecallMail>> getRecallMailByStruct(String structureId, Integer page) {
         Promise<List<RecallMail>> promise = Promise.promise();
 
-        retrieveRecallByStruct(structureId)
+        retrieveRecallByStruct(structureId, page)
                 .onSuccess(mailList -> {
                     try {
                         promise.complete(createRecallMailInstancesForStruct(mailList));
@@ -191,7 +206,7 @@ public class SqlRecallMailService extends DbRecallMail {
 
         JsonArray values = new JsonArray().add(recallId);
 
-        Sql.getInstance().prepared(query, values, SqlResult.validUniqueResultHandler(res -> {
+        Sql.getInstance().prepared(query, values, StoreMetrics.sql("recallMail.acceptRecall", SqlResult.validUniqueResultHandler(res -> {
             if (res.isRight()) {
                 promise.complete();
             } else {
@@ -201,7 +216,7 @@ public class SqlRecallMailService extends DbRecallMail {
                 log.error(errMessage);
                 promise.fail(ErrorEnum.ERROR_ACTION_UPDATE.method());
             }
-        }));
+        })));
 
         return promise.future();
     }
@@ -215,7 +230,7 @@ public class SqlRecallMailService extends DbRecallMail {
 
         JsonArray values = new JsonArray(recallIds);
 
-        Sql.getInstance().prepared(query, values, SqlResult.validUniqueResultHandler(res -> {
+        Sql.getInstance().prepared(query, values, StoreMetrics.sql("recallMail.acceptMultipleRecall", SqlResult.validUniqueResultHandler(res -> {
             if (res.isRight()) {
                 promise.complete();
             } else {
@@ -225,7 +240,7 @@ public class SqlRecallMailService extends DbRecallMail {
                 log.error(errMessage);
                 promise.fail(ErrorEnum.ERROR_ACTION_UPDATE.method());
             }
-        }));
+        })));
 
         return promise.future();
     }
@@ -255,7 +270,7 @@ public class SqlRecallMailService extends DbRecallMail {
 
         JsonArray values = new JsonArray(messageIdList).add(userId);
 
-        Sql.getInstance().prepared(query, values, SqlResult.validResultHandler(PromiseHelper.handlerJsonArray(promise)));
+        Sql.getInstance().prepared(query, values, StoreMetrics.sql("recallMail.checkRecalledInMailList", SqlResult.validResultHandler(PromiseHelper.handlerJsonArray(promise))));
 
         return promise.future();
     }
@@ -268,7 +283,7 @@ public class SqlRecallMailService extends DbRecallMail {
 
         JsonArray values = new JsonArray(recallIds);
 
-        Sql.getInstance().prepared(query, values, SqlResult.validUniqueResultHandler(list -> {
+        Sql.getInstance().prepared(query, values, StoreMetrics.sql("recallMail.resetFailedTasks", SqlResult.validUniqueResultHandler(list -> {
             if (list.isRight()) {
                 promise.complete();
             } else {
@@ -278,7 +293,7 @@ public class SqlRecallMailService extends DbRecallMail {
                 log.error(errMessage);
                 promise.fail(ErrorEnum.FAIL_LIST_STRUCTURES.method());
             }
-        }));
+        })));
 
         return promise.future();
 
@@ -291,7 +306,7 @@ public class SqlRecallMailService extends DbRecallMail {
 
         JsonArray values = new JsonArray().add(recallId);
 
-        Sql.getInstance().prepared(query, values, SqlResult.validUniqueResultHandler(list -> {
+        Sql.getInstance().prepared(query, values, StoreMetrics.sql("recallMail.getRecallStructures", SqlResult.validUniqueResultHandler(list -> {
             if (list.isRight()) {
                 List<String> structs;
                 try {
@@ -316,7 +331,7 @@ public class SqlRecallMailService extends DbRecallMail {
                 log.error(errMessage);
                 promise.fail(ErrorEnum.FAIL_LIST_STRUCTURES.method());
             }
-        }));
+        })));
 
         return promise.future();
     }
@@ -344,7 +359,7 @@ public class SqlRecallMailService extends DbRecallMail {
 
         JsonArray values = new JsonArray().add(recallId);
 
-        Sql.getInstance().prepared(query, values, SqlResult.validResultHandler(res -> {
+        Sql.getInstance().prepared(query, values, StoreMetrics.sql("recallMail.deleteRecall", SqlResult.validResultHandler(res -> {
             if (res.isRight()) {
                 promise.complete();
             } else {
@@ -354,7 +369,7 @@ public class SqlRecallMailService extends DbRecallMail {
                 log.error(errMessage);
                 promise.fail(ErrorEnum.FAIL_DELETE_RECALL.method());
             }
-        }));
+        })));
 
         return promise.future();
     }
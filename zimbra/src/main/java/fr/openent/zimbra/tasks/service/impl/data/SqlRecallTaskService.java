@@ -4,6 +4,7 @@ import fr.openent.zimbra.core.constants.Field;
 import fr.openent.zimbra.core.enums.ErrorEnum;
 import fr.openent.zimbra.core.enums.TaskStatus;
 import fr.openent.zimbra.helper.PromiseHelper;
+import fr.openent.zimbra.helper.StoreMetrics;
 import fr.openent.zimbra.helper.TransactionHelper;
 import fr.openent.zimbra.model.TransactionElement;
 import fr.openent.zimbra.model.action.Action;
@@ -11,6 +12,7 @@ import fr.openent.zimbra.model.task.RecallTask;
 import fr.openent.zimbra.tasks.service.DbTaskService;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
@@ -19,33 +21,77 @@ import org.entcore.common.sql.Sql;
 import org.entcore.common.sql.SqlResult;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class SqlRecallTaskService extends DbTaskService<RecallTask> {
     private final String recallMailTable = schema + "." + "recall_mails";
     private final String taskTable = schema + "." + "recall_recipient_tasks";
     private final String logTaskTable = schema + "." + "recall_task_logs";
     private static final Logger log = LoggerFactory.getLogger(SqlRecallTaskService.class);
-    private final int queueMaxSize;
+    private static final int MAX_RETRY = 5;
+    private final Vertx vertx;
+    private final long claimTimeout;
+    private final long flushInterval;
+    private final int flushSize;
 
-    public SqlRecallTaskService(String schema, int queueMaxSize) {
+    // Status updates and failure logs waiting to be written together, by task id
+    private Map<Long, PendingUpdate> pendingUpdates = new LinkedHashMap<>();
+    private long flushTimerId = -1;
+
+    /**
+     * @param vertx         vertx instance, for the flush timer
+     * @param schema        db schema
+     * @param claimTimeout  time (s) after which a task claimed by a worker that did not update it can be claimed again
+     * @param flushInterval max time (ms) a status update or a log waits before being written, 0 to write it at once
+     * @param flushSize     number of pending task updates that triggers a write
+     */
+    public SqlRecallTaskService(Vertx vertx, String schema, long claimTimeout, long flushInterval, int flushSize) {
         super(schema);
-        this.queueMaxSize = queueMaxSize;
+        this.vertx = vertx;
+        this.claimTimeout = claimTimeout;
+        this.flushInterval = flushInterval;
+        this.flushSize = Math.max(1, flushSize);
     }
 
+    /**
+     * Claim pending tasks, and set them in progress.
+     * Rows already claimed by another worker are skipped, so several instances can run at the same time.
+     * Tasks in progress for more than claimTimeout are claimed again : their worker stopped before updating them.
+     * Only limit tasks are claimed, the room left in the worker queue, so that every claimed task is queued.
+     */
     @Override
-    protected Future<JsonArray> retrieveTasksDataFromDB(TaskStatus status) {
+    protected Future<JsonArray> retrieveTasksDataFromDB(TaskStatus status, int limit) {
         Promise<JsonArray> promise = Promise.promise();
 
-        String query = "SELECT recall_tasks.*, to_json(actions.*) as action, to_json(recall_mails.*) as recall_mail FROM " +
-                this.taskTable + " as recall_tasks " +
-                "JOIN " + this.actionTable + " as actions" + " on actions.id = recall_tasks.action_id " +
-                "JOIN " + this.recallMailTable + " as recall_mails" + " on actions.id = recall_mails.action_id " +
-                "WHERE recall_tasks.status = ? AND actions.approved AND recall_tasks.retry < 5 LIMIT ?;";
+        String query = "WITH claimed_tasks AS (" +
+                "UPDATE " + this.taskTable + " SET status = ?, last_update = now() " +
+                "WHERE id IN (" +
+                    "SELECT recall_tasks.id FROM " + this.taskTable + " as recall_tasks " +
+                    "JOIN " + this.actionTable + " as actions on actions.id = recall_tasks.action_id " +
+                    "WHERE (recall_tasks.status = ? " +
+                        "OR (recall_tasks.status = ? AND recall_tasks.last_update < now() - ? * interval '1 second')) " +
+                    "AND actions.approved AND recall_tasks.retry < " + MAX_RETRY + " " +
+                    "ORDER BY recall_tasks.id LIMIT ? " +
+                    "FOR UPDATE OF recall_tasks SKIP LOCKED" +
+                ") RETURNING *) " +
+                "SELECT recall_tasks.*, to_json(actions.*) as action, to_json(recall_mails.*) as recall_mail " +
+                "FROM claimed_tasks as recall_tasks " +
+                "JOIN " + this.actionTable + " as actions on actions.id = recall_tasks.action_id " +
+                "JOIN " + this.recallMailTable + " as recall_mails on actions.id = recall_mails.action_id " +
+                "ORDER BY recall_tasks.id;";
 
-        JsonArray params = new JsonArray().add(status.method()).add(queueMaxSize);
+        JsonArray params = new JsonArray()
+                .add(TaskStatus.IN_PROGRESS.method())
+                .add(status.method())
+                .add(TaskStatus.IN_PROGRESS.method())
+                .add(claimTimeout)
+                .add(limit);
 
-        Sql.getInstance().prepared(query, params, SqlResult.validResultHandler(PromiseHelper.handlerJsonArray(promise)));
+        Sql.getInstance().prepared(query, params, StoreMetrics.sql("recallTask.retrieveTasksDataFromDB", SqlResult.validResultHandler(PromiseHelper.handlerJsonArray(promise))));
 
         return promise.future();
     }
@@ -68,35 +114,22 @@ public class SqlRecallTaskService extends DbTaskService<RecallTask> {
                 .add(task.getRecallMessage().getRecallId())
                 .add(task.getReceiverId().toString())
                 .add(0);
-        Sql.getInstance().prepared(query, values, SqlResult.validUniqueResultHandler(PromiseHelper.handlerJsonObject(promise)));
+        Sql.getInstance().prepared(query, values, StoreMetrics.sql("recallTask.createTask", SqlResult.validUniqueResultHandler(PromiseHelper.handlerJsonObject(promise))));
 
         return promise.future();
     }
 
     @Override
     protected Future<Void> createLogsForTask(RecallTask task, String error) {
-        Promise<Void> promise = Promise.promise();
-
-        String query = "INSERT INTO " +
-                this.logTaskTable + " (recall_task_id, logs)" +
-                " VALUES (?, ?);";
-
-        JsonArray values = new JsonArray();
-        values.add(task.getId()).add(error);
-
-        Sql.getInstance().prepared(query, values, SqlResult.validUniqueResultHandler(res -> {
-            if (res.isRight()) {
-                promise.complete();
-            } else {
-                String errMessage = String.format("[Zimbra@%s::createLogsForTask]:  " +
-                                "an error has occurred during create recall logs: %s",
-                        this.getClass().getSimpleName(), res.left().getValue());
-                log.error(errMessage);
-                promise.fail(ErrorEnum.ERROR_CREATING_LOGS.method());
-            }
-        }));
+        return addPendingUpdate(task, null, error).mapEmpty();
+    }
 
-        return promise.future();
+    /**
+     * Logs and error status are written in the same transaction
+     */
+    @Override
+    protected Future<JsonObject> logFailureOnTask(RecallTask task, String error) {
+        return addPendingUpdate(task, TaskStatus.ERROR, error);
     }
 
     /**
@@ -146,7 +179,7 @@ public class SqlRecallTaskService extends DbTaskService<RecallTask> {
             tasksTransactions.add(createTransactionForTasks(action, tasks.subList(i, Math.min(i + batchSize, tasks.size()))));
         }
 
-        TransactionHelper.executeTransaction(tasksTransactions)
+        TransactionHelper.executeTransaction(tasksTransactions, null, "recallTask.createTasksByBatch")
                 .onSuccess(transResult -> {
                     promise.complete(transResult.stream().map(TransactionElement::getResult).reduce(new JsonArray(), JsonArray::add));
                 })
@@ -161,34 +194,175 @@ public class SqlRecallTaskService extends DbTaskService<RecallTask> {
         return promise.future();
     }
 
+    /**
+     * Claimed tasks dropped by the worker are pending again, instead of waiting for claimTimeout
+     */
+    @Override
+    protected Future<Void> releaseTasks(List<RecallTask> tasks) {
+        if (tasks.isEmpty()) {
+            return Future.succeededFuture();
+        }
+        Promise<JsonArray> promise = Promise.promise();
+        List<Long> ids = new ArrayList<>();
+        tasks.forEach(task -> ids.add(task.getId()));
+        String query = "UPDATE " + this.taskTable + " SET status = ?, last_update = now() " +
+                "WHERE status = ? AND id IN " + Sql.listPrepared(ids) + ";";
+        JsonArray params = new JsonArray()
+                .add(TaskStatus.PENDING.method())
+                .add(TaskStatus.IN_PROGRESS.method())
+                .addAll(new JsonArray(ids));
+
+        Sql.getInstance().prepared(query, params, StoreMetrics.sql("recallTask.releaseTasks", SqlResult.validResultHandler(PromiseHelper.handlerJsonArray(promise))));
+
+        return promise.future().mapEmpty();
+    }
+
     @Override
     protected Future<JsonObject> editTaskStatus(RecallTask task, TaskStatus status) {
-        Promise<JsonObject> promise = Promise.promise();
+        return addPendingUpdate(task, status, null);
+    }
 
-        String query;
-        JsonArray values = new JsonArray();
-        if (status == TaskStatus.ERROR && task.getRetry() < 5) {
-            query = "UPDATE " + taskTable + " AS rt set retry = retry + 1, last_update = now()" + (task.getRetry() == 4 ? ", status = '" + TaskStatus.ERROR.method() + "'" : "") +
-                    " WHERE rt.id = ? RETURNING " + Field.STATUS + ";";
-            values.add(task.getId());
-        } else {
-            query = "UPDATE " + this.taskTable + " SET status = ?, last_update = now() " + "WHERE id = ? RETURNING " + Field.STATUS + ";";
-            values.add(status.method()).add(task.getId());
+    /**
+     * Buffer an update of a task, written with the other pending updates by flushUpdates.
+     * Several updates of the same task are merged, the last status wins.
+     * @param task   updated task
+     * @param status new status, null to only add logs
+     * @param logs   failure logs, null to only change status
+     * @return updated status of the task, once written
+     */
+    private Future<JsonObject> addPendingUpdate(RecallTask task, TaskStatus status, String logs) {
+        Promise<JsonObject> promise = Promise.promise();
+        boolean flushNow;
+        synchronized (this) {
+            PendingUpdate update = pendingUpdates.computeIfAbsent(task.getId(), PendingUpdate::new);
+            if (status != null) {
+                update.status = status;
+            }
+            if (logs != null) {
+                update.logs.add(logs);
+            }
+            update.promises.add(promise);
+            flushNow = flushInterval <= 0 || pendingUpdates.size() >= flushSize;
+            if (!flushNow && flushTimerId < 0) {
+                flushTimerId = vertx.setTimer(flushInterval, id -> flushUpdates());
+            }
+        }
+        if (flushNow) {
+            flushUpdates();
         }
+        return promise.future();
+    }
 
-        Sql.getInstance().prepared(query, values, SqlResult.validUniqueResultHandler(handler -> {
-            if (handler.isLeft()) {
-                String errMessage = String.format("[Zimbra@%s::editTaskStatus]:  " +
-                                "an error has occurred while updating task: %s",
-                        this.getClass().getSimpleName(), handler.left().getValue());
-                log.error(errMessage);
-                promise.fail(ErrorEnum.ERROR_QUEUE_TASK.method());
-            } else {
-                promise.complete(handler.right().getValue());
+    /**
+     * Write pending updates in one transaction : one insert for all logs, one update for all statuses.
+     * If the transaction fails, tasks stay in progress and are claimed again after claimTimeout,
+     * so an update is never half written.
+     */
+    public void flushUpdates() {
+        Map<Long, PendingUpdate> updates;
+        synchronized (this) {
+            if (flushTimerId >= 0) {
+                vertx.cancelTimer(flushTimerId);
+                flushTimerId = -1;
             }
+            if (pendingUpdates.isEmpty()) {
+                return;
+            }
+            updates = pendingUpdates;
+            pendingUpdates = new LinkedHashMap<>();
+        }
+
+        List<TransactionElement> statements = new ArrayList<>();
+        TransactionElement logsInsert = createLogsInsert(updates.values());
+        TransactionElement statusUpdate = createStatusUpdate(updates.values());
+        statements.add(logsInsert);
+        statements.add(statusUpdate);
+
+        TransactionHelper.executeTransaction(statements, null, "recallTask.flushUpdates")
+                .onSuccess(res -> {
+                    Map<Long, JsonObject> statusById = new HashMap<>();
+                    if (statusUpdate != null) {
+                        statusUpdate.getResult().stream()
+                                .filter(JsonObject.class::isInstance)
+                                .map(JsonObject.class::cast)
+                                .forEach(row -> statusById.put(row.getLong(Field.ID), row));
+                    }
+                    updates.values().forEach(update -> {
+                        JsonObject taskStatus = update.status == null ? new JsonObject() : statusById.get(update.taskId);
+                        update.promises.forEach(promise -> {
+                            if (taskStatus != null) {
+                                promise.complete(taskStatus);
+                            } else {
+                                promise.fail(ErrorEnum.ERROR_QUEUE_TASK.method());
+                            }
+                        });
+                    });
+                })
+                .onFailure(err -> {
+                    String errMessage = String.format("[Zimbra@%s::flushUpdates]:  " +
+                                    "an error has occurred while updating %s tasks: %s",
+                            this.getClass().getSimpleName(), updates.size(), err.getMessage());
+                    log.error(errMessage);
+                    updates.values().forEach(update -> update.promises.forEach(promise ->
+                            promise.fail(update.logs.isEmpty()
+                                    ? ErrorEnum.ERROR_QUEUE_TASK.method()
+                                    : ErrorEnum.ERROR_CREATING_LOGS.method())));
+                });
+    }
+
+    private TransactionElement createLogsInsert(Collection<PendingUpdate> updates) {
+        StringBuilder values = new StringBuilder();
+        JsonArray params = new JsonArray();
+        updates.forEach(update -> update.logs.forEach(logs -> {
+            values.append("(?::bigint, ?::varchar),");
+            params.add(update.taskId).add(logs);
         }));
+        if (params.isEmpty()) {
+            return null;
+        }
+        values.deleteCharAt(values.length() - 1);
+        // Logs of tasks deleted with their recall are ignored, instead of failing the whole transaction
+        String query = "INSERT INTO " + this.logTaskTable + " (recall_task_id, logs) " +
+                "SELECT task_logs.task_id, task_logs.logs FROM (VALUES " + values + ") AS task_logs(task_id, logs) " +
+                "JOIN " + this.taskTable + " AS rt ON rt.id = task_logs.task_id;";
+        return new TransactionElement(query, params);
+    }
 
-        return promise.future();
+    /**
+     * An error status increments retry, the task is pending again until it reached MAX_RETRY
+     */
+    private TransactionElement createStatusUpdate(Collection<PendingUpdate> updates) {
+        StringBuilder values = new StringBuilder();
+        JsonArray params = new JsonArray();
+        updates.stream().filter(update -> update.status != null).forEach(update -> {
+            values.append("(?::bigint, ?::varchar),");
+            params.add(update.taskId).add(update.status.method());
+        });
+        if (params.isEmpty()) {
+            return null;
+        }
+        values.deleteCharAt(values.length() - 1);
+        String error = "'" + TaskStatus.ERROR.method() + "'";
+        String query = "UPDATE " + this.taskTable + " AS rt SET " +
+                "retry = CASE WHEN task_status.status = " + error + " AND rt.retry < " + MAX_RETRY + " THEN rt.retry + 1 ELSE rt.retry END, " +
+                "status = CASE WHEN task_status.status <> " + error + " THEN task_status.status " +
+                    "WHEN rt.retry + 1 < " + MAX_RETRY + " THEN '" + TaskStatus.PENDING.method() + "' " +
+                    "ELSE " + error + " END, " +
+                "last_update = now() " +
+                "FROM (VALUES " + values + ") AS task_status(id, status) " +
+                "WHERE rt.id = task_status.id RETURNING rt.id, rt." + Field.STATUS + ";";
+        return new TransactionElement(query, params);
+    }
+
+    private static class PendingUpdate {
+        private final long taskId;
+        private TaskStatus status;
+        private final List<String> logs = new ArrayList<>();
+        private final List<Promise<JsonObject>> promises = new ArrayList<>();
+
+        private PendingUpdate(long taskId) {
+            this.taskId = taskId;
+        }
     }
 
 }
@@ -12,6 +12,7 @@ import fr.openent.zimbra.service.CalendarService;
 import fr.openent.zimbra.tasks.helpers.CalendarEventBusHelper;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.json.JsonObject;
@@ -35,6 +36,8 @@ public class ICalRequestWorker extends QueueWorker<ICalTask> implements Handler<
         super.start();
         this.configManager = new ConfigManager(Vertx.currentContext().config());
         this.setMaxQueueSize(configManager.getZimbraICalWorkerMaxQueue());
+        this.setConcurrency(configManager.getZimbraICalWorkerConcurrency());
+        this.setTaskTimeout(configManager.getQueueWorkerTaskTimeout());
         this.eb.localConsumer(this.getClass().getName(), this);
         this.calendarService = ServiceManager.getServiceManager().getCalendarService();
         this.queueService = serviceManager.getICalQueueService();
@@ -52,8 +55,24 @@ public class ICalRequestWorker extends QueueWorker<ICalTask> implements Handler<
             return Future.failedFuture(ErrorEnum.ERROR_EXECUTING_TASK.method());
         }
 
-        UserUtils.getUserInfos(this.eb, userId, user -> retrieveIcalAndNotifyCalendar(user, task));
-        return Future.succeededFuture();
+        Promise<Void> promise = Promise.promise();
+        UserUtils.getUserInfos(this.eb, userId, user -> {
+            if (user == null) {
+                log.error(String.format("[Zimbra@%s::execute]: user %s not found", this.getClass().getSimpleName(), userId));
+                queueService.logFailureOnTask(task, ErrorEnum.USER_NOT_DEFINED.method())
+                        .onFailure(err -> log.error(String.format("[Zimbra@%s::execute]: failed to create log in db: %s", this.getClass().getSimpleName(), err.getMessage())));
+                promise.fail(ErrorEnum.ERROR_EXECUTING_TASK.method());
+                return;
+            }
+            try {
+                retrieveIcalAndNotifyCalendar(user, task).<Void>mapEmpty().onComplete(promise);
+            } catch (Exception e) {
+                log.error(String.format("[Zimbra@%s::execute]: error while executing task: %s", this.getClass().getSimpleName(), e.getMessage()));
+                queueService.logFailureOnTask(task, ErrorEnum.ERROR_EXECUTING_TASK.method());
+                promise.tryFail(ErrorEnum.ERROR_EXECUTING_TASK.method());
+            }
+        });
+        return promise.future();
     }
 
     private JsonObject icalDataAsJson(String ical, ICalTask task) {
@@ -63,8 +82,8 @@ public class ICalRequestWorker extends QueueWorker<ICalTask> implements Handler<
                 .put(Field.USERID, task.getAction().getUserId().toString());
     }
 
-    private void retrieveIcalAndNotifyCalendar(UserInfos user, ICalTask task) {
-        calendarService.getICal(user)
+    private Future<String> retrieveIcalAndNotifyCalendar(UserInfos user, ICalTask task) {
+        return calendarService.getICal(user)
                 .onSuccess(ical -> {
                     queueService.editTaskStatus(task, TaskStatus.FINISHED)
                             .onFailure(err -> {
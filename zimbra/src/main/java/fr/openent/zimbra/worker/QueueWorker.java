@@ -6,13 +6,14 @@ import fr.openent.zimbra.core.enums.QueueWorkerStatus;
 import fr.openent.zimbra.core.constants.Field;
 import fr.openent.zimbra.helper.ConfigManager;
 import fr.openent.zimbra.helper.EventBusHelper;
+import fr.openent.zimbra.helper.MetricsRegistry;
 import fr.openent.zimbra.helper.ServiceManager;
 import fr.openent.zimbra.model.task.Task;
 import fr.openent.zimbra.tasks.service.QueueService;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
-import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.eventbus.Message;
@@ -32,41 +33,201 @@ abstract class QueueWorker<T extends Task<T>> extends AbstractVerticle implement
     protected QueueService<T> queueService;
     protected EventBus eb;
 
-    protected Queue<T> queue = new LinkedList<>();
+    // Pending tasks indexed by id, in insertion order
+    protected LinkedHashMap<Long, T> queue = new LinkedHashMap<>();
     protected int maxQueueSize = 1000;
 
+    // Number of batches executed at the same time, 1 means batches are executed one after another
+    protected int concurrency = 1;
+    // Time after which a running task no longer holds a concurrency slot, 0 for no timeout
+    protected long taskTimeout = 0;
+    // Max number of queued tasks launched together, see canBatch
+    protected int batchSize = 1;
+    private final Map<Long, T> inFlightTasks = new HashMap<>();
+    // Batches holding a concurrency slot, a batch releases it when none of its tasks is in flight
+    private int runningBatches = 0;
+    // Tasks that exceeded taskTimeout but are still running : not queued again until their execution ends
+    private final Map<Long, T> timedOutTasks = new HashMap<>();
+    private Context context;
+
+    // Completion bookkeeping : tasks are numbered when launched,
+    // lastOrderedCompletion is the highest number for which all previous tasks are completed
+    private long launchedCount = 0;
+    private long lastOrderedCompletion = 0;
+    private final TreeSet<Long> unorderedCompletions = new TreeSet<>();
+    private long succeededCount = 0;
+    private long failedCount = 0;
+    private long timedOutCount = 0;
+
+    private final MetricsRegistry metrics = MetricsRegistry.getInstance();
+    private static final String METRIC_QUEUE_SIZE = "zimbra_queue_size";
+    private static final String METRIC_INFLIGHT = "zimbra_queue_inflight_tasks";
+    private static final String METRIC_TASKS = "zimbra_queue_tasks_total";
+    private static final String METRIC_RETRIED = "zimbra_queue_tasks_retried_total";
+    private static final String METRIC_TIMED_OUT = "zimbra_queue_tasks_timed_out_total";
+    private static final String METRIC_TASK_DURATION = "zimbra_queue_task_duration_seconds";
+    private static final String METRIC_LABEL_WORKER = "worker";
+
     protected abstract Future<Void> execute(T task);
 
+    /**
+     * Can a queued task be launched in the same batch as another one ?
+     * @param first task launching the batch
+     * @param other queued task
+     * @return true to execute both tasks with executeBatch
+     */
+    protected boolean canBatch(T first, T other) {
+        return false;
+    }
+
+    /**
+     * Execute several tasks together, by default one after another
+     * @param tasks tasks of a batch, see canBatch
+     * @return one future per task, in the same order
+     */
+    protected List<Future<Void>> executeBatch(List<T> tasks) {
+        List<Future<Void>> executions = new ArrayList<>();
+        for (T task : tasks) {
+            executions.add(execute(task));
+        }
+        return executions;
+    }
+
     @Override
     public void start() throws Exception {
         this.eb = vertx.eventBus();
+        this.context = vertx.getOrCreateContext();
+        String workerName = this.getClass().getSimpleName();
+        metrics.registerGauge(METRIC_QUEUE_SIZE, "Tasks waiting in worker queue",
+                () -> this.queue.size(), METRIC_LABEL_WORKER, workerName);
+        metrics.registerGauge(METRIC_INFLIGHT, "Tasks running in worker",
+                () -> this.inFlightTasks.size(), METRIC_LABEL_WORKER, workerName);
     }
 
     public void startQueue() {
         this.running = true;
         this.workerStatus = QueueWorkerStatus.RUNNING;
-        Future<Void> previousFuture = Future.succeededFuture();
-        while (this.running && !queue.isEmpty()) {
-            T task = this.queue.poll();
-            try {
-                previousFuture = previousFuture
-                        .compose(res -> {
-                            Promise<Void> waitingPromise = Promise.promise();
-                            execute(task)
-                                .onComplete(execRes -> waitingPromise.complete());
-                            return waitingPromise.future();
-                        });
-            } catch (Exception e) {
-                previousFuture = Future.succeededFuture();
-                String errMessage = String.format("[Zimbra@%s::startQueue]:  " +
-                        "an error has occurred while executing task: %s",
-                        this.getClass().getSimpleName(), e.getMessage());
+        launchTasks();
+    }
+
+    /**
+     * Launch tasks from the queue until concurrency limit is reached
+     * Queued tasks that can be batched with a launched task are launched with it, up to batch size,
+     * a batch takes one concurrency slot whatever its size
+     */
+    private void launchTasks() {
+        while (this.running && this.runningBatches < Math.max(1, this.concurrency) && !this.queue.isEmpty()) {
+            Iterator<T> it = this.queue.values().iterator();
+            T task = it.next();
+            it.remove();
+            List<T> batch = new ArrayList<>();
+            batch.add(task);
+            while (batch.size() < this.batchSize && it.hasNext()) {
+                T other = it.next();
+                if (canBatch(task, other)) {
+                    it.remove();
+                    batch.add(other);
+                }
+            }
+            launchBatch(batch);
+        }
+    }
+
+    private void launchBatch(List<T> tasks) {
+        long start = System.currentTimeMillis();
+        Batch batch = new Batch(tasks.size());
+        this.runningBatches++;
+        for (T task : tasks) {
+            this.inFlightTasks.put(task.getId(), task);
+            if (task.getRetry() > 0) {
+                metrics.incrementCounter(METRIC_RETRIED, "Tasks launched again after a failure",
+                        METRIC_LABEL_WORKER, this.getClass().getSimpleName());
+            }
+        }
+
+        List<Future<Void>> executions;
+        try {
+            executions = tasks.size() == 1 ? Collections.singletonList(execute(tasks.get(0))) : executeBatch(tasks);
+        } catch (Exception e) {
+            String errMessage = String.format("[Zimbra@%s::launchBatch]:  " +
+                    "an error has occurred while executing task: %s",
+                    this.getClass().getSimpleName(), e.getMessage());
+            log.error(errMessage);
+            executions = new ArrayList<>();
+            for (T task : tasks) {
                 queueService.logFailureOnTask(task, errMessage);
-                log.error(errMessage);
+                executions.add(Future.failedFuture(errMessage));
+            }
+        }
+
+        for (int i = 0; i < tasks.size(); i++) {
+            watchTask(tasks.get(i), batch, executions.get(i), ++this.launchedCount, start);
+        }
+    }
+
+    private void watchTask(T task, Batch batch, Future<Void> execution, long taskNumber, long start) {
+        long timerId = this.taskTimeout > 0
+                ? vertx.setTimer(this.taskTimeout, id -> this.context.runOnContext(v -> onTaskTimedOut(task, batch)))
+                : -1;
+        execution.onComplete(res -> {
+            if (timerId >= 0) {
+                vertx.cancelTimer(timerId);
             }
+            this.context.runOnContext(v -> onTaskCompleted(task, batch, taskNumber, start, res.succeeded()));
+        });
+    }
+
+    // Called once per task of the batch, when it completes or times out
+    private void releaseBatchTask(Batch batch) {
+        if (--batch.remaining == 0) {
+            this.runningBatches--;
         }
     }
 
+    /**
+     * A task running for longer than taskTimeout releases its concurrency slot.
+     * Its execution cannot be cancelled : the task is kept aside until it ends, and its status is written then.
+     */
+    private void onTaskTimedOut(T task, Batch batch) {
+        if (this.inFlightTasks.get(task.getId()) != task) {
+            return;
+        }
+        this.inFlightTasks.remove(task.getId());
+        releaseBatchTask(batch);
+        this.timedOutTasks.put(task.getId(), task);
+        this.timedOutCount++;
+        metrics.incrementCounter(METRIC_TIMED_OUT, "Worker tasks still running after task timeout",
+                METRIC_LABEL_WORKER, this.getClass().getSimpleName());
+        log.error(String.format("[Zimbra@%s::onTaskTimedOut]:  task %s still running after %s ms",
+                this.getClass().getSimpleName(), task.getId(), this.taskTimeout));
+        launchTasks();
+    }
+
+    private void onTaskCompleted(T task, Batch batch, long taskNumber, long start, boolean succeeded) {
+        if (this.inFlightTasks.get(task.getId()) == task) {
+            this.inFlightTasks.remove(task.getId());
+            releaseBatchTask(batch);
+        }
+        this.timedOutTasks.remove(task.getId());
+        String workerName = this.getClass().getSimpleName();
+        metrics.recordDuration(METRIC_TASK_DURATION, "Duration of worker tasks",
+                System.currentTimeMillis() - start, METRIC_LABEL_WORKER, workerName);
+        metrics.incrementCounter(METRIC_TASKS, "Worker tasks completed, by result",
+                METRIC_LABEL_WORKER, workerName, "result", succeeded ? "success" : "failure");
+        if (succeeded) {
+            this.succeededCount++;
+        } else {
+            this.failedCount++;
+        }
+
+        this.unorderedCompletions.add(taskNumber);
+        while (!this.unorderedCompletions.isEmpty() && this.unorderedCompletions.first() == this.lastOrderedCompletion + 1) {
+            this.lastOrderedCompletion = this.unorderedCompletions.pollFirst();
+        }
+
+        launchTasks();
+    }
+
     @Override
     public void handle(Message<JsonObject> message) {
         QueueWorkerAction action = QueueWorkerAction.valueOf(message.body().getString(Field.ACTION));
@@ -128,11 +289,26 @@ abstract class QueueWorker<T extends Task<T>> extends AbstractVerticle implement
             log.warn("[ZimbraConnector@ICalRequestWorker:addTasks] Queue size limit is reached");
         }
 
+        List<T> droppedTasks = new ArrayList<>();
         for(T taskIteration : tasks) {
-            if (!this.queue.contains(taskIteration) && (this.queue.size() < this.maxQueueSize)) {
+            if (this.queue.containsKey(taskIteration.getId()) || this.inFlightTasks.containsKey(taskIteration.getId())
+                    || this.timedOutTasks.containsKey(taskIteration.getId())) {
+                continue;
+            }
+            if (this.queue.size() < this.maxQueueSize) {
                 this.addTask(taskIteration);
+            } else {
+                droppedTasks.add(taskIteration);
             }
         }
+        releaseTasks(droppedTasks);
+    }
+
+    // Tasks retrieved for this worker but not queued are given back, to be retrieved again by the next sync
+    private void releaseTasks(List<T> tasks) {
+        if (!tasks.isEmpty()) {
+            queueService.releaseTasks(tasks);
+        }
     }
 
     private void addTask(T task) {
@@ -141,7 +317,7 @@ abstract class QueueWorker<T extends Task<T>> extends AbstractVerticle implement
             return;
         }
 
-        this.queue.add(task);
+        this.queue.put(task.getId(), task);
     }
 
     public void pauseQueue() {
@@ -149,11 +325,15 @@ abstract class QueueWorker<T extends Task<T>> extends AbstractVerticle implement
         this.workerStatus = QueueWorkerStatus.PAUSED;
     }
 
-    public void clearQueue() { this.queue.clear(); }
+    public void clearQueue() {
+        List<T> clearedTasks = new ArrayList<>(this.queue.values());
+        this.queue.clear();
+        releaseTasks(clearedTasks);
+    }
 
     public void syncQueue(Message<JsonObject> message) {
         pauseQueue();
-        queueService.getPendingTasks()
+        queueService.getPendingTasks(this.maxQueueSize - this.queue.size())
                 .onSuccess(tasks -> {
                     this.addTasks(tasks);
                     message.reply(new JsonObject().put(Field.STATUS, Field.OK).put(Field.RESULT, new JsonObject()
@@ -175,6 +355,18 @@ abstract class QueueWorker<T extends Task<T>> extends AbstractVerticle implement
         this.maxQueueSize = maxQueueSize;
     }
 
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public void setTaskTimeout(long taskTimeout) {
+        this.taskTimeout = taskTimeout;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
     public int remainingSize () {
         return this.queue.size() - this.maxQueueSize;
     }
@@ -189,15 +381,40 @@ abstract class QueueWorker<T extends Task<T>> extends AbstractVerticle implement
     public void sendWorkerStatus(Message<JsonObject> event) {
         JsonObject response = new JsonObject();
         response.put(Field.WORKERSTATUS, this.workerStatus);
+        response.put(Field.QUEUESIZE, this.queue.size());
+        response.put(Field.CONCURRENCY, this.concurrency);
+        response.put(Field.INFLIGHT, this.inFlightTasks.size());
+        response.put(Field.RUNNINGBATCHES, this.runningBatches);
+        response.put(Field.LAUNCHED, this.launchedCount);
+        response.put(Field.SUCCEEDED, this.succeededCount);
+        response.put(Field.FAILED, this.failedCount);
+        response.put(Field.TIMEDOUT, this.timedOutCount);
+        response.put(Field.TIMEDOUTRUNNING, this.timedOutTasks.size());
+        response.put(Field.LASTORDEREDCOMPLETION, this.lastOrderedCompletion);
         response.put(Field.STATUS, 200);
         event.reply(response);
     }
 
     public void removeTasks(List<T> tasks) {
-        queue.removeAll(tasks);
+        List<T> removedTasks = new ArrayList<>();
+        for (T task : tasks) {
+            T removedTask = this.queue.remove(task.getId());
+            if (removedTask != null) {
+                removedTasks.add(removedTask);
+            }
+        }
+        releaseTasks(removedTasks);
     }
 
     public void removeTask(T task) {
-        this.queue.removeIf(queuedTask -> queuedTask.getId() == task.getId());
+        removeTasks(Collections.singletonList(task));
+    }
+
+    private static class Batch {
+        private int remaining;
+
+        private Batch(int size) {
+            this.remaining = size;
+        }
     }
 }
@@ -8,6 +8,10 @@ import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.logging.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 public class RecallMailWorker extends QueueWorker<RecallTask> {
     public final RecallMailService recallMailService = serviceManager.getRecallMailService();
     public static final String RECALL_MAIL_HANDLER_ADDRESS = "zimbra.recall.handler";
@@ -21,6 +25,9 @@ public class RecallMailWorker extends QueueWorker<RecallTask> {
     public void start() throws Exception {
         super.start();
         this.setMaxQueueSize(configManager.getZimbraRecallWorkerMaxQueue());
+        this.setConcurrency(configManager.getZimbraRecallWorkerConcurrency());
+        this.setTaskTimeout(configManager.getQueueWorkerTaskTimeout());
+        this.setBatchSize(configManager.getZimbraRecallWorkerBatchSize());
         this.eb.localConsumer(RECALL_MAIL_HANDLER_ADDRESS, this);
     }
 
@@ -45,16 +52,36 @@ public class RecallMailWorker extends QueueWorker<RecallTask> {
     }
 
     public Future<Void> execute(RecallTask task) {
+        return executeBatch(Collections.singletonList(task)).get(0);
+    }
+
+    /**
+     * Tasks of the same recalled mail are executed together
+     */
+    @Override
+    protected boolean canBatch(RecallTask first, RecallTask other) {
+        return first.getRecallMessage().getRecallId() == other.getRecallMessage().getRecallId();
+    }
+
+    @Override
+    protected List<Future<Void>> executeBatch(List<RecallTask> tasks) {
+        List<Future<Void>> deletions = recallMailService.deleteMessages(tasks.get(0).getRecallMessage(), tasks);
+        List<Future<Void>> executions = new ArrayList<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            executions.add(handleDeletion(tasks.get(i), deletions.get(i)));
+        }
+        return executions;
+    }
+
+    private Future<Void> handleDeletion(RecallTask task, Future<Void> deletion) {
         Promise<Void> promise = Promise.promise();
-        recallMailService
-                .deleteMessage(task.getRecallMessage(), task.getReceiverId(), task.getReceiverEmail(),
-                        task.getRecallMessage().getSenderEmail())
+        deletion
                 .compose(isDeleted -> queueService.editTaskStatus(task, TaskStatus.FINISHED))
                 .onSuccess(res -> promise.complete())
                 .onFailure(err -> {
                     handleDeleteMailError(task, err.getMessage());
                     promise.fail(ErrorEnum.ERROR_EXECUTING_TASK.method());
-                    String errMessage = String.format("[Zimbra@%s::execute]:  " +
+                    String errMessage = String.format("[Zimbra@%s::handleDeletion]:  " +
                             "an error has occurred while executing recall task: %s",
                             this.getClass().getSimpleName(), err.getMessage());
                     log.error(errMessage);
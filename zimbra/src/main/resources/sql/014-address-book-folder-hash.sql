@@ -0,0 +1,9 @@
+CREATE TABLE zimbra.address_book_folder_hash (
+    userid varchar NOT NULL,
+    folder_path varchar NOT NULL,
+    hash varchar NOT NULL,
+    date_synchro timestamp without time zone NOT NULL DEFAULT now(),
+    CONSTRAINT abookfolderhash_pkey PRIMARY KEY (userid, folder_path)
+);
+
+GRANT SELECT, INSERT, UPDATE, DELETE, TRUNCATE ON zimbra.address_book_folder_hash TO "apps";
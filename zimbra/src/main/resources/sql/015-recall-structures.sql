@@ -0,0 +1,20 @@
+CREATE TABLE zimbra.recall_structures
+(
+    recall_mail_id bigint NOT NULL,
+    structure_id   varchar NOT NULL,
+    CONSTRAINT recall_structures_pkey PRIMARY KEY (structure_id, recall_mail_id),
+    CONSTRAINT recall_mail_id_fkey FOREIGN KEY (recall_mail_id) REFERENCES zimbra.recall_mails (id) ON DELETE CASCADE
+);
+CREATE INDEX recall_structures_recall_mail_id_idx ON zimbra.recall_structures (recall_mail_id);
+
+INSERT INTO zimbra.recall_structures (recall_mail_id, structure_id)
+SELECT DISTINCT rm.id, struct->>'id'
+FROM zimbra.recall_mails AS rm, json_array_elements(rm.structures) AS struct
+WHERE rm.structures IS NOT NULL AND struct->>'id' IS NOT NULL;
+
+CREATE INDEX recall_recipient_tasks_action_id_idx ON zimbra.recall_recipient_tasks (action_id);
+
+GRANT SELECT, INSERT, UPDATE, DELETE, TRUNCATE ON zimbra.recall_structures, zimbra.recall_mails, zimbra.recall_recipient_tasks,
+    zimbra.recall_task_logs, zimbra.tasks, zimbra.actions TO "apps";
+GRANT USAGE, SELECT, UPDATE ON SEQUENCE zimbra.recall_mails_id_seq, zimbra.recall_task_logs_id_seq, zimbra.tasks_id_seq,
+    zimbra.actions_id_seq TO "apps";
@@ -0,0 +1,82 @@
+package fr.openent.zimbra.helper;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(VertxUnitRunner.class)
+public class AsyncLimiterTest {
+
+    private Vertx vertx;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+    }
+
+    @After
+    public void tearDown(TestContext ctx) {
+        vertx.close(ctx.asyncAssertSuccess());
+    }
+
+    private Future<Integer> delayed(int value, long delay) {
+        Promise<Integer> promise = Promise.promise();
+        vertx.setTimer(delay, id -> promise.complete(value));
+        return promise.future();
+    }
+
+    @Test
+    public void concurrencyIsBoundedTest(TestContext ctx) {
+        Async async = ctx.async();
+        AsyncLimiter limiter = new AsyncLimiter(vertx, 2, 0);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            int value = i;
+            results.add(limiter.execute(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                return delayed(value, 20).onComplete(res -> running.decrementAndGet());
+            }));
+        }
+
+        Future.all(results).onComplete(ctx.asyncAssertSuccess(res -> {
+            ctx.assertEquals(2, maxRunning.get());
+            ctx.assertEquals(5, results.get(5).result());
+            ctx.assertEquals(0, limiter.getRunning());
+            ctx.assertEquals(0, limiter.getWaiting());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public void rateIsLimitedTest(TestContext ctx) {
+        Async async = ctx.async();
+        AsyncLimiter limiter = new AsyncLimiter(vertx, 0, 20);
+        long start = System.currentTimeMillis();
+
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            int value = i;
+            results.add(limiter.execute(() -> Future.succeededFuture(value)));
+        }
+
+        Future.all(results).onComplete(ctx.asyncAssertSuccess(res -> {
+            // 20 per second : one start every 50 ms
+            ctx.assertTrue(System.currentTimeMillis() - start >= 200);
+            async.complete();
+        }));
+    }
+}
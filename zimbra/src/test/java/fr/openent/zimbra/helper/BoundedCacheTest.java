@@ -0,0 +1,59 @@
+package fr.openent.zimbra.helper;
+
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class BoundedCacheTest {
+
+    @Test
+    public void evictLeastRecentlyUsedTest(TestContext ctx) {
+        BoundedCache<String, String> cache = new BoundedCache<>(2, 60000);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        ctx.assertEquals("1", cache.get("a"));
+        cache.put("c", "3");
+
+        ctx.assertEquals(2, cache.size());
+        ctx.assertNull(cache.get("b"));
+        ctx.assertEquals("1", cache.get("a"));
+        ctx.assertEquals("3", cache.get("c"));
+        ctx.assertEquals(1L, cache.getEvictions());
+        ctx.assertEquals(3L, cache.getHits());
+        ctx.assertEquals(1L, cache.getMisses());
+    }
+
+    @Test
+    public void expiredEntriesTest(TestContext ctx) {
+        BoundedCache<String, String> cache = new BoundedCache<>(10, 60000);
+        cache.put("expired", "1", -1);
+        cache.put("valid", "2", 60000);
+
+        ctx.assertNull(cache.get("expired"));
+        ctx.assertEquals("2", cache.get("valid"));
+    }
+
+    @Test
+    public void invalidateTest(TestContext ctx) {
+        BoundedCache<String, String> cache = new BoundedCache<>(10, 60000);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("c", "2");
+
+        cache.invalidate("a", "other");
+        ctx.assertEquals("1", cache.get("a"));
+        cache.invalidate("a", "1");
+        ctx.assertNull(cache.get("a"));
+        cache.invalidateIf((key, value) -> value.equals("2"));
+        ctx.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void disabledCacheTest(TestContext ctx) {
+        BoundedCache<String, String> cache = new BoundedCache<>(0, 60000);
+        cache.put("a", "1");
+        ctx.assertNull(cache.get("a"));
+    }
+}
@@ -0,0 +1,59 @@
+package fr.openent.zimbra.helper;
+
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class ChangeTokenCacheTest {
+
+    @Test
+    public void newerTokenDropsUserValuesTest(TestContext ctx) {
+        ChangeTokenCache<String> cache = new ChangeTokenCache<>(10, 60000);
+        cache.observeToken("user1", 10);
+        cache.put("user1", "inbox", "folders1", 60000, 10L);
+        cache.observeToken("user2", 3);
+        cache.put("user2", "inbox", "folders2", 60000, 3L);
+
+        cache.observeToken("user1", 10);
+        cache.observeToken("user1", 9);
+        ctx.assertEquals("folders1", cache.get("user1", "inbox"));
+
+        cache.observeToken("user1", 11);
+        ctx.assertNull(cache.get("user1", "inbox"));
+        ctx.assertEquals("folders2", cache.get("user2", "inbox"));
+        ctx.assertEquals(1L, cache.getStats().getLong("invalidations"));
+    }
+
+    @Test
+    public void invalidateAndExpiryTest(TestContext ctx) {
+        ChangeTokenCache<String> cache = new ChangeTokenCache<>(10, 60000);
+        cache.put("user1", "inbox", "folders", 60000, 1L);
+        cache.put("user1", "count", "12", -1, 1L);
+        ctx.assertEquals("folders", cache.get("user1", "inbox"));
+        ctx.assertNull(cache.get("user1", "count"));
+
+        cache.invalidate("user1");
+        ctx.assertNull(cache.get("user1", "inbox"));
+        ctx.assertEquals(1L, cache.getStats().getLong("hits"));
+        ctx.assertEquals(2L, cache.getStats().getLong("misses"));
+    }
+
+    @Test
+    public void valueReadBeforeChangeIsNotStoredTest(TestContext ctx) {
+        ChangeTokenCache<String> cache = new ChangeTokenCache<>(10, 60000);
+        cache.observeToken("user1", 10);
+        Long token = cache.getToken("user1");
+        cache.observeToken("user1", 11);
+        cache.put("user1", "inbox", "old folders", 60000, token);
+        ctx.assertNull(cache.get("user1", "inbox"));
+
+        cache.put("user1", "inbox", "folders", 60000, null);
+        ctx.assertNull(cache.get("user1", "inbox"));
+
+        cache.put("user1", "inbox", "new folders", 60000, 12L);
+        ctx.assertEquals("new folders", cache.get("user1", "inbox"));
+        ctx.assertEquals(12L, cache.getToken("user1"));
+    }
+}
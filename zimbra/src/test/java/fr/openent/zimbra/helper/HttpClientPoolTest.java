@@ -0,0 +1,74 @@
+package fr.openent.zimbra.helper;
+
+import fr.openent.zimbra.Zimbra;
+import fr.openent.zimbra.mock.MockZimbraServer;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.RequestOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(VertxUnitRunner.class)
+public class HttpClientPoolTest {
+
+    private Vertx vertx;
+    private MockZimbraServer zimbra;
+
+    @Before
+    public void setUp(TestContext ctx) {
+        vertx = Vertx.vertx();
+        zimbra = new MockZimbraServer(vertx, "key", "password");
+        zimbra.start().onComplete(ctx.asyncAssertSuccess());
+        Zimbra.appConfig = new ConfigManager(new JsonObject()
+                .put("http-client-pools", new JsonObject()
+                        .put(HttpClientPool.DOWNLOAD, new JsonObject()
+                                .put("max-pool-size", 1)
+                                .put("max-wait-queue-size", 1))));
+    }
+
+    @After
+    public void tearDown(TestContext ctx) {
+        vertx.close(ctx.asyncAssertSuccess());
+    }
+
+    private Future<Integer> download(HttpClientPool pool) {
+        return pool.request(new RequestOptions().setMethod(HttpMethod.GET).setAbsoluteURI(zimbra.getUri() + "/service/upload"))
+                .compose(HttpClientRequest::send)
+                .compose(response -> response.body().map(body -> response.statusCode()));
+    }
+
+    @Test
+    public void poolAndWaitQueueAreBoundedTest(TestContext ctx) {
+        Async async = ctx.async();
+        zimbra.setLatency(MockZimbraServer.PATH_UPLOAD, 100);
+        HttpClientPool pool = new HttpClientPool(vertx, HttpClientPool.DOWNLOAD);
+
+        List<Future<Integer>> downloads = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            downloads.add(download(pool));
+        }
+
+        Future.join(downloads).onComplete(res -> {
+            long failed = downloads.stream().filter(Future::failed).count();
+            ctx.assertTrue(downloads.get(0).succeeded());
+            ctx.assertTrue(failed > 0);
+            JsonObject stats = pool.getStats();
+            ctx.assertEquals(1L, stats.getLong("createdConnections"));
+            ctx.assertEquals(3L, stats.getLong("requests"));
+            ctx.assertEquals(failed, stats.getLong("failedRequests"));
+            ctx.assertEquals(0, stats.getInteger("waitingRequests"));
+            async.complete();
+        });
+    }
+}
@@ -0,0 +1,48 @@
+package fr.openent.zimbra.helper;
+
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class MetricsRegistryTest {
+
+    private final MetricsRegistry metrics = MetricsRegistry.getInstance();
+
+    @Test
+    public void counterTest(TestContext ctx) {
+        metrics.incrementCounter("test_counter_total", "Test counter", "request", "GetMsgRequest");
+        metrics.incrementCounter("test_counter_total", "Test counter", 2, "request", "GetMsgRequest");
+        metrics.incrementCounter("test_counter_total", "Test counter", "request", "Say \"hello\"");
+
+        String scrape = metrics.scrape();
+        ctx.assertTrue(scrape.contains("# TYPE test_counter_total counter\n"));
+        ctx.assertTrue(scrape.contains("test_counter_total{request=\"GetMsgRequest\"} 3\n"));
+        ctx.assertTrue(scrape.contains("test_counter_total{request=\"Say \\\"hello\\\"\"} 1\n"));
+    }
+
+    @Test
+    public void histogramTest(TestContext ctx) {
+        metrics.recordDuration("test_duration_seconds", "Test duration", 20, "store", "neo4j");
+        metrics.recordDuration("test_duration_seconds", "Test duration", 400, "store", "neo4j");
+        metrics.recordDuration("test_duration_seconds", "Test duration", 60000, "store", "neo4j");
+
+        String scrape = metrics.scrape();
+        ctx.assertTrue(scrape.contains("test_duration_seconds_bucket{store=\"neo4j\",le=\"0.025\"} 1\n"));
+        ctx.assertTrue(scrape.contains("test_duration_seconds_bucket{store=\"neo4j\",le=\"0.5\"} 2\n"));
+        ctx.assertTrue(scrape.contains("test_duration_seconds_bucket{store=\"neo4j\",le=\"30\"} 2\n"));
+        ctx.assertTrue(scrape.contains("test_duration_seconds_bucket{store=\"neo4j\",le=\"+Inf\"} 3\n"));
+        ctx.assertTrue(scrape.contains("test_duration_seconds_count{store=\"neo4j\"} 3\n"));
+        ctx.assertEquals(3L, metrics.toJson().getJsonObject("test_duration_seconds")
+                .getJsonArray("series").getJsonObject(0).getLong("count"));
+    }
+
+    @Test
+    public void gaugeTest(TestContext ctx) {
+        metrics.registerGauge("test_gauge", "Test gauge", () -> 1, "worker", "TestWorker");
+        metrics.registerGauge("test_gauge", "Test gauge", () -> 4, "worker", "TestWorker");
+
+        ctx.assertTrue(metrics.scrape().contains("test_gauge{worker=\"TestWorker\"} 4\n"));
+    }
+}
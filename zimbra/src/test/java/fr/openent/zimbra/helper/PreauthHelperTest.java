@@ -0,0 +1,47 @@
+package fr.openent.zimbra.helper;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+
+@RunWith(VertxUnitRunner.class)
+public class PreauthHelperTest {
+
+    private static String expectedPreauth(String account, String timestamp, String key) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA1");
+        mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA1"));
+        StringBuilder sb = new StringBuilder();
+        for (byte b : mac.doFinal((account + "|name|0|" + timestamp).getBytes(StandardCharsets.UTF_8))) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void generatePreauthTest(TestContext ctx) throws Exception {
+        String[] keys = {"0123456789abcdef", "fedcba9876543210fedcba9876543210"};
+        String[] accounts = {"user-id@ent.fr", "élève@ent.fr"};
+        for (int i = 0; i < 4; i++) {
+            String key = keys[i % 2];
+            String account = accounts[i / 2];
+            JsonObject preauth = PreauthHelper.generatePreauth(account, key);
+            ctx.assertEquals(account, preauth.getString("id"));
+            ctx.assertEquals(expectedPreauth(account, preauth.getString("timestamp"), key),
+                    preauth.getString("preauthkey"));
+        }
+    }
+
+    @Test
+    public void generatePreauthUrlTest(TestContext ctx) throws Exception {
+        String url = PreauthHelper.generatePreauthUrl("user-id@ent.fr", "0123456789abcdef");
+        String timestamp = url.replaceAll("^.*&timestamp=(\\d+)&.*$", "$1");
+        ctx.assertTrue(url.startsWith("/service/preauth?account=user-id%40ent.fr&by=name&timestamp="));
+        ctx.assertTrue(url.endsWith("&preauth=" + expectedPreauth("user-id@ent.fr", timestamp, "0123456789abcdef")));
+    }
+}
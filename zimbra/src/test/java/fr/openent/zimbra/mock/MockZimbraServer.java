@@ -0,0 +1,668 @@
+package fr.openent.zimbra.mock;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * In-process Zimbra server speaking the Json soap dialect used by SoapZimbraService, to run the connector without
+ * a mailstore. It answers on :
+ * - /service/soap and /service/admin/soap : AuthRequest (preauth or admin password), SearchRequest, GetMsgRequest,
+ * GetFolderRequest, SendMsgRequest, CreateAccountRequest, ImportContactsRequest and BatchRequest.
+ * Other requests get an empty response, responses can be replaced with respondWith.
+ * - /service/preauth : redirect with a ZM_AUTH_TOKEN cookie
+ * - /service/upload : Zimbra upload servlet response with an attachment id
+ * - /service/home/~/ : attachment content
+ * Every request is recorded. Latency and faults can be set for all requests or by soap request name.
+ */
+public class MockZimbraServer {
+
+    public static final String ANY_REQUEST = "*";
+    public static final String PATH_PREAUTH = "preauth";
+    public static final String PATH_UPLOAD = "upload";
+    public static final String PATH_HOME = "home";
+
+    private static final String SOAP_PATH = "/service/soap";
+    private static final String ADMIN_SOAP_PATH = "/service/admin/soap";
+    private static final String AUTH_COOKIE = "ZM_AUTH_TOKEN";
+    private static final long TOKEN_LIFETIME = 172800000L;
+
+    public enum Fault {
+        AUTH_EXPIRED("service.AUTH_EXPIRED"),
+        AUTH_REQUIRED("service.AUTH_REQUIRED"),
+        AUTH_FAILED("account.AUTH_FAILED"),
+        PROXY_ERROR("service.PROXY_ERROR"),
+        NO_SUCH_ACCOUNT("account.NO_SUCH_ACCOUNT"),
+        GENERIC("service.FAILURE"),
+        // Not a soap fault : html error page, as sent by a proxy in front of Zimbra
+        MALFORMED_JSON(null),
+        // Not a soap fault : connection closed before sending any response
+        CONNECTION_CLOSED(null),
+        // Not a soap fault : /service/home/~/ headers and half of the attachment sent, then connection closed
+        INTERRUPTED_BODY(null);
+
+        private final String code;
+
+        Fault(String code) {
+            this.code = code;
+        }
+
+        public String code() {
+            return code;
+        }
+    }
+
+    private final Vertx vertx;
+    private final String preauthKey;
+    private final String adminPassword;
+    private HttpServer server;
+
+    private final List<RecordedRequest> requests = new CopyOnWriteArrayList<>();
+    private final Map<String, Long> latencies = new ConcurrentHashMap<>();
+    private final Map<String, List<Fault>> faults = new ConcurrentHashMap<>();
+    private final Map<String, Function<JsonObject, JsonObject>> responders = new ConcurrentHashMap<>();
+    private final Map<String, String> tokens = new ConcurrentHashMap<>();
+    private final AtomicInteger idSequence = new AtomicInteger(1000);
+
+    private JsonArray messages = new JsonArray();
+    private Buffer attachmentContent = Buffer.buffer("mock attachment content");
+    private long uploadMaxSize = 0;
+
+    /**
+     * @param vertx         vertx instance
+     * @param preauthKey    preauth key used to check user AuthRequest and /service/preauth
+     * @param adminPassword password expected in admin AuthRequest
+     */
+    public MockZimbraServer(Vertx vertx, String preauthKey, String adminPassword) {
+        this.vertx = vertx;
+        this.preauthKey = preauthKey;
+        this.adminPassword = adminPassword;
+        for (int i = 0; i < 20; i++) {
+            messages.add(mockMessage(String.valueOf(300 + i)));
+        }
+    }
+
+    /**
+     * Start listening on a random port
+     * @return future completed with the listening port
+     */
+    public Future<Integer> start() {
+        return vertx.createHttpServer(new HttpServerOptions().setHost("localhost"))
+                .requestHandler(this::handle)
+                .listen(0)
+                .map(httpServer -> {
+                    this.server = httpServer;
+                    return httpServer.actualPort();
+                });
+    }
+
+    public Future<Void> stop() {
+        return server == null ? Future.succeededFuture() : server.close();
+    }
+
+    /**
+     * @return base uri, to be used as zimbra-uri
+     */
+    public String getUri() {
+        return "http://localhost:" + server.actualPort();
+    }
+
+    /**
+     * @return admin soap uri, to be used as zimbra-admin-uri
+     */
+    public String getAdminUri() {
+        return getUri() + ADMIN_SOAP_PATH;
+    }
+
+    /**
+     * Delay every response
+     * @param latency delay in milliseconds
+     */
+    public MockZimbraServer setLatency(long latency) {
+        return setLatency(ANY_REQUEST, latency);
+    }
+
+    /**
+     * Delay responses to a soap request, or to a servlet (PATH_PREAUTH, PATH_UPLOAD, PATH_HOME)
+     * @param requestName soap request name, servlet or ANY_REQUEST
+     * @param latency     delay in milliseconds
+     */
+    public MockZimbraServer setLatency(String requestName, long latency) {
+        latencies.put(requestName, latency);
+        return this;
+    }
+
+    /**
+     * Answer the next requests with a fault instead of the regular response
+     * @param requestName soap request name, servlet or ANY_REQUEST
+     * @param fault       fault to send
+     * @param times       number of requests to fail
+     */
+    public MockZimbraServer injectFault(String requestName, Fault fault, int times) {
+        List<Fault> queue = faults.computeIfAbsent(requestName, name -> new CopyOnWriteArrayList<>());
+        for (int i = 0; i < times; i++) {
+            queue.add(fault);
+        }
+        return this;
+    }
+
+    /**
+     * Replace response content of a soap request
+     * @param requestName soap request name
+     * @param responder   build XxxResponse content from XxxRequest content
+     */
+    public MockZimbraServer respondWith(String requestName, Function<JsonObject, JsonObject> responder) {
+        responders.put(requestName, responder);
+        return this;
+    }
+
+    /**
+     * Set messages of the mailbox, returned by SearchRequest and GetMsgRequest
+     * @param messages Zimbra messages, with at least an id
+     */
+    public MockZimbraServer setMessages(JsonArray messages) {
+        this.messages = messages;
+        return this;
+    }
+
+    public MockZimbraServer setAttachmentContent(Buffer attachmentContent) {
+        this.attachmentContent = attachmentContent;
+        return this;
+    }
+
+    /**
+     * @param uploadMaxSize max size of uploads, in bytes, 0 for no limit
+     */
+    public MockZimbraServer setUploadMaxSize(long uploadMaxSize) {
+        this.uploadMaxSize = uploadMaxSize;
+        return this;
+    }
+
+    /**
+     * Expire every auth token issued so far, next requests get an AUTH_EXPIRED fault
+     */
+    public void expireTokens() {
+        tokens.clear();
+    }
+
+    /**
+     * Forget recorded requests, latencies, faults and responders
+     */
+    public void reset() {
+        requests.clear();
+        latencies.clear();
+        faults.clear();
+        responders.clear();
+    }
+
+    public List<RecordedRequest> getRequests() {
+        return new ArrayList<>(requests);
+    }
+
+    public List<RecordedRequest> getRequests(String name) {
+        return requests.stream().filter(request -> request.getName().equals(name)).collect(Collectors.toList());
+    }
+
+    public int countRequests(String name) {
+        return getRequests(name).size();
+    }
+
+    private void handle(HttpServerRequest request) {
+        request.body().onSuccess(body -> {
+            String path = request.path();
+            if (SOAP_PATH.equals(path) || ADMIN_SOAP_PATH.equals(path)) {
+                handleSoap(request, body, ADMIN_SOAP_PATH.equals(path));
+            } else if (path.startsWith("/service/preauth")) {
+                handleServlet(request, PATH_PREAUTH, body, () -> handlePreauth(request));
+            } else if (path.startsWith("/service/upload")) {
+                handleServlet(request, PATH_UPLOAD, body, () -> handleUpload(request, body));
+            } else if (path.startsWith("/service/home/")) {
+                handleServlet(request, PATH_HOME, body, () -> handleHome(request));
+            } else {
+                request.response().setStatusCode(404).end();
+            }
+        });
+    }
+
+    private void handleServlet(HttpServerRequest request, String name, Buffer body, Runnable responder) {
+        requests.add(new RecordedRequest(name, request.uri(), null, getCookieToken(request), body.length()));
+        Fault fault = nextFault(name);
+        delay(name, () -> {
+            if (fault == Fault.CONNECTION_CLOSED) {
+                request.connection().close();
+            } else if (fault == Fault.INTERRUPTED_BODY) {
+                attachmentHeaders(request.response())
+                        .putHeader("Content-Length", String.valueOf(attachmentContent.length()))
+                        .write(attachmentContent.getBuffer(0, attachmentContent.length() / 2));
+                vertx.setTimer(100, id -> request.connection().close());
+            } else if (fault != null) {
+                request.response().setStatusCode(500).end("<html><body>" + fault.name() + "</body></html>");
+            } else {
+                responder.run();
+            }
+        });
+    }
+
+    private void handlePreauth(HttpServerRequest request) {
+        String account = request.getParam("account");
+        String expected = hmac(account + "|name|" + request.getParam("expires") + "|" + request.getParam("timestamp"));
+        if (expected == null || !expected.equals(request.getParam("preauth"))) {
+            request.response().setStatusCode(400).end("invalid preauth");
+            return;
+        }
+        request.response().setStatusCode(302)
+                .putHeader("Set-Cookie", AUTH_COOKIE + "=" + issueToken(account) + "; Path=/")
+                .putHeader("Location", "/")
+                .end();
+    }
+
+    private void handleUpload(HttpServerRequest request, Buffer body) {
+        if (uploadMaxSize > 0 && body.length() > uploadMaxSize) {
+            request.response().end("413,'null'\n");
+            return;
+        }
+        String contentDisposition = request.getHeader("Content-Disposition");
+        JsonObject upload = new JsonObject()
+                .put("aid", UUID.randomUUID() + ":" + UUID.randomUUID())
+                .put("ct", request.getHeader("Content-Type"))
+                .put("filename", contentDisposition == null ? "" : contentDisposition.replaceAll("^.*filename=\"?([^\"]*)\"?.*$", "$1"))
+                .put("s", body.length());
+        request.response().end("200,'null'," + new JsonArray().add(upload).encode() + "\n");
+    }
+
+    private void handleHome(HttpServerRequest request) {
+        String token = getCookieToken(request);
+        if (token == null || !tokens.containsKey(token)) {
+            request.response().setStatusCode(401).end();
+            return;
+        }
+        attachmentHeaders(request.response()).end(attachmentContent);
+    }
+
+    private HttpServerResponse attachmentHeaders(HttpServerResponse response) {
+        return response
+                .putHeader("Content-Type", "application/octet-stream; charset=binary")
+                .putHeader("Content-Disposition", "attachment; filename=\"mock.bin\"");
+    }
+
+    private void handleSoap(HttpServerRequest request, Buffer body, boolean isAdmin) {
+        JsonObject envelope;
+        try {
+            envelope = body.toJsonObject();
+        } catch (Exception e) {
+            sendFault(request, "service.PARSE_ERROR", "invalid Json request");
+            return;
+        }
+        JsonObject soapBody = envelope.getJsonObject("Body", new JsonObject());
+        String name = soapBody.fieldNames().stream().findFirst().orElse("");
+        JsonObject content = soapBody.getJsonObject(name, new JsonObject());
+        String token = getCookieToken(request);
+        if (token == null) {
+            token = envelope.getJsonObject("Header", new JsonObject()).getJsonObject("context", new JsonObject())
+                    .getString("authToken");
+        }
+        String account = envelope.getJsonObject("Header", new JsonObject()).getJsonObject("context", new JsonObject())
+                .getJsonObject("account", new JsonObject()).getString("_content");
+        requests.add(new RecordedRequest(name, request.uri(), content, token, body.length(), account));
+
+        Fault fault = nextFault(name);
+        String finalToken = token;
+        delay(name, () -> {
+            if (fault == Fault.CONNECTION_CLOSED) {
+                request.connection().close();
+            } else if (fault == Fault.MALFORMED_JSON) {
+                request.response().setStatusCode(502).putHeader("Content-Type", "text/html")
+                        .end("<html><body><h1>502 Bad Gateway</h1></body></html>");
+            } else if (fault != null) {
+                sendFault(request, fault.code(), "injected fault " + fault.name());
+            } else {
+                respond(request, name, content, finalToken, isAdmin);
+            }
+        });
+    }
+
+    private void respond(HttpServerRequest request, String name, JsonObject content, String token, boolean isAdmin) {
+        if ("AuthRequest".equals(name)) {
+            JsonObject authResponse = isAdmin ? adminAuth(content) : preauth(content);
+            if (authResponse == null) {
+                sendFault(request, Fault.AUTH_FAILED.code(), "authentication failed");
+            } else {
+                sendResponse(request, name, authResponse);
+            }
+            return;
+        }
+        if (token == null) {
+            sendFault(request, Fault.AUTH_REQUIRED.code(), "no valid authtoken present");
+            return;
+        }
+        if (!tokens.containsKey(token)) {
+            sendFault(request, Fault.AUTH_EXPIRED.code(), "auth credentials have expired");
+            return;
+        }
+        if ("BatchRequest".equals(name)) {
+            sendResponse(request, name, batch(content));
+            return;
+        }
+        sendResponse(request, name, buildResponse(name, content));
+    }
+
+    private JsonObject batch(JsonObject batchContent) {
+        JsonObject batchResponse = new JsonObject().put("_jsns", "urn:zimbra");
+        for (String name : batchContent.fieldNames()) {
+            Object subRequests = batchContent.getValue(name);
+            if (!(subRequests instanceof JsonArray)) {
+                continue;
+            }
+            for (Object item : (JsonArray) subRequests) {
+                JsonObject subRequest = (JsonObject) item;
+                requests.add(new RecordedRequest(name, SOAP_PATH, subRequest, null, 0));
+                Fault fault = nextFault(name);
+                JsonObject subResponse;
+                String responseName;
+                if (fault != null && fault.code() != null) {
+                    responseName = "Fault";
+                    subResponse = fault(fault.code(), "injected fault " + fault.name());
+                } else {
+                    responseName = name.replaceAll("Request$", "Response");
+                    subResponse = buildResponse(name, subRequest);
+                }
+                subResponse.put("requestId", subRequest.getString("requestId"));
+                if (!batchResponse.containsKey(responseName)) {
+                    batchResponse.put(responseName, new JsonArray());
+                }
+                batchResponse.getJsonArray(responseName).add(subResponse);
+            }
+        }
+        return batchResponse;
+    }
+
+    private JsonObject buildResponse(String name, JsonObject content) {
+        Function<JsonObject, JsonObject> responder = responders.get(name);
+        if (responder != null) {
+            return responder.apply(content);
+        }
+        switch (name) {
+            case "SearchRequest":
+                return search(content);
+            case "GetMsgRequest":
+                return getMessage(content);
+            case "GetFolderRequest":
+                return getFolder(content);
+            case "SendMsgRequest":
+                return new JsonObject().put("m", new JsonArray().add(new JsonObject().put("id", nextId())));
+            case "CreateAccountRequest":
+                return new JsonObject().put("account", new JsonArray().add(new JsonObject()
+                        .put("id", UUID.randomUUID().toString())
+                        .put("name", content.getString("name"))));
+            case "ImportContactsRequest":
+                return importContacts(content);
+            default:
+                return new JsonObject();
+        }
+    }
+
+    private JsonObject preauth(JsonObject content) {
+        String account = content.getJsonObject("account", new JsonObject()).getString("_content");
+        JsonObject preauth = content.getJsonObject("preauth", new JsonObject());
+        String expected = hmac(account + "|name|0|" + preauth.getString("timestamp"));
+        if (account == null || expected == null || !expected.equals(preauth.getString("_content"))) {
+            return null;
+        }
+        return authResponse(issueToken(account));
+    }
+
+    private JsonObject adminAuth(JsonObject content) {
+        String password = content.getJsonObject("password", new JsonObject()).getString("_content");
+        if (adminPassword == null || !adminPassword.equals(password)) {
+            return null;
+        }
+        String account = content.getJsonObject("account", new JsonObject()).getString("_content");
+        return authResponse(issueToken(account));
+    }
+
+    private JsonObject authResponse(String token) {
+        return new JsonObject()
+                .put("authToken", new JsonArray().add(new JsonObject().put("_content", token)))
+                .put("lifetime", TOKEN_LIFETIME);
+    }
+
+    private JsonObject search(JsonObject content) {
+        int offset = content.getInteger("offset", 0);
+        int limit = content.getInteger("limit", 10);
+        JsonArray page = new JsonArray();
+        for (int i = offset; i < Math.min(messages.size(), offset + limit); i++) {
+            page.add(messages.getValue(i));
+        }
+        return new JsonObject()
+                .put("sortBy", "dateDesc")
+                .put("offset", offset)
+                .put("more", offset + limit < messages.size())
+                .put("m", page);
+    }
+
+    private JsonObject getMessage(JsonObject content) {
+        String id = content.getJsonObject("m", new JsonObject()).getString("id");
+        JsonObject message = messages.stream()
+                .map(JsonObject.class::cast)
+                .filter(m -> m.getString("id", "").equals(id))
+                .findFirst()
+                .orElse(mockMessage(id));
+        return new JsonObject().put("m", new JsonArray().add(message));
+    }
+
+    private JsonObject getFolder(JsonObject content) {
+        String folderId = content.getJsonObject("folder", new JsonObject()).getString("l", "1");
+        JsonArray subFolders = new JsonArray();
+        if (content.getInteger("depth", 1) != 0) {
+            for (int i = 0; i < 3; i++) {
+                String id = folderId + "0" + i;
+                subFolders.add(new JsonObject().put("id", id).put("name", "Folder " + id).put("l", folderId)
+                        .put("n", 0).put("u", 0).put("view", "message"));
+            }
+        }
+        return new JsonObject().put("folder", new JsonArray().add(new JsonObject()
+                .put("id", folderId)
+                .put("name", "Folder " + folderId)
+                .put("n", messages.size())
+                .put("u", 0)
+                .put("view", "message")
+                .put("folder", subFolders)));
+    }
+
+    private JsonObject importContacts(JsonObject content) {
+        String csv = content.getJsonObject("content", new JsonObject()).getString("_content", "");
+        long nbContacts = Math.max(0, csv.split("\n").length - 1);
+        List<String> ids = new ArrayList<>();
+        for (long i = 0; i < nbContacts; i++) {
+            ids.add(nextId());
+        }
+        return new JsonObject().put("cn", new JsonArray().add(new JsonObject()
+                .put("ids", String.join(",", ids))
+                .put("n", nbContacts)));
+    }
+
+    private JsonObject mockMessage(String id) {
+        return new JsonObject()
+                .put("id", id)
+                .put("f", "u")
+                .put("d", System.currentTimeMillis())
+                .put("su", "Message " + id)
+                .put("fr", "Mock message " + id)
+                .put("l", "2")
+                .put("cid", "-" + id)
+                .put("s", 1024)
+                .put("e", new JsonArray()
+                        .add(new JsonObject().put("a", "sender@mock.zimbra").put("p", "Sender").put("t", "f"))
+                        .add(new JsonObject().put("a", "recipient@mock.zimbra").put("p", "Recipient").put("t", "t")))
+                .put("mp", new JsonArray().add(new JsonObject()
+                        .put("part", "1")
+                        .put("ct", "text/html")
+                        .put("s", 64)
+                        .put("body", true)
+                        .put("content", "<p>Mock message " + id + "</p>")));
+    }
+
+    private void sendResponse(HttpServerRequest request, String name, JsonObject responseContent) {
+        JsonObject envelope = new JsonObject()
+                .put("Header", new JsonObject().put("context", new JsonObject()
+                        .put("change", new JsonObject().put("token", idSequence.get()))
+                        .put("_jsns", "urn:zimbra")))
+                .put("Body", new JsonObject().put(name.replaceAll("Request$", "Response"), responseContent))
+                .put("_jsns", "urn:zimbraSoap");
+        request.response().putHeader("Content-Type", "application/json; charset=utf-8").end(envelope.encode());
+    }
+
+    private void sendFault(HttpServerRequest request, String code, String reason) {
+        JsonObject envelope = new JsonObject()
+                .put("Header", new JsonObject().put("context", new JsonObject().put("_jsns", "urn:zimbra")))
+                .put("Body", new JsonObject().put("Fault", fault(code, reason)))
+                .put("_jsns", "urn:zimbraSoap");
+        request.response().setStatusCode(500).putHeader("Content-Type", "application/json; charset=utf-8")
+                .end(envelope.encode());
+    }
+
+    private JsonObject fault(String code, String reason) {
+        return new JsonObject()
+                .put("Code", new JsonObject().put("Value", "soap:Sender"))
+                .put("Reason", new JsonObject().put("Text", reason))
+                .put("Detail", new JsonObject().put("Error", new JsonObject()
+                        .put("Code", code)
+                        .put("_jsns", "urn:zimbra")));
+    }
+
+    private Fault nextFault(String name) {
+        for (String key : new String[]{name, ANY_REQUEST}) {
+            List<Fault> queue = faults.get(key);
+            if (queue != null && !queue.isEmpty()) {
+                return queue.remove(0);
+            }
+        }
+        return null;
+    }
+
+    private void delay(String name, Runnable action) {
+        long latency = latencies.getOrDefault(name, latencies.getOrDefault(ANY_REQUEST, 0L));
+        if (latency > 0) {
+            vertx.setTimer(latency, timerId -> action.run());
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Issue an auth token without AuthRequest, for tests mocking the token provider
+     * @param account account the token belongs to
+     * @return auth token accepted by soap requests and servlets
+     */
+    public String issueToken(String account) {
+        String token = "mock-token-" + UUID.randomUUID();
+        tokens.put(token, account);
+        return token;
+    }
+
+    private String nextId() {
+        return String.valueOf(idSequence.incrementAndGet());
+    }
+
+    private String getCookieToken(HttpServerRequest request) {
+        io.vertx.core.http.Cookie cookie = request.getCookie(AUTH_COOKIE);
+        return cookie == null ? null : cookie.getValue();
+    }
+
+    private String hmac(String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA1");
+            mac.init(new SecretKeySpec(preauthKey.getBytes(StandardCharsets.UTF_8), "HmacSHA1"));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : mac.doFinal(data.getBytes(StandardCharsets.UTF_8))) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Request received by the mock server
+     */
+    public static class RecordedRequest {
+        private final String name;
+        private final String uri;
+        private final JsonObject content;
+        private final String authToken;
+        private final long size;
+        private final long timestamp;
+        private final String account;
+
+        RecordedRequest(String name, String uri, JsonObject content, String authToken, long size) {
+            this(name, uri, content, authToken, size, null);
+        }
+
+        RecordedRequest(String name, String uri, JsonObject content, String authToken, long size, String account) {
+            this.name = name;
+            this.uri = uri;
+            this.content = content;
+            this.authToken = authToken;
+            this.size = size;
+            this.timestamp = System.currentTimeMillis();
+            this.account = account;
+        }
+
+        /**
+         * @return soap request name, or servlet name (PATH_PREAUTH, PATH_UPLOAD, PATH_HOME)
+         */
+        public String getName() {
+            return name;
+        }
+
+        public String getUri() {
+            return uri;
+        }
+
+        /**
+         * @return soap request content, null for servlets
+         */
+        public JsonObject getContent() {
+            return content;
+        }
+
+        public String getAuthToken() {
+            return authToken;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * @return account whose mailbox is accessed with admin auth, null for requests on the authenticated account
+         */
+        public String getAccount() {
+            return account;
+        }
+    }
+}
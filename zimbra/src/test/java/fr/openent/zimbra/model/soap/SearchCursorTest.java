@@ -0,0 +1,32 @@
+package fr.openent.zimbra.model.soap;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class SearchCursorTest {
+
+    @Test
+    public void nextPageCursorTest(TestContext ctx) {
+        JsonArray messages = new JsonArray()
+                .add(new JsonObject().put("id", "258").put("d", 1700000002000L))
+                .add(new JsonObject().put("id", "257").put("d", 1700000001000L));
+
+        ctx.assertNull(SearchCursor.nextPage(messages, 3));
+        SearchCursor cursor = SearchCursor.nextPage(messages, 2);
+        ctx.assertNotNull(cursor);
+
+        JsonObject soapCursor = SearchCursor.fromToken(cursor.toToken()).toSoap();
+        ctx.assertEquals("257", soapCursor.getString("id"));
+        ctx.assertEquals("1700000001000", soapCursor.getString("sortVal"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidTokenTest() {
+        SearchCursor.fromToken("not a cursor");
+    }
+}
@@ -0,0 +1,71 @@
+package fr.openent.zimbra.model.soap;
+
+import fr.openent.zimbra.model.constant.SoapConstants;
+import fr.openent.zimbra.model.constant.ZimbraErrors;
+import fr.openent.zimbra.service.data.SoapZimbraService;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(VertxUnitRunner.class)
+public class SoapBatchHelperTest {
+
+    @Test
+    public void buildBatchContentTest(TestContext ctx) {
+        List<JsonObject> requests = Arrays.asList(
+                new JsonObject().put(SoapConstants.REQ_NAME, "GetFolderRequest")
+                        .put(SoapConstants.REQ_CONTENT, new JsonObject().put("_jsns", "urn:zimbraMail")),
+                new JsonObject().put(SoapConstants.REQ_NAME, "GetInfoRequest")
+                        .put(SoapConstants.REQ_CONTENT, new JsonObject().put("_jsns", "urn:zimbraAccount")),
+                new JsonObject().put(SoapConstants.REQ_NAME, "GetFolderRequest")
+                        .put(SoapConstants.REQ_CONTENT, new JsonObject().put("_jsns", "urn:zimbraMail")));
+
+        JsonObject content = SoapBatchHelper.buildBatchContent(requests);
+
+        ctx.assertEquals("continue", content.getString("onerror"));
+        ctx.assertEquals("urn:zimbra", content.getString("_jsns"));
+        JsonArray folderRequests = content.getJsonArray("GetFolderRequest");
+        ctx.assertEquals(2, folderRequests.size());
+        ctx.assertEquals("0", folderRequests.getJsonObject(0).getString("requestId"));
+        ctx.assertEquals("2", folderRequests.getJsonObject(1).getString("requestId"));
+        ctx.assertEquals("1", content.getJsonArray("GetInfoRequest").getJsonObject(0).getString("requestId"));
+        ctx.assertNull(requests.get(0).getJsonObject(SoapConstants.REQ_CONTENT).getString("requestId"));
+    }
+
+    @Test
+    public void splitBatchResponseTest(TestContext ctx) {
+        JsonObject batchResponse = new JsonObject()
+                .put("Header", new JsonObject().put("context", new JsonObject()))
+                .put("Body", new JsonObject().put("BatchResponse", new JsonObject()
+                        .put("_jsns", "urn:zimbra")
+                        .put("GetInfoResponse", new JsonArray()
+                                .add(new JsonObject().put("name", "user").put("requestId", "1")))
+                        .put("Fault", new JsonArray()
+                                .add(new JsonObject()
+                                        .put("Reason", new JsonObject().put("Text", "no such folder"))
+                                        .put("Detail", new JsonObject().put("Error",
+                                                new JsonObject().put("Code", "mail.NO_SUCH_FOLDER")))
+                                        .put("requestId", "0")))));
+
+        List<JsonObject> results = SoapBatchHelper.splitBatchResponse(batchResponse, 3);
+
+        ctx.assertEquals(3, results.size());
+        ctx.assertFalse(results.get(0).getBoolean(ZimbraErrors.IS_SUCCESSFUL));
+        ctx.assertEquals("mail.NO_SUCH_FOLDER", results.get(0).getString(SoapZimbraService.ERROR_CODE));
+        ctx.assertEquals("no such folder", results.get(0).getString(SoapZimbraService.ERROR_MESSAGE));
+
+        ctx.assertTrue(results.get(1).getBoolean(ZimbraErrors.IS_SUCCESSFUL));
+        JsonObject infoResponse = results.get(1).getJsonObject("Body").getJsonObject("GetInfoResponse");
+        ctx.assertEquals("user", infoResponse.getString("name"));
+        ctx.assertFalse(infoResponse.containsKey("requestId"));
+
+        ctx.assertFalse(results.get(2).getBoolean(ZimbraErrors.IS_SUCCESSFUL));
+        ctx.assertEquals(ZimbraErrors.ERROR_GENERIC, results.get(2).getString(SoapZimbraService.ERROR_CODE));
+    }
+}
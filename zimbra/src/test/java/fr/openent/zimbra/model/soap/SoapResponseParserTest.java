@@ -0,0 +1,143 @@
+package fr.openent.zimbra.model.soap;
+
+import fr.openent.zimbra.model.soap.model.SoapICalResponse;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class SoapResponseParserTest {
+
+    private static final String FOLDER_RESPONSE = "{\"Header\":{\"context\":{\"change\":{\"token\":1234}}},"
+            + "\"Body\":{\"GetFolderResponse\":{\"folder\":[{\"id\":\"2\",\"name\":\"Inbox\",\"n\":12,"
+            + "\"folder\":[{\"id\":\"257\",\"name\":\"Projets\",\"u\":3,\"folder\":[{\"id\":\"300\",\"name\":\"2024\"}]},"
+            + "{\"id\":\"258\",\"name\":\"Classes\",\"u\":0}]}],\"_jsns\":\"urn:zimbraMail\"}},"
+            + "\"_jsns\":\"urn:zimbraSoap\"}";
+
+    @Test
+    public void keepPathsTest(TestContext ctx) {
+        Async async = ctx.async();
+        SoapResponseParser parser = new SoapResponseParser(
+                SoapResponseParser.paths("Body.GetFolderResponse.folder.folder.id",
+                        "Body.GetFolderResponse.folder.folder.name", "_jsns"), 0);
+
+        parser.parse(new ChunkedStream(FOLDER_RESPONSE, 7)).onComplete(ctx.asyncAssertSuccess(result -> {
+            ctx.assertFalse(result.containsKey("Header"));
+            ctx.assertEquals("urn:zimbraSoap", result.getString("_jsns"));
+            JsonObject inbox = result.getJsonObject("Body").getJsonObject("GetFolderResponse")
+                    .getJsonArray("folder").getJsonObject(0);
+            ctx.assertEquals(1, inbox.size());
+            JsonArray subFolders = inbox.getJsonArray("folder");
+            ctx.assertEquals(new JsonObject().put("id", "257").put("name", "Projets"), subFolders.getJsonObject(0));
+            ctx.assertEquals(new JsonObject().put("id", "258").put("name", "Classes"), subFolders.getJsonObject(1));
+            async.complete();
+        }));
+    }
+
+    @Test
+    public void keepICalContentTest(TestContext ctx) {
+        Async async = ctx.async();
+        String ics = "BEGIN:VCALENDAR\\r\\nVERSION:2.0\\r\\nEND:VCALENDAR\\r\\n";
+        String icalResponse = "{\"Header\":{\"context\":{\"change\":{\"token\":1234},\"_jsns\":\"urn:zimbra\"}},"
+                + "\"Body\":{\"GetICalResponse\":{\"ical\":[{\"_content\":\"" + ics + "\"}],\"_jsns\":\"urn:zimbraMail\"}},"
+                + "\"_jsns\":\"urn:zimbraSoap\"}";
+        SoapResponseParser parser = new SoapResponseParser(
+                SoapResponseParser.paths("Body.GetICalResponse.ical._content", "Header.context.change"), 0);
+
+        parser.parse(new ChunkedStream(icalResponse, 5)).onComplete(ctx.asyncAssertSuccess(result -> {
+            SoapICalResponse ical = new SoapICalResponse(result);
+            ctx.assertEquals("BEGIN:VCALENDAR\r\nVERSION:2.0\r\nEND:VCALENDAR\r\n", ical.getContent());
+            ctx.assertEquals(1234L, ical.getToken());
+            ctx.assertNull(ical.getJsns());
+            ctx.assertNull(ical.getJsnsGetICalResponse());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public void keepWholeDocumentTest(TestContext ctx) {
+        Async async = ctx.async();
+        new SoapResponseParser(null, 0).parse(new ChunkedStream(FOLDER_RESPONSE, 5))
+                .onComplete(ctx.asyncAssertSuccess(result -> {
+                    ctx.assertEquals(new JsonObject(FOLDER_RESPONSE), result);
+                    async.complete();
+                }));
+    }
+
+    @Test
+    public void invalidJsonFailsTest(TestContext ctx) {
+        Async async = ctx.async();
+        new SoapResponseParser(null, 0).parse(new ChunkedStream("<html>Service unavailable</html>", 4))
+                .onComplete(ctx.asyncAssertFailure(err -> async.complete()));
+    }
+
+    @Test
+    public void maxSizeFailsTest(TestContext ctx) {
+        Async async = ctx.async();
+        new SoapResponseParser(null, 100).parse(new ChunkedStream(FOLDER_RESPONSE, 16))
+                .onComplete(ctx.asyncAssertFailure(err -> {
+                    ctx.assertTrue(err.getMessage().contains("max size"));
+                    async.complete();
+                }));
+    }
+
+    /**
+     * Emit a string in chunks once resumed
+     */
+    private static class ChunkedStream implements ReadStream<Buffer> {
+        private final String content;
+        private final int chunkSize;
+        private Handler<Buffer> handler;
+        private Handler<Void> endHandler;
+
+        private ChunkedStream(String content, int chunkSize) {
+            this.content = content;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public ReadStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> handler(Handler<Buffer> handler) {
+            this.handler = handler;
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> pause() {
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> resume() {
+            for (int i = 0; i < content.length() && handler != null; i += chunkSize) {
+                handler.handle(Buffer.buffer(content.substring(i, Math.min(content.length(), i + chunkSize))));
+            }
+            if (endHandler != null) {
+                endHandler.handle(null);
+            }
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> fetch(long amount) {
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> endHandler(Handler<Void> endHandler) {
+            this.endHandler = endHandler;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package fr.openent.zimbra.model.soap.model;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(VertxUnitRunner.class)
+public class FolderPathCacheTest {
+
+    private static final String USER_ID = "user-id";
+
+    private Future<String> resolve(FolderPathCache cache, String key, String id, AtomicInteger resolutions) {
+        return cache.resolve(USER_ID, key, () -> {
+            resolutions.incrementAndGet();
+            return Future.succeededFuture(id);
+        });
+    }
+
+    @Test
+    public void concurrentResolutionsAreSharedTest(TestContext ctx) {
+        FolderPathCache cache = new FolderPathCache(100, 60000L);
+        AtomicInteger resolutions = new AtomicInteger();
+        Promise<String> created = Promise.promise();
+
+        Future<String> first = cache.resolve(USER_ID, FolderPathCache.folderKey("Carnets/UAI"), () -> {
+            resolutions.incrementAndGet();
+            return created.future();
+        });
+        Future<String> second = resolve(cache, FolderPathCache.folderKey("/carnets/uai"), "other", resolutions);
+        created.complete("257");
+
+        ctx.assertEquals(1, resolutions.get());
+        ctx.assertEquals("257", first.result());
+        ctx.assertEquals("257", second.result());
+        ctx.assertEquals("257", resolve(cache, FolderPathCache.folderKey("Carnets/UAI"), "other", resolutions).result());
+        ctx.assertEquals(1, resolutions.get());
+    }
+
+    @Test
+    public void failedResolutionIsNotCachedTest(TestContext ctx) {
+        FolderPathCache cache = new FolderPathCache(100, 60000L);
+        AtomicInteger resolutions = new AtomicInteger();
+
+        ctx.assertTrue(cache.resolve(USER_ID, FolderPathCache.folderKey("Carnets"),
+                () -> Future.failedFuture("mail.NO_SUCH_FOLDER")).failed());
+        ctx.assertEquals("257", resolve(cache, FolderPathCache.folderKey("Carnets"), "257", resolutions).result());
+        ctx.assertEquals(1, resolutions.get());
+    }
+
+    @Test
+    public void deletedFolderDropsItsSubfoldersTest(TestContext ctx) {
+        FolderPathCache cache = new FolderPathCache(100, 60000L);
+        AtomicInteger resolutions = new AtomicInteger();
+        resolve(cache, FolderPathCache.folderKey("Carnets"), "257", resolutions);
+        resolve(cache, FolderPathCache.folderKey("Carnets/UAI"), "258", resolutions);
+        resolve(cache, FolderPathCache.folderKey("Carnets/UAI/Classes"), "259", resolutions);
+        resolve(cache, FolderPathCache.folderKey("Carnets2"), "260", resolutions);
+        resolve(cache, FolderPathCache.mountpointKey("257", "Structure"), "261", resolutions);
+        resolutions.set(0);
+
+        cache.invalidateFolder(USER_ID, "/Carnets/UAI", true);
+
+        resolve(cache, FolderPathCache.folderKey("Carnets"), "257", resolutions);
+        resolve(cache, FolderPathCache.folderKey("Carnets2"), "260", resolutions);
+        ctx.assertEquals(0, resolutions.get());
+        resolve(cache, FolderPathCache.folderKey("Carnets/UAI"), "258", resolutions);
+        resolve(cache, FolderPathCache.folderKey("Carnets/UAI/Classes"), "259", resolutions);
+        resolve(cache, FolderPathCache.mountpointKey("257", "Structure"), "261", resolutions);
+        ctx.assertEquals(3, resolutions.get());
+
+        cache.invalidateFolder(USER_ID, "/Carnets", false);
+        resolve(cache, FolderPathCache.folderKey("Carnets"), "257", resolutions);
+        resolve(cache, FolderPathCache.folderKey("Carnets/UAI"), "258", resolutions);
+        ctx.assertEquals(4, resolutions.get());
+    }
+}
@@ -0,0 +1,129 @@
+package fr.openent.zimbra.model.synchro.addressbook;
+
+import fr.openent.zimbra.Zimbra;
+import fr.openent.zimbra.helper.ConfigManager;
+import fr.openent.zimbra.mock.MockZimbraServer;
+import fr.openent.zimbra.model.synchro.addressbook.contacts.Guest;
+import fr.openent.zimbra.service.data.SoapZimbraService;
+import fr.openent.zimbra.service.impl.SlackService;
+import io.vertx.circuitbreaker.CircuitBreakerOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+
+import static org.mockito.Mockito.mock;
+
+@RunWith(VertxUnitRunner.class)
+public class AddressBookFolderTest {
+
+    private static final int CONTACTS = 5000;
+    private static final int CHUNK_SIZE = 4096;
+    private static final String PREAUTH_KEY = "0123456789abcdef0123456789abcdef";
+
+    private Vertx vertx;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        Zimbra.appConfig = new ConfigManager(new JsonObject());
+    }
+
+    @After
+    public void tearDown(TestContext ctx) {
+        vertx.close(ctx.asyncAssertSuccess());
+    }
+
+    private AddressBookFolder folder() {
+        AddressBookFolder folder = new AddressBookFolder();
+        for (int i = 0; i < CONTACTS; i++) {
+            folder.addContact(new Guest(new JsonObject()
+                    .put("lastName", "Lastname" + i)
+                    .put("firstName", "Firstname" + i)
+                    .put("email", "user" + i + "@domain.com"), "UAI"));
+        }
+        return folder;
+    }
+
+    private static String sha256(MessageDigest digest) {
+        StringBuilder hash = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hash.append(String.format("%02x", b));
+        }
+        return hash.toString();
+    }
+
+    @Test
+    public void csvChunksAreBoundedTest(TestContext ctx) throws NoSuchAlgorithmException {
+        AddressBookFolder folder = folder();
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        long streamedSize = 0;
+        int chunkCount = 0;
+        Iterator<Buffer> chunks = folder.getCsvChunks(CHUNK_SIZE);
+        while (chunks.hasNext()) {
+            Buffer chunk = chunks.next();
+            ctx.assertTrue(chunk.length() <= CHUNK_SIZE);
+            digest.update(chunk.getBytes());
+            streamedSize += chunk.length();
+            chunkCount++;
+        }
+
+        ctx.assertTrue(chunkCount > 1);
+        ctx.assertEquals(sha256(digest), folder.getHash());
+        ctx.assertEquals(streamedSize, folder.getCsvSize());
+        ctx.assertEquals(0, folder.getCsvBuilds());
+    }
+
+    @Test
+    public void streamingUploadNeverBuildsCsvTest(TestContext ctx) {
+        Async async = ctx.async();
+        MockZimbraServer zimbra = new MockZimbraServer(vertx, PREAUTH_KEY, "admin-password");
+        AddressBookFolder folder = folder();
+        zimbra.start()
+                .compose(port -> {
+                    Zimbra.appConfig = new ConfigManager(new JsonObject()
+                            .put("zimbra-uri", zimbra.getUri())
+                            .put("zimbra-admin-uri", zimbra.getAdminUri())
+                            .put("admin-account", "admin@mock.zimbra")
+                            .put("admin-password", "admin-password")
+                            .put("preauth-key", PREAUTH_KEY));
+                    Zimbra.domain = "mock.zimbra";
+                    SoapZimbraService soapService = new SoapZimbraService(vertx, null, mock(SlackService.class),
+                            new CircuitBreakerOptions());
+                    return soapService.uploadStream("user-id", "text/csv", "contacts.csv",
+                            folder.getCsvChunks(CHUNK_SIZE), CHUNK_SIZE);
+                })
+                .onComplete(ctx.asyncAssertSuccess(uploadId -> {
+                    MockZimbraServer.RecordedRequest upload = zimbra.getRequests(MockZimbraServer.PATH_UPLOAD).get(0);
+                    ctx.assertEquals(folder.getCsvSize(), upload.getSize());
+                    ctx.assertNotNull(folder.getHash());
+                    ctx.assertEquals(0, folder.getCsvBuilds());
+                    async.complete();
+                }));
+    }
+
+    @Test
+    public void hashDoesNotDependOnCsvTest(TestContext ctx) throws NoSuchAlgorithmException {
+        AddressBookFolder folder = folder();
+        String hash = folder.getHash();
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(folder.getCsv().getBytes(StandardCharsets.UTF_8));
+        ctx.assertEquals(hash, sha256(digest));
+        ctx.assertEquals(1, folder.getCsvBuilds());
+        ctx.assertEquals(hash, folder().getHash());
+
+        folder.addContact(new Guest(new JsonObject().put("lastName", "Other").put("email", "other@domain.com"), "UAI"));
+        ctx.assertNotEquals(hash, folder.getHash());
+    }
+}
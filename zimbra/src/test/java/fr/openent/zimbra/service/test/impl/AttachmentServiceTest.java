@@ -2,21 +2,27 @@ package fr.openent.zimbra.service.test.impl;
 
 import fr.openent.zimbra.Zimbra;
 import fr.openent.zimbra.core.constants.Field;
+import fr.openent.zimbra.core.enums.ErrorEnum;
 import fr.openent.zimbra.helper.ConfigManager;
 import fr.openent.zimbra.helper.HttpClientHelper;
+import fr.openent.zimbra.mock.MockZimbraServer;
 import fr.openent.zimbra.service.data.SoapZimbraService;
 import fr.openent.zimbra.service.impl.AttachmentService;
 import fr.openent.zimbra.service.impl.MessageService;
 import fr.wseduc.webutils.Either;
+import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.Message;
 import io.vertx.core.http.*;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.entcore.common.bus.WorkspaceHelper;
+import org.entcore.common.storage.Storage;
 import org.entcore.common.user.UserInfos;
 import org.junit.Before;
 import org.junit.Test;
@@ -27,6 +33,16 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.powermock.modules.junit4.PowerMockRunnerDelegate;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 import static org.powermock.api.mockito.PowerMockito.mock;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
 
@@ -35,11 +51,15 @@ import static org.powermock.api.mockito.PowerMockito.mockStatic;
 @PrepareForTest({HttpClientHelper.class, Zimbra.class})
 public class AttachmentServiceTest {
 
+    private static final String PREAUTH_KEY = "0123456789abcdef0123456789abcdef";
+    private static final String TMP_PREFIX = "zimbra-attachment-";
+
     private Vertx vertx;
     private AttachmentService attachmentService;
     private SoapZimbraService soapZimbraService;
     private MessageService messageService;
     private HttpClient httpClient;
+    private MockZimbraServer zimbra;
 
     @Before
     public void setUp() throws IllegalAccessException {
@@ -50,11 +70,12 @@ public class AttachmentServiceTest {
         JsonObject config = new JsonObject()
                 .put("zimbra-uri", "https://zimbra-dev.support-ent.fr");
 
-        this.attachmentService = new AttachmentService(soapZimbraService, messageService, Vertx.vertx(), config, null);
+        this.attachmentService = new AttachmentService(soapZimbraService, messageService, Vertx.vertx(), config);
 
         this.httpClient = Mockito.mock(HttpClient.class);
         mockStatic(HttpClientHelper.class);
-        PowerMockito.when(HttpClientHelper.createHttpClient(Mockito.any())).thenReturn(this.httpClient);
+        PowerMockito.when(HttpClientHelper.createHttpClient(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any()))
+                .thenReturn(this.httpClient);
 
         ConfigManager configManager = mock(ConfigManager.class);
         mockStatic(Zimbra.class);
@@ -156,4 +177,145 @@ public class AttachmentServiceTest {
 
         async.awaitSuccess(10000);
     }
+
+    /**
+     * Attachment service downloading from a MockZimbraServer, with workspace attachment streaming enabled
+     * @param attachment attachment served by Zimbra
+     * @param maxSize    workspace attachment max size, in MB
+     */
+    private Future<AttachmentService> streamingAttachmentService(Buffer attachment, int maxSize) {
+        Vertx zimbraVertx = Vertx.vertx();
+        this.zimbra = new MockZimbraServer(zimbraVertx, PREAUTH_KEY, "admin-password").setAttachmentContent(attachment);
+        String token = zimbra.issueToken("user@mock.zimbra");
+        Mockito.doAnswer(invocation -> {
+            Handler<Either<String, JsonObject>> response = invocation.getArgument(1);
+            response.handle(new Either.Right<>(new JsonObject().put(Field.AUTH_TOKEN, token)));
+            return null;
+        }).when(soapZimbraService).getUserAuthToken(Mockito.any(), Mockito.any());
+
+        PowerMockito.when(HttpClientHelper.createHttpClient(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any()))
+                .thenCallRealMethod();
+        PowerMockito.when(Zimbra.appConfig.isWorkspaceAttachmentStreaming()).thenReturn(true);
+        PowerMockito.when(Zimbra.appConfig.getWorkspaceAttachmentMaxSize()).thenReturn(maxSize);
+
+        return zimbra.start().map(port -> new AttachmentService(soapZimbraService, messageService, zimbraVertx,
+                new JsonObject().put("zimbra-uri", zimbra.getUri())));
+    }
+
+    /**
+     * Storage keeping a copy of the temporary files it is asked to write
+     */
+    private Storage storage(List<String> paths, List<byte[]> contents) {
+        Storage storage = mock(Storage.class);
+        Mockito.doAnswer(invocation -> {
+            String path = invocation.getArgument(0);
+            byte[] content = Files.readAllBytes(Paths.get(path));
+            paths.add(path);
+            contents.add(content);
+            Handler<JsonObject> handler = invocation.getArgument(1);
+            handler.handle(new JsonObject()
+                    .put(Field.STATUS, Field.OK)
+                    .put("_id", "file-id")
+                    .put(Field.METADATA, new JsonObject().put(Field.SIZE, content.length)));
+            return null;
+        }).when(storage).writeFsFile(Mockito.anyString(), Mockito.any());
+        return storage;
+    }
+
+    @SuppressWarnings("unchecked")
+    private WorkspaceHelper workspaceHelper(List<JsonObject> documents) {
+        WorkspaceHelper workspaceHelper = mock(WorkspaceHelper.class);
+        Mockito.doAnswer(invocation -> {
+            JsonObject uploaded = invocation.getArgument(0);
+            documents.add(uploaded);
+            Message<JsonObject> message = mock(Message.class);
+            Mockito.when(message.body()).thenReturn(new JsonObject().put("_id", "document-id"));
+            Handler<AsyncResult<Message<JsonObject>>> handler = invocation.getArgument(6);
+            handler.handle(Future.succeededFuture(message));
+            return null;
+        }).when(workspaceHelper).addDocument(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(),
+                Mockito.anyBoolean(), Mockito.any(), Mockito.any());
+        return workspaceHelper;
+    }
+
+    private static Buffer randomAttachment(int size) {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return Buffer.buffer(content);
+    }
+
+    private static Set<String> tmpFiles() {
+        String[] names = new File(System.getProperty("java.io.tmpdir")).list((dir, name) -> name.startsWith(TMP_PREFIX));
+        return names == null ? new HashSet<>() : new HashSet<>(Arrays.asList(names));
+    }
+
+    @Test
+    public void testGetAttachmentToWorkspace_streaming(TestContext ctx) {
+        Async async = ctx.async();
+        Buffer attachment = randomAttachment(256 * 1024);
+        List<String> paths = new CopyOnWriteArrayList<>();
+        List<byte[]> contents = new CopyOnWriteArrayList<>();
+        List<JsonObject> documents = new CopyOnWriteArrayList<>();
+        Storage storage = storage(paths, contents);
+
+        streamingAttachmentService(attachment, 1).onComplete(ctx.asyncAssertSuccess(service ->
+                service.getAttachmentToWorkspace("300", "2", new UserInfos(), false, storage,
+                        workspaceHelper(documents), result -> {
+                            ctx.assertTrue(result.isRight());
+                            ctx.assertEquals(1, paths.size());
+                            ctx.assertTrue(paths.get(0).contains(TMP_PREFIX));
+                            ctx.assertTrue(Arrays.equals(attachment.getBytes(), contents.get(0)));
+                            ctx.assertFalse(new File(paths.get(0)).exists());
+
+                            JsonObject metadata = documents.get(0).getJsonObject(Field.METADATA);
+                            ctx.assertEquals("mock.bin", metadata.getString(Field.FILENAME));
+                            ctx.assertEquals("application/octet-stream", metadata.getString(Field.METADATA_CONTENT_TYPE));
+                            ctx.assertEquals((long) attachment.length(), metadata.getLong(Field.SIZE));
+                            async.complete();
+                        })));
+
+        async.awaitSuccess(10000);
+    }
+
+    @Test
+    public void testGetAttachmentToWorkspace_streaming_too_large(TestContext ctx) {
+        Async async = ctx.async();
+        Buffer attachment = randomAttachment(2 * 1024 * 1024);
+        Set<String> tmpFilesBefore = tmpFiles();
+        Storage storage = storage(new CopyOnWriteArrayList<>(), new CopyOnWriteArrayList<>());
+
+        streamingAttachmentService(attachment, 1).onComplete(ctx.asyncAssertSuccess(service ->
+                service.getAttachmentToWorkspace("300", "2", new UserInfos(), false, storage,
+                        workspaceHelper(new CopyOnWriteArrayList<>()), result -> {
+                            ctx.assertTrue(result.isLeft());
+                            ctx.assertTrue(result.left().getValue().contains(ErrorEnum.ATTACHMENT_TOO_LARGE.method()));
+                            ctx.assertEquals(1, zimbra.countRequests(MockZimbraServer.PATH_HOME));
+                            Mockito.verify(storage, Mockito.never()).writeFsFile(Mockito.anyString(), Mockito.any());
+                            ctx.assertEquals(tmpFilesBefore, tmpFiles());
+                            async.complete();
+                        })));
+
+        async.awaitSuccess(10000);
+    }
+
+    @Test
+    public void testGetAttachmentToWorkspace_streaming_interrupted(TestContext ctx) {
+        Async async = ctx.async();
+        Buffer attachment = randomAttachment(256 * 1024);
+        Set<String> tmpFilesBefore = tmpFiles();
+        Storage storage = storage(new CopyOnWriteArrayList<>(), new CopyOnWriteArrayList<>());
+
+        streamingAttachmentService(attachment, 1).onComplete(ctx.asyncAssertSuccess(service -> {
+            zimbra.injectFault(MockZimbraServer.PATH_HOME, MockZimbraServer.Fault.INTERRUPTED_BODY, 1);
+            service.getAttachmentToWorkspace("300", "2", new UserInfos(), false, storage,
+                    workspaceHelper(new CopyOnWriteArrayList<>()), result -> {
+                        ctx.assertTrue(result.isLeft());
+                        Mockito.verify(storage, Mockito.never()).writeFsFile(Mockito.anyString(), Mockito.any());
+                        ctx.assertEquals(tmpFilesBefore, tmpFiles());
+                        async.complete();
+                    });
+        }));
+
+        async.awaitSuccess(10000);
+    }
 }
@@ -1,9 +1,11 @@
 package fr.openent.zimbra.service.test.impl;
 
+import fr.openent.zimbra.Zimbra;
 import fr.openent.zimbra.core.constants.Field;
 import fr.openent.zimbra.helper.ServiceManager;
 import fr.openent.zimbra.model.constant.FrontConstants;
 import fr.openent.zimbra.model.constant.ZimbraConstants;
+import fr.openent.zimbra.service.DbMailService;
 import fr.openent.zimbra.service.impl.MessageService;
 import fr.openent.zimbra.service.impl.UserService;
 import fr.wseduc.webutils.Either;
@@ -26,6 +28,7 @@ import org.powermock.modules.junit4.PowerMockRunnerDelegate;
 import org.powermock.reflect.Whitebox;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @RunWith(PowerMockRunner.class)
 @PowerMockRunnerDelegate(VertxUnitRunner.class)
@@ -111,4 +114,48 @@ public class MessageServiceTest {
 
         async.awaitSuccess(10000);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testTranslateMessagesAddresses(TestContext ctx) throws Exception {
+        Async async = ctx.async();
+        Zimbra.domain = "ent.fr";
+        DbMailService dbMailService = Mockito.mock(DbMailService.class);
+        MessageService service = new MessageService(null, null, dbMailService, userService, null, null);
+
+        Mockito.doAnswer((Answer<Void>) invocation -> {
+            List<String> mails = invocation.getArgument(0);
+            ctx.assertEquals(3, mails.size());
+            Handler<Either<String, JsonArray>> handler = invocation.getArgument(1);
+            handler.handle(new Either.Right<>(new JsonArray()
+                    .add(new JsonObject().put(DbMailService.ZIMBRA_NAME, "teacher@ent.fr")
+                            .put(DbMailService.NEO4J_UID, "user-id").put(Field.TYPE, "user"))));
+            return null;
+        }).when(dbMailService).getNeoIdsFromMails(Mockito.any(), Mockito.any());
+
+        JsonArray zimbraMessages = new JsonArray()
+                .add(new JsonObject().put(ZimbraConstants.MSG_EMAILS, new JsonArray()
+                        .add(new JsonObject().put(ZimbraConstants.MSG_EMAIL_ADDR, "teacher@ent.fr")
+                                .put(ZimbraConstants.MSG_EMAIL_TYPE, ZimbraConstants.ADDR_TYPE_FROM))
+                        .add(new JsonObject().put(ZimbraConstants.MSG_EMAIL_ADDR, "external@mail.com")
+                                .put(ZimbraConstants.MSG_EMAIL_TYPE, ZimbraConstants.ADDR_TYPE_TO))))
+                .add(new JsonObject().put(ZimbraConstants.MSG_EMAILS, new JsonArray()
+                        .add(new JsonObject().put(ZimbraConstants.MSG_EMAIL_ADDR, "teacher@ent.fr")
+                                .put(ZimbraConstants.MSG_EMAIL_TYPE, ZimbraConstants.ADDR_TYPE_TO))
+                        .add(new JsonObject().put(ZimbraConstants.MSG_EMAIL_ADDR, "group-id@ent.fr")
+                                .put(ZimbraConstants.MSG_EMAIL_TYPE, ZimbraConstants.ADDR_TYPE_CC))
+                        .add(new JsonObject().put(ZimbraConstants.MSG_EMAIL_ADDR, "Unknown.Name@ent.fr")
+                                .put(ZimbraConstants.MSG_EMAIL_TYPE, ZimbraConstants.ADDR_TYPE_BCC))));
+
+        Future<Map<String, String>> future = Whitebox.invokeMethod(service, "translateMessagesAddresses", zimbraMessages);
+        future.onSuccess(addressMap -> {
+            ctx.assertEquals(4, addressMap.size());
+            ctx.assertEquals("user-id", addressMap.get("teacher@ent.fr"));
+            ctx.assertEquals("external@mail.com", addressMap.get("external@mail.com"));
+            ctx.assertEquals("group-id", addressMap.get("group-id@ent.fr"));
+            ctx.assertEquals("Unknown.Name@ent.fr", addressMap.get("Unknown.Name@ent.fr"));
+            async.complete();
+        }).onFailure(ctx::fail);
+
+        async.awaitSuccess(10000);
+    }
+}
@@ -0,0 +1,196 @@
+package fr.openent.zimbra.service.test.impl;
+
+import fr.openent.zimbra.Zimbra;
+import fr.openent.zimbra.helper.ConfigManager;
+import fr.openent.zimbra.mock.MockZimbraServer;
+import fr.openent.zimbra.service.data.SoapZimbraService;
+import fr.openent.zimbra.service.impl.SlackService;
+import io.vertx.circuitbreaker.CircuitBreakerOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static fr.openent.zimbra.model.constant.ZimbraErrors.ERROR_PROXYERROR;
+import static org.mockito.Mockito.mock;
+
+@RunWith(VertxUnitRunner.class)
+public class SoapZimbraServiceTest {
+
+    private static final String PREAUTH_KEY = "0123456789abcdef0123456789abcdef";
+    private static final String USER_ID = "user-id";
+
+    private Vertx vertx;
+    private MockZimbraServer zimbra;
+
+    @Before
+    public void setUp(TestContext ctx) {
+        vertx = Vertx.vertx();
+        zimbra = new MockZimbraServer(vertx, PREAUTH_KEY, "admin-password");
+        zimbra.start().onComplete(ctx.asyncAssertSuccess(port -> {
+            Zimbra.appConfig = new ConfigManager(new JsonObject()
+                    .put("zimbra-uri", zimbra.getUri())
+                    .put("zimbra-admin-uri", zimbra.getAdminUri())
+                    .put("admin-account", "admin@mock.zimbra")
+                    .put("admin-password", "admin-password")
+                    .put("preauth-key", PREAUTH_KEY));
+            Zimbra.domain = "mock.zimbra";
+        }));
+    }
+
+    @After
+    public void tearDown(TestContext ctx) {
+        vertx.close(ctx.asyncAssertSuccess());
+    }
+
+    private SoapZimbraService soapService(CircuitBreakerOptions options) {
+        return new SoapZimbraService(vertx, null, mock(SlackService.class), options);
+    }
+
+    private Future<JsonObject> search(SoapZimbraService soapService) {
+        Promise<JsonObject> promise = Promise.promise();
+        JsonObject request = new JsonObject()
+                .put("name", "SearchRequest")
+                .put("content", new JsonObject().put("query", "in:inbox").put("limit", 10).put("_jsns", "urn:zimbraMail"));
+        soapService.callUserSoapAPI(request, USER_ID, promise);
+        return promise.future();
+    }
+
+    @Test
+    public void concurrentRequestsShareAuthenticationTest(TestContext ctx) {
+        Async async = ctx.async();
+        zimbra.setLatency(50);
+        SoapZimbraService soapService = soapService(new CircuitBreakerOptions());
+
+        Future.all(search(soapService), search(soapService), search(soapService))
+                .onComplete(ctx.asyncAssertSuccess(res -> {
+                    ctx.assertEquals(1, zimbra.countRequests("AuthRequest"));
+                    ctx.assertEquals(3, zimbra.countRequests("SearchRequest"));
+                    ctx.assertEquals(10, res.<JsonObject>resultAt(0).getJsonObject("Body")
+                            .getJsonObject("SearchResponse").getJsonArray("m").size());
+                    async.complete();
+                }));
+    }
+
+    @Test
+    public void expiredTokenIsRefreshedTest(TestContext ctx) {
+        Async async = ctx.async();
+        SoapZimbraService soapService = soapService(new CircuitBreakerOptions());
+
+        search(soapService)
+                .compose(res -> {
+                    zimbra.expireTokens();
+                    return search(soapService);
+                })
+                .onComplete(ctx.asyncAssertSuccess(res -> {
+                    ctx.assertEquals(2, zimbra.countRequests("AuthRequest"));
+                    ctx.assertEquals(3, zimbra.countRequests("SearchRequest"));
+                    async.complete();
+                }));
+    }
+
+    @Test
+    public void delegatedRequestUsesAdminAuthenticationTest(TestContext ctx) {
+        Async async = ctx.async();
+        SoapZimbraService soapService = soapService(new CircuitBreakerOptions());
+        JsonObject request = new JsonObject()
+                .put("name", "SearchRequest")
+                .put("content", new JsonObject().put("query", "msgid:\"mid\"").put("_jsns", "urn:zimbraMail"));
+        Promise<JsonObject> promise = Promise.promise();
+        soapService.callDelegatedSoapAPI(request, USER_ID, promise);
+
+        promise.future().onComplete(ctx.asyncAssertSuccess(res -> {
+            ctx.assertEquals(1, zimbra.countRequests("AuthRequest"));
+            ctx.assertEquals(0, zimbra.countRequests(MockZimbraServer.PATH_PREAUTH));
+            MockZimbraServer.RecordedRequest search = zimbra.getRequests("SearchRequest").get(0);
+            ctx.assertEquals(USER_ID + "@mock.zimbra", search.getAccount());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public void uploadStreamSendsEveryChunkTest(TestContext ctx) {
+        Async async = ctx.async();
+        SoapZimbraService soapService = soapService(new CircuitBreakerOptions());
+        List<Buffer> chunks = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            chunks.add(Buffer.buffer(new byte[1024]));
+        }
+
+        soapService.uploadStream(USER_ID, "text/csv", "contacts.csv", chunks.iterator(), 2048)
+                .onComplete(ctx.asyncAssertSuccess(uploadId -> {
+                    ctx.assertNotNull(uploadId);
+                    MockZimbraServer.RecordedRequest upload = zimbra.getRequests(MockZimbraServer.PATH_UPLOAD).get(0);
+                    ctx.assertEquals(100L * 1024, upload.getSize());
+                    ctx.assertNotNull(upload.getAuthToken());
+                    async.complete();
+                }));
+    }
+
+    @Test
+    public void rejectedUploadFailsTest(TestContext ctx) {
+        Async async = ctx.async();
+        zimbra.setUploadMaxSize(1024);
+        SoapZimbraService soapService = soapService(new CircuitBreakerOptions());
+        Iterator<Buffer> chunks = Arrays.asList(Buffer.buffer(new byte[1024]), Buffer.buffer(new byte[1024])).iterator();
+
+        soapService.uploadStream(USER_ID, "text/csv", "contacts.csv", chunks, 1024)
+                .onComplete(ctx.asyncAssertFailure(err -> async.complete()));
+    }
+
+    @Test
+    public void soapFaultIsReturnedTest(TestContext ctx) {
+        Async async = ctx.async();
+        zimbra.injectFault("SearchRequest", MockZimbraServer.Fault.PROXY_ERROR, 1);
+        SoapZimbraService soapService = soapService(new CircuitBreakerOptions());
+
+        search(soapService).onComplete(ctx.asyncAssertFailure(err -> {
+            ctx.assertEquals(ERROR_PROXYERROR, new JsonObject(err.getMessage()).getString(SoapZimbraService.ERROR_CODE));
+            async.complete();
+        }));
+    }
+
+    @Test
+    public void malformedResponseFailsTest(TestContext ctx) {
+        Async async = ctx.async();
+        zimbra.injectFault("SearchRequest", MockZimbraServer.Fault.MALFORMED_JSON, 1);
+        SoapZimbraService soapService = soapService(new CircuitBreakerOptions().setTimeout(10000));
+        long start = System.currentTimeMillis();
+
+        search(soapService).onComplete(ctx.asyncAssertFailure(err -> {
+            ctx.assertTrue(System.currentTimeMillis() - start < 10000);
+            async.complete();
+        }));
+    }
+
+    @Test
+    public void breakerOpensOnSlowResponsesTest(TestContext ctx) {
+        Async async = ctx.async();
+        zimbra.setLatency("SearchRequest", 500);
+        SoapZimbraService soapService = soapService(new CircuitBreakerOptions()
+                .setMaxFailures(2)
+                .setTimeout(100)
+                .setResetTimeout(60000));
+
+        search(soapService)
+                .recover(err -> search(soapService))
+                .recover(err -> search(soapService))
+                .onComplete(ctx.asyncAssertFailure(err -> {
+                    ctx.assertEquals(2, zimbra.countRequests("SearchRequest"));
+                    async.complete();
+                }));
+    }
+}
@@ -20,6 +20,8 @@ import org.powermock.modules.junit4.PowerMockRunner;
 import org.powermock.modules.junit4.PowerMockRunnerDelegate;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 @RunWith(PowerMockRunner.class)
@@ -72,4 +74,23 @@ public class SqlDbMailServiceTest {
 
         async.awaitSuccess(10000);
     }
+
+    @Test
+    public void testGetMailsFromIds_users_and_groups(TestContext ctx) {
+        Async async = ctx.async();
+        String expectedQuery = "SELECT uuidneo, mailzimbra, 'user' as type FROM test.users WHERE uuidneo IN (?,?) " +
+                "UNION ALL SELECT uuidneo, mailzimbra, 'group' as type FROM test.groups WHERE uuidneo IN (?)";
+        JsonArray expectedParams = new JsonArray().add("user1").add("user2").add("group1");
+
+        Mockito.doAnswer((Answer<Void>) invocation -> {
+            ctx.assertEquals(expectedQuery, invocation.getArgument(0));
+            ctx.assertEquals(expectedParams.toString(), invocation.getArgument(1).toString());
+            async.complete();
+            return null;
+        }).when(sql).prepared(Mockito.anyString(), Mockito.any(JsonArray.class), Mockito.any(Handler.class));
+
+        this.sqlDbMailService.getMailsFromIds(Arrays.asList("user1", "user2"), Collections.singletonList("group1"), null);
+
+        async.awaitSuccess(10000);
+    }
 }
@@ -0,0 +1,113 @@
+package fr.openent.zimbra.service.test.impl;
+
+import fr.openent.zimbra.core.enums.TaskStatus;
+import fr.openent.zimbra.model.task.RecallTask;
+import fr.openent.zimbra.tasks.service.DbActionService;
+import fr.openent.zimbra.tasks.service.QueueService;
+import fr.openent.zimbra.tasks.service.impl.RecallQueueServiceImpl;
+import fr.openent.zimbra.tasks.service.impl.data.SqlActionService;
+import fr.openent.zimbra.tasks.service.impl.data.SqlRecallTaskService;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.entcore.common.sql.Sql;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.modules.junit4.PowerMockRunnerDelegate;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(PowerMockRunner.class)
+@PowerMockRunnerDelegate(VertxUnitRunner.class)
+@PrepareForTest({Sql.class})
+public class SqlRecallTaskServiceTest {
+
+    private final Sql sql = PowerMockito.mock(Sql.class);
+    private Vertx vertx;
+    private QueueService<RecallTask> queueService;
+
+    @Before
+    public void setUp() {
+        PowerMockito.mockStatic(Sql.class);
+        PowerMockito.when(Sql.getInstance()).thenReturn(sql);
+        vertx = Vertx.vertx();
+        SqlRecallTaskService dbTaskService = new SqlRecallTaskService(vertx, "zimbra", 3600L, 60000L, 3);
+        DbActionService dbActionService = new SqlActionService("zimbra");
+        queueService = new RecallQueueServiceImpl("zimbra", dbTaskService, dbActionService);
+    }
+
+    @After
+    public void tearDown(TestContext ctx) {
+        vertx.close(ctx.asyncAssertSuccess());
+    }
+
+    private RecallTask task(long id, int retry) {
+        return new RecallTask(id, TaskStatus.IN_PROGRESS, null, null, null, null, null, retry);
+    }
+
+    @Test
+    public void updatesAreWrittenInOneTransactionTest(TestContext ctx) {
+        Async async = ctx.async();
+        AtomicInteger transactions = new AtomicInteger();
+
+        Mockito.doAnswer(invocation -> {
+            JsonArray statements = invocation.getArgument(0);
+            transactions.incrementAndGet();
+            ctx.assertEquals(2, statements.size());
+
+            JsonObject logsInsert = statements.getJsonObject(0);
+            ctx.assertTrue(logsInsert.getString("statement").startsWith("INSERT INTO zimbra.recall_task_logs"));
+            ctx.assertEquals(new JsonArray().add(3L).add("error"), logsInsert.getJsonArray("values"));
+
+            JsonObject statusUpdate = statements.getJsonObject(1);
+            ctx.assertTrue(statusUpdate.getString("statement").startsWith("UPDATE zimbra.recall_recipient_tasks"));
+            ctx.assertEquals(new JsonArray()
+                    .add(1L).add(TaskStatus.FINISHED.method())
+                    .add(2L).add(TaskStatus.FINISHED.method())
+                    .add(3L).add(TaskStatus.ERROR.method()), statusUpdate.getJsonArray("values"));
+            async.complete();
+            return null;
+        }).when(sql).transaction(Mockito.any(), (Handler<Message<JsonObject>>) Mockito.any());
+
+        queueService.editTaskStatus(task(1, 0), TaskStatus.FINISHED);
+        queueService.editTaskStatus(task(2, 0), TaskStatus.FINISHED);
+        Mockito.verify(sql, Mockito.never()).transaction(Mockito.any(), (Handler<Message<JsonObject>>) Mockito.any());
+        queueService.logFailureOnTask(task(3, 1), "error");
+
+        async.awaitSuccess(10000);
+        ctx.assertEquals(1, transactions.get());
+        Mockito.verify(sql, Mockito.never()).prepared(Mockito.any(), Mockito.any(), (Handler<Message<JsonObject>>) Mockito.any());
+    }
+
+    @Test
+    public void releasedTasksArePendingAgainTest(TestContext ctx) {
+        Async async = ctx.async();
+        PowerMockito.when(Sql.listPrepared(Mockito.anyList())).thenReturn("(?,?)");
+
+        Mockito.doAnswer(invocation -> {
+            String query = invocation.getArgument(0);
+            JsonArray values = invocation.getArgument(1);
+            ctx.assertTrue(query.startsWith("UPDATE zimbra.recall_recipient_tasks"));
+            ctx.assertEquals(new JsonArray()
+                    .add(TaskStatus.PENDING.method())
+                    .add(TaskStatus.IN_PROGRESS.method())
+                    .add(4L).add(5L), values);
+            async.complete();
+            return null;
+        }).when(sql).prepared(Mockito.anyString(), Mockito.any(JsonArray.class), (Handler<Message<JsonObject>>) Mockito.any());
+
+        queueService.releaseTasks(Arrays.asList(task(4, 0), task(5, 2)));
+    }
+}